@@ -0,0 +1,98 @@
+package domain;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import persistency.Loading;
+import persistency.ResultWriter;
+
+/**
+ * BatchComparison is an abstract class with static methods for the --compare mode of BatchRunner: every model is
+ * fitted to each file and ranked, and one row is written per model instead of per file.
+ */
+abstract class BatchComparison {
+
+    /**
+     * Compares every model on each file in parallel and writes the rankings.
+     *
+     * @param files files to compare models on
+     * @param options parsed options
+     * @param out stream for results (when no --out file is given)
+     * @param err stream for errors and the summary
+     * @param start time the batch started, from System.nanoTime()
+     * @return exit code
+     * @throws IOException if the results file can't be written
+     */
+    static int run(List<Path> files, BatchRunner.Options options, PrintStream out, PrintStream err, long start) throws IOException {
+        List<Callable<List<ModelComparison.Candidate>>> tasks = new ArrayList<>();
+        for (Path file : files) {
+            tasks.add(() -> compareFile(file, options.graphType, options.weighting, options.robust));
+        }
+        List<List<ModelComparison.Candidate>> comparisons = new ArrayList<>();
+        ExecutorService executor = BatchRunner.newBatchExecutor(options.threads, files.size());
+        try {
+            for (Future<List<ModelComparison.Candidate>> future : executor.invokeAll(tasks)) {
+                comparisons.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Batch was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch failed", e.getCause()); // compareFile catches loading errors itself
+        } finally {
+            executor.shutdown();
+            Metrics.unregisterQueue("batch");
+        }
+
+        BatchRunner.writeResults(options, out, stream -> ResultWriter.writeComparison(stream, comparisons, options.format));
+
+        int compared = 0;
+        for (List<ModelComparison.Candidate> candidates : comparisons) {
+            ModelComparison.Candidate best = candidates.get(0);
+            if (best.isFitted()) {
+                compared++;
+                err.println(String.format(Locale.ROOT, "%s: %s (Akaike weight %.2f)", best.getData().getFilePath(),
+                        best.getModel().name(), best.getAkaikeWeight()));
+            }
+            else {
+                err.println(best.getData().getFilePath() + ": " + best.getData().getErrorMessage().trim().replace("\n", "; "));
+            }
+        }
+        err.println(String.format(Locale.ROOT, "Compared models on %d of %d files in %.1f s", compared, comparisons.size(),
+                (System.nanoTime() - start) / 1e9));
+        return (compared == comparisons.size()) ? BatchRunner.EXIT_OK : BatchRunner.EXIT_FAILED;
+    }
+
+    /**
+     * Loads one file and compares every model on it.
+     *
+     * @param file file to compare models on
+     * @param graphType graph type to fit
+     * @param weighting how the fits weight each rate
+     * @param robust how the fits reduce the influence of outliers
+     * @return the candidates, best first; if the file couldn't be loaded, one failed candidate holding the error
+     */
+    static List<ModelComparison.Candidate> compareFile(Path file, GraphType graphType, WeightingScheme weighting, RobustWeighting robust) {
+        try {
+            Data data = Loading.load(file.toString());
+            data.setGraphType(graphType);
+            data.setWeightingScheme(weighting);
+            data.setRobustWeighting(robust);
+            return ModelComparison.compare(data);
+        } catch (Exception e) {
+            Data failed = BatchRunner.failed(file.toString(), e);
+            failed.setModelType(KineticModel.UninhibitedOneSub);
+            List<ModelComparison.Candidate> candidates = new ArrayList<>();
+            candidates.add(ModelComparison.failed(failed));
+            return candidates;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package domain;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import persistency.Loading;
+import persistency.ResultWriter;
+
+/**
+ * BatchEquationFit is an abstract class with static methods for the --equation mode of BatchRunner: a rate
+ * equation typed on the command line is fitted to every file instead of a kinetic model.
+ */
+abstract class BatchEquationFit {
+
+    /**
+     * Fits a rate equation to every file in parallel and writes the parameters.
+     *
+     * @param files files to fit
+     * @param options parsed options
+     * @param out stream for results (when no --out file is given)
+     * @param err stream for errors and the summary
+     * @param start time the batch started, from System.nanoTime()
+     * @return exit code
+     * @throws IOException if the results file can't be written
+     */
+    static int run(List<Path> files, BatchRunner.Options options, PrintStream out, PrintStream err, long start) throws IOException {
+        List<Data> datasets = new ArrayList<>();
+        for (Path file : files) {
+            try {
+                Data data = Loading.load(file.toString());
+                data.setWeightingScheme(options.weighting);
+                datasets.add(data);
+            } catch (Exception e) {
+                datasets.add(BatchRunner.failed(file.toString(), e));
+            }
+        }
+        List<CustomModelFit.Result> results = CustomModelFit.fitAll(datasets, options.equation, null, options.threads);
+
+        BatchRunner.writeResults(options, out, stream -> ResultWriter.writeCustom(stream, results, options.format));
+
+        long fitted = results.stream().filter(CustomModelFit.Result::isFitted).count();
+        err.println(String.format(Locale.ROOT, "Fitted %d of %d files to %s in %.1f s", fitted, results.size(),
+                options.equation, (System.nanoTime() - start) / 1e9));
+        for (CustomModelFit.Result result : results) {
+            if (!result.isFitted()) {
+                err.println(result.getData().getFilePath() + ": " + result.getData().getErrorMessage().trim().replace("\n", "; "));
+            }
+        }
+        return (fitted == results.size()) ? BatchRunner.EXIT_OK : BatchRunner.EXIT_FAILED;
+    }
+}
@@ -0,0 +1,233 @@
+package domain;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import gui.GraphExporter;
+import persistency.Loading;
+import persistency.PlateImporter;
+import persistency.ResultWriter;
+
+/**
+ * BatchFit is an abstract class with static methods for the default mode of BatchRunner: every input file, or
+ * every dataset of every plate reader export, is fitted with a kinetic model and written as one row of results.
+ * The fitted datasets can also be fitted together (--global), and their graphs exported.
+ */
+public abstract class BatchFit {
+
+    /**
+     * Fits every file, or every dataset of every plate, writes the results and exports the graphs.
+     *
+     * @param files files to fit
+     * @param options parsed options
+     * @param out stream for results (when no --out file is given)
+     * @param err stream for errors and the summary
+     * @param start time the batch started, from System.nanoTime()
+     * @return exit code
+     * @throws IOException if the results file or a graph can't be written
+     */
+    static int run(List<Path> files, BatchRunner.Options options, PrintStream out, PrintStream err, long start) throws IOException {
+        FitCache cache = BatchRunner.newCache(options);
+        List<Data> results;
+        if (options.layout == null) {
+            results = fitAll(files, options.model, options.graphType, options.weighting, options.robust, options.threads, cache);
+        }
+        else {
+            PlateLayout layout;
+            try {
+                layout = PlateImporter.loadLayout(options.layout);
+            } catch (IllegalArgumentException e) {
+                err.println("Invalid layout: " + e.getMessage());
+                return BatchRunner.EXIT_FAILED;
+            }
+            results = fitPlates(files, layout, options, cache);
+        }
+        List<Data> fitted = results.stream().filter(data -> data.getErrorMessage().isEmpty()).collect(Collectors.toList());
+        if (options.global) {
+            try {
+                GlobalFit.Result global = GlobalFit.fit(fitted);
+                StringBuilder summary = new StringBuilder("Global fit of " + fitted.size() + " files:");
+                for (String name : global.getSharedNames()) {
+                    summary.append(String.format(Locale.ROOT, " %s=%.6g (se %.2g)", name, global.getShared(name), global.getSharedError(name)));
+                }
+                err.println(summary.append(" in ").append(global.getIterations()).append(" iterations"));
+            } catch (IllegalArgumentException e) {
+                err.println("Global fit failed: " + e.getMessage());
+                return BatchRunner.EXIT_FAILED;
+            }
+        }
+
+        BatchRunner.writeResults(options, out, stream -> ResultWriter.write(stream, results, options.format));
+
+        if (options.graphs != null) {
+            GraphExporter.exportAll(fitted, "S", Path.of(options.graphDir), options.graphs, 800, 600, 1.0, options.threads);
+        }
+
+        err.println(String.format(Locale.ROOT, "Fitted %d of %d %s in %.1f s", fitted.size(), results.size(),
+                (options.layout == null) ? "files" : "datasets", (System.nanoTime() - start) / 1e9));
+        for (Data data : results) {
+            if (!data.getErrorMessage().isEmpty()) {
+                err.println(data.getFilePath() + ": " + data.getErrorMessage().trim().replace("\n", "; "));
+            }
+        }
+        return (fitted.size() == results.size()) ? BatchRunner.EXIT_OK : BatchRunner.EXIT_FAILED;
+    }
+
+    /**
+     * Loads and fits every file in parallel.
+     * Files that fail are still returned, with their error message set and no fitted values.
+     *
+     * @param files files to fit
+     * @param model model to fit with, or null to use the one in each file
+     * @param graphType graph type to fit
+     * @param weighting how the fits weight each rate
+     * @param robust how the fits reduce the influence of outliers
+     * @param threads number of files to fit at once
+     * @param cache results of earlier fits
+     * @return one Data object per file, in the same order
+     */
+    public static List<Data> fitAll(List<Path> files, KineticModel model, GraphType graphType, WeightingScheme weighting,
+                                    RobustWeighting robust, int threads, FitCache cache) {
+        List<Callable<Data>> tasks = new ArrayList<>();
+        for (Path file : files) {
+            tasks.add(() -> fitFile(file, model, graphType, weighting, robust, cache));
+        }
+        ExecutorService executor = BatchRunner.newBatchExecutor(threads, files.size());
+        try {
+            List<Data> results = new ArrayList<>();
+            for (Future<Data> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Batch was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch failed", e.getCause()); // fitFile catches everything itself
+        } finally {
+            executor.shutdown();
+            Metrics.unregisterQueue("batch");
+        }
+    }
+
+    /**
+     * Imports and fits every plate reader export in parallel, one Data object per dataset of the layout.
+     * Exports that fail are still returned, as one Data object with their error message set.
+     *
+     * @param files plate reader exports
+     * @param layout what is in each well
+     * @param options parsed options
+     * @param cache results of earlier fits
+     * @return the Data objects of each export, in the same order
+     */
+    static List<Data> fitPlates(List<Path> files, PlateLayout layout, BatchRunner.Options options, FitCache cache) {
+        // Plates are imported in parallel already, so only a single plate estimates its rates on every thread:
+        int rateThreads = (files.size() == 1) ? options.threads : 1;
+        List<Callable<List<Data>>> tasks = new ArrayList<>();
+        for (Path file : files) {
+            tasks.add(() -> {
+                List<Data> datasets;
+                try {
+                    datasets = PlateImporter.importPlate(file.toString(), layout, options.rateMethod,
+                            InitialRates.DEFAULT_TOLERANCE, options.signalPerConcentration, rateThreads);
+                } catch (Exception e) {
+                    return List.of(BatchRunner.failed(file.toString(), e));
+                }
+                List<Data> results = new ArrayList<>();
+                for (Data data : datasets) {
+                    data.setWeightingScheme(options.weighting);
+                    data.setRobustWeighting(options.robust);
+                    results.add(fit(data, options.model, options.graphType, cache));
+                }
+                return results;
+            });
+        }
+        ExecutorService executor = BatchRunner.newBatchExecutor(options.threads, files.size());
+        try {
+            List<Data> results = new ArrayList<>();
+            for (Future<List<Data>> future : executor.invokeAll(tasks)) {
+                results.addAll(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Batch was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch failed", e.getCause()); // the tasks catch everything themselves
+        } finally {
+            executor.shutdown();
+            Metrics.unregisterQueue("batch");
+        }
+    }
+
+    /**
+     * Loads and fits one file.
+     *
+     * @param file file to fit
+     * @param model model to fit with, or null to use the one in the file
+     * @param graphType graph type to fit
+     * @param weighting how the fit weights each rate
+     * @param robust how the fit reduces the influence of outliers
+     * @param cache results of earlier fits
+     * @return the fitted Data, or a Data holding only the file path and an error message if it failed
+     */
+    static Data fitFile(Path file, KineticModel model, GraphType graphType, WeightingScheme weighting, RobustWeighting robust, FitCache cache) {
+        Data data;
+        try {
+            data = Loading.load(file.toString());
+        } catch (Exception e) {
+            return BatchRunner.failed(file.toString(), e);
+        }
+        data.setWeightingScheme(weighting);
+        data.setRobustWeighting(robust);
+        return fit(data, model, graphType, cache);
+    }
+
+    /**
+     * Fits loaded data the same way the GUI would.
+     *
+     * @param data loaded Data object
+     * @param model model to fit with, or null to use the one in the data
+     * @param graphType graph type to fit
+     * @param cache results of earlier fits
+     * @return the fitted Data, or a Data holding only the file path and an error message if it failed
+     */
+    public static Data fit(Data data, KineticModel model, GraphType graphType, FitCache cache) {
+        try {
+            if (model != null) data.setModelType(model);
+            trimCoSubInhibRow(data);
+            if (!data.isValid()) return data; // the error message says why
+            data.setGraphType(graphType);
+            Calculations.fit(data, cache);
+            return data;
+        } catch (RuntimeException e) {
+            return BatchRunner.failed(data.getFilePath(), e);
+        }
+    }
+
+    /**
+     * Shapes the co-substrate/inhibitor row of loaded data like the input tables do: one value per column, or none
+     * for one substrate. Files end each row with a separator, which would otherwise load as an extra blank value.
+     *
+     * @param data loaded Data object
+     */
+    private static void trimCoSubInhibRow(Data data) {
+        List<Double> row = new ArrayList<>();
+        if (data.getModelType() != KineticModel.UninhibitedOneSub) {
+            List<Double> loaded = data.getCoSubInhibRow();
+            for (int col = 0; col < data.getCols(); col++) {
+                row.add((col < loaded.size()) ? loaded.get(col) : Double.NaN);
+            }
+        }
+        data.setCoSubInhibRow(row);
+    }
+}
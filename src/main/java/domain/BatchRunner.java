@@ -0,0 +1,486 @@
+package domain;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * BatchRunner is an abstract class with static methods for running LUCENZ from the command line without a GUI.
+ * It parses the options, finds the input files and runs one mode on them: fitting a model to every file
+ * (BatchFit), comparing every model on each file (BatchComparison) or fitting a rate equation (BatchEquationFit).
+ * Otherwise it runs the HTTP fitting service (see FitServer). Graphs are only rendered (off-screen) if asked for,
+ * so plain fitting never initialises AWT.
+ */
+public abstract class BatchRunner {
+
+    /** Exit code when every file was fitted. */
+    public static final int EXIT_OK = 0;
+    /** Exit code when at least one file couldn't be loaded or fitted. */
+    public static final int EXIT_FAILED = 1;
+    /** Exit code when the command line was invalid. */
+    public static final int EXIT_USAGE = 2;
+
+    /** The most fit results kept in memory. */
+    private static final int CACHE_ENTRIES = 10000;
+
+    /** The command line help. */
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: lucenz [options] <file|directory|glob>...",
+            "       lucenz --serve <port> [--host <address>] [--threads <n>]",
+            "Fits every .ktn and .csv input and writes one row of results per file,",
+            "or serves fits over HTTP (POST /fit, GET /metrics, GET /health).",
+            "",
+            "Options:",
+            "  --model <1-6|name>   fit every file with this kinetic model instead of the one in the file",
+            "  --graph-type <name>  graph type to fit and draw (default VelocityVS)",
+            "  --weighting <name>   weight rates by Unit, RateSquared, RateFourth or ReplicateVariance",
+            "                       (default RateSquared)",
+            "  --robust <name>      down-weight outliers with Huber, Tukey or Cauchy weights (default None)",
+            "  --threads <n>        number of files to fit at once (default: number of processors)",
+            "  --format <f>         results format: csv, tsv or json (default csv)",
+            "  --out <file>         write results to this file instead of standard output",
+            "  --graphs <png|svg>   also export a graph of each fitted file (not with --compare or --equation)",
+            "  --graph-dir <dir>    directory to export graphs to (default graphs)",
+            "  --compare            fit every model to each file and rank them by AICc, BIC and F-tests",
+            "                       (writes one row per model instead; --model is ignored)",
+            "  --global             fit every file together, with Vm per file and the other constants shared",
+            "  --equation <expr>    fit this rate equation instead of a model, e.g. \"vm*[S]/(km+[S]*(1+[S]/ksi))\"",
+            "                       over [S], [I] or [B] and up to 4 named parameters (one row per file)",
+            "  --layout <file>      read the inputs as plate reader exports, with this plate layout mapping",
+            "                       wells to datasets and concentrations (one row of results per dataset)",
+            "  --rate-method <name> estimate initial rates from progress curves by Linear, Polynomial or",
+            "                       Integrated (default Linear)",
+            "  --signal-per-conc <x> change of signal per unit concentration, to convert rates (default 1)",
+            "  --metrics            write fit, load and cache metrics to standard error at the end",
+            "  --cache-dir <dir>    reuse fit results stored here by earlier runs, and store new ones",
+            "  --serve <port>       run the HTTP fitting service on this port instead of fitting files",
+            "  --host <address>     address for the HTTP fitting service to listen on (default 127.0.0.1)",
+            "  --help               show this help");
+
+    /**
+     * The options given on the command line.
+     */
+    static class Options {
+        /** The input files, directories and globs. */
+        final List<String> inputs = new ArrayList<>();
+        /** The model to fit with, or null to use the one in each file. */
+        KineticModel model;
+        /** The graph type to fit and draw. */
+        GraphType graphType = GraphType.VelocityVS;
+        /** How fits weight each rate. */
+        WeightingScheme weighting = WeightingScheme.RATE_SQUARED;
+        /** How fits reduce the influence of outliers. */
+        RobustWeighting robust = RobustWeighting.None;
+        /** The number of files to fit at once. */
+        int threads = Runtime.getRuntime().availableProcessors();
+        /** The results format. */
+        String format = "csv";
+        /** The results file, or null for standard output. */
+        String out;
+        /** The graph format, or null to not export graphs. */
+        String graphs;
+        /** The directory to export graphs to. */
+        String graphDir = "graphs";
+        /** Whether to write the metrics at the end. */
+        boolean metrics;
+        /** Whether to compare every model instead of fitting one. */
+        boolean compare;
+        /** Whether to fit every file together with shared constants. */
+        boolean global;
+        /** The rate equation to fit instead of a model, or null to fit a model. */
+        RateExpression equation;
+        /** The plate layout of the inputs, or null if they are input files. */
+        String layout;
+        /** How to estimate initial rates from progress curves. */
+        RateMethod rateMethod = RateMethod.Linear;
+        /** The change of signal per unit concentration. */
+        double signalPerConcentration = 1;
+        /** The directory to store fit results in, or null to not store them. */
+        String cacheDir;
+        /** The port to serve fits on, or null to fit the inputs. */
+        Integer serve;
+        /** The address to serve fits on. */
+        String host = "127.0.0.1";
+        /** Whether only the help was asked for. */
+        boolean help;
+    }
+
+    /**
+     * Runs a batch from the given command line arguments.
+     *
+     * @param args command line arguments
+     * @param out stream for results (when no --out file is given)
+     * @param err stream for errors and the summary
+     * @return exit code
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        // Only off-screen images are ever drawn, so never connect to a display:
+        System.setProperty("java.awt.headless", "true");
+
+        Options options;
+        try {
+            options = parseOptions(args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+        if (options.help) {
+            out.println(USAGE);
+            return EXIT_OK;
+        }
+        if (options.serve != null) {
+            return serve(options, err);
+        }
+
+        try {
+            long start = System.nanoTime();
+            List<Path> files = findInputs(options.inputs);
+            if (files.isEmpty()) {
+                err.println("No input files found.");
+                return EXIT_FAILED;
+            }
+            int exitCode;
+            if (options.compare) {
+                exitCode = BatchComparison.run(files, options, out, err, start);
+            }
+            else if (options.equation != null) {
+                exitCode = BatchEquationFit.run(files, options, out, err, start);
+            }
+            else {
+                exitCode = BatchFit.run(files, options, out, err, start);
+            }
+            if (options.metrics) err.print(Metrics.format());
+            return exitCode;
+        } catch (IOException e) {
+            err.println("Batch failed: " + e.getMessage());
+            return EXIT_FAILED;
+        }
+    }
+
+    /**
+     * Runs the HTTP fitting service until the JVM is stopped.
+     *
+     * @param options parsed options
+     * @param err stream for errors and the listening address
+     * @return exit code, if the service couldn't start
+     */
+    private static int serve(Options options, PrintStream err) {
+        FitServer server;
+        try {
+            FitCache cache = newCache(options);
+            server = new FitServer(new InetSocketAddress(options.host, options.serve), options.threads, options.threads * 16, cache);
+        } catch (IOException e) {
+            err.println("Couldn't listen on " + options.host + ":" + options.serve + ": " + e.getMessage());
+            return EXIT_FAILED;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        server.start();
+        err.println("Listening on http://" + options.host + ":" + server.getPort() + "/fit");
+        try {
+            new CountDownLatch(1).await(); // the request threads keep running until the JVM is stopped
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server.stop();
+        return EXIT_OK;
+    }
+
+    /**
+     * Parses the command line arguments.
+     *
+     * @param args command line arguments
+     * @return parsed options
+     * @throws IllegalArgumentException if an option is unrecognised or has an invalid value
+     */
+    static Options parseOptions(String[] args) {
+        Options options = new Options();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                options.inputs.add(arg);
+                continue;
+            }
+            if (arg.equals("--help")) {
+                options.help = true;
+                continue;
+            }
+            if (arg.equals("--metrics")) {
+                options.metrics = true;
+                continue;
+            }
+            if (arg.equals("--compare")) {
+                options.compare = true;
+                continue;
+            }
+            if (arg.equals("--global")) {
+                options.global = true;
+                continue;
+            }
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + arg);
+            String value = args[++i];
+            switch (arg) {
+                case "--model":
+                    options.model = KineticModel.parse(value);
+                    break;
+                case "--graph-type":
+                    options.graphType = parseGraphType(value);
+                    break;
+                case "--weighting":
+                    options.weighting = WeightingScheme.fromName(value);
+                    break;
+                case "--robust":
+                    options.robust = parseRobustWeighting(value);
+                    break;
+                case "--threads":
+                    try {
+                        options.threads = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid thread count: " + value);
+                    }
+                    if (options.threads < 1) throw new IllegalArgumentException("Invalid thread count: " + value);
+                    break;
+                case "--format":
+                    options.format = value.toLowerCase(Locale.ROOT);
+                    if (!options.format.matches("csv|tsv|json")) throw new IllegalArgumentException("Unrecognised format: " + value);
+                    break;
+                case "--out":
+                    options.out = value;
+                    break;
+                case "--graphs":
+                    options.graphs = value.toLowerCase(Locale.ROOT);
+                    if (!options.graphs.matches("png|svg")) throw new IllegalArgumentException("Unrecognised graph format: " + value);
+                    break;
+                case "--graph-dir":
+                    options.graphDir = value;
+                    break;
+                case "--cache-dir":
+                    options.cacheDir = value;
+                    break;
+                case "--serve":
+                    try {
+                        options.serve = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid port: " + value);
+                    }
+                    if (options.serve < 0 || options.serve > 65535) throw new IllegalArgumentException("Invalid port: " + value);
+                    break;
+                case "--host":
+                    options.host = value;
+                    break;
+                case "--layout":
+                    options.layout = value;
+                    break;
+                case "--equation":
+                    options.equation = RateExpression.parse(value);
+                    break;
+                case "--rate-method":
+                    options.rateMethod = parseRateMethod(value);
+                    break;
+                case "--signal-per-conc":
+                    try {
+                        options.signalPerConcentration = Double.parseDouble(value);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid signal per concentration: " + value);
+                    }
+                    if (!(options.signalPerConcentration > 0)) throw new IllegalArgumentException("Invalid signal per concentration: " + value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unrecognised option: " + arg);
+            }
+        }
+        if (!options.help && options.serve == null && options.inputs.isEmpty()) throw new IllegalArgumentException("No inputs given.");
+        if (options.compare && options.global) throw new IllegalArgumentException("--compare and --global can't be used together.");
+        if (options.compare && options.layout != null) throw new IllegalArgumentException("--compare and --layout can't be used together.");
+        if (options.equation != null && (options.compare || options.global || options.layout != null)) {
+            throw new IllegalArgumentException("--equation can't be used with --compare, --global or --layout.");
+        }
+        if (options.graphs != null && (options.compare || options.equation != null)) {
+            throw new IllegalArgumentException("--graphs can't be used with --compare or --equation.");
+        }
+        return options;
+    }
+
+    /**
+     * Parses a graph type from its name.
+     *
+     * @param value graph type name
+     * @return graph type
+     */
+    static GraphType parseGraphType(String value) {
+        for (GraphType type : GraphType.values()) {
+            if (type.name().equalsIgnoreCase(value)) return type;
+        }
+        throw new IllegalArgumentException("Unrecognised graph type: " + value);
+    }
+
+    /**
+     * Parses a robust weighting from its name.
+     *
+     * @param value robust weighting name
+     * @return robust weighting
+     */
+    static RobustWeighting parseRobustWeighting(String value) {
+        for (RobustWeighting weighting : RobustWeighting.values()) {
+            if (weighting.name().equalsIgnoreCase(value)) return weighting;
+        }
+        throw new IllegalArgumentException("Unrecognised robust weighting: " + value);
+    }
+
+    /**
+     * Parses a rate method from its name.
+     *
+     * @param value rate method name
+     * @return rate method
+     */
+    static RateMethod parseRateMethod(String value) {
+        for (RateMethod method : RateMethod.values()) {
+            if (method.name().equalsIgnoreCase(value)) return method;
+        }
+        throw new IllegalArgumentException("Unrecognised rate method: " + value);
+    }
+
+    /**
+     * Expands the inputs into the list of files to fit.
+     * Files are used as they are, directories give every .ktn and .csv file directly inside them, and globs
+     * (e.g. data/*.ktn or plates/**.csv) give every file they match. Each group is sorted by name.
+     *
+     * @param inputs files, directories and globs
+     * @return files to fit, in order
+     * @throws IOException if an input doesn't exist or a directory can't be read
+     */
+    public static List<Path> findInputs(List<String> inputs) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String input : inputs) {
+            Path path = Path.of(input);
+            if (isGlob(input)) {
+                files.addAll(matchGlob(input));
+            }
+            else if (Files.isDirectory(path)) {
+                try (Stream<Path> children = Files.list(path)) {
+                    files.addAll(children.filter(BatchRunner::isInputFile).sorted().collect(Collectors.toList()));
+                }
+            }
+            else if (Files.exists(path)) {
+                files.add(path);
+            }
+            else {
+                throw new FileNotFoundException("No such file or directory: " + input);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Writes the results of a batch to the --out file, or to the given stream if there isn't one.
+     *
+     * @param options parsed options
+     * @param out stream for results (when no --out file is given)
+     * @param writer writes the results to a stream
+     * @throws FileNotFoundException if the results file can't be created
+     */
+    static void writeResults(Options options, PrintStream out, Consumer<PrintStream> writer) throws FileNotFoundException {
+        if (options.out == null) {
+            writer.accept(out);
+            return;
+        }
+        try (PrintStream fileOut = new PrintStream(options.out)) {
+            writer.accept(fileOut);
+        }
+    }
+
+    /**
+     * Creates the cache of fit results for a batch or the HTTP fitting service.
+     *
+     * @param options parsed options
+     * @return fit cache, also stored in the --cache-dir directory if there is one
+     */
+    static FitCache newCache(Options options) {
+        return new FitCache(CACHE_ENTRIES, (options.cacheDir == null) ? null : Path.of(options.cacheDir));
+    }
+
+    /**
+     * Creates the thread pool files are fitted on, and reports its queue in the metrics as "batch".
+     *
+     * @param threads number of files to fit at once
+     * @param files number of files
+     * @return the thread pool
+     */
+    static ExecutorService newBatchExecutor(int threads, int files) {
+        int size = Math.max(1, Math.min(threads, files));
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        Metrics.registerQueue("batch", () -> executor.getQueue().size());
+        return executor;
+    }
+
+    /**
+     * Creates the result for input that couldn't be loaded or fitted.
+     *
+     * @param filePath file path of the input
+     * @param e what went wrong
+     * @return a Data holding only the file path and an error message
+     */
+    static Data failed(String filePath, Exception e) {
+        Data failed = new Data();
+        failed.setFilePath(filePath);
+        failed.setErrorMessage(e.getClass().getSimpleName() + ((e.getMessage() == null) ? "" : ": " + e.getMessage()));
+        return failed;
+    }
+
+    /**
+     * Checks whether an input is a glob rather than a plain path.
+     *
+     * @param input input
+     * @return whether it contains glob characters
+     */
+    private static boolean isGlob(String input) {
+        return input.contains("*") || input.contains("?") || input.contains("[") || input.contains("{");
+    }
+
+    /**
+     * Finds every file matching a glob, searching from the directory before the first glob character.
+     *
+     * @param glob glob pattern
+     * @return matching files, sorted
+     * @throws IOException if a directory can't be read
+     */
+    private static List<Path> matchGlob(String glob) throws IOException {
+        String prefix = glob.replaceAll("[*?\\[{].*", "");
+        int lastSeparator = Math.max(prefix.lastIndexOf('/'), prefix.lastIndexOf(File.separatorChar));
+        Path base = (lastSeparator < 0) ? Path.of("") : Path.of(prefix.substring(0, lastSeparator + 1));
+        if (!Files.isDirectory(base)) return new ArrayList<>();
+
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        try (Stream<Path> walk = Files.walk(base)) {
+            return walk.filter(Files::isRegularFile).filter(matcher::matches).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Checks whether a file in a directory is a LUCENZ input file.
+     *
+     * @param path file
+     * @return whether it is a .ktn or .csv file
+     */
+    private static boolean isInputFile(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return Files.isRegularFile(path) && (name.endsWith(".ktn") || name.endsWith(".csv"));
+    }
+}
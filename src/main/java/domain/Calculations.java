@@ -1,6 +1,7 @@
 package domain;
 
 import java.util.*;
+import java.util.function.DoubleUnaryOperator;
 
 /**
  * Calculations is an abstract class with static methods for the various calculations performed by the LUCENZ program.
@@ -8,6 +9,13 @@ import java.util.*;
  */
 public abstract class Calculations {
 
+    /** The most times a robust fit reweights the rates. */
+    private static final int MAX_ROBUST_ITERATIONS = 50;
+    /** A robust fit stops once no parameter changes by more than this fraction. */
+    private static final double ROBUST_TOLERANCE = 1e-6;
+    /** Median absolute residual of normally distributed errors, in standard deviations. */
+    private static final double MAD_NORMAL = 0.6745;
+
     /**
      * Fits the Kinetic Model specified in the given Data object to the Data's input values.
      * Adds all relevant values to the Data object's textData field.
@@ -15,79 +23,103 @@ public abstract class Calculations {
      * @param data Data object containing all input and output data
      */
     public static void fit(Data data){
-        // Extract values:
-        double[] subsConc = data.getSubstrateCol().stream().mapToDouble(Double::doubleValue).toArray();
-        double[][] reactRate = data.getTableData();
-        int rows = data.getRows();
-        int cols = data.getCols();
-
-        // Initialise reciprocals:
-        double[] subsConcRecip = new double[rows];
-        double[][] reactRateRecip = new double[rows][cols];
-        for (int row = 0; row < rows; row++){
-            if (subsConc[row] == 0) throw new IllegalArgumentException("Substrate concentration is zero on row: " + row);
-            subsConcRecip[row] = 1.0 / subsConc[row];
+        fit(data, new FitInput(data));
+    }
 
-            for (int col = 0; col < cols; col++){
-                if (reactRate[row][col] != 0){
-                    reactRateRecip[row][col] = 1.0 / reactRate[row][col];
-                }
+    /**
+     * Fits the Kinetic Model specified in the given Data object using reciprocals and weights already calculated
+     * from the Data's input values, e.g. when fitting several models to the same values.
+     *
+     * @param data Data object containing all input and output data
+     * @param input reciprocals and weights of the Data's input values
+     */
+    public static void fit(Data data, FitInput input){
+        FlightEvents.Fit event = new FlightEvents.Fit();
+        event.begin();
+        try {
+            fitAndOutput(data, input, event);
+        } catch (RuntimeException e) {
+            Metrics.recordFitError();
+            event.error = (e.getMessage() == null) ? e.getClass().getSimpleName() : e.getMessage();
+            throw e;
+        } finally {
+            if (event.shouldCommit()){
+                event.model = data.getModelType().name();
+                event.rows = data.getRows();
+                event.cols = data.getCols();
+                event.commit();
             }
         }
+    }
+
+    /**
+     * Does the work of fit(Data, FitInput).
+     *
+     * @param data Data object containing all input and output data
+     * @param input reciprocals and weights of the Data's input values
+     * @param event flight recorder event to set the iterations of
+     */
+    private static void fitAndOutput(Data data, FitInput input, FlightEvents.Fit event){
+        long start = System.nanoTime();
+        int rows = data.getRows();
+        int cols = data.getCols();
+        double[] subsConcRecip = input.getSubsConcRecip();
+        double[][] reactRateRecip = input.getReactRateRecip();
+        double[][] weights = input.getWeights();
+        FitWorkspace workspace = new FitWorkspace(rows, cols);
 
         // Initialise parameters:
-        int numParams;
-        switch(data.getModelType()) {
-            case UninhibitedOneSub:
-                numParams = 2;
-                break;
-            case UninhibitedTwoSubOrderedBiBi:
-                numParams = 4;
-                break;
-            case UninhibitedTwoSubPingPong:
-                numParams = 3;
-                break;
-            case InhibitedCompetitive:
-                numParams = 3;
-                break;
-            case InhibitedNonCompetitive:
-                numParams = 4;
-                break;
-            case InhibitedUnCompetitive:
-                numParams = 3;
-                break;
-            default:
-                throw new IllegalArgumentException("Unrecognised model type: " + data.getModelType());
-        }
+        int numParams = data.getModelType().getNumParams();
         double[] par = new double[4];
         for (int i = 0; i < numParams; i++){
             par[i] = 1.0;
         }
 
-        // Initialise weights:
-        double[][] weights = new double[rows][cols];
-        for (int row = 0; row < rows; row++){
-            for (int col = 0; col < cols; col++){
-                weights[row][col] = Math.pow(reactRate[row][col], 2);
-            }
-        }
-
         // Linear regression and error calculations:
         int numTests = 0;
         double[] result;
         double[][] S;
         double prevWeightedErrorSqr;
         double weightedErrorSqr = 0.0;
-        double[][] theoreticalReactRate = new double[rows][cols]; // theory
+        double[][] theoreticalReactRate = workspace.theoreticalReactRate; // theory
         do { // loop until converged or number of tests reaches limit
             numTests += 1;
             prevWeightedErrorSqr = weightedErrorSqr; // ELS is the previous wES
 
-            S = matrixInversion(data, par, subsConcRecip, reactRateRecip, weights, numParams);
+            S = matrixInversion(data, par, subsConcRecip, reactRateRecip, weights, numParams, workspace);
             result = mySumSquaresRoutine(data, par, subsConcRecip, reactRateRecip, weights, numParams, theoreticalReactRate);
 
             weightedErrorSqr = result[2];
         } while (Math.abs((prevWeightedErrorSqr - weightedErrorSqr) / weightedErrorSqr) < 0.001 && numTests < 11);
+        // The first pass compares against an error of 0, so the loop always stops after it: the reciprocal fit is
+        // linear and one pass solves it. Only a robust fit below iterates, and only it can reach a limit.
+        boolean reachedLimit = false;
+
+        // Robust fit - reweight by the residuals and fit again until the parameters stop changing:
+        RobustWeighting robustWeighting = data.getRobustWeighting();
+        if (robustWeighting != RobustWeighting.None){
+            double[] prevPar = new double[4];
+            int robustIterations = 0;
+            boolean converged = false;
+            while (!converged && robustIterations < MAX_ROBUST_ITERATIONS
+                    && reweight(data, robustWeighting, par, subsConcRecip, reactRateRecip, weights, workspace)){
+                robustIterations += 1;
+                System.arraycopy(par, 0, prevPar, 0, 4);
+
+                S = matrixInversion(data, par, subsConcRecip, reactRateRecip, workspace.weights, numParams, workspace);
+                result = mySumSquaresRoutine(data, par, subsConcRecip, reactRateRecip, workspace.weights, numParams, theoreticalReactRate);
+
+                weightedErrorSqr = result[2];
+                converged = true;
+                for (int j = 0; j < numParams; j++){
+                    if (Math.abs(par[j] - prevPar[j]) > ROBUST_TOLERANCE * Math.abs(prevPar[j])) converged = false;
+                }
+            }
+            numTests += robustIterations;
+            reachedLimit |= !converged && robustIterations == MAX_ROBUST_ITERATIONS;
+        }
+        event.iterations = numTests;
+        Metrics.recordFit(data.getModelType(), System.nanoTime() - start, numTests, reachedLimit, Double.isFinite(weightedErrorSqr));
 
         // Once finished converging:
         double chiSqr = result[1];
@@ -103,10 +135,118 @@ public abstract class Calculations {
             SEP[j] = Math.sqrt(S[j][j + 1]);
         }
 
+        data.setFitParameters(Arrays.copyOf(par, numParams));
         calculateRegressionParameters(data, chiSqr, weightedErrorSqr, par, SEP, S);
+        data.getTextData().put("cond", workspace.condition);
+        calculateGraphPoints(data, theoreticalReactRate, par);
+    }
+
+    /**
+     * Fits the Data like fit(Data), but reuses the result of an earlier fit of the same values if the cache has one.
+     * Only the graph points, which depend on the graph type, are recalculated then. Fits with a custom weighting
+     * scheme aren't cached, since the key only has the scheme's name.
+     *
+     * @param data Data object containing all input and output data
+     * @param cache results of earlier fits
+     */
+    public static void fit(Data data, FitCache cache){
+        if (!data.getWeightingScheme().isBuiltIn()){
+            fit(data);
+            return;
+        }
+        String key = FitCache.key(data);
+        FitCache.Result cached = cache.get(key);
+        if (cached == null){
+            fit(data);
+            cache.put(key, new FitCache.Result(data.getFitParameters(), data.getTextData()));
+            return;
+        }
+
+        applyFit(data, cached.getFitParameters(), new HashMap<>(cached.getTextData()));
+    }
+
+    /**
+     * Outputs fitted values that were found some other way (e.g. cached or from a global fit) to the Data object,
+     * and calculates its graph points from them.
+     *
+     * @param data Data object to output to
+     * @param fitParameters parameters of the reciprocal rate equation
+     * @param textData fitted values by name
+     */
+    static void applyFit(Data data, double[] fitParameters, Map<String, Double> textData){
+        data.setFitParameters(fitParameters.clone());
+        data.setTextData(textData);
+        double[] par = Arrays.copyOf(fitParameters, 4);
+        double[][] theoreticalReactRate = new double[data.getRows()][data.getCols()];
+        for (int row = 0; row < data.getRows(); row++){
+            double subsConcRecip = 1.0 / data.getSubstrateCol().get(row);
+            for (int col = 0; col < data.getCols(); col++){
+                theoreticalReactRate[row][col] = 1.0 / reciprocalRate(data.getModelType(), par, subsConcRecip, cosubInhibAt(data, col));
+            }
+        }
         calculateGraphPoints(data, theoreticalReactRate, par);
     }
 
+    /**
+     * Calculates the reciprocal reaction rate (1/V) predicted by the given kinetic model.
+     *
+     * @param model kinetic model
+     * @param par parameters of the reciprocal rate equation
+     * @param subsConcRecip substrate concentration reciprocal (1/[S])
+     * @param cosubInhib co-substrate or inhibitor concentration (ignored for one substrate)
+     * @return 1/V
+     */
+    public static double reciprocalRate(KineticModel model, double[] par, double subsConcRecip, double cosubInhib){
+        switch(model) {
+            case UninhibitedOneSub:
+                // 1/V = 1/Vm + Km/Vm * 1/[S]
+                return par[0] + (par[1] * subsConcRecip);
+            case UninhibitedTwoSubOrderedBiBi:
+                return par[0] + par[1] * subsConcRecip + par[2] / cosubInhib + par[3] * subsConcRecip / cosubInhib;
+            case UninhibitedTwoSubPingPong:
+                return par[0] + par[1] * subsConcRecip + par[2] / cosubInhib;
+            case InhibitedCompetitive:
+                return par[0] + par[1] * subsConcRecip + par[2] * cosubInhib * subsConcRecip;
+            case InhibitedNonCompetitive:
+                return par[0] + par[1] * subsConcRecip + par[2] * cosubInhib + par[3] * subsConcRecip * cosubInhib;
+            case InhibitedUnCompetitive:
+                return par[0] + par[1] * subsConcRecip + par[2] * cosubInhib;
+            default:
+                throw new IllegalArgumentException("Unrecognised model type: " + model);
+        }
+    }
+
+    /**
+     * Calculates the reciprocal reaction rate (1/V) predicted by the given kinetic model on dual numbers, so its
+     * derivatives by the parameters come with it.
+     *
+     * @param dual workspace to calculate in
+     * @param model kinetic model
+     * @param par registers holding the parameters of the reciprocal rate equation
+     * @param subsConcRecip substrate concentration reciprocal (1/[S])
+     * @param cosubInhib co-substrate or inhibitor concentration (ignored for one substrate)
+     * @return register holding 1/V
+     */
+    public static int reciprocalRate(Dual dual, KineticModel model, int[] par, double subsConcRecip, double cosubInhib){
+        int linear = dual.add(par[0], dual.multiply(par[1], subsConcRecip));
+        switch(model) {
+            case UninhibitedOneSub:
+                return linear;
+            case UninhibitedTwoSubOrderedBiBi:
+                return dual.add(dual.add(linear, dual.multiply(par[2], 1.0 / cosubInhib)), dual.multiply(par[3], subsConcRecip / cosubInhib));
+            case UninhibitedTwoSubPingPong:
+                return dual.add(linear, dual.multiply(par[2], 1.0 / cosubInhib));
+            case InhibitedCompetitive:
+                return dual.add(linear, dual.multiply(par[2], cosubInhib * subsConcRecip));
+            case InhibitedNonCompetitive:
+                return dual.add(dual.add(linear, dual.multiply(par[2], cosubInhib)), dual.multiply(par[3], subsConcRecip * cosubInhib));
+            case InhibitedUnCompetitive:
+                return dual.add(linear, dual.multiply(par[2], cosubInhib));
+            default:
+                throw new IllegalArgumentException("Unrecognised model type: " + model);
+        }
+    }
+
     /**
      * Finds the error squared value, chi squared value and weighted errors squared value
      *
@@ -127,30 +267,7 @@ public abstract class Calculations {
 
         for (int col = 0; col < cols; col++) {
             for (int row = 0; row < rows; row++) {
-                // 1/V = 1/Vm + Km/Vm * 1/[S]
-                double YR;
-                switch(data.getModelType()) {
-                    case UninhibitedOneSub:
-                        YR = par[0] + (par[1] * subsConcRecip[row]);
-                        break;
-                    case UninhibitedTwoSubOrderedBiBi:
-                        YR = par[0] + par[1] * subsConcRecip[row] + par[2] / data.getCoSubInhibRow().get(col) + par[3] * subsConcRecip[row] / data.getCoSubInhibRow().get(col);
-                        break;
-                    case UninhibitedTwoSubPingPong:
-                        YR = par[0] + par[1] * subsConcRecip[row] + par[2] / data.getCoSubInhibRow().get(col);
-                        break;
-                    case InhibitedCompetitive:
-                        YR = par[0] + par[1] * subsConcRecip[row] + par[2] * data.getCoSubInhibRow().get(col) * subsConcRecip[row];
-                        break;
-                    case InhibitedNonCompetitive:
-                        YR = par[0] + par[1] * subsConcRecip[row] + par[2] * data.getCoSubInhibRow().get(col) + par[3] * subsConcRecip[row] * data.getCoSubInhibRow().get(col);
-                        break;
-                    case InhibitedUnCompetitive:
-                        YR = par[0] + par[1] * subsConcRecip[row] + par[2] * data.getCoSubInhibRow().get(col);
-                        break;
-                    default:
-                        throw new IllegalArgumentException("Unrecognised model type: " + data.getModelType());
-                }
+                double YR = reciprocalRate(data.getModelType(), par, subsConcRecip[row], cosubInhibAt(data, col));
                 theoreticalReactRate[row][col] = 1.0/YR;
                 double ty = reactRateRecip[row][col] - YR;
                 ts += Math.pow(ty, 2) * weights[row][col];
@@ -189,112 +306,123 @@ public abstract class Calculations {
      * @param reactRateRecip reaction rate reciprocals (yy)
      * @param weights weight matrix
      * @param numParams number of parameters
-     * @return S matrix
+     * @param workspace buffers to solve in
+     * @return S matrix (the workspace's, so only valid until the next call)
      */
-    private static double[][] matrixInversion(Data data, double[] par, double[] subsConcRecip, double[][] reactRateRecip, double[][] weights, int numParams){
-        List<Double> cosubInhib = data.getCoSubInhibRow();
-        int rows = data.getRows();
-        int cols = data.getCols();
-
+    private static double[][] matrixInversion(Data data, double[] par, double[] subsConcRecip, double[][] reactRateRecip, double[][] weights, int numParams, FitWorkspace workspace){
         // Clears all S arrays:
-        double[] SS = new double[10];
-        double[] SM = new double[10];
-        double[][] S = new double[10][11];
-
-        for (int col = 0; col < cols; col++){
-            for (int row = 0; row < rows; row++){
-
-                // Differentiation routine:
-                double[] Q = new double[numParams+1];
-                Q[0] = 1.0;
-                Q[1] = subsConcRecip[row];
-                switch(data.getModelType()) {
-                    case UninhibitedOneSub:
-                        Q[2] = reactRateRecip[row][col];
-                        break;
-                    case UninhibitedTwoSubOrderedBiBi:
-                        Q[2] = 1.0 / cosubInhib.get(col);
-                        Q[3] = subsConcRecip[row] / cosubInhib.get(col);
-                        Q[4] = reactRateRecip[row][col];
-                        break;
-                    case UninhibitedTwoSubPingPong:
-                        Q[2] = 1.0 / cosubInhib.get(col);
-                        Q[3] = reactRateRecip[row][col];
-                        break;
-                    case InhibitedCompetitive:
-                        Q[2] = subsConcRecip[row] * cosubInhib.get(col);
-                        Q[3] = reactRateRecip[row][col];
-                        break;
-                    case InhibitedNonCompetitive:
-                        Q[2] = cosubInhib.get(col);
-                        Q[3] = subsConcRecip[row] * cosubInhib.get(col);
-                        Q[4] = reactRateRecip[row][col];
-                        break;
-                    case InhibitedUnCompetitive:
-                        Q[2] = cosubInhib.get(col);
-                        Q[3] = reactRateRecip[row][col];
-                        break;
-                    default:
-                        throw new IllegalArgumentException("Unrecognised model type: " + data.getModelType());
-                }
-
-
-                for (int m = 0; m < numParams + 1; m++){
-                    for (int k = 0; k < numParams; k++){
-                        S[k][m] += Q[k] * Q[m] * weights[row][col];
-                    }
-                }
-            }
+        workspace.clearNormalEquations();
+        double[][] S = workspace.S;
+
+        // The derivatives don't change between passes, only the weights:
+        if (workspace.basis == null) differentiate(data, subsConcRecip, reactRateRecip, numParams, workspace);
+        workspace.setCellWeights(weights);
+        NormalEquations.accumulate(workspace.basis, workspace.cellWeights, workspace.cellWeights.length, numParams, S);
+
+        // Solve, and put the solution in S[k][0] and the inverse normal matrix in S[k][1..numParams]:
+        double[] solution = workspace.solution;
+        double[][] inverse = workspace.inverse;
+        double condition = LinearSolver.cholesky(S, numParams, solution, inverse);
+        if (!(condition <= LinearSolver.CHOLESKY_CONDITION_LIMIT)){
+            condition = LinearSolver.qr(workspace.basis, workspace.cellWeights, workspace.cellWeights.length, numParams, solution, inverse);
         }
-
-        //aei
-        for (int k = 0; k < numParams; k++){
-            double TQ = Math.sqrt(S[k][k]);
-            if (TQ == 0) TQ = 0.000001;
-            SM[k] = 1.0 / TQ;
+        if (!(condition <= LinearSolver.CONDITION_LIMIT)){
+            throw new IllegalArgumentException("The data can't determine every parameter of the " + data.getModelType()
+                    + " model (condition number " + String.format("%.1e", condition) + ").");
         }
+        workspace.condition = condition;
 
-        SM[numParams] = 1.0;
-
-        for (int j = 0; j < numParams + 1; j++){
-            for (int k = 0; k < numParams; k++){
-                S[k][j] *= (SM[k] * SM[j]);
+        for (int k = 0; k < numParams; k++){
+            S[k][0] = solution[k];
+            for (int j = 0; j < numParams; j++){
+                S[k][j + 1] = inverse[k][j];
             }
+            par[k] = solution[k];
         }
 
-        SS[numParams] = -1.0;
-        S[0][numParams + 1] = 1.0;
+        return S;
+    }
 
-        for (int l = 0; l < numParams; l++){
-            for (int k = 0; k < numParams; k++){
-                SS[k] = S[k][0];
+    /**
+     * Differentiation routine: finds the derivatives of the reciprocal rate equation at every cell on dual numbers, followed by the
+     * cell's reciprocal rate, and stores them in the workspace with one array per derivative.
+     *
+     * @param data Data object containing input data
+     * @param subsConcRecip substrate concentration reciprocals (xx)
+     * @param reactRateRecip reaction rate reciprocals (yy)
+     * @param numParams number of parameters
+     * @param workspace buffers to store the derivatives in
+     */
+    private static void differentiate(Data data, double[] subsConcRecip, double[][] reactRateRecip, int numParams, FitWorkspace workspace){
+        int rows = data.getRows();
+        int cols = data.getCols();
+        double[] cosubInhib = new double[cols];
+        if (data.getModelType() != KineticModel.UninhibitedOneSub){
+            for (int col = 0; col < cols; col++){
+                cosubInhib[col] = data.getCoSubInhibRow().get(col);
             }
+        }
+        double[][] Q = new double[numParams + 1][rows * cols];
 
-            if (SS[0] == 0) SS[0] = 0.0000001;
-
-            for (int j = 0; j < numParams + 1; j++){
+        // The reciprocal rate equation is linear in its parameters, so their values don't change the derivatives:
+        Dual dual = new Dual(numParams, 4 * numParams);
+        int[] par = new int[numParams];
+        for (int row = 0; row < rows; row++){
+            for (int col = 0; col < cols; col++){
+                int cell = row * cols + col;
+                dual.clear();
+                for (int k = 0; k < numParams; k++){
+                    par[k] = dual.variable(0.0, k);
+                }
+                int reciprocal = reciprocalRate(dual, data.getModelType(), par, subsConcRecip[row], cosubInhib[col]);
                 for (int k = 0; k < numParams; k++){
-                    S[k][j] = S[k + 1][j + 1] - (SS[k + 1] * S[0][j + 1] / SS[0]);
+                    Q[k][cell] = dual.derivative(reciprocal, k);
                 }
+                Q[numParams][cell] = reactRateRecip[row][col];
             }
-
-        }
-
-        for (int k = 0; k < numParams; k++){
-            S[k][0] *= SM[k];
         }
+        workspace.basis = Q;
+    }
 
-        for (int j = 1; j < numParams + 1; j++){
-            for (int k = 0; k < numParams; k++){
-                S[k][j] *= (SM[k] * SM[j - 1]);
+    /**
+     * Sets the workspace weights for the next pass of a robust fit: each rate's weight times its robust weight,
+     * found from its weighted residual divided by the residuals' median absolute deviation.
+     *
+     * @param data Data object containing input data
+     * @param robustWeighting robust weight function
+     * @param par parameters of the latest pass
+     * @param subsConcRecip substrate concentration reciprocals
+     * @param reactRateRecip reaction rate reciprocals
+     * @param weights weight of each rate before robust weighting
+     * @param workspace buffers to set the weights in
+     * @return false if the residuals are all zero, so reweighting can't change the fit
+     */
+    private static boolean reweight(Data data, RobustWeighting robustWeighting, double[] par, double[] subsConcRecip, double[][] reactRateRecip, double[][] weights, FitWorkspace workspace){
+        int rows = data.getRows();
+        int cols = data.getCols();
+        double[] residuals = workspace.residuals;
+        int count = 0;
+        for (int col = 0; col < cols; col++){
+            for (int row = 0; row < rows; row++){
+                if (reactRateRecip[row][col] == 0) continue;
+                double YR = reciprocalRate(data.getModelType(), par, subsConcRecip[row], cosubInhibAt(data, col));
+                residuals[count++] = Math.abs(reactRateRecip[row][col] - YR) * Math.sqrt(weights[row][col]);
             }
         }
+        if (count == 0) return false;
+        Arrays.sort(residuals, 0, count);
+        double median = (count % 2 == 1) ? residuals[count / 2] : (residuals[count / 2 - 1] + residuals[count / 2]) / 2;
+        double scale = median / MAD_NORMAL;
+        if (!(scale > 0) || Double.isInfinite(scale)) return false;
 
-        for (int j = 0; j < numParams; j++){
-            par[j] = S[j][0];
+        for (int col = 0; col < cols; col++){
+            for (int row = 0; row < rows; row++){
+                double YR = reciprocalRate(data.getModelType(), par, subsConcRecip[row], cosubInhibAt(data, col));
+                double residual = (reactRateRecip[row][col] - YR) * Math.sqrt(weights[row][col]);
+                workspace.weights[row][col] = weights[row][col] * robustWeighting.weight(residual / scale);
+            }
         }
-
-        return S;
+        return true;
     }
 
     /**
@@ -769,4 +897,60 @@ public abstract class Calculations {
         data.setGraphLine(theoreticalPointsList);
         data.setGraphPoints(experimentPointsList);
     }
+
+    /**
+     * Gets the line of best fit with the given index as a function of x, for the Data's GraphType.
+     * Only Velocity vs [S] and Hunter-Downs lines are curved. The other lines are straight, so the points from
+     * calculateGraphPoints already draw them exactly.
+     *
+     * @param data fitted Data object
+     * @param lineIndex index of the line in the Data's graphLine
+     * @return y as a function of x, or null if the line is straight or the Data hasn't been fitted
+     */
+    public static DoubleUnaryOperator graphCurve(Data data, int lineIndex){
+        double[] par = data.getFitParameters();
+        if (par == null) return null;
+        KineticModel model = data.getModelType();
+        switch (data.getGraphType()){
+            case VelocityVS:
+                double cosubInhib = cosubInhibAt(data, lineIndex);
+                return subsConc -> 1.0 / reciprocalRate(model, par, 1.0 / subsConc, cosubInhib);
+            case HunterDowns:
+                // Skips the first column, which the others are compared against:
+                double firstInhib = cosubInhibAt(data, 0);
+                double inhib = cosubInhibAt(data, lineIndex + 1);
+                return subsConc -> {
+                    double alpha = reciprocalRate(model, par, 1.0 / subsConc, firstInhib) / reciprocalRate(model, par, 1.0 / subsConc, inhib);
+                    return inhib * alpha / (1.0 - alpha);
+                };
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Calculates the reaction rate the fitted model predicts for a cell of the input table.
+     *
+     * @param data fitted Data object
+     * @param row row index
+     * @param col column index
+     * @return predicted reaction rate
+     */
+    public static double predictedRate(Data data, int row, int col){
+        double[] par = Arrays.copyOf(data.getFitParameters(), 4);
+        double subsConcRecip = 1.0 / data.getSubstrateCol().get(row);
+        return 1.0 / reciprocalRate(data.getModelType(), par, subsConcRecip, cosubInhibAt(data, col));
+    }
+
+    /**
+     * Gets the co-substrate or inhibitor concentration of a column, or 0 if the model only has one substrate.
+     *
+     * @param data Data object containing input data
+     * @param col column index
+     * @return co-substrate or inhibitor concentration
+     */
+    private static double cosubInhibAt(Data data, int col){
+        if (data.getModelType() == KineticModel.UninhibitedOneSub) return 0.0;
+        return data.getCoSubInhibRow().get(col);
+    }
 }
@@ -0,0 +1,40 @@
+package domain;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+
+/**
+ * CompiledRate is the template of the hidden class each RateExpression is compiled into. Each hidden class is
+ * defined from these bytes with the expression's method handles as its class data, so its static final handles are
+ * constants the JIT inlines, and calling it costs no more than calling ordinary code.
+ * This class itself has no class data, and is never called.
+ */
+final class CompiledRate implements RateExpression.Compiled {
+
+    /** The rate: (substrate, co-substrate/inhibitor, parameters) to a value. */
+    private static final MethodHandle RATE = classData(0);
+    /** The derivatives: (substrate, co-substrate/inhibitor, parameters, gradient) to nothing. */
+    private static final MethodHandle GRADIENT = classData(1);
+
+    @Override
+    public double rate(double substrate, double coSubInhib, double[] params) throws Throwable {
+        return (double) RATE.invokeExact(substrate, coSubInhib, params);
+    }
+
+    @Override
+    public void gradient(double substrate, double coSubInhib, double[] params, double[] gradient) throws Throwable {
+        GRADIENT.invokeExact(substrate, coSubInhib, params, gradient);
+    }
+
+    /**
+     * @param index index of the handle in the class data
+     * @return the handle, or null for this template, which has no class data
+     */
+    private static MethodHandle classData(int index) {
+        try {
+            return MethodHandles.classDataAt(MethodHandles.lookup(), "_", MethodHandle.class, index);
+        } catch (IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
@@ -0,0 +1,682 @@
+package domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ConfidenceRegion is an abstract class with static methods for the likelihood-based uncertainty of a model's
+ * constants, which the linearised standard errors only approximate: profile likelihoods of one constant, and joint
+ * confidence regions of two (e.g. Vm and Km).
+ *
+ * Each point of a profile or region is a fit of the model's direct rate law with the profiled constants held at
+ * the point's values and the others free. Its delta chi-square, (SSR - SSRmin) / s^2 with s^2 the residual
+ * variance of the best fit, says how much worse the data fit there: points below the chi-square quantile for the
+ * number of profiled constants lie within the confidence region. The fits are independent, so they run in
+ * parallel, and a region is refined adaptively: each level halves the grid spacing, but only the cells the contour
+ * passes through are fitted again; the rest are interpolated.
+ *
+ * Rates are weighted as in CustomModelFit, and the free constants are fitted on their logarithms so they stay
+ * positive.
+ */
+public abstract class ConfidenceRegion {
+
+    /** The 95% quantile of the chi-square distribution with one degree of freedom, which bounds a profile. */
+    public static final double CHI_SQUARE_ONE = 3.841458820694124;
+    /** The 95% quantile of the chi-square distribution with two degrees of freedom, which bounds a region. */
+    public static final double CHI_SQUARE_TWO = 5.991464547107979;
+    /** Half the width of a profile or region, in standard errors of the constant. */
+    private static final double HALF_WIDTH = 4;
+    /** The smallest value a profile or region goes down to, as a fraction of the best estimate. */
+    private static final double MIN_FRACTION = 0.01;
+
+    /**
+     * The profile likelihood of one constant.
+     */
+    public static class Profile {
+        /** Name of the constant. */
+        private final String name;
+        /** Its best estimate. */
+        private final double estimate;
+        /** The values it was held at, in increasing order. */
+        private final double[] values;
+        /** The delta chi-square at each value. */
+        private final double[] deltaChiSquare;
+
+        /**
+         * Creates a profile.
+         *
+         * @param name name of the constant
+         * @param estimate its best estimate
+         * @param values the values it was held at, in increasing order
+         * @param deltaChiSquare the delta chi-square at each value
+         */
+        Profile(String name, double estimate, double[] values, double[] deltaChiSquare) {
+            this.name = name;
+            this.estimate = estimate;
+            this.values = values;
+            this.deltaChiSquare = deltaChiSquare;
+        }
+
+        /**
+         * @return name of the constant
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return its best estimate
+         */
+        public double getEstimate() {
+            return estimate;
+        }
+
+        /**
+         * @return the values it was held at, in increasing order
+         */
+        public double[] getValues() {
+            return values;
+        }
+
+        /**
+         * @return the delta chi-square at each value
+         */
+        public double[] getDeltaChiSquare() {
+            return deltaChiSquare;
+        }
+
+        /**
+         * @return lower end of the 95% profile likelihood interval, or NaN if the profile doesn't reach it
+         */
+        public double getLower() {
+            return crossing(-1);
+        }
+
+        /**
+         * @return upper end of the 95% profile likelihood interval, or NaN if the profile doesn't reach it
+         */
+        public double getUpper() {
+            return crossing(1);
+        }
+
+        /**
+         * Finds where the profile first rises through the threshold going away from the best estimate.
+         *
+         * @param direction -1 to go down, 1 to go up
+         * @return the value there, interpolated linearly, or NaN if it doesn't
+         */
+        private double crossing(int direction) {
+            int best = 0;
+            for (int i = 1; i < values.length; i++) {
+                if (Math.abs(values[i] - estimate) < Math.abs(values[best] - estimate)) best = i;
+            }
+            for (int i = best; i + direction >= 0 && i + direction < values.length; i += direction) {
+                double inside = deltaChiSquare[i];
+                double outside = deltaChiSquare[i + direction];
+                if (outside >= CHI_SQUARE_ONE) {
+                    if (!Double.isFinite(outside)) return values[i + direction];
+                    double fraction = (CHI_SQUARE_ONE - inside) / (outside - inside);
+                    return values[i] + Math.max(0, fraction) * (values[i + direction] - values[i]);
+                }
+            }
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * The joint confidence region of two constants, as the delta chi-square on a grid.
+     */
+    public static class Region {
+        /** Name of the constant along the x axis. */
+        private final String xName;
+        /** Name of the constant along the y axis. */
+        private final String yName;
+        /** Best estimate of the x constant. */
+        private final double xEstimate;
+        /** Best estimate of the y constant. */
+        private final double yEstimate;
+        /** The x value of each grid column, in increasing order. */
+        private final double[] x;
+        /** The y value of each grid row, in increasing order. */
+        private final double[] y;
+        /** The delta chi-square at each grid point, by x index then y index. */
+        private final double[][] deltaChiSquare;
+        /** Number of constrained fits run, the rest of the grid being interpolated. */
+        private final int fits;
+
+        /**
+         * Creates a region.
+         *
+         * @param xName name of the constant along the x axis
+         * @param yName name of the constant along the y axis
+         * @param xEstimate best estimate of the x constant
+         * @param yEstimate best estimate of the y constant
+         * @param x the x value of each grid column
+         * @param y the y value of each grid row
+         * @param deltaChiSquare the delta chi-square at each grid point, by x index then y index
+         * @param fits number of constrained fits run
+         */
+        Region(String xName, String yName, double xEstimate, double yEstimate, double[] x, double[] y,
+               double[][] deltaChiSquare, int fits) {
+            this.xName = xName;
+            this.yName = yName;
+            this.xEstimate = xEstimate;
+            this.yEstimate = yEstimate;
+            this.x = x;
+            this.y = y;
+            this.deltaChiSquare = deltaChiSquare;
+            this.fits = fits;
+        }
+
+        /**
+         * @return name of the constant along the x axis
+         */
+        public String getXName() {
+            return xName;
+        }
+
+        /**
+         * @return name of the constant along the y axis
+         */
+        public String getYName() {
+            return yName;
+        }
+
+        /**
+         * @return best estimate of the x constant
+         */
+        public double getXEstimate() {
+            return xEstimate;
+        }
+
+        /**
+         * @return best estimate of the y constant
+         */
+        public double getYEstimate() {
+            return yEstimate;
+        }
+
+        /**
+         * @return the x value of each grid column, in increasing order
+         */
+        public double[] getX() {
+            return x;
+        }
+
+        /**
+         * @return the y value of each grid row, in increasing order
+         */
+        public double[] getY() {
+            return y;
+        }
+
+        /**
+         * @return the delta chi-square at each grid point, by x index then y index
+         */
+        public double[][] getDeltaChiSquare() {
+            return deltaChiSquare;
+        }
+
+        /**
+         * @return number of constrained fits run, the rest of the grid being interpolated
+         */
+        public int getFits() {
+            return fits;
+        }
+
+        /**
+         * @return the delta chi-square bounding the 95% region
+         */
+        public double getThreshold() {
+            return CHI_SQUARE_TWO;
+        }
+
+        /**
+         * Interpolates the delta chi-square bilinearly between the grid points.
+         *
+         * @param xValue value of the x constant
+         * @param yValue value of the y constant
+         * @return the delta chi-square there, or NaN outside the grid
+         */
+        public double deltaChiSquareAt(double xValue, double yValue) {
+            double u = (xValue - x[0]) / (x[x.length - 1] - x[0]) * (x.length - 1);
+            double v = (yValue - y[0]) / (y[y.length - 1] - y[0]) * (y.length - 1);
+            if (!(u >= 0 && u <= x.length - 1 && v >= 0 && v <= y.length - 1)) return Double.NaN;
+            int i = Math.min((int) u, x.length - 2);
+            int j = Math.min((int) v, y.length - 2);
+            double fu = u - i;
+            double fv = v - j;
+            return (1 - fu) * ((1 - fv) * deltaChiSquare[i][j] + fv * deltaChiSquare[i][j + 1])
+                    + fu * ((1 - fv) * deltaChiSquare[i + 1][j] + fv * deltaChiSquare[i + 1][j + 1]);
+        }
+    }
+
+    /**
+     * Names of the constants of a model that can be profiled.
+     *
+     * @param model kinetic model
+     * @return "vm", then those of GlobalFit.sharedNames
+     */
+    public static List<String> names(KineticModel model) {
+        List<String> names = new ArrayList<>();
+        names.add("vm");
+        names.addAll(GlobalFit.sharedNames(model));
+        return names;
+    }
+
+    /**
+     * Calculates the profile likelihood of one constant, at evenly spaced values HALF_WIDTH standard errors either
+     * side of its best estimate.
+     *
+     * @param data Data object with its model, rates and weighting
+     * @param name constant to profile, one of names
+     * @param points number of values to hold it at
+     * @param threads number of fits to run at once
+     * @return the profile
+     * @throws IllegalArgumentException if the constant isn't one of the model's, there are fewer than 3 points, or
+     * the data can't determine the constants
+     */
+    public static Profile profile(Data data, String name, int points, int threads) {
+        if (points < 3) throw new IllegalArgumentException("A profile needs at least 3 points");
+        Problem problem = new Problem(data);
+        int index = problem.index(name);
+        double[] values = problem.range(index, points);
+        boolean[] fixed = new boolean[problem.names.size()];
+        fixed[index] = true;
+        double[][] thetas = new double[points][];
+        for (int i = 0; i < points; i++) {
+            thetas[i] = problem.best.clone();
+            thetas[i][index] = values[i];
+        }
+        return new Profile(name, problem.best[index], values, problem.fitAll(thetas, fixed, threads));
+    }
+
+    /**
+     * Calculates the joint confidence region of two constants on a grid HALF_WIDTH standard errors either side of
+     * their best estimates. The coarse grid is fitted everywhere, then each level of refinement halves the spacing,
+     * fitting the new points of the cells the contour passes through and interpolating the rest.
+     *
+     * @param data Data object with its model, rates and weighting
+     * @param xName constant along the x axis, one of names
+     * @param yName constant along the y axis, one of names
+     * @param coarse number of grid points along each axis to start with
+     * @param levels number of times to refine the grid
+     * @param threads number of fits to run at once
+     * @return the region, on a grid of (coarse - 1) * 2^levels + 1 points along each axis
+     * @throws IllegalArgumentException if either constant isn't one of the model's or they're the same, the grid is
+     * too coarse, or the data can't determine the constants
+     */
+    public static Region region(Data data, String xName, String yName, int coarse, int levels, int threads) {
+        if (coarse < 2) throw new IllegalArgumentException("A region needs at least 2 grid points along each axis");
+        if (levels < 0) throw new IllegalArgumentException("The number of refinement levels can't be negative");
+        Problem problem = new Problem(data);
+        int xIndex = problem.index(xName);
+        int yIndex = problem.index(yName);
+        if (xIndex == yIndex) throw new IllegalArgumentException("A region needs two different constants");
+        boolean[] fixed = new boolean[problem.names.size()];
+        fixed[xIndex] = true;
+        fixed[yIndex] = true;
+        int size = (coarse - 1) * (1 << levels) + 1;
+        double[] x = problem.range(xIndex, size);
+        double[] y = problem.range(yIndex, size);
+
+        // The coarse grid, every (2^levels)th point of the final one:
+        int stride = 1 << levels;
+        double[][] delta = new double[size][size];
+        List<int[]> todo = new ArrayList<>();
+        for (int i = 0; i < size; i += stride) {
+            for (int j = 0; j < size; j += stride) todo.add(new int[]{i, j});
+        }
+        int fits = fitGridPoints(problem, todo, x, y, xIndex, yIndex, fixed, threads, delta);
+
+        // Halve the spacing, fitting within the cells the contour crosses:
+        for (; stride > 1; stride /= 2) {
+            int half = stride / 2;
+            boolean[][] exact = new boolean[size][size];
+            todo.clear();
+            for (int i = 0; i + stride < size; i += stride) {
+                for (int j = 0; j + stride < size; j += stride) {
+                    double min = Math.min(Math.min(delta[i][j], delta[i + stride][j]), Math.min(delta[i][j + stride], delta[i + stride][j + stride]));
+                    double max = Math.max(Math.max(delta[i][j], delta[i + stride][j]), Math.max(delta[i][j + stride], delta[i + stride][j + stride]));
+                    if (!(min < CHI_SQUARE_TWO && max >= CHI_SQUARE_TWO)) continue;
+                    int[][] midpoints = {{i + half, j}, {i + half, j + stride}, {i, j + half}, {i + stride, j + half}, {i + half, j + half}};
+                    for (int[] point : midpoints) {
+                        if (!exact[point[0]][point[1]]) {
+                            exact[point[0]][point[1]] = true;
+                            todo.add(point);
+                        }
+                    }
+                }
+            }
+            fits += fitGridPoints(problem, todo, x, y, xIndex, yIndex, fixed, threads, delta);
+
+            // Interpolate the new points that weren't fitted, edges before centres:
+            for (int i = 0; i < size; i += half) {
+                for (int j = 0; j < size; j += half) {
+                    boolean oddI = (i % stride) != 0;
+                    boolean oddJ = (j % stride) != 0;
+                    if (exact[i][j] || (!oddI && !oddJ)) continue;
+                    if (oddI && !oddJ) delta[i][j] = (delta[i - half][j] + delta[i + half][j]) / 2;
+                    else if (!oddI) delta[i][j] = (delta[i][j - half] + delta[i][j + half]) / 2;
+                }
+            }
+            for (int i = half; i < size; i += stride) {
+                for (int j = half; j < size; j += stride) {
+                    if (!exact[i][j]) {
+                        delta[i][j] = (delta[i - half][j - half] + delta[i + half][j - half] + delta[i - half][j + half] + delta[i + half][j + half]) / 4;
+                    }
+                }
+            }
+        }
+        return new Region(xName, yName, problem.best[xIndex], problem.best[yIndex], x, y, delta, fits);
+    }
+
+    /**
+     * Fits the given points of a region's grid in parallel, putting their delta chi-square in the grid.
+     *
+     * @param problem fitting problem
+     * @param points grid indices of the points to fit
+     * @param x the x value of each grid column
+     * @param y the y value of each grid row
+     * @param xIndex index of the x constant
+     * @param yIndex index of the y constant
+     * @param fixed which constants are held
+     * @param threads number of fits to run at once
+     * @param delta grid of delta chi-square to fill in
+     * @return number of points fitted
+     */
+    private static int fitGridPoints(Problem problem, List<int[]> points, double[] x, double[] y, int xIndex, int yIndex,
+                                     boolean[] fixed, int threads, double[][] delta) {
+        double[][] thetas = new double[points.size()][];
+        for (int p = 0; p < thetas.length; p++) {
+            thetas[p] = problem.best.clone();
+            thetas[p][xIndex] = x[points.get(p)[0]];
+            thetas[p][yIndex] = y[points.get(p)[1]];
+        }
+        double[] results = problem.fitAll(thetas, fixed, threads);
+        for (int p = 0; p < thetas.length; p++) {
+            delta[points.get(p)[0]][points.get(p)[1]] = results[p];
+        }
+        return thetas.length;
+    }
+
+    /**
+     * The rates of one Data table to fit, and its best fit.
+     */
+    private static final class Problem {
+        /** Kinetic model. */
+        private final KineticModel model;
+        /** Names of the constants. */
+        private final List<String> names;
+        /** Substrate concentration of each usable cell. */
+        private final double[] substrate;
+        /** Co-substrate or inhibitor concentration of each usable cell. */
+        private final double[] coSubInhib;
+        /** Rate of each usable cell. */
+        private final double[] rate;
+        /** Weight of each usable cell. */
+        private final double[] weight;
+        /** Best estimates of the constants. */
+        private final double[] best;
+        /** Standard errors of the best estimates. */
+        private final double[] errors;
+        /** Residual sum of squares of the best fit. */
+        private final double ssrMin;
+        /** Residual variance of the best fit. */
+        private final double variance;
+
+        /**
+         * Finds the usable cells of a Data table and fits every constant to them.
+         *
+         * @param data Data object with its model, rates and weighting
+         * @throws IllegalArgumentException if there aren't enough rates or they can't determine the constants
+         */
+        Problem(Data data) {
+            model = data.getModelType();
+            names = names(model);
+            int rows = data.getRows();
+            int cols = data.getCols();
+            double[][] tableWeights = new double[rows][cols];
+            data.getWeightingScheme().weigh(data, tableWeights);
+            double[][] table = data.getTableData();
+            List<Double> coSubInhibRow = data.getCoSubInhibRow();
+            double[] s = new double[rows * cols];
+            double[] c = new double[rows * cols];
+            double[] v = new double[rows * cols];
+            double[] w = new double[rows * cols];
+            int cells = 0;
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < cols; col++) {
+                    double substrateConc = data.getSubstrateCol().get(row);
+                    double i = (model == KineticModel.UninhibitedOneSub) ? 0 : (col < coSubInhibRow.size()) ? coSubInhibRow.get(col) : Double.NaN;
+                    double r = table[row][col];
+                    if (tableWeights[row][col] == 0 || !Double.isFinite(r) || r == 0 || !(substrateConc > 0) || !Double.isFinite(i)) continue;
+                    s[cells] = substrateConc;
+                    c[cells] = i;
+                    v[cells] = r;
+                    w[cells] = tableWeights[row][col] / (r * r * r * r);
+                    cells++;
+                }
+            }
+            int degreesOfFreedom = cells - names.size();
+            if (degreesOfFreedom < 1) throw new IllegalArgumentException("There aren't enough rates to fit " + names.size() + " constants");
+            substrate = Arrays.copyOf(s, cells);
+            coSubInhib = Arrays.copyOf(c, cells);
+            rate = Arrays.copyOf(v, cells);
+            weight = Arrays.copyOf(w, cells);
+
+            best = startingValues(data.getTextData());
+            Fitter fitter = new Fitter(this);
+            ssrMin = fitter.fit(best, new boolean[names.size()]);
+            double[][] covariance = new double[names.size()][names.size()];
+            double condition = fitter.invert(names.size(), covariance);
+            if (!(condition <= LinearSolver.CONDITION_LIMIT)) {
+                throw new IllegalArgumentException(String.format("The data can't determine every constant of the %s model (condition number %.1e).", model, condition));
+            }
+            variance = ssrMin / degreesOfFreedom;
+            errors = new double[names.size()];
+            for (int j = 0; j < errors.length; j++) {
+                errors[j] = best[j] * Math.sqrt(variance * covariance[j][j]); // from the error of its logarithm
+            }
+        }
+
+        /**
+         * @param name name of a constant
+         * @return its index
+         * @throws IllegalArgumentException if the model doesn't have it
+         */
+        int index(String name) {
+            int index = names.indexOf(name);
+            if (index < 0) throw new IllegalArgumentException("The " + model + " model has no constant " + name + "; it has " + names);
+            return index;
+        }
+
+        /**
+         * Spaces values of a constant evenly HALF_WIDTH standard errors either side of its best estimate, but no
+         * lower than MIN_FRACTION of it.
+         *
+         * @param index index of the constant
+         * @param points number of values
+         * @return the values, in increasing order
+         */
+        double[] range(int index, int points) {
+            double error = Double.isFinite(errors[index]) ? errors[index] : best[index];
+            double lower = Math.max(best[index] - HALF_WIDTH * error, MIN_FRACTION * best[index]);
+            double upper = best[index] + HALF_WIDTH * error;
+            double[] values = new double[points];
+            for (int i = 0; i < points; i++) values[i] = lower + (upper - lower) * i / (points - 1);
+            return values;
+        }
+
+        /**
+         * Fits the free constants at each of the given points in parallel.
+         *
+         * @param thetas constants to start each fit from, with the fixed ones at the point's values
+         * @param fixed which constants are held
+         * @param threads number of fits to run at once
+         * @return the delta chi-square of each point, or infinity where the rates can't be calculated
+         */
+        double[] fitAll(double[][] thetas, boolean[] fixed, int threads) {
+            double[] results = new double[thetas.length];
+            Parallel.run(thetas.length, threads, "Confidence region fitting", (chunk, chunks) -> {
+                Fitter fitter = new Fitter(this);
+                for (int p = chunk; p < thetas.length; p += chunks) {
+                    double ssr = fitter.fit(thetas[p], fixed);
+                    results[p] = Double.isFinite(ssr) ? Math.max(0, ssr - ssrMin) / variance : Double.POSITIVE_INFINITY;
+                }
+            });
+            return results;
+        }
+
+        /**
+         * Starts from the constants of the reciprocal fit where there is one, otherwise from the largest rate and the
+         * median concentrations.
+         *
+         * @param textData fitted constants of the data by name, possibly empty
+         * @return starting values of the constants
+         */
+        private double[] startingValues(Map<String, Double> textData) {
+            double[] start = new double[names.size()];
+            double[] sorted = substrate.clone();
+            Arrays.sort(sorted);
+            double medianSubstrate = sorted[sorted.length / 2];
+            sorted = coSubInhib.clone();
+            Arrays.sort(sorted);
+            double medianCoSubInhib = (sorted[sorted.length / 2] > 0) ? sorted[sorted.length / 2] : medianSubstrate;
+            double maxRate = 0;
+            for (double v : rate) maxRate = Math.max(maxRate, Math.abs(v));
+            for (int j = 0; j < start.length; j++) {
+                String name = names.get(j);
+                double fallback = name.equals("vm") ? maxRate : (name.equals("km") || name.equals("ka")) ? medianSubstrate : medianCoSubInhib;
+                Double fitted = (textData == null) ? null : textData.get(name);
+                start[j] = (fitted != null && fitted > 0 && Double.isFinite(fitted)) ? fitted : fallback;
+            }
+            return start;
+        }
+    }
+
+    /**
+     * The fit of the free constants by Levenberg-Marquardt on their logarithms, with buffers for one thread.
+     */
+    private static final class Fitter extends LevenbergMarquardt.DenseProblem {
+        /** Fitting problem. */
+        private final Problem problem;
+        /** Dual numbers to differentiate the rate law in. */
+        private final Dual dual;
+        /** Derivatives of one rate by the logarithms of the free constants. */
+        private final double[] gradient;
+        /** Constants the fit started from, which holds the values of the fixed ones. */
+        private final double[] start;
+        /** Constants at the point being evaluated. */
+        private final double[] point;
+        /** Indices of the free constants. */
+        private final int[] free;
+        /** Number of free constants. */
+        private int numFree;
+
+        /**
+         * Creates the buffers for a problem.
+         *
+         * @param problem fitting problem
+         */
+        Fitter(Problem problem) {
+            super(problem.names.size());
+            int n = problem.names.size();
+            this.problem = problem;
+            this.dual = new Dual(n, GlobalFit.RATE_REGISTERS);
+            this.gradient = new double[n];
+            this.start = new double[n];
+            this.point = new double[n];
+            this.free = new int[n];
+        }
+
+        /**
+         * Fits the free constants.
+         *
+         * @param theta constants to start from, replaced with the fitted ones
+         * @param fixed which constants are held at their starting values
+         * @return the residual sum of squares, or infinity if the rates can't be calculated
+         */
+        double fit(double[] theta, boolean[] fixed) {
+            System.arraycopy(theta, 0, start, 0, theta.length);
+            numFree = 0;
+            for (int j = 0; j < theta.length; j++) {
+                if (!fixed[j]) free[numFree++] = j;
+            }
+            double[] logFree = new double[numFree];
+            for (int a = 0; a < numFree; a++) logFree[a] = Math.log(theta[free[a]]);
+            double ssr = LevenbergMarquardt.minimise(this, logFree, LevenbergMarquardt.MAX_ITERATIONS).getResidualSumSquares();
+            for (int a = 0; a < numFree; a++) theta[free[a]] = Math.exp(logFree[a]);
+            return ssr;
+        }
+
+        /**
+         * Builds the normal equations of the free constants around the given logarithms of them.
+         *
+         * @param logFree logarithms of the free constants
+         * @return the residual sum of squares, or infinity if a rate can't be calculated
+         */
+        @Override
+        public double normalEquations(double[] logFree) {
+            double[] theta = point(logFree);
+            for (int a = 0; a < numFree; a++) Arrays.fill(normal[a], 0, numFree + 1, 0);
+            double ssr = 0;
+            for (int cell = 0; cell < problem.rate.length; cell++) {
+                int v = rate(theta, cell);
+                double r = problem.rate[cell] - dual.value(v);
+                double w = problem.weight[cell];
+                ssr += w * r * r;
+                for (int a = 0; a < numFree; a++) {
+                    gradient[a] = dual.derivative(v, free[a]) * theta[free[a]]; // by the logarithm
+                    double wa = w * gradient[a];
+                    normal[a][numFree] += wa * r;
+                    for (int b = 0; b <= a; b++) normal[a][b] += wa * gradient[b];
+                }
+            }
+            for (int a = 0; a < numFree; a++) {
+                for (int b = a + 1; b < numFree; b++) normal[a][b] = normal[b][a];
+            }
+            return Double.isFinite(ssr) ? ssr : Double.POSITIVE_INFINITY;
+        }
+
+        /**
+         * @param logFree logarithms of the free constants
+         * @return the residual sum of squares, or infinity if a rate can't be calculated
+         */
+        @Override
+        public double residualSumSquares(double[] logFree) {
+            double[] theta = point(logFree);
+            double ssr = 0;
+            for (int cell = 0; cell < problem.rate.length; cell++) {
+                double r = problem.rate[cell] - dual.value(rate(theta, cell));
+                ssr += problem.weight[cell] * r * r;
+            }
+            return Double.isFinite(ssr) ? ssr : Double.POSITIVE_INFINITY;
+        }
+
+        /**
+         * @param logFree logarithms of the free constants
+         * @return every constant, with the fixed ones at their starting values
+         */
+        private double[] point(double[] logFree) {
+            System.arraycopy(start, 0, point, 0, start.length);
+            for (int a = 0; a < numFree; a++) point[free[a]] = Math.exp(logFree[a]);
+            return point;
+        }
+
+        /**
+         * Calculates the rate of a cell on dual numbers, with every constant a variable.
+         *
+         * @param theta constants
+         * @param cell usable cell
+         * @return register holding the rate
+         */
+        private int rate(double[] theta, int cell) {
+            dual.clear();
+            for (int j = 0; j < theta.length; j++) dual.variable(theta[j], j);
+            return GlobalFit.rate(dual, problem.model, 0, 1, problem.substrate[cell], problem.coSubInhib[cell]);
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package domain;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * CustomModelFit is an abstract class with static methods for fitting a user-defined rate equation (a
+ * RateExpression) directly to the rates of a Data table by Levenberg-Marquardt, for mechanisms none of the
+ * KineticModels describe.
+ *
+ * Each rate is weighted by the data's WeightingScheme divided by its fourth power: the built-in schemes weight
+ * reciprocal rates, and an error dv in a rate is an error dv / v^2 in its reciprocal, so the weights mean the same
+ * for both fits (RateSquared, the default, gives every rate the same relative error).
+ */
+public abstract class CustomModelFit {
+
+    /** The most parameters a rate equation may have: the most LinearSolver solves for. */
+    public static final int MAX_PARAMS = 4;
+    /** The most Levenberg-Marquardt iterations, more than usual since a user's parameters may be badly scaled. */
+    private static final int MAX_ITERATIONS = 500;
+
+    /**
+     * The results of fitting a rate equation to one Data table.
+     */
+    public static class Result {
+        /** The Data fitted, or one holding only the file path and error message if it couldn't be. */
+        private final Data data;
+        /** Names of the parameters. */
+        private final List<String> names;
+        /** Values of the parameters. */
+        private final double[] values;
+        /** Standard errors of the parameters. */
+        private final double[] errors;
+        /** Weighted residual sum of squares. */
+        private final double residualSumSquares;
+        /** Number of rates minus number of parameters. */
+        private final int degreesOfFreedom;
+        /** Number of iterations taken. */
+        private final int iterations;
+
+        /**
+         * @param data the Data fitted
+         * @param names names of the parameters
+         * @param values values of the parameters
+         * @param errors standard errors of the parameters
+         * @param residualSumSquares weighted residual sum of squares
+         * @param degreesOfFreedom number of rates minus number of parameters
+         * @param iterations number of iterations taken
+         */
+        Result(Data data, List<String> names, double[] values, double[] errors, double residualSumSquares,
+               int degreesOfFreedom, int iterations) {
+            this.data = data;
+            this.names = names;
+            this.values = values;
+            this.errors = errors;
+            this.residualSumSquares = residualSumSquares;
+            this.degreesOfFreedom = degreesOfFreedom;
+            this.iterations = iterations;
+        }
+
+        /**
+         * Creates the result of a fit that failed.
+         *
+         * @param data the Data, with its error message set
+         * @return the result
+         */
+        static Result failed(Data data) {
+            return new Result(data, Collections.emptyList(), new double[0], new double[0], Double.NaN, 0, 0);
+        }
+
+        /**
+         * @return the Data fitted
+         */
+        public Data getData() {
+            return data;
+        }
+
+        /**
+         * @return names of the parameters, in the order they first appear in the rate equation
+         */
+        public List<String> getNames() {
+            return names;
+        }
+
+        /**
+         * @param name name of a parameter
+         * @return its value
+         */
+        public double getValue(String name) {
+            return values[names.indexOf(name)];
+        }
+
+        /**
+         * @param name name of a parameter
+         * @return its standard error
+         */
+        public double getError(String name) {
+            return errors[names.indexOf(name)];
+        }
+
+        /**
+         * @return weighted residual sum of squares
+         */
+        public double getResidualSumSquares() {
+            return residualSumSquares;
+        }
+
+        /**
+         * @return number of rates minus number of parameters
+         */
+        public int getDegreesOfFreedom() {
+            return degreesOfFreedom;
+        }
+
+        /**
+         * @return number of iterations taken
+         */
+        public int getIterations() {
+            return iterations;
+        }
+
+        /**
+         * @return whether the fit succeeded
+         */
+        public boolean isFitted() {
+            return data.getErrorMessage().isEmpty();
+        }
+    }
+
+    /**
+     * Fits a rate equation to the rates of a Data table, starting from values guessed from the parameters' names:
+     * a name starting with v gets the largest rate; one starting with k gets the median substrate concentration,
+     * or the median co-substrate/inhibitor concentration if it also has an i or b (e.g. kis, kb); and any other
+     * gets 1. Guesses can be replaced by giving starting values.
+     *
+     * @param data Data object with the rates, substrate concentrations and co-substrate/inhibitor concentrations
+     * @param expression rate equation
+     * @param start starting values of any parameters, by name
+     * @return the fitted parameters
+     * @throws IllegalArgumentException if the equation has too many parameters, there aren't enough rates, or the
+     * parameters can't be determined
+     */
+    public static Result fit(Data data, RateExpression expression, Map<String, Double> start) {
+        List<String> names = expression.getParameters();
+        int numParams = names.size();
+        if (numParams > MAX_PARAMS) {
+            throw new IllegalArgumentException("A rate equation can have at most " + MAX_PARAMS + " parameters, not " + numParams);
+        }
+
+        // The cells with rates, and their weights:
+        int rows = data.getRows();
+        int cols = data.getCols();
+        double[][] tableWeights = new double[rows][cols];
+        data.getWeightingScheme().weigh(data, tableWeights);
+        double[][] table = data.getTableData();
+        List<Double> coSubInhibRow = data.getCoSubInhibRow();
+        double[] substrate = new double[rows * cols];
+        double[] coSubInhib = new double[rows * cols];
+        double[] rate = new double[rows * cols];
+        double[] weight = new double[rows * cols];
+        int cells = 0;
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                double v = table[row][col];
+                double i = (col < coSubInhibRow.size()) ? coSubInhibRow.get(col) : 0;
+                if (tableWeights[row][col] == 0 || !Double.isFinite(v) || (expression.usesCoSubInhib() && !Double.isFinite(i))) continue;
+                substrate[cells] = data.getSubstrateCol().get(row);
+                coSubInhib[cells] = i;
+                rate[cells] = v;
+                weight[cells] = tableWeights[row][col] / (v * v * v * v);
+                cells++;
+            }
+        }
+        int degreesOfFreedom = cells - numParams;
+        if (degreesOfFreedom < 1) throw new IllegalArgumentException("There aren't enough rates to fit " + numParams + " parameters");
+
+        // Levenberg-Marquardt:
+        double[] params = startingValues(names, start, substrate, coSubInhib, rate, cells);
+        int numCells = cells;
+        LevenbergMarquardt.DenseProblem problem = new LevenbergMarquardt.DenseProblem(numParams) {
+            /** Derivatives of one rate by each parameter. */
+            private final double[] gradient = new double[numParams];
+
+            @Override
+            public double normalEquations(double[] p) {
+                return CustomModelFit.normalEquations(expression, p, substrate, coSubInhib, rate, weight, numCells, normal, gradient);
+            }
+
+            @Override
+            public double residualSumSquares(double[] p) {
+                return CustomModelFit.residualSumSquares(expression, p, substrate, coSubInhib, rate, weight, numCells);
+            }
+        };
+        LevenbergMarquardt.Result fitted = LevenbergMarquardt.minimise(problem, params, MAX_ITERATIONS);
+        double ssr = fitted.getResidualSumSquares();
+        if (!Double.isFinite(ssr)) throw new IllegalArgumentException("The rate equation can't be evaluated at the starting values");
+        int iterations = fitted.getIterations();
+
+        double[][] inverse = new double[numParams][numParams];
+        double condition = problem.invert(numParams, inverse);
+        if (!(condition <= LinearSolver.CONDITION_LIMIT)) {
+            throw new IllegalArgumentException(String.format(Locale.ROOT, "The rates can't determine every parameter of %s (condition number %.1e).", expression, condition));
+        }
+        double variance = ssr / degreesOfFreedom;
+        double[] errors = new double[numParams];
+        for (int j = 0; j < numParams; j++) errors[j] = Math.sqrt(variance * inverse[j][j]);
+        return new Result(data, names, params, errors, ssr, degreesOfFreedom, iterations);
+    }
+
+    /**
+     * Fits a rate equation to many Data tables in parallel. Tables that can't be fitted are still returned, with
+     * their error message set.
+     *
+     * @param datasets Data objects to fit
+     * @param expression rate equation
+     * @param start starting values of any parameters, by name
+     * @param threads number of tables to fit at once
+     * @return the result of each table, in the same order
+     */
+    public static List<Result> fitAll(List<Data> datasets, RateExpression expression, Map<String, Double> start, int threads) {
+        Result[] results = new Result[datasets.size()];
+        Parallel.run(results.length, threads, "Fitting", (chunk, chunks) -> {
+            for (int i = chunk; i < results.length; i += chunks) {
+                results[i] = fitOrFail(datasets.get(i), expression, start);
+            }
+        });
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Fits a rate equation, returning a failed result with the error message set on the data if it can't be.
+     *
+     * @param data Data object to fit
+     * @param expression rate equation
+     * @param start starting values of any parameters, by name
+     * @return the result
+     */
+    static Result fitOrFail(Data data, RateExpression expression, Map<String, Double> start) {
+        try {
+            if (!data.getErrorMessage().isEmpty()) return Result.failed(data);
+            return fit(data, expression, start);
+        } catch (RuntimeException e) {
+            data.setErrorMessage(e.getClass().getSimpleName() + ((e.getMessage() == null) ? "" : ": " + e.getMessage()));
+            return Result.failed(data);
+        }
+    }
+
+    /**
+     * Builds the weighted normal equations of the fit around the given parameters.
+     *
+     * @param expression rate equation
+     * @param params parameters
+     * @param substrate substrate concentration of each cell
+     * @param coSubInhib co-substrate/inhibitor concentration of each cell
+     * @param rate rate of each cell
+     * @param weight weight of each cell
+     * @param cells number of cells
+     * @param normal filled with J^T W J and then J^T W r, which gives the Gauss-Newton step
+     * @param gradient buffer for the derivatives of one cell
+     * @return the weighted residual sum of squares, or infinity if the equation can't be evaluated
+     */
+    private static double normalEquations(RateExpression expression, double[] params, double[] substrate, double[] coSubInhib,
+                                          double[] rate, double[] weight, int cells, double[][] normal, double[] gradient) {
+        int numParams = params.length;
+        for (double[] row : normal) Arrays.fill(row, 0);
+        double ssr = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            double r = rate[cell] - expression.rate(substrate[cell], coSubInhib[cell], params);
+            expression.gradient(substrate[cell], coSubInhib[cell], params, gradient);
+            double w = weight[cell];
+            ssr += w * r * r;
+            for (int j = 0; j < numParams; j++) {
+                double wj = w * gradient[j];
+                normal[j][numParams] += wj * r;
+                for (int l = 0; l <= j; l++) normal[j][l] += wj * gradient[l];
+            }
+        }
+        for (int j = 0; j < numParams; j++) {
+            for (int l = j + 1; l < numParams; l++) normal[j][l] = normal[l][j];
+        }
+        return Double.isFinite(ssr) ? ssr : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Calculates the weighted residual sum of squares for the given parameters.
+     *
+     * @param expression rate equation
+     * @param params parameters
+     * @param substrate substrate concentration of each cell
+     * @param coSubInhib co-substrate/inhibitor concentration of each cell
+     * @param rate rate of each cell
+     * @param weight weight of each cell
+     * @param cells number of cells
+     * @return the weighted residual sum of squares, or infinity if the equation can't be evaluated
+     */
+    private static double residualSumSquares(RateExpression expression, double[] params, double[] substrate, double[] coSubInhib,
+                                             double[] rate, double[] weight, int cells) {
+        double ssr = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            double r = rate[cell] - expression.rate(substrate[cell], coSubInhib[cell], params);
+            ssr += weight[cell] * r * r;
+        }
+        return Double.isFinite(ssr) ? ssr : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Guesses starting values from the parameters' names (see fit), replaced by any given.
+     *
+     * @param names names of the parameters
+     * @param start starting values given, by name
+     * @param substrate substrate concentration of each cell
+     * @param coSubInhib co-substrate/inhibitor concentration of each cell
+     * @param rate rate of each cell
+     * @param cells number of cells
+     * @return the starting values
+     */
+    private static double[] startingValues(List<String> names, Map<String, Double> start, double[] substrate,
+                                           double[] coSubInhib, double[] rate, int cells) {
+        double maxRate = 0;
+        for (int cell = 0; cell < cells; cell++) maxRate = Math.max(maxRate, Math.abs(rate[cell]));
+        double medianSubstrate = positiveMedian(substrate, cells);
+        double medianCoSubInhib = positiveMedian(coSubInhib, cells);
+
+        double[] params = new double[names.size()];
+        for (int j = 0; j < params.length; j++) {
+            String name = names.get(j).toLowerCase(Locale.ROOT);
+            if (start != null && start.containsKey(names.get(j))) {
+                params[j] = start.get(names.get(j));
+            }
+            else if (name.startsWith("v")) {
+                params[j] = maxRate;
+            }
+            else if (name.startsWith("k")) {
+                boolean coSub = name.indexOf('i', 1) > 0 || name.indexOf('b', 1) > 0;
+                params[j] = (coSub && medianCoSubInhib > 0) ? medianCoSubInhib : medianSubstrate;
+            }
+            else {
+                params[j] = 1;
+            }
+        }
+        return params;
+    }
+
+    /**
+     * @param values values
+     * @param count number of values
+     * @return median of the positive values, or 1 if there are none
+     */
+    private static double positiveMedian(double[] values, int count) {
+        double[] positive = Arrays.stream(values, 0, count).filter(value -> value > 0).sorted().toArray();
+        return (positive.length == 0) ? 1 : positive[positive.length / 2];
+    }
+}
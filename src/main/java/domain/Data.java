@@ -49,6 +49,12 @@ public class Data {
 	 * Stores the results of the required calculations
 	 */
 	private Map<String, Double> textData = new HashMap<String, Double>();
+
+	/**
+	 * Stores the fitted parameters of the reciprocal rate equation,
+	 * or null if the data hasn't been fitted
+	 */
+	private double[] fitParameters;
 	
 	/**
 	 * Stores the kinetic model for the data
@@ -61,6 +67,18 @@ public class Data {
 	 */
 	private GraphType graphType = GraphType.VelocityVS;
 	
+	/**
+	 * Stores how the fit reduces the influence of outliers.
+	 * This is initially set to None
+	 */
+	private RobustWeighting robustWeighting = RobustWeighting.None;
+	
+	/**
+	 * Stores how the fit weights each rate.
+	 * This is initially set to V squared
+	 */
+	private WeightingScheme weightingScheme = WeightingScheme.RATE_SQUARED;
+	
 	/**
 	 * Stores the number of rows that can have data entered.
 	 * This excludes the row for the inhibitor/co-substrate concentration.
@@ -235,6 +253,38 @@ public class Data {
 		this.graphType = graphType;
 	}
 
+	/**
+	 * Gets how the fit reduces the influence of outliers
+	 * @return the robust weighting
+	 */
+	public RobustWeighting getRobustWeighting() {
+		return robustWeighting;
+	}
+
+	/**
+	 * Sets how the fit reduces the influence of outliers
+	 * @param robustWeighting - the new robust weighting
+	 */
+	public void setRobustWeighting(RobustWeighting robustWeighting) {
+		this.robustWeighting = robustWeighting;
+	}
+
+	/**
+	 * Gets how the fit weights each rate
+	 * @return the weighting scheme
+	 */
+	public WeightingScheme getWeightingScheme() {
+		return weightingScheme;
+	}
+
+	/**
+	 * Sets how the fit weights each rate
+	 * @param weightingScheme - the new weighting scheme
+	 */
+	public void setWeightingScheme(WeightingScheme weightingScheme) {
+		this.weightingScheme = weightingScheme;
+	}
+
 	/**
 	 * Gets the current number of rows where data, excluding 
 	 * the inhibitor/co-substrate concentration row, can
@@ -299,6 +349,22 @@ public class Data {
 		this.errorMessage = errorMessage;
 	}
 
+	/**
+	 * Gets the fitted parameters of the reciprocal rate equation
+	 * @return the fitted parameters, or null if the data hasn't been fitted
+	 */
+	public double[] getFitParameters() {
+		return fitParameters;
+	}
+
+	/**
+	 * Sets the fitted parameters of the reciprocal rate equation
+	 * @param fitParameters - the fitted parameters
+	 */
+	public void setFitParameters(double[] fitParameters) {
+		this.fitParameters = fitParameters;
+	}
+
 	/**
 	 * Sets the filepath string
 	 * @param input
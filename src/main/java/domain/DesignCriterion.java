@@ -0,0 +1,22 @@
+package domain;
+
+/**
+ * This enum represents the ways the precision of an experimental design's
+ * constants can be summed up, so designs can be compared; see
+ * ExperimentDesign.
+ * Both are worked out from the covariance of the logarithms of the
+ * constants, so each constant's precision counts relative to its size.
+ */
+public enum DesignCriterion {
+	/**
+	 * D-optimality: the determinant of the covariance, which is smallest
+	 * when the joint confidence region of all the constants is smallest
+	 */
+	DOptimal,
+	/**
+	 * E-optimality: the largest eigenvalue of the covariance, which is
+	 * smallest when the worst determined combination of the constants is
+	 * determined best
+	 */
+	EOptimal
+}
@@ -0,0 +1,256 @@
+package domain;
+
+/**
+ * Dual is a workspace of dual numbers for forward-mode automatic differentiation: each number holds a value and its
+ * derivatives with respect to a fixed number of variables, so evaluating a rate law on them gives its exact Jacobian
+ * as well as its value.
+ *
+ * The numbers live in registers of one primitive array rather than as objects, so evaluating creates no garbage:
+ * every operation takes register indices and returns the register it wrote its result to. Registers are handed out
+ * in order until clear() releases them all, so a rate law is evaluated by clearing the workspace, setting its
+ * variables and then combining them. A workspace isn't thread safe; each thread needs its own.
+ */
+public final class Dual {
+
+    /** Number of variables each number has a derivative for. */
+    private final int variables;
+    /** Slots per register: the value and then each derivative. */
+    private final int stride;
+    /** The registers, one after another. */
+    private final double[] slots;
+    /** Index of the next free register. */
+    private int next;
+
+    /**
+     * Creates a workspace.
+     *
+     * @param variables number of variables to differentiate by
+     * @param registers number of numbers it can hold between clears
+     * @throws IllegalArgumentException if either is negative, or there are no registers
+     */
+    public Dual(int variables, int registers) {
+        if (variables < 0) throw new IllegalArgumentException("The number of variables can't be negative");
+        if (registers < 1) throw new IllegalArgumentException("A dual number workspace needs at least one register");
+        this.variables = variables;
+        this.stride = variables + 1;
+        this.slots = new double[registers * stride];
+    }
+
+    /**
+     * @return number of variables each number has a derivative for
+     */
+    public int getVariables() {
+        return variables;
+    }
+
+    /**
+     * Releases every register, ready for the next evaluation.
+     */
+    public void clear() {
+        next = 0;
+    }
+
+    /**
+     * @param value value of the constant
+     * @return register holding a constant: the value, with every derivative zero
+     */
+    public int constant(double value) {
+        int r = allocate();
+        int base = r * stride;
+        slots[base] = value;
+        for (int j = 1; j <= variables; j++) slots[base + j] = 0;
+        return r;
+    }
+
+    /**
+     * @param value value of the variable
+     * @param index which variable it is, from 0
+     * @return register holding the variable: the value, with a derivative of one by itself and zero by the others
+     */
+    public int variable(double value, int index) {
+        if (index < 0 || index >= variables) throw new IllegalArgumentException("No variable " + index + " of " + variables);
+        int r = constant(value);
+        slots[r * stride + 1 + index] = 1;
+        return r;
+    }
+
+    /**
+     * @param a register
+     * @param b register
+     * @return register holding a + b
+     */
+    public int add(int a, int b) {
+        int r = allocate();
+        int ra = a * stride, rb = b * stride, rr = r * stride;
+        for (int j = 0; j < stride; j++) slots[rr + j] = slots[ra + j] + slots[rb + j];
+        return r;
+    }
+
+    /**
+     * @param a register
+     * @param c constant
+     * @return register holding a + c
+     */
+    public int add(int a, double c) {
+        int r = copy(a);
+        slots[r * stride] += c;
+        return r;
+    }
+
+    /**
+     * @param a register
+     * @param b register
+     * @return register holding a - b
+     */
+    public int subtract(int a, int b) {
+        int r = allocate();
+        int ra = a * stride, rb = b * stride, rr = r * stride;
+        for (int j = 0; j < stride; j++) slots[rr + j] = slots[ra + j] - slots[rb + j];
+        return r;
+    }
+
+    /**
+     * @param a register
+     * @param b register
+     * @return register holding a * b
+     */
+    public int multiply(int a, int b) {
+        int r = allocate();
+        int ra = a * stride, rb = b * stride, rr = r * stride;
+        double va = slots[ra];
+        double vb = slots[rb];
+        slots[rr] = va * vb;
+        for (int j = 1; j < stride; j++) slots[rr + j] = va * slots[rb + j] + vb * slots[ra + j];
+        return r;
+    }
+
+    /**
+     * @param a register
+     * @param c constant
+     * @return register holding a * c
+     */
+    public int multiply(int a, double c) {
+        int r = allocate();
+        int ra = a * stride, rr = r * stride;
+        for (int j = 0; j < stride; j++) slots[rr + j] = slots[ra + j] * c;
+        return r;
+    }
+
+    /**
+     * @param a register
+     * @param b register
+     * @return register holding a / b
+     */
+    public int divide(int a, int b) {
+        int r = allocate();
+        int ra = a * stride, rb = b * stride, rr = r * stride;
+        double reciprocal = 1 / slots[rb];
+        double v = slots[ra] * reciprocal;
+        slots[rr] = v;
+        for (int j = 1; j < stride; j++) slots[rr + j] = (slots[ra + j] - v * slots[rb + j]) * reciprocal;
+        return r;
+    }
+
+    /**
+     * @param c constant
+     * @param b register
+     * @return register holding c / b
+     */
+    public int divide(double c, int b) {
+        int r = allocate();
+        int rb = b * stride, rr = r * stride;
+        double v = c / slots[rb];
+        double scale = -v / slots[rb];
+        slots[rr] = v;
+        for (int j = 1; j < stride; j++) slots[rr + j] = scale * slots[rb + j];
+        return r;
+    }
+
+    /**
+     * @param a register
+     * @return register holding e^a
+     */
+    public int exp(int a) {
+        int r = allocate();
+        int ra = a * stride, rr = r * stride;
+        double v = Math.exp(slots[ra]);
+        slots[rr] = v;
+        for (int j = 1; j < stride; j++) slots[rr + j] = v * slots[ra + j];
+        return r;
+    }
+
+    /**
+     * @param a register
+     * @return register holding the natural logarithm of a
+     */
+    public int log(int a) {
+        int r = allocate();
+        int ra = a * stride, rr = r * stride;
+        double reciprocal = 1 / slots[ra];
+        slots[rr] = Math.log(slots[ra]);
+        for (int j = 1; j < stride; j++) slots[rr + j] = slots[ra + j] * reciprocal;
+        return r;
+    }
+
+    /**
+     * @param a register
+     * @return register holding the square root of a
+     */
+    public int sqrt(int a) {
+        int r = allocate();
+        int ra = a * stride, rr = r * stride;
+        double v = Math.sqrt(slots[ra]);
+        double scale = 0.5 / v;
+        slots[rr] = v;
+        for (int j = 1; j < stride; j++) slots[rr + j] = scale * slots[ra + j];
+        return r;
+    }
+
+    /**
+     * @param r register
+     * @return its value
+     */
+    public double value(int r) {
+        return slots[r * stride];
+    }
+
+    /**
+     * @param r register
+     * @param index variable, from 0
+     * @return its derivative by the variable
+     */
+    public double derivative(int r, int index) {
+        return slots[r * stride + 1 + index];
+    }
+
+    /**
+     * Copies the derivatives of a number by every variable.
+     *
+     * @param r register
+     * @param gradient array to put the derivatives in
+     */
+    public void gradient(int r, double[] gradient) {
+        System.arraycopy(slots, r * stride + 1, gradient, 0, variables);
+    }
+
+    /**
+     * @param a register
+     * @return a new register holding the same number
+     */
+    private int copy(int a) {
+        int r = allocate();
+        System.arraycopy(slots, a * stride, slots, r * stride, stride);
+        return r;
+    }
+
+    /**
+     * @return index of the next free register
+     * @throws IllegalStateException if every register is in use
+     */
+    private int allocate() {
+        if ((next + 1) * stride > slots.length) {
+            throw new IllegalStateException("The dual number workspace is full (" + next + " registers); clear it between evaluations");
+        }
+        return next++;
+    }
+}
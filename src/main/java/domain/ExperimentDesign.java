@@ -0,0 +1,653 @@
+package domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * ExperimentDesign is an abstract class with static methods for choosing the substrate and co-substrate/inhibitor
+ * concentrations of an experiment, so that fitting its rates determines the model's constants as precisely as
+ * possible given prior estimates of them.
+ *
+ * A design is a set of substrate concentrations (the rows of the table) and co-substrate or inhibitor
+ * concentrations (its columns), chosen from candidates, with a rate measured at every combination. Its information
+ * matrix is the normal matrix the reciprocal fit builds, J^T W J with the rates the prior constants predict and the
+ * weighting scheme's weights, but differentiated by the logarithms of the constants rather than the reciprocal
+ * parameters. Its inverse is then the covariance of the constants relative to their size, per unit variance of the
+ * reciprocal rates. Each candidate cell's share of the matrix is worked out once and cached, so a design's matrix is
+ * the sum of its cells' shares.
+ *
+ * Small searches try every design. Larger ones start from several designs and exchange one concentration at a time
+ * for whichever candidate helps most, until none does. Either way the designs are evaluated in parallel.
+ */
+public abstract class ExperimentDesign {
+
+    /** The most designs tried one by one before searching by exchanges instead. */
+    private static final int EXHAUSTIVE_LIMIT = 50000;
+    /** Number of starting designs of an exchange search: an evenly spread one, then random ones. */
+    private static final int EXCHANGE_STARTS = 16;
+    /** Most sweeps of the Jacobi eigenvalue method, far more than a 4 by 4 matrix needs. */
+    private static final int MAX_SWEEPS = 50;
+
+    /**
+     * The concentrations of a design, and how precisely they determine the constants.
+     */
+    public static class Design {
+        /** Names of the constants. */
+        private final List<String> names;
+        /** Substrate concentrations, in increasing order. */
+        private final double[] substrate;
+        /** Co-substrate or inhibitor concentrations, in increasing order (empty for one substrate). */
+        private final double[] coSubInhib;
+        /** Value of the criterion. */
+        private final double criterion;
+        /** Covariance of the logarithms of the constants, per unit variance of the reciprocal rates. */
+        private final double[][] covariance;
+        /** Number of designs evaluated to find this one. */
+        private final long evaluated;
+
+        /**
+         * Creates a design.
+         *
+         * @param names names of the constants
+         * @param substrate substrate concentrations, in increasing order
+         * @param coSubInhib co-substrate or inhibitor concentrations, in increasing order
+         * @param criterion value of the criterion
+         * @param covariance covariance of the logarithms of the constants
+         * @param evaluated number of designs evaluated to find this one
+         */
+        Design(List<String> names, double[] substrate, double[] coSubInhib, double criterion, double[][] covariance, long evaluated) {
+            this.names = names;
+            this.substrate = substrate;
+            this.coSubInhib = coSubInhib;
+            this.criterion = criterion;
+            this.covariance = covariance;
+            this.evaluated = evaluated;
+        }
+
+        /**
+         * @return names of the constants: "vm", then those of GlobalFit.sharedNames
+         */
+        public List<String> getNames() {
+            return names;
+        }
+
+        /**
+         * @return substrate concentrations, in increasing order
+         */
+        public double[] getSubstrate() {
+            return substrate;
+        }
+
+        /**
+         * @return co-substrate or inhibitor concentrations, in increasing order (empty for one substrate)
+         */
+        public double[] getCoSubInhib() {
+            return coSubInhib;
+        }
+
+        /**
+         * @return value of the criterion, smaller being better: the determinant of the covariance to the power of
+         * one over the number of constants for D-optimality, its largest eigenvalue for E-optimality
+         */
+        public double getCriterion() {
+            return criterion;
+        }
+
+        /**
+         * @return covariance of the logarithms of the constants, per unit variance of the reciprocal rates
+         */
+        public double[][] getCovariance() {
+            return covariance;
+        }
+
+        /**
+         * @param name name of a constant
+         * @return its standard error relative to its size, per unit standard deviation of the reciprocal rates
+         */
+        public double getRelativeError(String name) {
+            int j = names.indexOf(name);
+            if (j < 0) throw new IllegalArgumentException("No constant named " + name);
+            return Math.sqrt(covariance[j][j]);
+        }
+
+        /**
+         * @return number of designs evaluated to find this one
+         */
+        public long getEvaluated() {
+            return evaluated;
+        }
+    }
+
+    /**
+     * Searches the candidate concentrations for the design that best determines the constants.
+     *
+     * @param model kinetic model
+     * @param prior prior estimates of the constants by name: "vm" and then those of GlobalFit.sharedNames
+     * @param weighting how the fit will weight each rate; it must weight by the rate, not by replicates
+     * @param criterion what to minimise
+     * @param substrateCandidates substrate concentrations to choose from
+     * @param rows number of substrate concentrations to choose
+     * @param coSubInhibCandidates co-substrate or inhibitor concentrations to choose from (ignored for one
+     * substrate)
+     * @param cols number of co-substrate or inhibitor concentrations to choose (ignored for one substrate)
+     * @param threads number of designs to evaluate at once
+     * @return the best design found
+     * @throws IllegalArgumentException if a constant is missing or not positive, there aren't enough candidates,
+     * or the weighting uses replicates
+     */
+    public static Design optimise(KineticModel model, Map<String, Double> prior, WeightingScheme weighting, DesignCriterion criterion,
+                                  double[] substrateCandidates, int rows, double[] coSubInhibCandidates, int cols, int threads) {
+        Candidates candidates = new Candidates(model, prior, weighting, substrateCandidates, coSubInhibCandidates);
+        if (candidates.oneSub) cols = 1;
+        if (rows < 1 || rows > candidates.substrate.length) {
+            throw new IllegalArgumentException("Can't choose " + rows + " of " + candidates.substrate.length + " substrate concentrations");
+        }
+        if (cols < 1 || cols > candidates.coSubInhib.length) {
+            throw new IllegalArgumentException("Can't choose " + cols + " of " + candidates.coSubInhib.length + " co-substrate/inhibitor concentrations");
+        }
+
+        double designs = combinations(candidates.substrate.length, rows) * combinations(candidates.coSubInhib.length, cols);
+        Search best = (designs <= EXHAUSTIVE_LIMIT)
+                ? exhaustive(candidates, criterion, rows, cols, threads)
+                : exchange(candidates, criterion, rows, cols, threads);
+        return candidates.design(criterion, best.rows, best.cols, best.evaluated);
+    }
+
+    /**
+     * Works out how precisely a given design determines the constants.
+     *
+     * @param model kinetic model
+     * @param prior prior estimates of the constants by name: "vm" and then those of GlobalFit.sharedNames
+     * @param weighting how the fit will weight each rate; it must weight by the rate, not by replicates
+     * @param criterion criterion to report
+     * @param substrate substrate concentrations
+     * @param coSubInhib co-substrate or inhibitor concentrations (ignored for one substrate)
+     * @return the design, with one design evaluated
+     * @throws IllegalArgumentException if a constant is missing or not positive, or the weighting uses replicates
+     */
+    public static Design evaluate(KineticModel model, Map<String, Double> prior, WeightingScheme weighting, DesignCriterion criterion,
+                                  double[] substrate, double[] coSubInhib) {
+        Candidates candidates = new Candidates(model, prior, weighting, substrate, coSubInhib);
+        int[] rows = new int[candidates.substrate.length];
+        int[] cols = new int[candidates.coSubInhib.length];
+        for (int i = 0; i < rows.length; i++) rows[i] = i;
+        for (int j = 0; j < cols.length; j++) cols[j] = j;
+        return candidates.design(criterion, rows, cols, 1);
+    }
+
+    /**
+     * Tries every design, a share of them on each thread.
+     *
+     * @param candidates candidate cells
+     * @param criterion what to minimise
+     * @param rows number of substrate concentrations
+     * @param cols number of co-substrate or inhibitor concentrations
+     * @param threads number of designs to evaluate at once
+     * @return the best design
+     */
+    private static Search exhaustive(Candidates candidates, DesignCriterion criterion, int rows, int cols, int threads) {
+        List<int[]> rowSets = subsets(candidates.substrate.length, rows);
+        List<int[]> colSets = subsets(candidates.coSubInhib.length, cols);
+        int total = rowSets.size() * colSets.size();
+        Search[] results = new Search[Parallel.chunks(total, threads)];
+        Parallel.run(total, threads, "Design search", (chunk, chunks) -> {
+            Search best = new Search();
+            double[] matrix = candidates.matrix();
+            for (int k = chunk; k < total; k += chunks) {
+                int[] rowSet = rowSets.get(k / colSets.size());
+                int[] colSet = colSets.get(k % colSets.size());
+                best.offer(candidates.score(criterion, rowSet, colSet, matrix), rowSet, colSet);
+            }
+            results[chunk] = best;
+        });
+        return merge(results);
+    }
+
+    /**
+     * Searches by exchanging one concentration at a time for the candidate that helps most, from an evenly spread
+     * design and random ones, a share of the starting designs on each thread.
+     *
+     * @param candidates candidate cells
+     * @param criterion what to minimise
+     * @param rows number of substrate concentrations
+     * @param cols number of co-substrate or inhibitor concentrations
+     * @param threads number of starting designs to search from at once
+     * @return the best design found
+     */
+    private static Search exchange(Candidates candidates, DesignCriterion criterion, int rows, int cols, int threads) {
+        Search[] results = new Search[Parallel.chunks(EXCHANGE_STARTS, threads)];
+        Parallel.run(EXCHANGE_STARTS, threads, "Design search", (chunk, chunks) -> {
+            Search best = new Search();
+            double[] matrix = candidates.matrix();
+            for (int start = chunk; start < EXCHANGE_STARTS; start += chunks) {
+                SplittableRandom random = new SplittableRandom(start);
+                int[] rowSet = (start == 0) ? spread(candidates.substrate.length, rows) : sample(random, candidates.substrate.length, rows);
+                int[] colSet = (start == 0) ? spread(candidates.coSubInhib.length, cols) : sample(random, candidates.coSubInhib.length, cols);
+                double score = candidates.score(criterion, rowSet, colSet, matrix);
+                best.evaluated++;
+                boolean improved = true;
+                while (improved) {
+                    improved = false;
+                    for (int[] set : new int[][]{rowSet, colSet}) {
+                        int numCandidates = (set == rowSet) ? candidates.substrate.length : candidates.coSubInhib.length;
+                        for (int position = 0; position < set.length; position++) {
+                            int current = set[position];
+                            int bestCandidate = current;
+                            for (int candidate = 0; candidate < numCandidates; candidate++) {
+                                if (contains(set, candidate)) continue;
+                                set[position] = candidate;
+                                double trial = candidates.score(criterion, rowSet, colSet, matrix);
+                                best.evaluated++;
+                                if (trial < score) {
+                                    score = trial;
+                                    bestCandidate = candidate;
+                                }
+                            }
+                            set[position] = bestCandidate;
+                            if (bestCandidate != current) improved = true;
+                        }
+                    }
+                }
+                best.offer(score, rowSet, colSet);
+            }
+            results[chunk] = best;
+        });
+        return merge(results);
+    }
+
+    /**
+     * Picks the best of each thread's designs, the first thread's on a tie so the result doesn't depend on timing.
+     *
+     * @param results best design of each thread
+     * @return the best of them, with the designs evaluated by every thread
+     */
+    private static Search merge(Search[] results) {
+        Search best = results[0];
+        long evaluated = results[0].evaluated;
+        for (int i = 1; i < results.length; i++) {
+            evaluated += results[i].evaluated;
+            if (results[i].score < best.score) best = results[i];
+        }
+        if (best.rows == null) throw new IllegalArgumentException("No design can determine every constant");
+        best.evaluated = evaluated;
+        return best;
+    }
+
+    /**
+     * @param n number of items
+     * @param k number to choose
+     * @return number of ways to choose them, as a double so it can't overflow
+     */
+    private static double combinations(int n, int k) {
+        double count = 1;
+        for (int i = 0; i < k; i++) count = count * (n - i) / (i + 1);
+        return count;
+    }
+
+    /**
+     * @param n number of items
+     * @param k number to choose
+     * @return every way of choosing k of the indices 0 to n - 1, each in increasing order
+     */
+    private static List<int[]> subsets(int n, int k) {
+        List<int[]> subsets = new ArrayList<>();
+        int[] subset = new int[k];
+        for (int i = 0; i < k; i++) subset[i] = i;
+        while (true) {
+            subsets.add(subset.clone());
+            int i = k - 1;
+            while (i >= 0 && subset[i] == n - k + i) i--;
+            if (i < 0) return subsets;
+            subset[i]++;
+            for (int j = i + 1; j < k; j++) subset[j] = subset[j - 1] + 1;
+        }
+    }
+
+    /**
+     * @param n number of items
+     * @param k number to choose
+     * @return k of the indices 0 to n - 1 spread as evenly as possible, including both ends
+     */
+    private static int[] spread(int n, int k) {
+        int[] subset = new int[k];
+        for (int i = 0; i < k; i++) subset[i] = (k == 1) ? n - 1 : (int) Math.round(i * (n - 1) / (double) (k - 1));
+        return subset;
+    }
+
+    /**
+     * @param random random number generator
+     * @param n number of items
+     * @param k number to choose
+     * @return k different indices from 0 to n - 1, chosen at random
+     */
+    private static int[] sample(SplittableRandom random, int n, int k) {
+        int[] indices = new int[n];
+        for (int i = 0; i < n; i++) indices[i] = i;
+        for (int i = 0; i < k; i++) {
+            int j = i + random.nextInt(n - i);
+            int swap = indices[i];
+            indices[i] = indices[j];
+            indices[j] = swap;
+        }
+        return Arrays.copyOf(indices, k);
+    }
+
+    /**
+     * @param set indices
+     * @param index index to look for
+     * @return whether the set contains it
+     */
+    private static boolean contains(int[] set, int index) {
+        for (int i : set) {
+            if (i == index) return true;
+        }
+        return false;
+    }
+
+    /**
+     * The best design a search has found so far.
+     */
+    private static final class Search {
+        /** Its score, smaller being better. */
+        private double score = Double.POSITIVE_INFINITY;
+        /** Indices of its substrate concentrations, or null if no design has determined the constants. */
+        private int[] rows;
+        /** Indices of its co-substrate or inhibitor concentrations. */
+        private int[] cols;
+        /** Number of designs evaluated. */
+        private long evaluated;
+
+        /**
+         * Counts a design, keeping it if it's the best so far.
+         *
+         * @param score its score
+         * @param rowSet indices of its substrate concentrations
+         * @param colSet indices of its co-substrate or inhibitor concentrations
+         */
+        void offer(double score, int[] rowSet, int[] colSet) {
+            evaluated++;
+            if (score < this.score) {
+                this.score = score;
+                this.rows = rowSet.clone();
+                this.cols = colSet.clone();
+            }
+        }
+    }
+
+    /**
+     * The candidate cells of a search, with each cell's cached share of the information matrix.
+     */
+    private static final class Candidates {
+        /** Kinetic model. */
+        private final KineticModel model;
+        /** Whether the model has only one substrate, so there is one column with no co-substrate or inhibitor. */
+        private final boolean oneSub;
+        /** Names of the constants. */
+        private final List<String> names;
+        /** Number of constants. */
+        private final int numParams;
+        /** Candidate substrate concentrations. */
+        private final double[] substrate;
+        /** Candidate co-substrate or inhibitor concentrations. */
+        private final double[] coSubInhib;
+        /** Derivatives of each cell's reciprocal rate by the logarithm of each constant, by constant then cell. */
+        private final double[][] basis;
+        /** Weight of each cell's reciprocal rate. */
+        private final double[] weights;
+        /** Each cell's share of the information matrix, numParams * numParams values per cell. */
+        private final double[] shares;
+
+        /**
+         * Works out the rate the prior constants predict at every candidate cell, and its share of the
+         * information matrix.
+         *
+         * @param model kinetic model
+         * @param prior prior estimates of the constants by name
+         * @param weighting how the fit will weight each rate
+         * @param substrateCandidates candidate substrate concentrations
+         * @param coSubInhibCandidates candidate co-substrate or inhibitor concentrations
+         * @throws IllegalArgumentException if a constant is missing or not positive, a concentration is negative,
+         * or the weighting uses replicates
+         */
+        Candidates(KineticModel model, Map<String, Double> prior, WeightingScheme weighting, double[] substrateCandidates,
+                   double[] coSubInhibCandidates) {
+            if (weighting == WeightingScheme.REPLICATE_VARIANCE) {
+                throw new IllegalArgumentException("A design can't be weighted by the variance of replicates that haven't been measured");
+            }
+            this.model = model;
+            this.oneSub = model == KineticModel.UninhibitedOneSub;
+            this.names = new ArrayList<>();
+            names.add("vm");
+            names.addAll(GlobalFit.sharedNames(model));
+            this.numParams = names.size();
+            this.substrate = substrateCandidates.clone();
+            this.coSubInhib = oneSub ? new double[]{0} : coSubInhibCandidates.clone();
+            for (double s : substrate) {
+                if (!(s > 0)) throw new IllegalArgumentException("Substrate concentrations must be positive, not " + s);
+            }
+            for (double c : coSubInhib) {
+                if (!(c >= 0)) throw new IllegalArgumentException("Co-substrate/inhibitor concentrations can't be negative, not " + c);
+            }
+            double[] theta = new double[numParams];
+            for (int j = 0; j < numParams; j++) {
+                Double value = prior.get(names.get(j));
+                if (value == null || !(value > 0)) throw new IllegalArgumentException("The " + names.get(j) + " constant must be given and positive");
+                theta[j] = value;
+            }
+
+            // The predicted rates as a table, so the scheme weighs them as it would measured ones:
+            int rows = substrate.length;
+            int cols = coSubInhib.length;
+            int cells = rows * cols;
+            double[][] table = new double[rows][cols];
+            basis = new double[numParams + 1][cells];
+            Dual dual = new Dual(numParams, GlobalFit.RATE_REGISTERS);
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < cols; col++) {
+                    dual.clear();
+                    for (int j = 0; j < numParams; j++) dual.variable(theta[j], j);
+                    int v = GlobalFit.rate(dual, model, 0, 1, substrate[row], coSubInhib[col]);
+                    double rate = dual.value(v);
+                    int cell = row * cols + col;
+                    table[row][col] = (rate > 0 && Double.isFinite(rate)) ? rate : Double.NaN; // no rate, no information
+                    for (int j = 0; j < numParams; j++) {
+                        // d(1/V)/d(log K) = -(K / V^2) dV/dK:
+                        basis[j][cell] = -theta[j] * dual.derivative(v, j) / (rate * rate);
+                    }
+                    basis[numParams][cell] = 1.0 / rate;
+                }
+            }
+            Data grid = new Data(boxed(substrate), oneSub ? new ArrayList<>() : boxed(coSubInhib), table);
+            grid.setRows(rows);
+            grid.setCols(cols);
+            grid.setModelType(model);
+            double[][] tableWeights = new double[rows][cols];
+            weighting.weigh(grid, tableWeights);
+            weights = new double[cells];
+            shares = new double[cells * numParams * numParams];
+            for (int cell = 0; cell < cells; cell++) {
+                weights[cell] = tableWeights[cell / cols][cell % cols];
+                if (weights[cell] == 0 || !Double.isFinite(weights[cell])) {
+                    weights[cell] = 0;
+                    continue;
+                }
+                for (int j = 0; j < numParams; j++) {
+                    for (int l = 0; l < numParams; l++) {
+                        shares[(cell * numParams + j) * numParams + l] = weights[cell] * basis[j][cell] * basis[l][cell];
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return a buffer for a design's information matrix
+         */
+        double[] matrix() {
+            return new double[numParams * numParams];
+        }
+
+        /**
+         * Scores a design from its cells' cached shares of the information matrix.
+         *
+         * @param criterion what to score
+         * @param rowSet indices of its substrate concentrations
+         * @param colSet indices of its co-substrate or inhibitor concentrations
+         * @param matrix buffer for the information matrix
+         * @return the criterion, or infinity if the design can't determine every constant
+         */
+        double score(DesignCriterion criterion, int[] rowSet, int[] colSet, double[] matrix) {
+            Arrays.fill(matrix, 0);
+            int size = numParams * numParams;
+            for (int row : rowSet) {
+                for (int col : colSet) {
+                    int offset = (row * coSubInhib.length + col) * size;
+                    for (int k = 0; k < size; k++) matrix[k] += shares[offset + k];
+                }
+            }
+            switch (criterion) {
+                case DOptimal: {
+                    double logDeterminant = logDeterminant(matrix, numParams);
+                    return Double.isFinite(logDeterminant) ? Math.exp(-logDeterminant / numParams) : Double.POSITIVE_INFINITY;
+                }
+                case EOptimal: {
+                    double smallest = smallestEigenvalue(matrix, numParams);
+                    return (smallest > 0) ? 1.0 / smallest : Double.POSITIVE_INFINITY;
+                }
+                default:
+                    throw new IllegalArgumentException("Unrecognised design criterion: " + criterion);
+            }
+        }
+
+        /**
+         * Builds a design's normal matrix as the fit does and inverts it for the covariance.
+         *
+         * @param criterion criterion to report
+         * @param rowSet indices of its substrate concentrations
+         * @param colSet indices of its co-substrate or inhibitor concentrations
+         * @param evaluated number of designs evaluated to find it
+         * @return the design
+         * @throws IllegalArgumentException if the design can't determine every constant
+         */
+        Design design(DesignCriterion criterion, int[] rowSet, int[] colSet, long evaluated) {
+            int[] sortedRows = rowSet.clone();
+            int[] sortedCols = colSet.clone();
+            Arrays.sort(sortedRows);
+            Arrays.sort(sortedCols);
+
+            // The design's cells, column-major as the fit stores them:
+            int cells = sortedRows.length * sortedCols.length;
+            double[][] designBasis = new double[numParams + 1][cells];
+            double[] designWeights = new double[cells];
+            int cell = 0;
+            for (int row : sortedRows) {
+                for (int col : sortedCols) {
+                    int candidate = row * coSubInhib.length + col;
+                    for (int j = 0; j <= numParams; j++) designBasis[j][cell] = (weights[candidate] > 0) ? basis[j][candidate] : 0;
+                    designWeights[cell] = weights[candidate];
+                    cell++;
+                }
+            }
+            double[][] normal = new double[numParams][numParams + 1];
+            NormalEquations.accumulate(designBasis, designWeights, cells, numParams, normal);
+            for (double[] row : normal) row[numParams] = 0; // no right-hand side, only the matrix
+            double[][] covariance = new double[numParams][numParams];
+            double condition = LinearSolver.cholesky(normal, numParams, new double[numParams], covariance);
+            if (!(condition <= LinearSolver.CONDITION_LIMIT)) {
+                throw new IllegalArgumentException(String.format("The design can't determine every constant of the %s model (condition number %.1e).", model, condition));
+            }
+
+            double[] chosenSubstrate = new double[sortedRows.length];
+            for (int i = 0; i < sortedRows.length; i++) chosenSubstrate[i] = substrate[sortedRows[i]];
+            double[] chosenCoSubInhib = new double[oneSub ? 0 : sortedCols.length];
+            for (int j = 0; j < chosenCoSubInhib.length; j++) chosenCoSubInhib[j] = coSubInhib[sortedCols[j]];
+            double score = score(criterion, sortedRows, sortedCols, matrix());
+            return new Design(names, chosenSubstrate, chosenCoSubInhib, score, covariance, evaluated);
+        }
+    }
+
+    /**
+     * Calculates the logarithm of the determinant of a symmetric matrix by Cholesky factorisation.
+     *
+     * @param matrix the matrix, row-major
+     * @param n its size
+     * @return the logarithm of its determinant, or NaN if it isn't positive definite
+     */
+    static double logDeterminant(double[] matrix, int n) {
+        double[] l = new double[n * n];
+        double logDeterminant = 0;
+        for (int j = 0; j < n; j++) {
+            double diagonal = matrix[j * n + j];
+            for (int k = 0; k < j; k++) diagonal -= l[j * n + k] * l[j * n + k];
+            if (!(diagonal > 1e-300)) return Double.NaN;
+            double root = Math.sqrt(diagonal);
+            l[j * n + j] = root;
+            logDeterminant += 2 * Math.log(root);
+            for (int i = j + 1; i < n; i++) {
+                double sum = matrix[i * n + j];
+                for (int k = 0; k < j; k++) sum -= l[i * n + k] * l[j * n + k];
+                l[i * n + j] = sum / root;
+            }
+        }
+        return logDeterminant;
+    }
+
+    /**
+     * Finds the smallest eigenvalue of a symmetric matrix by the cyclic Jacobi method.
+     *
+     * @param matrix the matrix, row-major
+     * @param n its size
+     * @return its smallest eigenvalue
+     */
+    static double smallestEigenvalue(double[] matrix, int n) {
+        double[] a = matrix.clone();
+        for (int sweep = 0; sweep < MAX_SWEEPS; sweep++) {
+            double offDiagonal = 0;
+            double diagonal = 0;
+            for (int p = 0; p < n; p++) {
+                diagonal += a[p * n + p] * a[p * n + p];
+                for (int q = p + 1; q < n; q++) offDiagonal += a[p * n + q] * a[p * n + q];
+            }
+            if (offDiagonal <= 1e-30 * diagonal) break;
+            for (int p = 0; p < n; p++) {
+                for (int q = p + 1; q < n; q++) {
+                    double apq = a[p * n + q];
+                    if (apq == 0) continue;
+                    // Rotate to zero a[p][q]:
+                    double theta = (a[q * n + q] - a[p * n + p]) / (2 * apq);
+                    double t = Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1));
+                    if (theta == 0) t = 1;
+                    double c = 1 / Math.sqrt(t * t + 1);
+                    double s = t * c;
+                    for (int k = 0; k < n; k++) {
+                        double akp = a[k * n + p];
+                        double akq = a[k * n + q];
+                        a[k * n + p] = c * akp - s * akq;
+                        a[k * n + q] = s * akp + c * akq;
+                    }
+                    for (int k = 0; k < n; k++) {
+                        double apk = a[p * n + k];
+                        double aqk = a[q * n + k];
+                        a[p * n + k] = c * apk - s * aqk;
+                        a[q * n + k] = s * apk + c * aqk;
+                    }
+                }
+            }
+        }
+        double smallest = Double.POSITIVE_INFINITY;
+        for (int p = 0; p < n; p++) smallest = Math.min(smallest, a[p * n + p]);
+        return smallest;
+    }
+
+    /**
+     * @param values values
+     * @return them as a list
+     */
+    private static List<Double> boxed(double[] values) {
+        List<Double> list = new ArrayList<>();
+        for (double value : values) list.add(value);
+        return list;
+    }
+}
@@ -0,0 +1,273 @@
+package domain;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * FitCache remembers fit results by the content of the data they were fitted from, so fitting the same data again
+ * (pressing Go twice, changing the graph type, or reloading an unchanged file) doesn't redo the regression.
+ * Results are keyed by a SHA-256 hash of the model and every input value, so a file that was renamed or copied still
+ * hits, and any change to a value misses. The most recently used results are kept in memory; optionally every result
+ * is also written to a directory so later runs can reuse them.
+ */
+public class FitCache {
+
+    /**
+     * Changes whenever the fitting changes in a way that would give different results, so stored results from an
+     * older version are never used.
+     */
+    private static final int VERSION = 4;
+
+    /**
+     * The results of fitting that don't depend on the graph type.
+     */
+    public static class Result {
+        /** Fitted parameters of the reciprocal rate equation. */
+        private final double[] fitParameters;
+        /** Fitted values by name, as in Data's textData. */
+        private final Map<String, Double> textData;
+
+        /**
+         * @param fitParameters fitted parameters of the reciprocal rate equation
+         * @param textData fitted values by name
+         */
+        public Result(double[] fitParameters, Map<String, Double> textData) {
+            this.fitParameters = fitParameters.clone();
+            this.textData = Collections.unmodifiableMap(new HashMap<>(textData));
+        }
+
+        /**
+         * @return a copy of the fitted parameters
+         */
+        public double[] getFitParameters() {
+            return fitParameters.clone();
+        }
+
+        /**
+         * @return fitted values by name (unmodifiable)
+         */
+        public Map<String, Double> getTextData() {
+            return textData;
+        }
+    }
+
+    /** Results in least to most recently used order. */
+    private final LinkedHashMap<String, Result> entries;
+    /** Directory results are also stored in, or null to keep them in memory only. */
+    private final Path directory;
+    /** The number of lookups that found a result. */
+    private final LongAdder hits = new LongAdder();
+    /** The number of lookups that didn't. */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a cache kept in memory only.
+     *
+     * @param maxEntries most results to keep; the least recently used are dropped first
+     */
+    public FitCache(int maxEntries) {
+        this(maxEntries, null);
+    }
+
+    /**
+     * Creates a cache that also stores every result in the given directory.
+     *
+     * @param maxEntries most results to keep in memory; the least recently used are dropped first
+     * @param directory directory to store results in, or null to keep them in memory only
+     */
+    public FitCache(int maxEntries, Path directory) {
+        this.directory = directory;
+        this.entries = new LinkedHashMap<String, Result>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Creates the key for the given data from its model, weighting and every value the fit reads.
+     *
+     * @param data Data object to be fitted
+     * @return hex SHA-256 hash
+     */
+    public static String key(Data data) {
+        int rows = data.getRows();
+        int cols = data.getCols();
+        List<Double> cosubInhib = data.getCoSubInhibRow();
+        byte[] weighting = data.getWeightingScheme().getName().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(24 + weighting.length + 8 * (rows + cosubInhib.size() + rows * cols));
+        buffer.putInt(VERSION).putInt(data.getModelType().getValue())
+                .putInt(data.getRobustWeighting().ordinal()).putInt(weighting.length).put(weighting).putInt(rows).putInt(cols);
+        for (int row = 0; row < rows; row++) {
+            buffer.putDouble(data.getSubstrateCol().get(row));
+        }
+        for (double value : cosubInhib) {
+            buffer.putDouble(value);
+        }
+        double[][] table = data.getTableData();
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                buffer.putDouble(table[row][col]);
+            }
+        }
+
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-256").digest(buffer.array());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always available", e);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : hash) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Finds the result stored for a key, in memory or else on disk.
+     *
+     * @param key key from key(Data)
+     * @return the result, or null if there isn't one
+     */
+    public Result get(String key) {
+        Result result;
+        synchronized (this) {
+            result = entries.get(key);
+        }
+        if (result == null && directory != null) {
+            result = read(key);
+            if (result != null) {
+                synchronized (this) {
+                    entries.put(key, result);
+                }
+            }
+        }
+        if (result == null) misses.increment();
+        else hits.increment();
+        Metrics.recordCacheLookup(result != null);
+        return result;
+    }
+
+    /**
+     * Stores the result for a key, in memory and on disk if the cache has a directory.
+     *
+     * @param key key from key(Data)
+     * @param result fit result
+     */
+    public void put(String key, Result result) {
+        synchronized (this) {
+            entries.put(key, result);
+        }
+        if (directory != null) write(key, result);
+    }
+
+    /**
+     * Removes every result from memory. Results on disk are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return number of results in memory
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return number of lookups that found a result
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of lookups that didn't find a result
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the file a result is stored in. Files are spread over subdirectories by the start of their key.
+     *
+     * @param key key from key(Data)
+     * @return file path
+     */
+    private Path fileFor(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + ".fit");
+    }
+
+    /**
+     * Reads a result from disk. The file has the parameters on the first line, then one "name value" line per
+     * fitted value. A file that can't be read is counted in Metrics and treated as missing.
+     *
+     * @param key key from key(Data)
+     * @return the result, or null if there is no readable file for it
+     */
+    private Result read(String key) {
+        try (BufferedReader reader = Files.newBufferedReader(fileFor(key))) {
+            String[] parameters = reader.readLine().trim().split(" ");
+            double[] fitParameters = Arrays.stream(parameters).mapToDouble(Double::parseDouble).toArray();
+            Map<String, Double> textData = new HashMap<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] tokens = line.split(" ");
+                textData.put(tokens[0], Double.parseDouble(tokens[1]));
+            }
+            return new Result(fitParameters, textData);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            Metrics.recordCacheError(); // refitted instead, and overwritten
+            return null;
+        }
+    }
+
+    /**
+     * Writes a result to disk, via a temporary file so readers never see half a result. If writing fails, it is
+     * counted in Metrics and the result is only kept in memory.
+     *
+     * @param key key from key(Data)
+     * @param result fit result
+     */
+    private void write(String key, Result result) {
+        Path file = fileFor(key);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(temp))) {
+                StringBuilder parameters = new StringBuilder();
+                for (double parameter : result.fitParameters) {
+                    parameters.append(parameters.length() == 0 ? "" : " ").append(parameter);
+                }
+                writer.println(parameters);
+                for (Map.Entry<String, Double> entry : result.textData.entrySet()) {
+                    writer.println(entry.getKey() + " " + entry.getValue());
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Metrics.recordCacheError(); // kept in memory only
+        }
+    }
+}
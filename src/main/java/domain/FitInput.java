@@ -0,0 +1,66 @@
+package domain;
+
+/**
+ * FitInput holds what a fit calculates from the input values before any regression: the reciprocals of the
+ * substrate concentrations and reaction rates, and the weight of each rate. None of these depend on the kinetic
+ * model, so fitting several models to the same values can calculate them once.
+ */
+public class FitInput {
+
+    /** Substrate concentration reciprocals (1/[S]) of each row. */
+    private final double[] subsConcRecip;
+    /** Reaction rate reciprocals (1/V) of each cell, or 0 where the rate is 0. */
+    private final double[][] reactRateRecip;
+    /** Weight of each cell, from the Data's weighting scheme. */
+    private final double[][] weights;
+
+    /**
+     * Calculates the reciprocals and weights of the Data's input values.
+     *
+     * @param data Data object containing the input values
+     * @throws IllegalArgumentException if a substrate concentration is zero, or the weighting scheme can't weigh the
+     * values
+     */
+    public FitInput(Data data) {
+        double[] subsConc = data.getSubstrateCol().stream().mapToDouble(Double::doubleValue).toArray();
+        double[][] reactRate = data.getTableData();
+        int rows = data.getRows();
+        int cols = data.getCols();
+
+        subsConcRecip = new double[rows];
+        reactRateRecip = new double[rows][cols];
+        weights = new double[rows][cols];
+        for (int row = 0; row < rows; row++){
+            if (subsConc[row] == 0) throw new IllegalArgumentException("Substrate concentration is zero on row: " + row);
+            subsConcRecip[row] = 1.0 / subsConc[row];
+
+            for (int col = 0; col < cols; col++){
+                if (reactRate[row][col] != 0){
+                    reactRateRecip[row][col] = 1.0 / reactRate[row][col];
+                }
+            }
+        }
+        data.getWeightingScheme().weigh(data, weights);
+    }
+
+    /**
+     * @return substrate concentration reciprocals (1/[S]) of each row
+     */
+    public double[] getSubsConcRecip() {
+        return subsConcRecip;
+    }
+
+    /**
+     * @return reaction rate reciprocals (1/V) of each cell, or 0 where the rate is 0
+     */
+    public double[][] getReactRateRecip() {
+        return reactRateRecip;
+    }
+
+    /**
+     * @return weight of each cell
+     */
+    public double[][] getWeights() {
+        return weights;
+    }
+}
@@ -0,0 +1,284 @@
+package domain;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import persistency.Json;
+import persistency.Loading;
+import persistency.ResultWriter;
+
+/**
+ * FitServer is a small HTTP service for fitting data from other programs without starting LUCENZ for each dataset.
+ * Requests are handled on their own (virtual, where the JVM has them) threads, which only parse and wait, while the
+ * fitting itself runs on a fixed pool of threads with a bounded queue. When the queue is full, requests are turned
+ * away with 503 straight away rather than piling up.
+ *
+ * <ul>
+ *     <li>POST /fit?format=ktn|csv|json[&amp;model=..][&amp;graphType=..][&amp;weighting=..][&amp;robust=..][&amp;points=true] fits the dataset in the
+ *     body and returns the fitted values as JSON, plus the graph's lines and points if asked for.</li>
+ *     <li>GET /metrics returns request, queue and fit latencies as plain text.</li>
+ *     <li>GET /health returns "ok".</li>
+ * </ul>
+ */
+public class FitServer {
+
+    /** The largest request body accepted, in bytes. */
+    private static final int MAX_BODY_BYTES = 1 << 20;
+
+    /** The HTTP server. */
+    private final HttpServer server;
+    /** The threads requests are handled on. */
+    private final ExecutorService requestExecutor;
+    /** The threads datasets are fitted on. */
+    private final ThreadPoolExecutor fitPool;
+
+    /** Results of earlier fits. */
+    private final FitCache cache;
+
+    /** Time from receiving a request to finishing the response. */
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+    /** Time a dataset waited for a fitting thread. */
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    /** Time spent fitting a dataset. */
+    private final LatencyHistogram fitLatency = new LatencyHistogram();
+    /** The number of requests turned away because the queue was full. */
+    private final LongAdder rejected = new LongAdder();
+    /** The number of requests that couldn't be parsed or fitted. */
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * Creates a server; it doesn't accept requests until started.
+     *
+     * @param address address to listen on; port 0 picks a free port
+     * @param fitThreads number of datasets to fit at once
+     * @param queueSize number of datasets that can wait for a fitting thread
+     * @param cache results of earlier fits
+     * @throws IOException if the address can't be bound
+     */
+    public FitServer(InetSocketAddress address, int fitThreads, int queueSize, FitCache cache) throws IOException {
+        this.cache = cache;
+        server = HttpServer.create(address, 0);
+        requestExecutor = newRequestExecutor();
+        fitPool = new ThreadPoolExecutor(fitThreads, fitThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), new ThreadPoolExecutor.AbortPolicy());
+        server.setExecutor(requestExecutor);
+        server.createContext("/fit", this::handleFit);
+        server.createContext("/metrics", this::handleMetrics);
+        server.createContext("/health", exchange -> respond(exchange, 200, "text/plain", "ok\n"));
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        Metrics.registerQueue("fit_server", () -> fitPool.getQueue().size());
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for running ones, and shuts down the threads.
+     */
+    public void stop() {
+        server.stop(1);
+        Metrics.unregisterQueue("fit_server");
+        requestExecutor.shutdown();
+        fitPool.shutdown();
+    }
+
+    /**
+     * @return port the server is listening on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return the service's latencies and counters, then every other metric (see Metrics), as "name value" lines
+     */
+    public String getMetrics() {
+        return requestLatency.format("lucenz_request_latency") + queueLatency.format("lucenz_queue_latency")
+                + fitLatency.format("lucenz_fit_latency")
+                + "lucenz_requests_rejected " + rejected.sum() + System.lineSeparator()
+                + "lucenz_requests_failed " + failed.sum() + System.lineSeparator()
+                + "lucenz_fit_cache_hits " + cache.getHits() + System.lineSeparator()
+                + "lucenz_fit_cache_misses " + cache.getMisses() + System.lineSeparator()
+                + "lucenz_fit_active " + fitPool.getActiveCount() + System.lineSeparator()
+                + Metrics.format();
+    }
+
+    /**
+     * Handles POST /fit.
+     *
+     * @param exchange request and response
+     * @throws IOException if the response can't be written
+     */
+    private void handleFit(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405, "application/json", error("Use POST"));
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String body = readBody(exchange.getRequestBody());
+            if (body == null) {
+                failed.increment();
+                respond(exchange, 413, "application/json", error("Request body is larger than " + MAX_BODY_BYTES + " bytes"));
+                return;
+            }
+
+            Data data;
+            KineticModel model;
+            GraphType graphType;
+            try {
+                data = Loading.parse(body, query.getOrDefault("format", "ktn").toLowerCase(Locale.ROOT));
+                data.setFilePath(query.getOrDefault("name", ""));
+                model = query.containsKey("model") ? KineticModel.parse(query.get("model")) : null;
+                graphType = BatchRunner.parseGraphType(query.getOrDefault("graphType", GraphType.VelocityVS.name()));
+                data.setWeightingScheme(WeightingScheme.fromName(query.getOrDefault("weighting", WeightingScheme.RATE_SQUARED.getName())));
+                data.setRobustWeighting(BatchRunner.parseRobustWeighting(query.getOrDefault("robust", RobustWeighting.None.name())));
+            } catch (Exception e) {
+                failed.increment();
+                respond(exchange, 400, "application/json", error("Invalid dataset: " + e.getMessage()));
+                return;
+            }
+
+            Data fitted;
+            try {
+                long queued = System.nanoTime();
+                Future<Data> future = fitPool.submit(() -> {
+                    queueLatency.recordSince(queued);
+                    long fitStart = System.nanoTime();
+                    try {
+                        return BatchFit.fit(data, model, graphType, cache);
+                    } finally {
+                        fitLatency.recordSince(fitStart);
+                    }
+                });
+                fitted = future.get();
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 503, "application/json", error("Too many datasets waiting to be fitted"));
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                respond(exchange, 503, "application/json", error("Server is shutting down"));
+                return;
+            } catch (ExecutionException e) {
+                failed.increment();
+                respond(exchange, 500, "application/json", error(String.valueOf(e.getCause())));
+                return;
+            }
+
+            boolean points = Boolean.parseBoolean(query.getOrDefault("points", "false"));
+            if (!fitted.getErrorMessage().isEmpty()) failed.increment();
+            respond(exchange, fitted.getErrorMessage().isEmpty() ? 200 : 422, "application/json",
+                    ResultWriter.toJson(fitted, points));
+        } finally {
+            requestLatency.recordSince(start);
+        }
+    }
+
+    /**
+     * Handles GET /metrics.
+     *
+     * @param exchange request and response
+     * @throws IOException if the response can't be written
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, "text/plain", getMetrics());
+    }
+
+    /**
+     * Writes a complete response and closes the exchange.
+     *
+     * @param exchange request and response
+     * @param status HTTP status code
+     * @param contentType media type of the body
+     * @param body response body
+     * @throws IOException if the response can't be written
+     */
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Creates a JSON error body.
+     *
+     * @param message what went wrong
+     * @return the JSON object
+     */
+    private static String error(String message) {
+        return "{\"error\": " + Json.quote(message) + "}";
+    }
+
+    /**
+     * Reads a request body as UTF-8 text.
+     *
+     * @param in request body
+     * @return the text, or null if it is too large
+     * @throws IOException if the body can't be read
+     */
+    private static String readBody(InputStream in) throws IOException {
+        byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+        return (bytes.length > MAX_BODY_BYTES) ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses a URL query string into its parameters.
+     *
+     * @param rawQuery query string, still URL encoded (may be null)
+     * @return parameter values by name
+     */
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) return query;
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) continue;
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode((equals < 0) ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = (equals < 0) ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            query.put(name, value);
+        }
+        return query;
+    }
+
+    /**
+     * Creates the executor requests are handled on: one virtual thread per request where the JVM supports them
+     * (Java 21 and later), otherwise a cached pool of platform threads.
+     *
+     * @return the executor
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package domain;
+
+import java.util.Arrays;
+
+/**
+ * FitWorkspace holds the buffers one fit works in: the normal equations, the derivatives, the theoretical rates and
+ * the weights.
+ * A robust fit solves the normal equations many times, so it fills the same buffers each time instead of
+ * allocating new ones.
+ */
+class FitWorkspace {
+
+    /** The normal equations, then the solution and inverse normal matrix (the S matrix). */
+    final double[][] S = new double[10][11];
+    /** Solution of the latest regression. */
+    final double[] solution = new double[4];
+    /** Inverse of the latest regression's normal matrix. */
+    final double[][] inverse = new double[4][4];
+    /** Condition number of the latest regression's scaled normal matrix. */
+    double condition;
+    /**
+     * Derivatives of the reciprocal rate equation by parameter, followed by the reciprocal rates, each with one value
+     * per cell (row by row); null until the first pass finds them.
+     */
+    double[][] basis;
+    /** Weight of each cell used by the latest regression, in the same order as the derivatives. */
+    final double[] cellWeights;
+    /** Theoretical reaction rate of each cell from the latest parameters. */
+    final double[][] theoreticalReactRate;
+    /** Weight of each cell for the next pass of a robust fit: its usual weight times its robust weight. */
+    final double[][] weights;
+    /** Absolute weighted residual of each cell with a rate, for finding their median. */
+    final double[] residuals;
+    /** The number of rows. */
+    private final int rows;
+
+    /**
+     * Creates the buffers for fitting a table of the given size.
+     *
+     * @param rows number of rows
+     * @param cols number of columns
+     */
+    FitWorkspace(int rows, int cols) {
+        this.rows = rows;
+        theoreticalReactRate = new double[rows][cols];
+        weights = new double[rows][cols];
+        residuals = new double[rows * cols];
+        cellWeights = new double[rows * cols];
+    }
+
+    /**
+     * Copies the weights of a regression pass into cellWeights, row by row.
+     *
+     * @param weights weight of each cell, rows by columns
+     */
+    void setCellWeights(double[][] weights) {
+        int cols = (rows == 0) ? 0 : cellWeights.length / rows;
+        for (int row = 0; row < rows; row++) {
+            System.arraycopy(weights[row], 0, cellWeights, row * cols, cols);
+        }
+    }
+
+    /**
+     * Clears the normal equations before they are accumulated again.
+     */
+    void clearNormalEquations() {
+        for (double[] row : S) {
+            Arrays.fill(row, 0);
+        }
+    }
+}
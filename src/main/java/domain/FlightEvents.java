@@ -0,0 +1,91 @@
+package domain;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * FlightEvents holds the Java Flight Recorder events LUCENZ records, so a recording shows fits, loads, saves and
+ * graph drawing alongside garbage collection and I/O. Each event's duration is the time the work took. Events cost
+ * almost nothing unless a recording is running with them enabled (e.g. java -XX:StartFlightRecording ...).
+ */
+public abstract class FlightEvents {
+
+    /**
+     * One fit of a kinetic model, whether or not it succeeded.
+     */
+    @Name("lucenz.Fit")
+    @Label("Fit")
+    @Category("LUCENZ")
+    @Description("Fitting a kinetic model to one dataset")
+    public static class Fit extends Event {
+        /** Name of the kinetic model. */
+        @Label("Model")
+        public String model;
+        /** Number of substrate concentrations. */
+        @Label("Rows")
+        public int rows;
+        /** Number of co-substrate or inhibitor concentrations. */
+        @Label("Columns")
+        public int cols;
+        /** Regression iterations taken, or 0 if the fit failed before finishing them. */
+        @Label("Iterations")
+        public int iterations;
+        /** Why the fit failed, or null if it succeeded. */
+        @Label("Error")
+        public String error;
+    }
+
+    /**
+     * One input file loaded.
+     */
+    @Name("lucenz.Load")
+    @Label("Load")
+    @Category("LUCENZ")
+    @Description("Loading and parsing an input file")
+    public static class Load extends Event {
+        /** Path of the file. */
+        @Label("Path")
+        public String path;
+        /** Size of the file, or 0 if it couldn't be read. */
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+    }
+
+    /**
+     * One file saved.
+     */
+    @Name("lucenz.Save")
+    @Label("Save")
+    @Category("LUCENZ")
+    @Description("Saving a dataset to a file")
+    public static class Save extends Event {
+        /** Path of the file. */
+        @Label("Path")
+        public String path;
+        /** Size of the file written. */
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+    }
+
+    /**
+     * One draw of the graph.
+     */
+    @Name("lucenz.Render")
+    @Label("Render")
+    @Category("LUCENZ")
+    @Description("Drawing the graph")
+    public static class Render extends Event {
+        /** Number of experiment points drawn. */
+        @Label("Points")
+        public int points;
+        /** Whether overlaid datasets were drawn too. */
+        @Label("Overlay")
+        public boolean overlay;
+    }
+}
@@ -0,0 +1,674 @@
+package domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GlobalFit is an abstract class with static methods for fitting many datasets (e.g. replicate plates) together,
+ * with Vm fitted separately for each plate and the other constants (Km, Kis, Kii, ...) shared by every plate.
+ *
+ * The rates are fitted directly (not as reciprocals) by Levenberg-Marquardt on the logarithms of the parameters,
+ * which keeps them positive. Each plate's Vm only affects that plate's rates, so the normal equations are an
+ * "arrowhead": a diagonal block for the Vms, a small dense block for the shared constants, and the coupling between
+ * them. Eliminating the Vms (the Schur complement) leaves a system the size of the shared constants, so each
+ * iteration takes time linear in the number of plates instead of cubic.
+ *
+ * Since every rate has the same weight, the weighted error squared output to each plate is the mean squared residual
+ * of the rates, and the RMS fractional residual is that of Calculations with the fitted rates; both are of the whole
+ * global fit, so they're the same on every plate.
+ */
+public abstract class GlobalFit {
+
+    /**
+     * Dual number registers rate(Dual, ...) needs for a rate of any model, counting those holding Vm and the shared
+     * constants, so a Dual created with this many can calculate one rate between clears.
+     */
+    public static final int RATE_REGISTERS = 16;
+
+    /**
+     * The results of a global fit.
+     */
+    public static class Result {
+        /** Names of the shared constants, as in Data's textData. */
+        private final List<String> sharedNames;
+        /** Values of the shared constants. */
+        private final double[] shared;
+        /** Relative standard errors of the shared constants. */
+        private final double[] sharedError;
+        /** Vm of each plate. */
+        private final double[] vm;
+        /** Relative standard error of each plate's Vm. */
+        private final double[] vmError;
+        /** Residual sum of squares of the rates. */
+        private final double residualSumSquares;
+        /** Number of rates minus number of parameters. */
+        private final int degreesOfFreedom;
+        /** Number of iterations taken. */
+        private final int iterations;
+
+        /**
+         * @param sharedNames names of the shared constants
+         * @param shared values of the shared constants
+         * @param sharedError relative standard errors of the shared constants
+         * @param vm Vm of each plate
+         * @param vmError relative standard error of each plate's Vm
+         * @param residualSumSquares residual sum of squares of the rates
+         * @param degreesOfFreedom number of rates minus number of parameters
+         * @param iterations number of iterations taken
+         */
+        Result(List<String> sharedNames, double[] shared, double[] sharedError, double[] vm, double[] vmError,
+               double residualSumSquares, int degreesOfFreedom, int iterations) {
+            this.sharedNames = sharedNames;
+            this.shared = shared;
+            this.sharedError = sharedError;
+            this.vm = vm;
+            this.vmError = vmError;
+            this.residualSumSquares = residualSumSquares;
+            this.degreesOfFreedom = degreesOfFreedom;
+            this.iterations = iterations;
+        }
+
+        /**
+         * @return names of the shared constants
+         */
+        public List<String> getSharedNames() {
+            return sharedNames;
+        }
+
+        /**
+         * @param name name of a shared constant, e.g. "km"
+         * @return its value
+         */
+        public double getShared(String name) {
+            return shared[sharedNames.indexOf(name)];
+        }
+
+        /**
+         * @param name name of a shared constant, e.g. "km"
+         * @return its relative standard error
+         */
+        public double getSharedError(String name) {
+            return sharedError[sharedNames.indexOf(name)];
+        }
+
+        /**
+         * @param plate index of the plate
+         * @return the plate's Vm
+         */
+        public double getVm(int plate) {
+            return vm[plate];
+        }
+
+        /**
+         * @param plate index of the plate
+         * @return relative standard error of the plate's Vm
+         */
+        public double getVmError(int plate) {
+            return vmError[plate];
+        }
+
+        /**
+         * @return residual sum of squares of the rates
+         */
+        public double getResidualSumSquares() {
+            return residualSumSquares;
+        }
+
+        /**
+         * @return number of rates minus number of parameters
+         */
+        public int getDegreesOfFreedom() {
+            return degreesOfFreedom;
+        }
+
+        /**
+         * @return number of iterations taken
+         */
+        public int getIterations() {
+            return iterations;
+        }
+    }
+
+    /**
+     * Gets the constants a global fit shares between plates for the given model.
+     *
+     * @param model kinetic model
+     * @return names of the shared constants, as in Data's textData
+     */
+    public static List<String> sharedNames(KineticModel model) {
+        switch (model) {
+            case UninhibitedOneSub:
+                return Arrays.asList("km");
+            case UninhibitedTwoSubOrderedBiBi:
+                return Arrays.asList("ka", "kb", "kia");
+            case UninhibitedTwoSubPingPong:
+                return Arrays.asList("ka", "kb");
+            case InhibitedCompetitive:
+                return Arrays.asList("km", "kis");
+            case InhibitedNonCompetitive:
+                return Arrays.asList("km", "kis", "kii");
+            case InhibitedUnCompetitive:
+                return Arrays.asList("km", "kii");
+            default:
+                throw new IllegalArgumentException("Unrecognised model type: " + model);
+        }
+    }
+
+    /**
+     * Fits the plates together, and outputs each plate's Vm and the shared constants to its Data object along with
+     * graph points, as a normal fit would. Each plate's own fit is used for starting values, fitting it first if it
+     * hasn't been.
+     *
+     * @param plates valid Data objects that all use the same model
+     * @return the fitted values
+     * @throws IllegalArgumentException if the plates use different models, or a plate has no usable rates
+     */
+    public static Result fit(List<Data> plates) {
+        if (plates.isEmpty()) throw new IllegalArgumentException("There are no plates to fit.");
+        KineticModel model = plates.get(0).getModelType();
+        List<String> names = sharedNames(model);
+        int numPlates = plates.size();
+        int numShared = names.size();
+
+        // Usable cells of each plate as {substrate, co-substrate/inhibitor, rate}:
+        List<double[][]> cells = new ArrayList<>();
+        int numCells = 0;
+        for (Data plate : plates) {
+            if (plate.getModelType() != model) {
+                throw new IllegalArgumentException("Every plate must use the same model for a global fit.");
+            }
+            double[][] plateCells = usableCells(plate);
+            if (plateCells.length == 0) {
+                throw new IllegalArgumentException("A plate has no usable rates: " + plate.getFilePath());
+            }
+            cells.add(plateCells);
+            numCells += plateCells.length;
+        }
+
+        // Starting values from each plate's own fit, as logarithms:
+        double[] logVm = new double[numPlates];
+        double[] logShared = new double[numShared];
+        double[][] ownShared = new double[numShared][numPlates];
+        for (int p = 0; p < numPlates; p++) {
+            Map<String, Double> own = ownFit(plates.get(p), names);
+            logVm[p] = Math.log(positiveOr(own.get("vm"), maxRate(cells.get(p))));
+            for (int j = 0; j < numShared; j++) {
+                ownShared[j][p] = positiveOr(own.get(names.get(j)), Double.NaN);
+            }
+        }
+        for (int j = 0; j < numShared; j++) {
+            logShared[j] = Math.log(positiveOr(median(ownShared[j]), 1.0));
+        }
+
+        // Levenberg-Marquardt on every plate's Vm and then the shared constants:
+        double[] a = new double[numPlates];
+        double[][] b = new double[numPlates][numShared];
+        double[] gradVm = new double[numPlates];
+        double[][] c = new double[numShared][numShared];
+        double[] gradShared = new double[numShared];
+        LevenbergMarquardt.Problem problem = new LevenbergMarquardt.Problem() {
+            /** Step in the logarithm of each plate's Vm. */
+            private final double[] stepVm = new double[numPlates];
+            /** Step in the logarithms of the shared constants. */
+            private final double[] stepShared = new double[numShared];
+
+            @Override
+            public double normalEquations(double[] params) {
+                return GlobalFit.normalEquations(model, cells, Arrays.copyOf(params, numPlates),
+                        Arrays.copyOfRange(params, numPlates, params.length), a, b, gradVm, c, gradShared);
+            }
+
+            @Override
+            public double residualSumSquares(double[] params) {
+                return GlobalFit.residualSumSquares(model, cells, Arrays.copyOf(params, numPlates),
+                        Arrays.copyOfRange(params, numPlates, params.length));
+            }
+
+            @Override
+            public boolean solve(double damping, double[] step) {
+                solveArrowhead(a, b, gradVm, c, gradShared, damping, stepVm, stepShared);
+                System.arraycopy(stepVm, 0, step, 0, numPlates);
+                System.arraycopy(stepShared, 0, step, numPlates, numShared);
+                return true;
+            }
+        };
+        double[] params = new double[numPlates + numShared];
+        System.arraycopy(logVm, 0, params, 0, numPlates);
+        System.arraycopy(logShared, 0, params, numPlates, numShared);
+        LevenbergMarquardt.Result fitted = LevenbergMarquardt.minimise(problem, params, LevenbergMarquardt.MAX_ITERATIONS);
+        double ssr = fitted.getResidualSumSquares();
+        int iterations = fitted.getIterations();
+        logVm = Arrays.copyOf(params, numPlates);
+        logShared = Arrays.copyOfRange(params, numPlates, params.length);
+
+        // Standard errors from the undamped normal equations, using the Schur complement again:
+        int degreesOfFreedom = numCells - numPlates - numShared;
+        double variance = (degreesOfFreedom > 0) ? ssr / degreesOfFreedom : Double.NaN;
+        double weightedErrorSqr = ssr / numCells;
+        double fractionalRms = (degreesOfFreedom > 0)
+                ? Math.sqrt(fractionalSumSquares(model, cells, logVm, logShared) / degreesOfFreedom) : Double.NaN;
+        double[][] schurInverse = invert(schurComplement(a, b, c, 0.0));
+        double[] vm = new double[numPlates];
+        double[] vmError = new double[numPlates];
+        double[] shared = new double[numShared];
+        double[] sharedError = new double[numShared];
+        for (int j = 0; j < numShared; j++) {
+            shared[j] = Math.exp(logShared[j]);
+            sharedError[j] = Math.sqrt(variance * schurInverse[j][j]);
+        }
+        for (int p = 0; p < numPlates; p++) {
+            vm[p] = Math.exp(logVm[p]);
+            double[] ba = new double[numShared];
+            for (int j = 0; j < numShared; j++) ba[j] = b[p][j] / a[p];
+            double coupling = 0;
+            for (int j = 0; j < numShared; j++) {
+                for (int k = 0; k < numShared; k++) coupling += ba[j] * schurInverse[j][k] * ba[k];
+            }
+            vmError[p] = Math.sqrt(variance * (1.0 / a[p] + coupling));
+        }
+
+        // Output to each plate:
+        for (int p = 0; p < numPlates; p++) {
+            Map<String, Double> textData = new HashMap<>();
+            textData.put("vm", vm[p]);
+            textData.put("sevm", vmError[p]);
+            textData.put("wes", weightedErrorSqr);
+            textData.put("chis", fractionalRms);
+            for (int j = 0; j < numShared; j++) {
+                textData.put(names.get(j), shared[j]);
+                textData.put("se" + names.get(j), sharedError[j]);
+            }
+            Calculations.applyFit(plates.get(p), reciprocalParameters(model, vm[p], shared), textData);
+        }
+        return new Result(names, shared, sharedError, vm, vmError, ssr, degreesOfFreedom, iterations);
+    }
+
+    /**
+     * Calculates a rate from the model in its direct form, and its derivatives.
+     *
+     * @param dual workspace to differentiate in, with a variable for each shared constant
+     * @param model kinetic model
+     * @param vm Vm
+     * @param k shared constants, in the order of sharedNames
+     * @param s substrate concentration
+     * @param c co-substrate or inhibitor concentration
+     * @param dk filled with the derivatives of the rate with respect to the logarithm of each shared constant
+     * @return the rate
+     */
+    static double rate(Dual dual, KineticModel model, double vm, double[] k, double s, double c, double[] dk) {
+        dual.clear();
+        for (int j = 0; j < k.length; j++) dual.variable(k[j], j);
+        int v = rate(dual, model, dual.constant(vm), 0, s, c);
+        for (int j = 0; j < k.length; j++) {
+            dk[j] = dual.derivative(v, j) * k[j]; // chain rule through the logarithm
+        }
+        return dual.value(v);
+    }
+
+    /**
+     * Calculates a rate from the model in its direct form on dual numbers, so its derivatives by whichever of Vm and
+     * the shared constants are variables come with it.
+     *
+     * @param dual workspace to calculate in
+     * @param model kinetic model
+     * @param vm register holding Vm
+     * @param k register holding the first shared constant, with the others in the registers after it in the order
+     * of sharedNames
+     * @param s substrate concentration
+     * @param c co-substrate or inhibitor concentration
+     * @return register holding the rate
+     */
+    public static int rate(Dual dual, KineticModel model, int vm, int k, double s, double c) {
+        int numerator;
+        int denominator;
+        switch (model) {
+            case UninhibitedOneSub: // Vm.S/(Km + S)
+                numerator = dual.multiply(vm, s);
+                denominator = dual.add(k, s);
+                break;
+            case UninhibitedTwoSubOrderedBiBi: // Vm.S.B/(S.B + Ka.B + Kb.S + Kia.Kb)
+                numerator = dual.multiply(vm, s * c);
+                denominator = dual.add(dual.add(dual.add(dual.multiply(k, c), dual.multiply(k + 1, s)),
+                        dual.multiply(k + 2, k + 1)), s * c);
+                break;
+            case UninhibitedTwoSubPingPong: // Vm.S.B/(S.B + Ka.B + Kb.S)
+                numerator = dual.multiply(vm, s * c);
+                denominator = dual.add(dual.add(dual.multiply(k, c), dual.multiply(k + 1, s)), s * c);
+                break;
+            case InhibitedCompetitive: // Vm.S/(Km(1 + I/Kis) + S)
+                numerator = dual.multiply(vm, s);
+                denominator = dual.add(dual.multiply(k, dual.add(dual.divide(c, k + 1), 1.0)), s);
+                break;
+            case InhibitedNonCompetitive: // Vm.S/(Km(1 + I/Kis) + S(1 + I/Kii))
+                numerator = dual.multiply(vm, s);
+                denominator = dual.add(dual.multiply(k, dual.add(dual.divide(c, k + 1), 1.0)),
+                        dual.multiply(dual.add(dual.divide(c, k + 2), 1.0), s));
+                break;
+            case InhibitedUnCompetitive: // Vm.S/(Km + S(1 + I/Kii))
+                numerator = dual.multiply(vm, s);
+                denominator = dual.add(k, dual.multiply(dual.add(dual.divide(c, k + 1), 1.0), s));
+                break;
+            default:
+                throw new IllegalArgumentException("Unrecognised model type: " + model);
+        }
+        return dual.divide(numerator, denominator);
+    }
+
+    /**
+     * Converts Vm and the shared constants back to the parameters of the model's reciprocal rate equation, as used
+     * by Calculations.reciprocalRate.
+     *
+     * @param model kinetic model
+     * @param vm Vm
+     * @param k shared constants, in the order of sharedNames
+     * @return parameters of the reciprocal rate equation
+     */
+    static double[] reciprocalParameters(KineticModel model, double vm, double[] k) {
+        switch (model) {
+            case UninhibitedOneSub:
+                return new double[]{1.0 / vm, k[0] / vm};
+            case UninhibitedTwoSubOrderedBiBi:
+                return new double[]{1.0 / vm, k[0] / vm, k[1] / vm, k[2] * k[1] / vm};
+            case UninhibitedTwoSubPingPong:
+                return new double[]{1.0 / vm, k[0] / vm, k[1] / vm};
+            case InhibitedCompetitive:
+                return new double[]{1.0 / vm, k[0] / vm, k[0] / (vm * k[1])};
+            case InhibitedNonCompetitive:
+                return new double[]{1.0 / vm, k[0] / vm, 1.0 / (vm * k[2]), k[0] / (vm * k[1])};
+            case InhibitedUnCompetitive:
+                return new double[]{1.0 / vm, k[0] / vm, 1.0 / (vm * k[1])};
+            default:
+                throw new IllegalArgumentException("Unrecognised model type: " + model);
+        }
+    }
+
+    /**
+     * Builds the (undamped) normal equations of the fit around the given parameters.
+     *
+     * @param model kinetic model
+     * @param cells usable cells of each plate
+     * @param logVm logarithm of each plate's Vm
+     * @param logShared logarithms of the shared constants
+     * @param a filled with each plate's Vm diagonal entry
+     * @param b filled with the coupling between each plate's Vm and the shared constants
+     * @param gradVm filled with the gradient for each plate's Vm
+     * @param c filled with the shared constants' block
+     * @param gradShared filled with the gradient for the shared constants
+     * @return the residual sum of squares
+     */
+    private static double normalEquations(KineticModel model, List<double[][]> cells, double[] logVm, double[] logShared,
+                                          double[] a, double[][] b, double[] gradVm, double[][] c, double[] gradShared) {
+        int numShared = logShared.length;
+        double[] k = exp(logShared);
+        double[] dk = new double[numShared];
+        Dual dual = new Dual(numShared, RATE_REGISTERS);
+        for (double[] row : c) Arrays.fill(row, 0.0);
+        Arrays.fill(gradShared, 0.0);
+        double ssr = 0;
+        for (int p = 0; p < cells.size(); p++) {
+            double vm = Math.exp(logVm[p]);
+            a[p] = 0;
+            gradVm[p] = 0;
+            Arrays.fill(b[p], 0.0);
+            for (double[] cell : cells.get(p)) {
+                double v = rate(dual, model, vm, k, cell[0], cell[1], dk);
+                double residual = v - cell[2];
+                ssr += residual * residual;
+                a[p] += v * v; // the rate's derivative with respect to log(Vm) is the rate itself
+                gradVm[p] += v * residual;
+                for (int j = 0; j < numShared; j++) {
+                    b[p][j] += v * dk[j];
+                    gradShared[j] += dk[j] * residual;
+                    for (int l = 0; l <= j; l++) c[j][l] += dk[j] * dk[l];
+                }
+            }
+        }
+        for (int j = 0; j < numShared; j++) {
+            for (int l = j + 1; l < numShared; l++) c[j][l] = c[l][j];
+        }
+        return ssr;
+    }
+
+    /**
+     * Calculates the residual sum of squares for the given parameters.
+     *
+     * @param model kinetic model
+     * @param cells usable cells of each plate
+     * @param logVm logarithm of each plate's Vm
+     * @param logShared logarithms of the shared constants
+     * @return the residual sum of squares, or infinity if a rate can't be calculated
+     */
+    private static double residualSumSquares(KineticModel model, List<double[][]> cells, double[] logVm, double[] logShared) {
+        double[] k = exp(logShared);
+        double[] dk = new double[k.length];
+        Dual dual = new Dual(k.length, RATE_REGISTERS);
+        double ssr = 0;
+        for (int p = 0; p < cells.size(); p++) {
+            double vm = Math.exp(logVm[p]);
+            for (double[] cell : cells.get(p)) {
+                double residual = rate(dual, model, vm, k, cell[0], cell[1], dk) - cell[2];
+                ssr += residual * residual;
+            }
+        }
+        return Double.isFinite(ssr) ? ssr : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Calculates the sum of squares of the fractional residuals for the given parameters, as Calculations does for
+     * its RMS fractional residual: (fitted rate / rate - 1)^2.
+     *
+     * @param model kinetic model
+     * @param cells usable cells of each plate
+     * @param logVm logarithm of each plate's Vm
+     * @param logShared logarithms of the shared constants
+     * @return the sum of squares of the fractional residuals
+     */
+    private static double fractionalSumSquares(KineticModel model, List<double[][]> cells, double[] logVm, double[] logShared) {
+        double[] k = exp(logShared);
+        double[] dk = new double[k.length];
+        Dual dual = new Dual(k.length, RATE_REGISTERS);
+        double sum = 0;
+        for (int p = 0; p < cells.size(); p++) {
+            double vm = Math.exp(logVm[p]);
+            for (double[] cell : cells.get(p)) {
+                double residual = rate(dual, model, vm, k, cell[0], cell[1], dk) / cell[2] - 1.0;
+                sum += residual * residual;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Solves the damped normal equations for a step, by eliminating the Vms first.
+     *
+     * @param a each plate's Vm diagonal entry
+     * @param b coupling between each plate's Vm and the shared constants
+     * @param gradVm gradient for each plate's Vm
+     * @param c shared constants' block
+     * @param gradShared gradient for the shared constants
+     * @param damping Levenberg-Marquardt damping
+     * @param stepVm filled with the step for each plate's log(Vm)
+     * @param stepShared filled with the step for the shared constants' logarithms
+     */
+    private static void solveArrowhead(double[] a, double[][] b, double[] gradVm, double[][] c, double[] gradShared,
+                                       double damping, double[] stepVm, double[] stepShared) {
+        int numShared = gradShared.length;
+        double[][] schur = schurComplement(a, b, c, damping);
+        double[] rhs = new double[numShared];
+        for (int j = 0; j < numShared; j++) rhs[j] = -gradShared[j];
+        for (int p = 0; p < a.length; p++) {
+            double ap = a[p] * (1.0 + damping);
+            for (int j = 0; j < numShared; j++) rhs[j] += b[p][j] * gradVm[p] / ap;
+        }
+        double[] solution = solve(schur, rhs);
+        System.arraycopy(solution, 0, stepShared, 0, numShared);
+        for (int p = 0; p < a.length; p++) {
+            double ap = a[p] * (1.0 + damping);
+            double coupled = gradVm[p];
+            for (int j = 0; j < numShared; j++) coupled += b[p][j] * stepShared[j];
+            stepVm[p] = -coupled / ap;
+        }
+    }
+
+    /**
+     * Calculates the Schur complement of the Vm block: C - sum over plates of b.b^T/a, with damping added to the
+     * diagonals of both blocks.
+     *
+     * @param a each plate's Vm diagonal entry
+     * @param b coupling between each plate's Vm and the shared constants
+     * @param c shared constants' block
+     * @param damping Levenberg-Marquardt damping
+     * @return the Schur complement
+     */
+    private static double[][] schurComplement(double[] a, double[][] b, double[][] c, double damping) {
+        int numShared = c.length;
+        double[][] schur = new double[numShared][numShared];
+        for (int j = 0; j < numShared; j++) {
+            for (int l = 0; l < numShared; l++) schur[j][l] = c[j][l];
+            schur[j][j] *= (1.0 + damping);
+        }
+        for (int p = 0; p < a.length; p++) {
+            double ap = a[p] * (1.0 + damping);
+            for (int j = 0; j < numShared; j++) {
+                for (int l = 0; l < numShared; l++) schur[j][l] -= b[p][j] * b[p][l] / ap;
+            }
+        }
+        return schur;
+    }
+
+    /**
+     * Solves a small dense system by Gaussian elimination with partial pivoting.
+     *
+     * @param matrix square matrix (not changed)
+     * @param rhs right hand side (not changed)
+     * @return the solution
+     * @throws IllegalArgumentException if the matrix is singular
+     */
+    private static double[] solve(double[][] matrix, double[] rhs) {
+        int n = rhs.length;
+        double[][] m = new double[n][];
+        for (int i = 0; i < n; i++) m[i] = Arrays.copyOf(matrix[i], n);
+        double[] x = rhs.clone();
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            for (int row = col + 1; row < n; row++) {
+                if (Math.abs(m[row][col]) > Math.abs(m[pivot][col])) pivot = row;
+            }
+            if (m[pivot][col] == 0 || !Double.isFinite(m[pivot][col])) {
+                throw new IllegalArgumentException("The shared constants can't be determined from these plates.");
+            }
+            double[] swapRow = m[col]; m[col] = m[pivot]; m[pivot] = swapRow;
+            double swap = x[col]; x[col] = x[pivot]; x[pivot] = swap;
+            for (int row = col + 1; row < n; row++) {
+                double factor = m[row][col] / m[col][col];
+                for (int k = col; k < n; k++) m[row][k] -= factor * m[col][k];
+                x[row] -= factor * x[col];
+            }
+        }
+        for (int row = n - 1; row >= 0; row--) {
+            for (int k = row + 1; k < n; k++) x[row] -= m[row][k] * x[k];
+            x[row] /= m[row][row];
+        }
+        return x;
+    }
+
+    /**
+     * Inverts a small dense matrix.
+     *
+     * @param matrix square matrix
+     * @return its inverse
+     */
+    private static double[][] invert(double[][] matrix) {
+        int n = matrix.length;
+        double[][] inverse = new double[n][];
+        for (int j = 0; j < n; j++) {
+            double[] unit = new double[n];
+            unit[j] = 1.0;
+            inverse[j] = solve(matrix, unit); // column j, but the matrix is symmetric
+        }
+        return inverse;
+    }
+
+    /**
+     * Gets a plate's own fit for starting values, fitting it on its own if it doesn't have Vm and the shared
+     * constants yet (e.g. a batch has already fitted it).
+     *
+     * @param plate Data object
+     * @param names names of the shared constants
+     * @return the fitted values, or none if the fit failed
+     */
+    private static Map<String, Double> ownFit(Data plate, List<String> names) {
+        Map<String, Double> fitted = plate.getTextData();
+        if (fitted.get("vm") != null && fitted.keySet().containsAll(names)) return fitted;
+        try {
+            Calculations.fit(plate);
+            return plate.getTextData();
+        } catch (RuntimeException e) {
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * Gets the cells of a plate that have a rate and concentrations.
+     *
+     * @param plate Data object
+     * @return usable cells as {substrate, co-substrate/inhibitor, rate}
+     */
+    private static double[][] usableCells(Data plate) {
+        List<double[]> cells = new ArrayList<>();
+        double[][] table = plate.getTableData();
+        for (int row = 0; row < plate.getRows(); row++) {
+            double s = plate.getSubstrateCol().get(row);
+            for (int col = 0; col < plate.getCols(); col++) {
+                double c = (plate.getModelType() == KineticModel.UninhibitedOneSub) ? 0.0 : plate.getCoSubInhibRow().get(col);
+                double v = table[row][col];
+                if (Double.isFinite(s) && Double.isFinite(c) && Double.isFinite(v) && s > 0 && v != 0) {
+                    cells.add(new double[]{s, c, v});
+                }
+            }
+        }
+        return cells.toArray(new double[0][]);
+    }
+
+    /**
+     * @param cells usable cells of a plate
+     * @return the largest rate
+     */
+    private static double maxRate(double[][] cells) {
+        double max = 0;
+        for (double[] cell : cells) max = Math.max(max, cell[2]);
+        return max;
+    }
+
+    /**
+     * @param values values, possibly NaN
+     * @return median of the finite values, or NaN if there are none
+     */
+    private static double median(double[] values) {
+        double[] finite = Arrays.stream(values).filter(Double::isFinite).sorted().toArray();
+        if (finite.length == 0) return Double.NaN;
+        return (finite[(finite.length - 1) / 2] + finite[finite.length / 2]) / 2.0;
+    }
+
+    /**
+     * @param value value, possibly null or not positive
+     * @param fallback value to use instead
+     * @return value if it is positive and finite, otherwise fallback
+     */
+    private static double positiveOr(Double value, double fallback) {
+        return (value != null && value > 0 && Double.isFinite(value)) ? value : fallback;
+    }
+
+    /**
+     * @param values logarithms
+     * @return exponentials
+     */
+    private static double[] exp(double[] values) {
+        double[] exp = new double[values.length];
+        for (int i = 0; i < values.length; i++) exp[i] = Math.exp(values[i]);
+        return exp;
+    }
+}
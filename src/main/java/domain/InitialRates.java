@@ -0,0 +1,361 @@
+package domain;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * InitialRates is an abstract class with static methods for estimating initial rates from progress curves, and
+ * putting them into the rate table of a Data object.
+ * The linear range of a curve is found automatically: quadratics are fitted to ever longer windows from the first
+ * reading, and a window is linear while its curvature changes the slope by less than a tolerance across it (or is
+ * too small to tell from the noise). The sums the fits need are kept as the window grows, so finding the window takes
+ * one pass over the readings. The wells of a plate are estimated in parallel.
+ */
+public abstract class InitialRates {
+
+    /** The default tolerance: the slope may change by 10% across a linear window. */
+    public static final double DEFAULT_TOLERANCE = 0.1;
+    /** The fewest readings a rate is estimated from. */
+    private static final int MIN_POINTS = 5;
+    /**
+     * How many times more the slope may change across a polynomial or integrated window than a linear one, since
+     * those methods fit the curvature rather than averaging it into the rate.
+     */
+    private static final double CURVED_TOLERANCE = 5;
+    /** How much longer each window checked is than the last, as a fraction of its length. */
+    private static final double WINDOW_GROWTH = 1.0 / 32;
+    /** The number of rate constants tried before refining the best one, for the integrated method. */
+    private static final int RATE_CONSTANTS = 17;
+    /** The largest rate constant tried, per length of the curve. */
+    private static final double MAX_RATE_CONSTANT = 100;
+    /** The number of golden section steps refining the rate constant. */
+    private static final int REFINE_STEPS = 25;
+    /** An estimate for a curve with too few readings. */
+    private static final Estimate NO_ESTIMATE = new Estimate(Double.NaN, Double.NaN, 0);
+
+    /**
+     * The initial rate of one progress curve.
+     */
+    public static class Estimate {
+        /** The initial rate, in signal per unit time. */
+        private final double rate;
+        /** The standard error of the rate. */
+        private final double error;
+        /** The number of readings the rate was estimated from. */
+        private final int points;
+
+        /**
+         * @param rate initial rate
+         * @param error standard error of the rate
+         * @param points number of readings used
+         */
+        Estimate(double rate, double error, int points) {
+            this.rate = rate;
+            this.error = error;
+            this.points = points;
+        }
+
+        /**
+         * @return the initial rate, in signal per unit time (negative if the signal falls), or Double.NaN if the
+         * curve has too few readings
+         */
+        public double getRate() {
+            return rate;
+        }
+
+        /**
+         * @return the standard error of the rate
+         */
+        public double getError() {
+            return error;
+        }
+
+        /**
+         * @return the number of readings the rate was estimated from, from the first
+         */
+        public int getPoints() {
+            return points;
+        }
+    }
+
+    /**
+     * Estimates the initial rate of one progress curve. Readings without a value (not a number) are skipped.
+     *
+     * @param time time of each reading, in increasing order
+     * @param signal signal at each reading
+     * @param count number of readings
+     * @param method how to estimate the rate
+     * @param tolerance largest fractional change of the slope across a linear window
+     * @return the estimate
+     */
+    public static Estimate estimate(double[] time, double[] signal, int count, RateMethod method, double tolerance) {
+        // Keep the readings with values, relative to the first one and with time scaled from 0 to 1:
+        double[] u = new double[count];
+        double[] y = new double[count];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (Double.isFinite(time[i]) && Double.isFinite(signal[i])) {
+                u[n] = time[i];
+                y[n] = signal[i];
+                n++;
+            }
+        }
+        if (n < MIN_POINTS) return NO_ESTIMATE;
+        double start = u[0];
+        double span = u[n - 1] - start;
+        if (!(span > 0)) return NO_ESTIMATE;
+        double first = y[0];
+        for (int i = 0; i < n; i++) {
+            u[i] = (u[i] - start) / span;
+            y[i] -= first;
+        }
+
+        switch (method) {
+            case Linear: {
+                int m = window(u, y, n, tolerance);
+                double[] line = line(u, y, m);
+                return new Estimate(line[0] / span, line[1] / span, m);
+            }
+            case Polynomial: {
+                int m = window(u, y, n, tolerance * CURVED_TOLERANCE);
+                double[] sums = new double[9];
+                for (int i = 0; i < m; i++) addReading(sums, u[i], y[i]);
+                double[] x = new double[3];
+                double[][] inverse = new double[3][3];
+                double variance = quadratic(sums, x, inverse);
+                return new Estimate(x[1] / span, Math.sqrt(variance * inverse[1][1]) / span, m);
+            }
+            case Integrated: {
+                int m = window(u, y, n, tolerance * CURVED_TOLERANCE);
+                double[] fit = integrated(u, y, m);
+                return new Estimate(fit[0] / span, fit[1] / span, m);
+            }
+            default:
+                throw new IllegalArgumentException("Unrecognised rate method: " + method);
+        }
+    }
+
+    /**
+     * Estimates the initial rate of every well, in parallel.
+     *
+     * @param curves progress curves of the wells
+     * @param method how to estimate the rates
+     * @param tolerance largest fractional change of the slope across a linear window
+     * @param threads number of threads to estimate with
+     * @return the estimate of each well, by well name in the same order as the curves
+     */
+    public static Map<String, Estimate> estimateAll(ProgressCurves curves, RateMethod method, double tolerance, int threads) {
+        List<String> wells = curves.getWells();
+        Estimate[] estimates = new Estimate[wells.size()];
+        Parallel.run(estimates.length, threads, "Rate estimation", (chunk, chunks) -> {
+            for (int well = chunk; well < estimates.length; well += chunks) {
+                estimates[well] = estimate(curves.getTime(), curves.getSignal(well), curves.getCount(), method, tolerance);
+            }
+        });
+
+        Map<String, Estimate> byWell = new LinkedHashMap<>();
+        for (int well = 0; well < estimates.length; well++) {
+            byWell.put(wells.get(well), estimates[well]);
+        }
+        return byWell;
+    }
+
+    /**
+     * Puts initial rates into the rate table of a Data object, which already has its rows and columns.
+     * Rates are converted from signal to concentration per unit time, and made positive so that falling signals
+     * (e.g. NADH being used up) give positive rates too.
+     *
+     * @param data Data object to put the rates in
+     * @param estimates estimate of each well, by well name
+     * @param wells name of the well of each cell, rows by columns; null for a cell without a well
+     * @param signalPerConcentration change of signal per unit change of concentration, e.g. the extinction
+     * coefficient times the path length for absorbance
+     * @throws IllegalArgumentException if the wells aren't the size of the table, or a well has no estimate
+     */
+    public static void fill(Data data, Map<String, Estimate> estimates, String[][] wells, double signalPerConcentration) {
+        int rows = data.getRows();
+        int cols = data.getCols();
+        if (wells.length != rows) throw new IllegalArgumentException("Expected wells for " + rows + " rows but got " + wells.length);
+        double[][] tableData = new double[rows][cols];
+        for (int row = 0; row < rows; row++) {
+            if (wells[row].length != cols) throw new IllegalArgumentException("Expected wells for " + cols + " columns but got " + wells[row].length);
+            for (int col = 0; col < cols; col++) {
+                String well = wells[row][col];
+                if (well == null) {
+                    tableData[row][col] = Double.NaN;
+                    continue;
+                }
+                Estimate estimate = estimates.get(well);
+                if (estimate == null) throw new IllegalArgumentException("No progress curve for well " + well);
+                tableData[row][col] = Math.abs(estimate.getRate()) / signalPerConcentration;
+            }
+        }
+        data.setTableData(tableData);
+    }
+
+    /**
+     * Finds the longest window from the first reading whose slope changes by less than the tolerance across it,
+     * or whose curvature can't be told from the noise. Windows are checked at lengths growing by about 3% each time.
+     *
+     * @param u scaled time of each reading
+     * @param y signal of each reading
+     * @param n number of readings
+     * @param tolerance largest fractional change of the slope across the window
+     * @return number of readings in the window, at least MIN_POINTS
+     */
+    private static int window(double[] u, double[] y, int n, double tolerance) {
+        double[] sums = new double[9];
+        double[] x = new double[3];
+        double[][] inverse = new double[3][3];
+        int longest = MIN_POINTS;
+        int next = MIN_POINTS;
+        for (int i = 0; i < n; i++) {
+            addReading(sums, u[i], y[i]);
+            int m = i + 1;
+            if (m < next && m < n) continue;
+            next = m + Math.max(1, (int) (m * WINDOW_GROWTH));
+
+            double variance = quadratic(sums, x, inverse);
+            if (Double.isNaN(variance)) continue;
+            double slopeChange = Math.abs(2 * x[2] * u[i] / x[1]);
+            boolean curvatureUnseen = Math.abs(x[2]) <= 2 * Math.sqrt(variance * inverse[2][2]);
+            if (slopeChange <= tolerance || curvatureUnseen) longest = m;
+        }
+        return longest;
+    }
+
+    /**
+     * Adds a reading to the sums a quadratic fit needs: the number of readings, sums of u to u^4, of y, u y and
+     * u^2 y, and of y^2.
+     *
+     * @param sums the sums
+     * @param u scaled time of the reading
+     * @param y signal of the reading
+     */
+    private static void addReading(double[] sums, double u, double y) {
+        double u2 = u * u;
+        sums[0] += 1;
+        sums[1] += u;
+        sums[2] += u2;
+        sums[3] += u2 * u;
+        sums[4] += u2 * u2;
+        sums[5] += y;
+        sums[6] += u * y;
+        sums[7] += u2 * y;
+        sums[8] += y * y;
+    }
+
+    /**
+     * Fits y = x0 + x1 u + x2 u^2 from its sums.
+     *
+     * @param sums the sums (see addReading)
+     * @param x array to put the coefficients in
+     * @param inverse array to put the inverse normal matrix in
+     * @return residual variance, or Double.NaN if the coefficients can't be found
+     */
+    private static double quadratic(double[] sums, double[] x, double[][] inverse) {
+        double[][] a = {
+                {sums[0], sums[1], sums[2], sums[5]},
+                {sums[1], sums[2], sums[3], sums[6]},
+                {sums[2], sums[3], sums[4], sums[7]}};
+        if (!(LinearSolver.cholesky(a, 3, x, inverse) <= LinearSolver.CONDITION_LIMIT)) return Double.NaN;
+        double residual = sums[8] - x[0] * sums[5] - x[1] * sums[6] - x[2] * sums[7];
+        return Math.max(0, residual) / (sums[0] - 3);
+    }
+
+    /**
+     * Fits a straight line y = a + b x to the first m readings.
+     *
+     * @param x x of each reading
+     * @param y y of each reading
+     * @param m number of readings
+     * @return the slope b, its standard error and the residual sum of squares
+     */
+    private static double[] line(double[] x, double[] y, int m) {
+        double sx = 0, sxx = 0, sy = 0, sxy = 0, syy = 0;
+        for (int i = 0; i < m; i++) {
+            sx += x[i];
+            sxx += x[i] * x[i];
+            sy += y[i];
+            sxy += x[i] * y[i];
+            syy += y[i] * y[i];
+        }
+        double det = m * sxx - sx * sx;
+        if (!(det > 0)) return new double[]{Double.NaN, Double.NaN, Double.NaN};
+        double slope = (m * sxy - sx * sy) / det;
+        double intercept = (sy - slope * sx) / m;
+        double residual = Math.max(0, syy - intercept * sy - slope * sxy);
+        return new double[]{slope, Math.sqrt(residual / (m - 2) * m / det), residual};
+    }
+
+    /**
+     * Fits y = a + v (1 - e^-ku) / k to the first n readings, trying rate constants k from 0 to MAX_RATE_CONSTANT
+     * and then refining the best by golden section search. For each k the fit is a straight line.
+     *
+     * @param u scaled time of each reading
+     * @param y signal of each reading
+     * @param n number of readings
+     * @return the initial rate v and its standard error (treating k as known)
+     */
+    private static double[] integrated(double[] u, double[] y, int n) {
+        double[] g = new double[n];
+        double[] rateConstants = new double[RATE_CONSTANTS];
+        double bestRateConstant = 0;
+        double bestResidual = exponential(u, y, n, 0, g)[2];
+        int best = -1;
+        for (int j = 0; j < RATE_CONSTANTS; j++) {
+            rateConstants[j] = MAX_RATE_CONSTANT * Math.pow(10, -4.0 * (RATE_CONSTANTS - 1 - j) / (RATE_CONSTANTS - 1));
+            double residual = exponential(u, y, n, rateConstants[j], g)[2];
+            if (residual < bestResidual) {
+                bestResidual = residual;
+                bestRateConstant = rateConstants[j];
+                best = j;
+            }
+        }
+
+        // Refine between the neighbouring rate constants:
+        double golden = (Math.sqrt(5) - 1) / 2;
+        double low = (best <= 0) ? 0 : rateConstants[best - 1];
+        double high = rateConstants[Math.min(best + 1, RATE_CONSTANTS - 1)];
+        double c = high - golden * (high - low);
+        double d = low + golden * (high - low);
+        double fc = exponential(u, y, n, c, g)[2];
+        double fd = exponential(u, y, n, d, g)[2];
+        for (int step = 0; step < REFINE_STEPS; step++) {
+            if (fc < fd) {
+                high = d;
+                d = c;
+                fd = fc;
+                c = high - golden * (high - low);
+                fc = exponential(u, y, n, c, g)[2];
+            }
+            else {
+                low = c;
+                c = d;
+                fc = fd;
+                d = low + golden * (high - low);
+                fd = exponential(u, y, n, d, g)[2];
+            }
+        }
+        if (Math.min(fc, fd) < bestResidual) bestRateConstant = (fc < fd) ? c : d;
+        return exponential(u, y, n, bestRateConstant, g);
+    }
+
+    /**
+     * Fits y = a + v (1 - e^-ku) / k for one rate constant k.
+     *
+     * @param u scaled time of each reading
+     * @param y signal of each reading
+     * @param n number of readings
+     * @param rateConstant the rate constant k
+     * @param g array to put (1 - e^-ku) / k in
+     * @return the initial rate v, its standard error and the residual sum of squares
+     */
+    private static double[] exponential(double[] u, double[] y, int n, double rateConstant, double[] g) {
+        for (int i = 0; i < n; i++) {
+            g[i] = (rateConstant == 0) ? u[i] : -Math.expm1(-rateConstant * u[i]) / rateConstant;
+        }
+        return line(g, y, n);
+    }
+}
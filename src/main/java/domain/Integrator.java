@@ -0,0 +1,24 @@
+package domain;
+
+/**
+ * This enum represents the ways a mechanism's time course can be
+ * integrated; see MechanismSimulator.
+ * Both adapt their step size to keep the estimated error of each step
+ * within the tolerance.
+ */
+public enum Integrator {
+	/**
+	 * The explicit Dormand-Prince Runge-Kutta 5(4) method, which is
+	 * accurate and cheap per step, but whose steps are limited to the
+	 * time scale of the fastest step of the mechanism (e.g. enzyme
+	 * binding), however slowly the concentrations change
+	 */
+	RungeKutta45,
+	/**
+	 * The linearly implicit Rosenbrock 2(3) method of Shampine's ode23s,
+	 * which solves a linear system with the Jacobian each step, so it can
+	 * take steps on the time scale of the reaction itself when binding is
+	 * much faster (a stiff mechanism)
+	 */
+	Rosenbrock
+}
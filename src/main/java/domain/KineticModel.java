@@ -62,6 +62,58 @@ public enum KineticModel {
 	public int getValue() {
 		return this.value;
 	}
+
+	/**
+	 * Gets the number of parameters fitted for this model type
+	 * @return the number of parameters of the reciprocal rate equation
+	 */
+	public int getNumParams() {
+		switch(this) {
+		case UninhibitedOneSub:
+			return 2;
+		case UninhibitedTwoSubOrderedBiBi:
+		case InhibitedNonCompetitive:
+			return 4;
+		case UninhibitedTwoSubPingPong:
+		case InhibitedCompetitive:
+		case InhibitedUnCompetitive:
+			return 3;
+		default:
+			throw new IllegalArgumentException("Unrecognised model type: " + this);
+		}
+	}
+
+	/**
+	 * Gets the model type with the given value in the original program
+	 * @param value - the int the model type has in the original LUCENZ
+	 * @return the model type
+	 */
+	public static KineticModel fromValue(int value) {
+		for(KineticModel model : values()) {
+			if(model.value == value) {
+				return model;
+			}
+		}
+		throw new IllegalArgumentException("Unrecognised kinetic model value: " + value);
+	}
+
+	/**
+	 * Gets the model type from its value in the original program (1-6) or its name, ignoring case
+	 * @param value - the model's value or name, e.g. "5" or "InhibitedNonCompetitive"
+	 * @return the model type
+	 */
+	public static KineticModel parse(String value) {
+		try {
+			return fromValue(Integer.parseInt(value.trim()));
+		} catch (NumberFormatException e) {
+			for(KineticModel model : values()) {
+				if(model.name().equalsIgnoreCase(value.trim())) {
+					return model;
+				}
+			}
+			throw new IllegalArgumentException("Unrecognised model: " + value);
+		}
+	}
 	
 	@Override
 	public String toString() {
@@ -0,0 +1,98 @@
+package domain;
+
+/**
+ * LambertW is an abstract class with static methods for the principal branch of the Lambert W function, the solution
+ * w of w e^w = x. The integrated Michaelis-Menten equation is solved by it (see ProgressCurveFit).
+ * Each value starts from an approximation good to a few percent and is refined by Halley's method, which triples the
+ * number of correct digits each step, so it takes one to three steps to reach full precision.
+ */
+public abstract class LambertW {
+
+    /** The smallest x the principal branch is defined for, -1/e. */
+    public static final double BRANCH_POINT = -1 / Math.E;
+    /** The most Halley steps taken. */
+    private static final int MAX_STEPS = 10;
+    /**
+     * The relative size of a step after which the value is exact to double precision: Halley's method leaves an error
+     * of about the cube of its last step.
+     */
+    private static final double TOLERANCE = 3e-6;
+    /** The z above which W(e^z) is solved in logarithms, since e^z would lose precision or overflow. */
+    private static final double LARGE_EXPONENT = 20;
+
+    /**
+     * Calculates W(x) on the principal branch.
+     *
+     * @param x value, at least -1/e
+     * @return W(x), from -1 up; Double.NaN if x is below -1/e
+     */
+    public static double w0(double x) {
+        if (x == 0) return 0;
+        if (!(x >= BRANCH_POINT)) return Double.NaN;
+        if (x == BRANCH_POINT) return -1;
+        if (x == Double.POSITIVE_INFINITY) return x;
+
+        double w;
+        if (x < -0.32) {
+            // Series about the branch point:
+            double p = Math.sqrt(2 * (Math.E * x + 1));
+            w = -1 + p * (1 + p * (-1.0 / 3 + p * 11.0 / 72));
+        }
+        else if (x < Math.E) {
+            // Winitzki's approximation:
+            double l = Math.log1p(x);
+            w = l * (1 - Math.log1p(l) / (2 + l));
+        }
+        else {
+            // Asymptotic series:
+            double l1 = Math.log(x);
+            double l2 = Math.log(l1);
+            w = l1 - l2 + l2 / l1;
+        }
+
+        for (int step = 0; step < MAX_STEPS; step++) {
+            double ew = Math.exp(w);
+            double f = w * ew - x;
+            double w1 = w + 1;
+            if (w1 == 0) break;
+            double delta = f / (ew * w1 - (w + 2) * f / (2 * w1));
+            w -= delta;
+            if (Math.abs(delta) <= TOLERANCE * (1 + Math.abs(w))) break;
+        }
+        return Math.max(w, -1);
+    }
+
+    /**
+     * Calculates W(e^z) on the principal branch without working out e^z, so z can be as large as needed.
+     * For large z this solves w + ln w = z instead.
+     *
+     * @param z exponent
+     * @return W(e^z)
+     */
+    public static double w0Exp(double z) {
+        if (z < LARGE_EXPONENT) return w0(Math.exp(z));
+        if (z == Double.POSITIVE_INFINITY) return z;
+        double lz = Math.log(z);
+        double w = z - lz + lz / z;
+        for (int step = 0; step < MAX_STEPS; step++) {
+            double f = w + Math.log(w) - z;
+            double df = 1 + 1 / w;
+            double d2f = -1 / (w * w);
+            double delta = f / (df - f * d2f / (2 * df));
+            w -= delta;
+            if (Math.abs(delta) <= TOLERANCE * w) break;
+        }
+        return w;
+    }
+
+    /**
+     * Calculates the derivative of W at x from W(x): W'(x) = W(x) / (x (1 + W(x))).
+     *
+     * @param x value, above -1/e
+     * @param w W(x)
+     * @return W'(x)
+     */
+    public static double derivative(double x, double w) {
+        return (x == 0) ? 1 : w / (x * (1 + w));
+    }
+}
@@ -0,0 +1,116 @@
+package domain;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram counts how long something took, e.g. a request or a fit, without locking.
+ * Durations are counted in buckets that double in width (1 µs, 2 µs, 4 µs, ...), so percentiles are accurate to
+ * within a factor of two while recording stays cheap enough to do for every call from many threads.
+ */
+public class LatencyHistogram {
+
+    /** The number of buckets; the last one holds everything longer than about 18 minutes. */
+    private static final int BUCKETS = 31;
+
+    /** The number of durations recorded in each bucket. */
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    /** The number of durations recorded. */
+    private final LongAdder count = new LongAdder();
+    /** The sum of every duration recorded, in nanoseconds. */
+    private final LongAdder totalNanos = new LongAdder();
+    /** The longest duration recorded, in nanoseconds. */
+    private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+    /**
+     * Creates an empty histogram.
+     */
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos duration in nanoseconds
+     */
+    public void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        long micros = nanos / 1000;
+        int bucket = (micros == 0) ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets[bucket].increment();
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * Records the time since the given start.
+     *
+     * @param startNanos start time from System.nanoTime()
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return number of durations recorded
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return mean duration in milliseconds, or 0 if nothing was recorded
+     */
+    public double getMeanMillis() {
+        long n = count.sum();
+        return (n == 0) ? 0 : totalNanos.sum() / 1e6 / n;
+    }
+
+    /**
+     * @return longest duration in milliseconds
+     */
+    public double getMaxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    /**
+     * Estimates a percentile as the upper edge of the bucket it falls in.
+     *
+     * @param fraction percentile as a fraction, e.g. 0.99
+     * @return duration in milliseconds, or 0 if nothing was recorded
+     */
+    public double getPercentileMillis(double fraction) {
+        long[] counts = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            n += counts[i];
+        }
+        if (n == 0) return 0;
+        long rank = (long) Math.ceil(fraction * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min((1L << i) / 1e3, getMaxMillis());
+        }
+        return getMaxMillis();
+    }
+
+    /**
+     * Writes the histogram's summary as "name_stat value" lines.
+     *
+     * @param name prefix for each line
+     * @return the summary, one statistic per line
+     */
+    public String format(String name) {
+        return String.format(Locale.ROOT, "%s_count %d%n%s_mean_ms %.3f%n%s_p50_ms %.3f%n%s_p90_ms %.3f%n"
+                        + "%s_p99_ms %.3f%n%s_max_ms %.3f%n",
+                name, getCount(), name, getMeanMillis(), name, getPercentileMillis(0.5), name, getPercentileMillis(0.9),
+                name, getPercentileMillis(0.99), name, getMaxMillis());
+    }
+}
@@ -0,0 +1,171 @@
+package domain;
+
+/**
+ * LevenbergMarquardt is an abstract class with a static method for nonlinear least squares by the Levenberg-Marquardt
+ * method, which every direct fit uses: GlobalFit, ProgressCurveFit, CustomModelFit and ConfidenceRegion.
+ *
+ * A Problem builds its normal equations (J^T W J and J^T W r) around the current parameters and solves them with
+ * the diagonal scaled up by 1 + damping. A step that lowers the residual sum of squares is taken and the damping
+ * cut tenfold, moving towards Gauss-Newton; otherwise the damping is raised tenfold, moving towards short steps
+ * down the gradient. The fit stops when a step lowers the sum by a negligible fraction, or no step can lower it.
+ */
+public abstract class LevenbergMarquardt {
+
+    /** The most iterations a fit normally takes. */
+    public static final int MAX_ITERATIONS = 200;
+    /** Relative decrease in the residual sum of squares below which a fit has converged. */
+    private static final double TOLERANCE = 1e-12;
+    /** Damping of the first step. */
+    private static final double START_DAMPING = 1e-3;
+    /** Damping above which no step can improve the fit any more. */
+    private static final double MAX_DAMPING = 1e12;
+
+    /**
+     * A least squares problem.
+     */
+    public interface Problem {
+        /**
+         * Builds the normal equations around the given parameters, keeping them for solve(...).
+         *
+         * @param params parameters
+         * @return the residual sum of squares there, or infinity or NaN if it can't be calculated
+         */
+        double normalEquations(double[] params);
+
+        /**
+         * @param params parameters
+         * @return the residual sum of squares there, or infinity or NaN if it can't be calculated
+         */
+        double residualSumSquares(double[] params);
+
+        /**
+         * Solves the normal equations last built, with their diagonal multiplied by 1 + damping.
+         *
+         * @param damping damping
+         * @param step array to put the step in the parameters in
+         * @return whether they could be solved
+         */
+        boolean solve(double damping, double[] step);
+    }
+
+    /**
+     * A problem whose normal equations are a small dense matrix, solved by Cholesky factorisation.
+     */
+    public abstract static class DenseProblem implements Problem {
+        /**
+         * The normal equations last built: for n parameters, J^T W J in the first n columns of the first n rows
+         * and J^T W r in column n.
+         */
+        protected final double[][] normal;
+        /** Damped normal equations. */
+        private final double[][] damped;
+        /** Inverse of the damped normal equations, which isn't used. */
+        private final double[][] inverse;
+
+        /**
+         * @param maxParams most parameters the problem will have, at most 4
+         */
+        protected DenseProblem(int maxParams) {
+            this.normal = new double[maxParams][maxParams + 1];
+            this.damped = new double[maxParams][maxParams + 1];
+            this.inverse = new double[maxParams][maxParams];
+        }
+
+        @Override
+        public boolean solve(double damping, double[] step) {
+            int n = step.length;
+            for (int j = 0; j < n; j++) {
+                System.arraycopy(normal[j], 0, damped[j], 0, n);
+                damped[j][n] = normal[j][n];
+                damped[j][j] *= 1 + damping;
+            }
+            return LinearSolver.cholesky(damped, n, step, inverse) != Double.POSITIVE_INFINITY;
+        }
+
+        /**
+         * Inverts the undamped normal equations last built, for the covariance of the parameters.
+         *
+         * @param n number of parameters
+         * @param covariance array to put the inverse in
+         * @return its condition number, or infinity if the normal equations are singular
+         */
+        public double invert(int n, double[][] covariance) {
+            return LinearSolver.cholesky(normal, n, new double[n], covariance);
+        }
+    }
+
+    /**
+     * The end of a fit.
+     */
+    public static final class Result {
+        /** Residual sum of squares at the fitted parameters. */
+        private final double residualSumSquares;
+        /** Number of iterations taken. */
+        private final int iterations;
+
+        /**
+         * @param residualSumSquares residual sum of squares at the fitted parameters
+         * @param iterations number of iterations taken
+         */
+        Result(double residualSumSquares, int iterations) {
+            this.residualSumSquares = residualSumSquares;
+            this.iterations = iterations;
+        }
+
+        /**
+         * @return residual sum of squares at the fitted parameters, which isn't finite if it couldn't be calculated
+         * at the starting values
+         */
+        public double getResidualSumSquares() {
+            return residualSumSquares;
+        }
+
+        /**
+         * @return number of iterations taken
+         */
+        public int getIterations() {
+            return iterations;
+        }
+    }
+
+    /**
+     * Fits the parameters of a problem. On return the problem's normal equations are those at the fitted
+     * parameters, so they can be inverted for the standard errors.
+     *
+     * @param problem least squares problem
+     * @param params parameters to start from, replaced with the fitted ones
+     * @param maxIterations most iterations to take
+     * @return the residual sum of squares and the iterations taken; the parameters are left unchanged if the sum
+     * can't be calculated at the starting values
+     */
+    public static Result minimise(Problem problem, double[] params, int maxIterations) {
+        int n = params.length;
+        double ssr = problem.normalEquations(params);
+        if (n == 0 || !Double.isFinite(ssr)) return new Result(ssr, 0);
+
+        double[] step = new double[n];
+        double[] trial = new double[n];
+        double damping = START_DAMPING;
+        int iterations = 0;
+        while (iterations < maxIterations && damping < MAX_DAMPING) {
+            iterations++;
+            if (!problem.solve(damping, step)) {
+                damping *= 10;
+                continue;
+            }
+            for (int j = 0; j < n; j++) trial[j] = params[j] + step[j];
+            double trialSsr = problem.residualSumSquares(trial);
+            if (trialSsr < ssr) {
+                boolean converged = (ssr - trialSsr) <= TOLERANCE * ssr;
+                System.arraycopy(trial, 0, params, 0, n);
+                ssr = problem.normalEquations(params);
+                damping /= 10;
+                if (converged) break;
+            }
+            else {
+                damping *= 10;
+            }
+        }
+        return new Result(ssr, iterations);
+    }
+}
@@ -0,0 +1,346 @@
+package domain;
+
+/**
+ * LinearSolver is an abstract class with static methods for solving the weighted least squares problems of a fit,
+ * and finding the inverse of their normal matrix (the unscaled covariance of the parameters).
+ * Every system is first scaled so its normal matrix has a unit diagonal, which is what the condition numbers are
+ * reported for. The normal equations are solved by Cholesky factorisation, with unrolled kernels for the 2, 3 and 4
+ * parameter models. Cholesky loses twice as many digits as the problem itself is ill-conditioned, so a badly
+ * conditioned system is instead solved by Householder QR of the weighted design matrix, which only loses as many.
+ */
+public abstract class LinearSolver {
+
+    /** The largest condition number the Cholesky solution is trusted for. */
+    public static final double CHOLESKY_CONDITION_LIMIT = 1e8;
+    /** The largest condition number any solution is trusted for; beyond this the parameters are undetermined. */
+    public static final double CONDITION_LIMIT = 1e14;
+    /** The most parameters solved. */
+    private static final int MAX_PARAMS = 4;
+
+    /**
+     * Solves the normal equations A x = b by Cholesky factorisation, and inverts A.
+     *
+     * @param a normal matrix and right hand side: a[i][j] for j below n is A, a[i][n] is b
+     * @param n number of parameters, at most 4
+     * @param x array to put the solution in
+     * @param inverse array to put the inverse of A in
+     * @return condition number (1-norm) of the scaled A, or infinity if A isn't positive definite, in which case x
+     * and inverse are left unchanged
+     */
+    public static double cholesky(double[][] a, int n, double[] x, double[][] inverse) {
+        double[] scale = new double[MAX_PARAMS];
+        for (int i = 0; i < n; i++) {
+            if (!(a[i][i] > 0)) return Double.POSITIVE_INFINITY;
+            scale[i] = 1.0 / Math.sqrt(a[i][i]);
+        }
+
+        // Factorise the scaled matrix, which has a unit diagonal, into L L^T:
+        double[] l = new double[MAX_PARAMS * MAX_PARAMS];
+        boolean positiveDefinite;
+        switch (n) {
+            case 2:
+                positiveDefinite = factor2(a, scale, l);
+                break;
+            case 3:
+                positiveDefinite = factor3(a, scale, l);
+                break;
+            case 4:
+                positiveDefinite = factor4(a, scale, l);
+                break;
+            default:
+                positiveDefinite = factor(a, scale, n, l);
+        }
+        if (!positiveDefinite) return Double.POSITIVE_INFINITY;
+
+        // Solve L y = D b, then L^T z = y; x = D z:
+        double[] z = new double[MAX_PARAMS];
+        for (int i = 0; i < n; i++) {
+            double sum = scale[i] * a[i][n];
+            for (int k = 0; k < i; k++) sum -= l[i * MAX_PARAMS + k] * z[k];
+            z[i] = sum / l[i * MAX_PARAMS + i];
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            double sum = z[i];
+            for (int k = i + 1; k < n; k++) sum -= l[k * MAX_PARAMS + i] * z[k];
+            z[i] = sum / l[i * MAX_PARAMS + i];
+        }
+
+        invertLower(l, n);
+        // (D A D)^-1 = L^-T L^-1:
+        double[] scaledInverse = new double[MAX_PARAMS * MAX_PARAMS];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i; j++) {
+                double sum = 0;
+                for (int k = i; k < n; k++) sum += l[k * MAX_PARAMS + i] * l[k * MAX_PARAMS + j];
+                scaledInverse[i * MAX_PARAMS + j] = sum;
+                scaledInverse[j * MAX_PARAMS + i] = sum;
+            }
+        }
+
+        double condition = scaledNorm(a, scale, n) * norm(scaledInverse, n);
+        unscale(z, scaledInverse, scale, n, x, inverse);
+        return condition;
+    }
+
+    /**
+     * Solves the weighted least squares problem by Householder QR of the weighted design matrix, and inverts the
+     * normal matrix from R.
+     *
+     * @param columns columns of the design matrix, one value per cell, followed by the values being fitted
+     * @param weights weight of each cell
+     * @param cells number of cells
+     * @param n number of parameters, at most 4
+     * @param x array to put the solution in
+     * @param inverse array to put the inverse of the normal matrix in
+     * @return condition number (1-norm) of the scaled normal matrix, or infinity if the columns are linearly
+     * dependent, in which case x and inverse are left unchanged
+     */
+    public static double qr(double[][] columns, double[] weights, int cells, int n, double[] x, double[][] inverse) {
+        // Weight the rows and scale the columns to unit length:
+        double[][] m = new double[n + 1][cells];
+        double[] scale = new double[MAX_PARAMS];
+        for (int j = 0; j <= n; j++) {
+            double sumSquares = 0;
+            for (int cell = 0; cell < cells; cell++) {
+                m[j][cell] = columns[j][cell] * Math.sqrt(weights[cell]);
+                sumSquares += m[j][cell] * m[j][cell];
+            }
+            if (j == n) break;
+            if (!(sumSquares > 0)) return Double.POSITIVE_INFINITY;
+            scale[j] = 1.0 / Math.sqrt(sumSquares);
+            for (int cell = 0; cell < cells; cell++) m[j][cell] *= scale[j];
+        }
+
+        // Reduce each column below the diagonal to zero, applying each reflection to the later columns:
+        double[] r = new double[MAX_PARAMS * MAX_PARAMS];
+        for (int j = 0; j < n; j++) {
+            double[] v = m[j];
+            double length = 0;
+            for (int cell = j; cell < cells; cell++) length += v[cell] * v[cell];
+            length = Math.sqrt(length);
+            if (length <= 1e-7) return Double.POSITIVE_INFINITY; // the column is a combination of the earlier ones
+            double alpha = (v[j] > 0) ? -length : length;
+            double diagonal = v[j];
+            v[j] -= alpha;
+            double vv = length * length - diagonal * diagonal + v[j] * v[j]; // |v|^2 after the change
+            for (int k = j + 1; k <= n; k++) {
+                double[] c = m[k];
+                double dot = 0;
+                for (int cell = j; cell < cells; cell++) dot += v[cell] * c[cell];
+                double f = 2 * dot / vv;
+                for (int cell = j; cell < cells; cell++) c[cell] -= f * v[cell];
+            }
+            r[j * MAX_PARAMS + j] = alpha;
+            for (int k = j + 1; k < n; k++) r[j * MAX_PARAMS + k] = m[k][j];
+        }
+
+        // Solve R z = Q^T y:
+        double[] z = new double[MAX_PARAMS];
+        for (int i = n - 1; i >= 0; i--) {
+            double sum = m[n][i];
+            for (int k = i + 1; k < n; k++) sum -= r[i * MAX_PARAMS + k] * z[k];
+            z[i] = sum / r[i * MAX_PARAMS + i];
+        }
+
+        // R^T R is the scaled normal matrix, so its inverse is R^-1 R^-T. Store R^T to reuse invertLower:
+        double[] rt = new double[MAX_PARAMS * MAX_PARAMS];
+        double[] normal = new double[MAX_PARAMS * MAX_PARAMS];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                rt[j * MAX_PARAMS + i] = r[i * MAX_PARAMS + j];
+                double sum = 0;
+                for (int k = 0; k <= Math.min(i, j); k++) sum += r[k * MAX_PARAMS + i] * r[k * MAX_PARAMS + j];
+                normal[i * MAX_PARAMS + j] = sum;
+            }
+        }
+        invertLower(rt, n);
+        double[] scaledInverse = new double[MAX_PARAMS * MAX_PARAMS];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                double sum = 0;
+                for (int k = Math.max(i, j); k < n; k++) sum += rt[k * MAX_PARAMS + i] * rt[k * MAX_PARAMS + j];
+                scaledInverse[i * MAX_PARAMS + j] = sum;
+            }
+        }
+
+        double condition = norm(normal, n) * norm(scaledInverse, n);
+        unscale(z, scaledInverse, scale, n, x, inverse);
+        return condition;
+    }
+
+    /**
+     * Factorises the scaled 2 by 2 matrix D A D into L L^T.
+     *
+     * @param a matrix
+     * @param d scale of each row and column
+     * @param l array to put L in, 4 values per row
+     * @return false if the matrix isn't positive definite
+     */
+    private static boolean factor2(double[][] a, double[] d, double[] l) {
+        double l10 = a[1][0] * d[1] * d[0];
+        double p1 = 1.0 - l10 * l10;
+        if (!(p1 > 0)) return false;
+        l[0] = 1.0;
+        l[4] = l10;
+        l[5] = Math.sqrt(p1);
+        return true;
+    }
+
+    /**
+     * Factorises the scaled 3 by 3 matrix D A D into L L^T.
+     *
+     * @param a matrix
+     * @param d scale of each row and column
+     * @param l array to put L in, 4 values per row
+     * @return false if the matrix isn't positive definite
+     */
+    private static boolean factor3(double[][] a, double[] d, double[] l) {
+        double l10 = a[1][0] * d[1] * d[0];
+        double l20 = a[2][0] * d[2] * d[0];
+        double p1 = 1.0 - l10 * l10;
+        if (!(p1 > 0)) return false;
+        double l11 = Math.sqrt(p1);
+        double l21 = (a[2][1] * d[2] * d[1] - l20 * l10) / l11;
+        double p2 = 1.0 - l20 * l20 - l21 * l21;
+        if (!(p2 > 0)) return false;
+        l[0] = 1.0;
+        l[4] = l10;
+        l[5] = l11;
+        l[8] = l20;
+        l[9] = l21;
+        l[10] = Math.sqrt(p2);
+        return true;
+    }
+
+    /**
+     * Factorises the scaled 4 by 4 matrix D A D into L L^T.
+     *
+     * @param a matrix
+     * @param d scale of each row and column
+     * @param l array to put L in, 4 values per row
+     * @return false if the matrix isn't positive definite
+     */
+    private static boolean factor4(double[][] a, double[] d, double[] l) {
+        double l10 = a[1][0] * d[1] * d[0];
+        double l20 = a[2][0] * d[2] * d[0];
+        double l30 = a[3][0] * d[3] * d[0];
+        double p1 = 1.0 - l10 * l10;
+        if (!(p1 > 0)) return false;
+        double l11 = Math.sqrt(p1);
+        double l21 = (a[2][1] * d[2] * d[1] - l20 * l10) / l11;
+        double l31 = (a[3][1] * d[3] * d[1] - l30 * l10) / l11;
+        double p2 = 1.0 - l20 * l20 - l21 * l21;
+        if (!(p2 > 0)) return false;
+        double l22 = Math.sqrt(p2);
+        double l32 = (a[3][2] * d[3] * d[2] - l30 * l20 - l31 * l21) / l22;
+        double p3 = 1.0 - l30 * l30 - l31 * l31 - l32 * l32;
+        if (!(p3 > 0)) return false;
+        l[0] = 1.0;
+        l[4] = l10;
+        l[5] = l11;
+        l[8] = l20;
+        l[9] = l21;
+        l[10] = l22;
+        l[12] = l30;
+        l[13] = l31;
+        l[14] = l32;
+        l[15] = Math.sqrt(p3);
+        return true;
+    }
+
+    /**
+     * Factorises the scaled matrix D A D of any size up to 4 into L L^T.
+     *
+     * @param a matrix
+     * @param d scale of each row and column
+     * @param n size of the matrix
+     * @param l array to put L in, 4 values per row
+     * @return false if the matrix isn't positive definite
+     */
+    private static boolean factor(double[][] a, double[] d, int n, double[] l) {
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i; j++) {
+                double sum = a[i][j] * d[i] * d[j];
+                for (int k = 0; k < j; k++) sum -= l[i * MAX_PARAMS + k] * l[j * MAX_PARAMS + k];
+                if (i == j) {
+                    if (!(sum > 0)) return false;
+                    l[i * MAX_PARAMS + i] = Math.sqrt(sum);
+                } else {
+                    l[i * MAX_PARAMS + j] = sum / l[j * MAX_PARAMS + j];
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Inverts a lower triangular matrix in place.
+     *
+     * @param l matrix, 4 values per row
+     * @param n size of the matrix
+     */
+    private static void invertLower(double[] l, int n) {
+        for (int i = 0; i < n; i++) {
+            l[i * MAX_PARAMS + i] = 1.0 / l[i * MAX_PARAMS + i];
+            for (int j = 0; j < i; j++) {
+                double sum = 0;
+                for (int k = j; k < i; k++) sum += l[i * MAX_PARAMS + k] * l[k * MAX_PARAMS + j];
+                l[i * MAX_PARAMS + j] = -sum * l[i * MAX_PARAMS + i];
+            }
+        }
+    }
+
+    /**
+     * Finds the 1-norm (largest absolute column sum) of the scaled matrix D A D.
+     *
+     * @param a matrix
+     * @param d scale of each row and column
+     * @param n size of the matrix
+     * @return the norm
+     */
+    private static double scaledNorm(double[][] a, double[] d, int n) {
+        double max = 0;
+        for (int j = 0; j < n; j++) {
+            double sum = 0;
+            for (int i = 0; i < n; i++) sum += Math.abs(a[i][j] * d[i] * d[j]);
+            max = Math.max(max, sum);
+        }
+        return max;
+    }
+
+    /**
+     * Finds the 1-norm (largest absolute column sum) of a matrix.
+     *
+     * @param a matrix, 4 values per row
+     * @param n size of the matrix
+     * @return the norm
+     */
+    private static double norm(double[] a, int n) {
+        double max = 0;
+        for (int j = 0; j < n; j++) {
+            double sum = 0;
+            for (int i = 0; i < n; i++) sum += Math.abs(a[i * MAX_PARAMS + j]);
+            max = Math.max(max, sum);
+        }
+        return max;
+    }
+
+    /**
+     * Undoes the scaling: x = D z and inverse = D (D A D)^-1 D.
+     *
+     * @param z solution of the scaled system
+     * @param scaledInverse inverse of the scaled matrix, 4 values per row
+     * @param d scale of each row and column
+     * @param n number of parameters
+     * @param x array to put the solution in
+     * @param inverse array to put the inverse in
+     */
+    private static void unscale(double[] z, double[] scaledInverse, double[] d, int n, double[] x, double[][] inverse) {
+        for (int i = 0; i < n; i++) {
+            x[i] = d[i] * z[i];
+            for (int j = 0; j < n; j++) {
+                inverse[i][j] = d[i] * d[j] * scaledInverse[i * MAX_PARAMS + j];
+            }
+        }
+    }
+}
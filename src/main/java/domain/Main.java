@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import gui.DisplayGui;
 import gui.Gui;
@@ -34,21 +35,46 @@ public class Main {
 	 */
 	private String substrateName;
 
+	/**
+	 * Fitted datasets overlaid behind the graph of the main data.
+	 */
+	private volatile List<Data> overlayData = new ArrayList<>();
+
+	/**
+	 * Results of earlier fits, so refitting unchanged data (e.g. on changing the graph type) is instant.
+	 */
+	private final FitCache fitCache = new FitCache(4096);
+
+	/**
+	 * Number of grid points along each axis a confidence region starts with.
+	 */
+	private static final int REGION_GRID = 17;
+
+	/**
+	 * Number of times a confidence region's grid is refined near its contour.
+	 */
+	private static final int REGION_LEVELS = 4;
+
 	/**
 	 * Runs on click of go method to calculate off data.
 	 */
 	public void go(){
-		Calculations.fit(data);
+		Calculations.fit(data, fitCache);
 		gui.displayOutputData(data);
 	}
 
 
 	/**
 	 * Starts running the program by setting up Main and the GUI.
+	 * If there are any arguments, runs a batch from the command line instead without starting the GUI.
 	 *
-	 * @param args should be empty.
+	 * @param args empty for the GUI, or the batch inputs and options (see BatchRunner).
 	 */
 	public static void main(String[] args) {
+		Metrics.registerMBean();
+		if (args.length > 0) {
+			System.exit(BatchRunner.run(args, System.out, System.err));
+		}
 		Main main = new Main();
 		Gui gui = new DisplayGui(main);
 		main.setGui(gui);
@@ -71,6 +97,93 @@ public class Main {
 		}
 	}
 
+	/**
+	 * Loads the given files and fits them with the given GraphType, then overlays them on the graph.
+	 * The files are independent, so they are loaded and fitted in parallel.
+	 * Files that fail to load or can't be fitted are left out.
+	 * This can take a while, so a GUI should call it off the event dispatch thread.
+	 *
+	 * @param fileNames the names of the files to overlay.
+	 * @param graphType the GraphType to fit the files with.
+	 */
+	public void loadOverlayData(List<String> fileNames, GraphType graphType) {
+		overlayData = fileNames.parallelStream()
+				.map(fileName -> {
+					try {
+						return Loading.load(fileName);
+					} catch (Exception e) {
+						System.out.println("Loading overlay failed: " + fileName);
+						e.printStackTrace();
+						return null;
+					}
+				})
+				.filter(overlay -> overlay != null)
+				.collect(Collectors.toList());
+		fitOverlayData(graphType);
+	}
+
+	/**
+	 * Refits the overlaid datasets with the given GraphType and displays them.
+	 * Datasets whose model can't be drawn with the GraphType are left out of the display.
+	 * This can take a while, so a GUI should call it off the event dispatch thread.
+	 *
+	 * @param graphType the GraphType to fit the overlaid datasets with.
+	 */
+	public void fitOverlayData(GraphType graphType) {
+		List<Data> fitted = overlayData.parallelStream()
+				.map(overlay -> fitOverlay(overlay, graphType))
+				.filter(overlay -> overlay != null)
+				.collect(Collectors.toList());
+		gui.displayOverlayData(fitted);
+	}
+
+	/**
+	 * Fits an overlaid dataset with the given GraphType.
+	 *
+	 * @param overlay the overlaid dataset.
+	 * @param graphType the GraphType to fit it with.
+	 * @return the fitted dataset, or null if its model can't be drawn with the GraphType.
+	 */
+	private Data fitOverlay(Data overlay, GraphType graphType) {
+		try {
+			overlay.setGraphType(graphType);
+			Calculations.fit(overlay, fitCache);
+			return overlay;
+		} catch (RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Fits every kinetic model to the given data and ranks them.
+	 *
+	 * @param inputData the data to compare the models on.
+	 * @return one candidate per model, best first.
+	 */
+	public List<ModelComparison.Candidate> compareModels(Data inputData) {
+		return ModelComparison.compare(inputData);
+	}
+
+	/**
+	 * Calculates the joint confidence region of two constants of the current data, refitting in parallel.
+	 *
+	 * @param xName constant along the x axis
+	 * @param yName constant along the y axis
+	 * @return the region
+	 * @throws IllegalArgumentException if the rates can't determine the constants
+	 */
+	public ConfidenceRegion.Region confidenceRegion(String xName, String yName) {
+		return ConfidenceRegion.region(data, xName, yName, REGION_GRID, REGION_LEVELS, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Removes all overlaid datasets.
+	 */
+	public void clearOverlayData() {
+		overlayData = new ArrayList<>();
+		gui.displayOverlayData(overlayData);
+	}
+
 	/**
 	 * Saves data to files.
 	 *
@@ -98,6 +211,15 @@ public class Main {
 		return data;
 	}
 
+	/**
+	 * Gets the overlaid datasets
+	 *
+	 * @return overlaid datasets
+	 */
+	public List<Data> getOverlayData() {
+		return overlayData;
+	}
+
 	/**
 	 * Gets the SubstrateName
 	 *
@@ -0,0 +1,307 @@
+package domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mechanism holds the elementary steps behind a kinetic model, with mass action rate constants, so its time course
+ * can be simulated (see MechanismSimulator) rather than only its steady-state rate law.
+ *
+ * The rate constants are chosen so that the steady-state rate of the mechanism is exactly the model's rate law with
+ * the given constants. Every binding step has the same association rate constant, which sets how fast the enzyme
+ * reaches steady state: the faster it is, the better the steady-state assumption holds.
+ * <ul>
+ * <li>One substrate: E + S &lt;-&gt; ES -&gt; E + P, with inhibitor binding E + I &lt;-&gt; EI (competitive),
+ * ES + I &lt;-&gt; ESI (uncompetitive) or both (non-competitive).</li>
+ * <li>Ordered Bi-Bi: E + S &lt;-&gt; ES, ES + B &lt;-&gt; ESB -&gt; E + P.</li>
+ * <li>Ping-Pong: E + S &lt;-&gt; ES -&gt; F, F + B &lt;-&gt; FB -&gt; E + P (the first product isn't followed).</li>
+ * </ul>
+ */
+public class Mechanism {
+
+    /** Index of the free enzyme in the species. */
+    public static final int ENZYME = 0;
+    /** Index of the substrate in the species. */
+    public static final int SUBSTRATE = 1;
+    /** Index of the product in the species. */
+    public static final int PRODUCT = 2;
+    /** Index of the co-substrate or inhibitor in the species, if the model has one. */
+    public static final int CO_SUB_INHIB = 3;
+
+    /** The kinetic model whose mechanism this is. */
+    private final KineticModel model;
+    /** Total enzyme concentration. */
+    private final double enzyme;
+    /** Whether the model has a co-substrate or inhibitor. */
+    private final boolean hasCoSubInhib;
+    /** Names of the species. */
+    private final List<String> species = new ArrayList<>();
+    /** First reactant of each step. */
+    private int[] first = new int[0];
+    /** Second reactant of each step, or -1 for a first order step. */
+    private int[] second = new int[0];
+    /** Products of each step. */
+    private int[][] products = new int[0][];
+    /** Rate constant of each step. */
+    private double[] rateConstants = new double[0];
+
+    /**
+     * Creates the mechanism of a kinetic model.
+     *
+     * @param model kinetic model
+     * @param constants the model's constants by name: "vm" and then those of GlobalFit.sharedNames
+     * @param enzyme total enzyme concentration; Vm is kcat times this
+     * @param binding association rate constant of every binding step, per concentration per unit time
+     * @throws IllegalArgumentException if a constant is missing or not positive, or binding is too slow to give the
+     * constants (it must be at least kcat / Km, or kcat / Kb for the co-substrate)
+     */
+    public Mechanism(KineticModel model, Map<String, Double> constants, double enzyme, double binding) {
+        this.model = model;
+        this.enzyme = enzyme;
+        this.hasCoSubInhib = model != KineticModel.UninhibitedOneSub;
+        if (!(enzyme > 0)) throw new IllegalArgumentException("The enzyme concentration must be positive");
+        if (!(binding > 0)) throw new IllegalArgumentException("The binding rate constant must be positive");
+        double kcat = constant(constants, "vm") / enzyme;
+        Collections.addAll(species, "E", "S", "P");
+        switch (model) {
+            case UninhibitedOneSub:
+            case InhibitedCompetitive:
+            case InhibitedNonCompetitive:
+            case InhibitedUnCompetitive: {
+                double km = constant(constants, "km");
+                if (model != KineticModel.UninhibitedOneSub) species.add("I");
+                int es = addSpecies("ES");
+                addStep(ENZYME, SUBSTRATE, binding, es);
+                addStep(es, -1, dissociation(binding, km, kcat), ENZYME, SUBSTRATE);
+                addStep(es, -1, kcat, ENZYME, PRODUCT);
+                if (model == KineticModel.InhibitedCompetitive || model == KineticModel.InhibitedNonCompetitive) {
+                    int ei = addSpecies("EI");
+                    addStep(ENZYME, CO_SUB_INHIB, binding, ei);
+                    addStep(ei, -1, binding * constant(constants, "kis"), ENZYME, CO_SUB_INHIB);
+                }
+                if (model == KineticModel.InhibitedUnCompetitive || model == KineticModel.InhibitedNonCompetitive) {
+                    int esi = addSpecies("ESI");
+                    addStep(es, CO_SUB_INHIB, binding, esi);
+                    addStep(esi, -1, binding * constant(constants, "kii"), es, CO_SUB_INHIB);
+                }
+                break;
+            }
+            case UninhibitedTwoSubOrderedBiBi: {
+                // Ka = kcat / k1, Kia = k-1 / k1, Kb = (k-2 + kcat) / k2:
+                species.add("B");
+                int es = addSpecies("ES");
+                int esb = addSpecies("ESB");
+                double k1 = kcat / constant(constants, "ka");
+                addStep(ENZYME, SUBSTRATE, k1, es);
+                addStep(es, -1, k1 * constant(constants, "kia"), ENZYME, SUBSTRATE);
+                addStep(es, CO_SUB_INHIB, binding, esb);
+                addStep(esb, -1, dissociation(binding, constant(constants, "kb"), kcat), es, CO_SUB_INHIB);
+                addStep(esb, -1, kcat, ENZYME, PRODUCT);
+                break;
+            }
+            case UninhibitedTwoSubPingPong: {
+                // Both half reactions at 2 kcat give Vm = kcat E, Ka = (k-1 + 2 kcat) / 2 k1, Kb = (k-3 + 2 kcat) / 2 k3:
+                species.add("B");
+                int es = addSpecies("ES");
+                int f = addSpecies("F");
+                int fb = addSpecies("FB");
+                addStep(ENZYME, SUBSTRATE, binding, es);
+                addStep(es, -1, 2 * dissociation(binding, constant(constants, "ka"), kcat), ENZYME, SUBSTRATE);
+                addStep(es, -1, 2 * kcat, f);
+                addStep(f, CO_SUB_INHIB, binding, fb);
+                addStep(fb, -1, 2 * dissociation(binding, constant(constants, "kb"), kcat), f, CO_SUB_INHIB);
+                addStep(fb, -1, 2 * kcat, ENZYME, PRODUCT);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unrecognised model type: " + model);
+        }
+    }
+
+    /**
+     * @return the kinetic model whose mechanism this is
+     */
+    public KineticModel getModel() {
+        return model;
+    }
+
+    /**
+     * @return total enzyme concentration
+     */
+    public double getEnzyme() {
+        return enzyme;
+    }
+
+    /**
+     * @return names of the species, in the order of a state: E, S, P, then the co-substrate or inhibitor, if any,
+     * then the enzyme complexes
+     */
+    public List<String> getSpecies() {
+        return species;
+    }
+
+    /**
+     * @return number of elementary steps
+     */
+    public int getStepCount() {
+        return rateConstants.length;
+    }
+
+    /**
+     * @param step elementary step
+     * @return its first reactant
+     */
+    int getFirst(int step) {
+        return first[step];
+    }
+
+    /**
+     * @param step elementary step
+     * @return its second reactant, or -1 for a first order step
+     */
+    int getSecond(int step) {
+        return second[step];
+    }
+
+    /**
+     * @param step elementary step
+     * @return its products
+     */
+    int[] getProducts(int step) {
+        return products[step];
+    }
+
+    /**
+     * @param step elementary step
+     * @return its rate constant
+     */
+    double getRateConstant(int step) {
+        return rateConstants[step];
+    }
+
+    /**
+     * Fills in the state at the start of a reaction: all the enzyme free, no product.
+     *
+     * @param substrate substrate concentration
+     * @param coSubInhib co-substrate or inhibitor concentration (ignored if the model has neither)
+     * @param state array, one per species, to put the concentrations in
+     */
+    public void initialState(double substrate, double coSubInhib, double[] state) {
+        Arrays.fill(state, 0);
+        state[ENZYME] = enzyme;
+        state[SUBSTRATE] = substrate;
+        if (hasCoSubInhib) state[CO_SUB_INHIB] = coSubInhib;
+    }
+
+    /**
+     * Calculates the rate of change of every species by mass action.
+     *
+     * @param state concentration of each species
+     * @param rates array to put the rate of change of each species in
+     */
+    void rates(double[] state, double[] rates) {
+        Arrays.fill(rates, 0, species.size(), 0);
+        for (int step = 0; step < rateConstants.length; step++) {
+            double rate = rateConstants[step] * state[first[step]];
+            if (second[step] >= 0) {
+                rate *= state[second[step]];
+                rates[second[step]] -= rate;
+            }
+            rates[first[step]] -= rate;
+            for (int product : products[step]) rates[product] += rate;
+        }
+    }
+
+    /**
+     * Calculates the Jacobian of the rates of change.
+     *
+     * @param state concentration of each species
+     * @param jacobian array to put the derivative of the rate of change of species i by species j in, at [i][j]
+     */
+    void jacobian(double[] state, double[][] jacobian) {
+        int n = species.size();
+        for (int i = 0; i < n; i++) Arrays.fill(jacobian[i], 0, n, 0);
+        for (int step = 0; step < rateConstants.length; step++) {
+            int a = first[step];
+            int b = second[step];
+            // Derivatives of the step's rate by its reactants:
+            double byFirst = rateConstants[step] * ((b >= 0) ? state[b] : 1);
+            double bySecond = (b >= 0) ? rateConstants[step] * state[a] : 0;
+            jacobian[a][a] -= byFirst;
+            if (b >= 0) {
+                jacobian[a][b] -= bySecond;
+                jacobian[b][a] -= byFirst;
+                jacobian[b][b] -= bySecond;
+            }
+            for (int product : products[step]) {
+                jacobian[product][a] += byFirst;
+                if (b >= 0) jacobian[product][b] += bySecond;
+            }
+        }
+    }
+
+    /**
+     * Adds an enzyme complex to the species.
+     *
+     * @param name name of the complex
+     * @return its index
+     */
+    private int addSpecies(String name) {
+        species.add(name);
+        return species.size() - 1;
+    }
+
+    /**
+     * Adds an elementary step.
+     *
+     * @param a first reactant
+     * @param b second reactant, or -1 for a first order step
+     * @param rateConstant rate constant
+     * @param produced products
+     */
+    private void addStep(int a, int b, double rateConstant, int... produced) {
+        int n = rateConstants.length;
+        first = Arrays.copyOf(first, n + 1);
+        second = Arrays.copyOf(second, n + 1);
+        products = Arrays.copyOf(products, n + 1);
+        rateConstants = Arrays.copyOf(rateConstants, n + 1);
+        first[n] = a;
+        second[n] = b;
+        products[n] = produced;
+        rateConstants[n] = rateConstant;
+    }
+
+    /**
+     * Works out the dissociation rate constant that gives a Michaelis constant (k-1 + kcat) / k1.
+     *
+     * @param binding association rate constant k1
+     * @param km Michaelis constant
+     * @param kcat rate constant of the step after binding
+     * @return the dissociation rate constant k-1
+     * @throws IllegalArgumentException if binding is too slow to give the Michaelis constant
+     */
+    private static double dissociation(double binding, double km, double kcat) {
+        double dissociation = binding * km - kcat;
+        if (dissociation < 0) {
+            throw new IllegalArgumentException(String.format("The binding rate constant must be at least %.3g to give a Michaelis constant of %.3g", kcat / km, km));
+        }
+        return dissociation;
+    }
+
+    /**
+     * Gets a constant of the model.
+     *
+     * @param constants constants by name
+     * @param name name of the constant
+     * @return its value
+     * @throws IllegalArgumentException if it is missing or not positive
+     */
+    private static double constant(Map<String, Double> constants, String name) {
+        Double value = constants.get(name);
+        if (value == null || !(value > 0)) throw new IllegalArgumentException("The " + name + " constant must be given and positive");
+        return value;
+    }
+}
@@ -0,0 +1,348 @@
+package domain;
+
+
+/**
+ * MechanismSimulator integrates the time course of a mechanism's elementary steps from the start of a reaction,
+ * for checking the steady-state assumption behind a model's rate law and making synthetic progress curves.
+ *
+ * A simulator holds the buffers its integrator works in, so simulating one reaction after another allocates nothing;
+ * it isn't thread safe, so each thread needs its own. simulateGrid simulates a grid of substrate and
+ * co-substrate/inhibitor concentrations on a thread pool, with a simulator per thread.
+ * The error of each step is kept within tolerance times each concentration, or tolerance times the total enzyme
+ * concentration for concentrations smaller than it.
+ */
+public class MechanismSimulator {
+
+    /** The default relative tolerance of each step. */
+    public static final double DEFAULT_TOLERANCE = 1e-6;
+    /** The most steps taken simulating one reaction. */
+    private static final int MAX_STEPS = 1_000_000;
+    /** The most a step may grow or shrink by. */
+    private static final double MAX_FACTOR = 5, MIN_FACTOR = 0.2;
+
+    // Dormand-Prince 5(4) coefficients:
+    private static final double A21 = 1.0 / 5;
+    private static final double A31 = 3.0 / 40, A32 = 9.0 / 40;
+    private static final double A41 = 44.0 / 45, A42 = -56.0 / 15, A43 = 32.0 / 9;
+    private static final double A51 = 19372.0 / 6561, A52 = -25360.0 / 2187, A53 = 64448.0 / 6561, A54 = -212.0 / 729;
+    private static final double A61 = 9017.0 / 3168, A62 = -355.0 / 33, A63 = 46732.0 / 5247, A64 = 49.0 / 176, A65 = -5103.0 / 18656;
+    private static final double A71 = 35.0 / 384, A73 = 500.0 / 1113, A74 = 125.0 / 192, A75 = -2187.0 / 6784, A76 = 11.0 / 84;
+    private static final double E1 = 71.0 / 57600, E3 = -71.0 / 16695, E4 = 71.0 / 1920, E5 = -17253.0 / 339200, E6 = 22.0 / 525, E7 = -1.0 / 40;
+
+    // Rosenbrock 2(3) coefficients of ode23s:
+    private static final double D = 1 / (2 + Math.sqrt(2));
+    private static final double E32 = 6 + Math.sqrt(2);
+
+    /** The mechanism simulated. */
+    private final Mechanism mechanism;
+    /** How it is integrated. */
+    private final Integrator integrator;
+    /** Relative tolerance of each step. */
+    private final double relativeTolerance;
+    /** Absolute tolerance of each step. */
+    private final double absoluteTolerance;
+    /** Number of species. */
+    private final int n;
+
+    /** Current concentrations. */
+    private final double[] state;
+    /** Concentrations at the end of the step being tried. */
+    private final double[] next;
+    /** Concentrations within a step. */
+    private final double[] stage;
+    /** Rates at the current concentrations, then the stages of the step. */
+    private double[] k1;
+    private final double[] k2, k3, k4, k5, k6;
+    /** Rates at the end of the step being tried. */
+    private double[] k7;
+    /** Jacobian of the rates, then the LU factors of the Rosenbrock matrix. */
+    private final double[][] jacobian, matrix;
+    /** Row interchanges of the LU factors. */
+    private final int[] pivots;
+    /** Whether the Jacobian is that of the current state (it is kept while steps from it are rejected). */
+    private boolean jacobianCurrent;
+    /** Accepted steps of the latest simulation. */
+    private int steps;
+    /** Rejected steps of the latest simulation. */
+    private int rejected;
+
+    /**
+     * Creates a simulator of a mechanism.
+     *
+     * @param mechanism the mechanism
+     * @param integrator how to integrate it
+     * @param tolerance relative tolerance of each step
+     */
+    public MechanismSimulator(Mechanism mechanism, Integrator integrator, double tolerance) {
+        if (!(tolerance > 0)) throw new IllegalArgumentException("The tolerance must be positive");
+        this.mechanism = mechanism;
+        this.integrator = integrator;
+        this.relativeTolerance = tolerance;
+        this.absoluteTolerance = tolerance * mechanism.getEnzyme();
+        this.n = mechanism.getSpecies().size();
+        state = new double[n];
+        next = new double[n];
+        stage = new double[n];
+        k1 = new double[n];
+        k2 = new double[n];
+        k3 = new double[n];
+        k4 = new double[n];
+        k5 = new double[n];
+        k6 = new double[n];
+        k7 = new double[n];
+        jacobian = new double[n][n];
+        matrix = new double[n][n];
+        pivots = new int[n];
+    }
+
+    /**
+     * Simulates a reaction from all the enzyme being free and no product.
+     *
+     * @param substrate substrate concentration
+     * @param coSubInhib co-substrate or inhibitor concentration (ignored if the model has neither)
+     * @param times times to report the product concentration at, in increasing order
+     * @param count number of times
+     * @param product array to put the product concentration at each time in
+     * @throws IllegalArgumentException if the reaction takes too many steps, e.g. a stiff mechanism integrated by
+     * Runge-Kutta
+     */
+    public void simulate(double substrate, double coSubInhib, double[] times, int count, double[] product) {
+        mechanism.initialState(substrate, coSubInhib, state);
+        steps = 0;
+        rejected = 0;
+        mechanism.rates(state, k1);
+        jacobianCurrent = false;
+        double t = 0;
+        double h = initialStep(count > 0 ? times[count - 1] : 0);
+        for (int i = 0; i < count; i++) {
+            while (t < times[i]) {
+                double step = Math.min(h, times[i] - t);
+                double error = (integrator == Integrator.Rosenbrock) ? rosenbrockStep(step) : dormandPrinceStep(step);
+                double order = (integrator == Integrator.Rosenbrock) ? 3 : 5;
+                double factor = (error == 0) ? MAX_FACTOR
+                        : Math.min(MAX_FACTOR, Math.max(MIN_FACTOR, 0.9 * Math.pow(error, -1 / order)));
+                if (error <= 1) {
+                    boolean clipped = step < h;
+                    t = clipped ? times[i] : t + step;
+                    System.arraycopy(next, 0, state, 0, n);
+                    double[] rates = k1;
+                    k1 = k7;
+                    k7 = rates;
+                    jacobianCurrent = false;
+                    h = clipped ? Math.max(h, step * factor) : step * factor;
+                    if (++steps > MAX_STEPS) {
+                        throw new IllegalArgumentException("The reaction took more than " + MAX_STEPS + " steps; try the Rosenbrock integrator");
+                    }
+                }
+                else {
+                    h = step * Math.min(1, factor);
+                    rejected++;
+                    if (!(h > 16 * Math.ulp(t))) throw new IllegalArgumentException("The step size fell to nothing at time " + t);
+                }
+            }
+            product[i] = state[Mechanism.PRODUCT];
+        }
+    }
+
+    /**
+     * @return the concentrations at the end of the latest simulation, in the order of Mechanism.getSpecies
+     */
+    public double[] getState() {
+        return state;
+    }
+
+    /**
+     * @return number of accepted steps of the latest simulation
+     */
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return number of rejected steps of the latest simulation
+     */
+    public int getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Simulates the product concentration over time for every combination of substrate and co-substrate/inhibitor
+     * concentration, in parallel.
+     *
+     * @param mechanism the mechanism
+     * @param integrator how to integrate it
+     * @param tolerance relative tolerance of each step
+     * @param substrates substrate concentrations (rows of the grid)
+     * @param coSubInhibs co-substrate or inhibitor concentrations (columns of the grid)
+     * @param times times to report the product concentration at, in increasing order
+     * @param threads number of threads to simulate with
+     * @return product concentration by substrate, co-substrate/inhibitor and time
+     * @throws IllegalArgumentException if a reaction takes too many steps
+     */
+    public static double[][][] simulateGrid(Mechanism mechanism, Integrator integrator, double tolerance,
+                                            double[] substrates, double[] coSubInhibs, double[] times, int threads) {
+        double[][][] product = new double[substrates.length][coSubInhibs.length][times.length];
+        int cells = substrates.length * coSubInhibs.length;
+        Parallel.run(cells, threads, "Simulation", (chunk, chunks) -> {
+            MechanismSimulator simulator = new MechanismSimulator(mechanism, integrator, tolerance);
+            for (int cell = chunk; cell < cells; cell += chunks) {
+                int row = cell / coSubInhibs.length;
+                int col = cell % coSubInhibs.length;
+                simulator.simulate(substrates[row], coSubInhibs[col], times, times.length, product[row][col]);
+            }
+        });
+        return product;
+    }
+
+    /**
+     * Picks the first step as a hundredth of the time the starting rates take to change the concentrations by as
+     * much as they are, each relative to its tolerance.
+     *
+     * @param end last time reported
+     * @return the first step
+     */
+    private double initialStep(double end) {
+        double concentrations = 0;
+        double rates = 0;
+        for (int i = 0; i < n; i++) {
+            double scale = absoluteTolerance + relativeTolerance * Math.abs(state[i]);
+            concentrations = Math.max(concentrations, Math.abs(state[i]) / scale);
+            rates = Math.max(rates, Math.abs(k1[i]) / scale);
+        }
+        double h = (rates > 0) ? 0.01 * concentrations / rates : end;
+        return (end > 0) ? Math.min(h, end) : h;
+    }
+
+    /**
+     * Tries a Dormand-Prince step from the current state, leaving its end in next and the rates there in k7.
+     *
+     * @param h step size
+     * @return the estimated error of the step relative to the tolerance
+     */
+    private double dormandPrinceStep(double h) {
+        for (int i = 0; i < n; i++) stage[i] = state[i] + h * A21 * k1[i];
+        mechanism.rates(stage, k2);
+        for (int i = 0; i < n; i++) stage[i] = state[i] + h * (A31 * k1[i] + A32 * k2[i]);
+        mechanism.rates(stage, k3);
+        for (int i = 0; i < n; i++) stage[i] = state[i] + h * (A41 * k1[i] + A42 * k2[i] + A43 * k3[i]);
+        mechanism.rates(stage, k4);
+        for (int i = 0; i < n; i++) stage[i] = state[i] + h * (A51 * k1[i] + A52 * k2[i] + A53 * k3[i] + A54 * k4[i]);
+        mechanism.rates(stage, k5);
+        for (int i = 0; i < n; i++) {
+            stage[i] = state[i] + h * (A61 * k1[i] + A62 * k2[i] + A63 * k3[i] + A64 * k4[i] + A65 * k5[i]);
+        }
+        mechanism.rates(stage, k6);
+        for (int i = 0; i < n; i++) {
+            next[i] = state[i] + h * (A71 * k1[i] + A73 * k3[i] + A74 * k4[i] + A75 * k5[i] + A76 * k6[i]);
+        }
+        mechanism.rates(next, k7);
+        double error = 0;
+        for (int i = 0; i < n; i++) {
+            double e = h * (E1 * k1[i] + E3 * k3[i] + E4 * k4[i] + E5 * k5[i] + E6 * k6[i] + E7 * k7[i]);
+            error = Math.max(error, Math.abs(e) / scale(i));
+        }
+        return error;
+    }
+
+    /**
+     * Tries a Rosenbrock step from the current state, leaving its end in next and the rates there in k7.
+     * Each stage solves (I - h d J) k = ..., with the Jacobian J at the current state.
+     *
+     * @param h step size
+     * @return the estimated error of the step relative to the tolerance, or infinity if the matrix is singular
+     */
+    private double rosenbrockStep(double h) {
+        if (!jacobianCurrent) {
+            mechanism.jacobian(state, jacobian);
+            jacobianCurrent = true;
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) matrix[i][j] = ((i == j) ? 1 : 0) - h * D * jacobian[i][j];
+        }
+        if (!factor(matrix, n, pivots)) return Double.POSITIVE_INFINITY;
+
+        // k2..k4 hold the stages, k5 the rates half way:
+        System.arraycopy(k1, 0, k2, 0, n);
+        solve(matrix, n, pivots, k2);
+        for (int i = 0; i < n; i++) stage[i] = state[i] + 0.5 * h * k2[i];
+        mechanism.rates(stage, k5);
+        for (int i = 0; i < n; i++) k3[i] = k5[i] - k2[i];
+        solve(matrix, n, pivots, k3);
+        for (int i = 0; i < n; i++) {
+            k3[i] += k2[i];
+            next[i] = state[i] + h * k3[i];
+        }
+        mechanism.rates(next, k7);
+        for (int i = 0; i < n; i++) k4[i] = k7[i] - E32 * (k3[i] - k5[i]) - 2 * (k2[i] - k1[i]);
+        solve(matrix, n, pivots, k4);
+        double error = 0;
+        for (int i = 0; i < n; i++) {
+            double e = h / 6 * (k2[i] - 2 * k3[i] + k4[i]);
+            error = Math.max(error, Math.abs(e) / scale(i));
+        }
+        return error;
+    }
+
+    /**
+     * @param i species
+     * @return the error allowed in its concentration over the step being tried
+     */
+    private double scale(int i) {
+        return absoluteTolerance + relativeTolerance * Math.max(Math.abs(state[i]), Math.abs(next[i]));
+    }
+
+    /**
+     * Factors a matrix into LU factors by Gaussian elimination with partial pivoting, in place.
+     *
+     * @param a the matrix, replaced by its factors
+     * @param n size of the matrix
+     * @param pivots array to put the row swapped with each row in
+     * @return false if the matrix is singular
+     */
+    private static boolean factor(double[][] a, int n, int[] pivots) {
+        for (int k = 0; k < n; k++) {
+            int pivot = k;
+            for (int i = k + 1; i < n; i++) {
+                if (Math.abs(a[i][k]) > Math.abs(a[pivot][k])) pivot = i;
+            }
+            if (a[pivot][k] == 0) return false;
+            pivots[k] = pivot;
+            if (pivot != k) {
+                double[] row = a[k];
+                a[k] = a[pivot];
+                a[pivot] = row;
+            }
+            for (int i = k + 1; i < n; i++) {
+                double factor = a[i][k] / a[k][k];
+                a[i][k] = factor;
+                for (int j = k + 1; j < n; j++) a[i][j] -= factor * a[k][j];
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Solves a x = b from the LU factors of a.
+     *
+     * @param lu the factors
+     * @param n size of the matrix
+     * @param pivots row swaps of the factors
+     * @param b right hand side, replaced by x
+     */
+    private static void solve(double[][] lu, int n, int[] pivots, double[] b) {
+        for (int k = 0; k < n; k++) {
+            int pivot = pivots[k];
+            if (pivot != k) {
+                double swap = b[k];
+                b[k] = b[pivot];
+                b[pivot] = swap;
+            }
+            for (int i = k + 1; i < n; i++) b[i] -= lu[i][k] * b[k];
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            double sum = b[i];
+            for (int j = i + 1; j < n; j++) sum -= lu[i][j] * b[j];
+            b[i] = sum / lu[i][i];
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package domain;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics is an abstract class with static methods for counting what LUCENZ does: fits, loads, saves, cache lookups
+ * and queued work. Everything is counted with striped counters (LongAdder), so recording from many threads at once
+ * costs a few nanoseconds and never blocks. The counts can be read over JMX (see MetricsMXBean) or as text.
+ */
+public abstract class Metrics {
+
+    /** The name the metrics are registered under in JMX. */
+    public static final String OBJECT_NAME = "lucenz:type=Metrics";
+
+    /** Time taken by each fit, by model. */
+    private static final Map<KineticModel, LatencyHistogram> FIT_LATENCY = new EnumMap<>(KineticModel.class);
+    /** Regression passes taken, by model. */
+    private static final Map<KineticModel, LongAdder> FIT_ITERATIONS = new EnumMap<>(KineticModel.class);
+    /** Robust fits that stopped at the reweighting limit without converging. */
+    private static final LongAdder FIT_ITERATION_LIMIT = new LongAdder();
+    /** Fits whose error was not a finite number. */
+    private static final LongAdder FIT_NON_FINITE = new LongAdder();
+    /** Fits that threw an exception. */
+    private static final LongAdder FIT_ERRORS = new LongAdder();
+    /** Time taken by each load. */
+    private static final LatencyHistogram LOAD_LATENCY = new LatencyHistogram();
+    /** Bytes loaded. */
+    private static final LongAdder LOAD_BYTES = new LongAdder();
+    /** Loads that failed. */
+    private static final LongAdder LOAD_FAILURES = new LongAdder();
+    /** Time taken by each save. */
+    private static final LatencyHistogram SAVE_LATENCY = new LatencyHistogram();
+    /** Bytes saved. */
+    private static final LongAdder SAVE_BYTES = new LongAdder();
+    /** Fit cache lookups that found a result. */
+    private static final LongAdder CACHE_HITS = new LongAdder();
+    /** Fit cache lookups that didn't. */
+    private static final LongAdder CACHE_MISSES = new LongAdder();
+    /** Stored fit results that couldn't be read or written. */
+    private static final LongAdder CACHE_ERRORS = new LongAdder();
+    /** Depth of each registered queue. */
+    private static final Map<String, IntSupplier> QUEUES = new ConcurrentHashMap<>();
+
+    static {
+        for (KineticModel model : KineticModel.values()) {
+            FIT_LATENCY.put(model, new LatencyHistogram());
+            FIT_ITERATIONS.put(model, new LongAdder());
+        }
+    }
+
+    /**
+     * Records a completed fit.
+     *
+     * @param model model fitted
+     * @param nanos time taken in nanoseconds
+     * @param iterations regression passes taken: one, plus one per robust reweighting
+     * @param reachedLimit whether a robust fit stopped at the reweighting limit without converging
+     * @param finite whether the fit's error was a finite number
+     */
+    public static void recordFit(KineticModel model, long nanos, int iterations, boolean reachedLimit, boolean finite) {
+        FIT_LATENCY.get(model).record(nanos);
+        FIT_ITERATIONS.get(model).add(iterations);
+        if (reachedLimit) FIT_ITERATION_LIMIT.increment();
+        if (!finite) FIT_NON_FINITE.increment();
+    }
+
+    /**
+     * Records a fit that threw an exception.
+     */
+    public static void recordFitError() {
+        FIT_ERRORS.increment();
+    }
+
+    /**
+     * Records a completed load.
+     *
+     * @param nanos time taken in nanoseconds
+     * @param bytes size of the file
+     */
+    public static void recordLoad(long nanos, long bytes) {
+        LOAD_LATENCY.record(nanos);
+        LOAD_BYTES.add(bytes);
+    }
+
+    /**
+     * Records a load that failed.
+     */
+    public static void recordLoadFailure() {
+        LOAD_FAILURES.increment();
+    }
+
+    /**
+     * Records a completed save.
+     *
+     * @param nanos time taken in nanoseconds
+     * @param bytes size of the file
+     */
+    public static void recordSave(long nanos, long bytes) {
+        SAVE_LATENCY.record(nanos);
+        SAVE_BYTES.add(bytes);
+    }
+
+    /**
+     * Records a fit cache lookup.
+     *
+     * @param hit whether it found a result
+     */
+    public static void recordCacheLookup(boolean hit) {
+        (hit ? CACHE_HITS : CACHE_MISSES).increment();
+    }
+
+    /**
+     * Records a stored fit result that couldn't be read or written.
+     */
+    public static void recordCacheError() {
+        CACHE_ERRORS.increment();
+    }
+
+    /**
+     * Starts reporting the depth of a queue, replacing any queue already registered with the name.
+     *
+     * @param name name of the queue
+     * @param depth gets the number of tasks waiting in the queue
+     */
+    public static void registerQueue(String name, IntSupplier depth) {
+        QUEUES.put(name, depth);
+    }
+
+    /**
+     * Stops reporting the depth of a queue.
+     *
+     * @param name name of the queue
+     */
+    public static void unregisterQueue(String name) {
+        QUEUES.remove(name);
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, if they aren't already.
+     */
+    public static synchronized void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new Bean(), name);
+            }
+        } catch (JMException e) {
+            System.out.println("Registering metrics with JMX failed.");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes every metric as "name value" lines.
+     *
+     * @return the metrics
+     */
+    public static String format() {
+        StringBuilder text = new StringBuilder();
+        for (KineticModel model : KineticModel.values()) {
+            LatencyHistogram latency = FIT_LATENCY.get(model);
+            if (latency.getCount() == 0) continue;
+            text.append(latency.format("lucenz_fit_" + model.name()));
+            text.append(String.format(Locale.ROOT, "lucenz_fit_%s_mean_iterations %.2f%n", model.name(), meanIterations(model)));
+        }
+        line(text, "lucenz_fit_iteration_limit_reached", FIT_ITERATION_LIMIT.sum());
+        line(text, "lucenz_fit_non_finite", FIT_NON_FINITE.sum());
+        line(text, "lucenz_fit_errors", FIT_ERRORS.sum());
+        text.append(LOAD_LATENCY.format("lucenz_load"));
+        line(text, "lucenz_load_bytes", LOAD_BYTES.sum());
+        line(text, "lucenz_load_failures", LOAD_FAILURES.sum());
+        text.append(SAVE_LATENCY.format("lucenz_save"));
+        line(text, "lucenz_save_bytes", SAVE_BYTES.sum());
+        line(text, "lucenz_cache_hits", CACHE_HITS.sum());
+        line(text, "lucenz_cache_misses", CACHE_MISSES.sum());
+        line(text, "lucenz_cache_errors", CACHE_ERRORS.sum());
+        for (Map.Entry<String, Integer> queue : queueDepths().entrySet()) {
+            line(text, "lucenz_queue_depth_" + queue.getKey(), queue.getValue());
+        }
+        return text.toString();
+    }
+
+    /**
+     * @param model kinetic model
+     * @return mean regression passes per fit of the model, or 0 if there were none
+     */
+    private static double meanIterations(KineticModel model) {
+        long fits = FIT_LATENCY.get(model).getCount();
+        return (fits == 0) ? 0 : (double) FIT_ITERATIONS.get(model).sum() / fits;
+    }
+
+    /**
+     * @return depth of each registered queue, by name
+     */
+    private static Map<String, Integer> queueDepths() {
+        Map<String, Integer> depths = new TreeMap<>();
+        QUEUES.forEach((name, depth) -> depths.put(name, depth.getAsInt()));
+        return depths;
+    }
+
+    /**
+     * Appends a "name value" line.
+     *
+     * @param text text to append to
+     * @param name metric name
+     * @param value metric value
+     */
+    private static void line(StringBuilder text, String name, long value) {
+        text.append(name).append(' ').append(value).append(System.lineSeparator());
+    }
+
+    /**
+     * The JMX view of the metrics.
+     */
+    private static class Bean implements MetricsMXBean {
+
+        @Override
+        public Map<String, Long> getFitCounts() {
+            Map<String, Long> counts = new TreeMap<>();
+            FIT_LATENCY.forEach((model, latency) -> counts.put(model.name(), latency.getCount()));
+            return counts;
+        }
+
+        @Override
+        public Map<String, Double> getFitMeanMillis() {
+            Map<String, Double> means = new TreeMap<>();
+            FIT_LATENCY.forEach((model, latency) -> means.put(model.name(), latency.getMeanMillis()));
+            return means;
+        }
+
+        @Override
+        public Map<String, Double> getFitP99Millis() {
+            Map<String, Double> percentiles = new TreeMap<>();
+            FIT_LATENCY.forEach((model, latency) -> percentiles.put(model.name(), latency.getPercentileMillis(0.99)));
+            return percentiles;
+        }
+
+        @Override
+        public Map<String, Double> getFitMeanIterations() {
+            Map<String, Double> means = new TreeMap<>();
+            for (KineticModel model : KineticModel.values()) means.put(model.name(), meanIterations(model));
+            return means;
+        }
+
+        @Override
+        public long getFitIterationLimitReached() {
+            return FIT_ITERATION_LIMIT.sum();
+        }
+
+        @Override
+        public long getFitNonFinite() {
+            return FIT_NON_FINITE.sum();
+        }
+
+        @Override
+        public long getFitErrors() {
+            return FIT_ERRORS.sum();
+        }
+
+        @Override
+        public long getLoadCount() {
+            return LOAD_LATENCY.getCount();
+        }
+
+        @Override
+        public long getLoadBytes() {
+            return LOAD_BYTES.sum();
+        }
+
+        @Override
+        public double getLoadMeanMillis() {
+            return LOAD_LATENCY.getMeanMillis();
+        }
+
+        @Override
+        public long getLoadFailures() {
+            return LOAD_FAILURES.sum();
+        }
+
+        @Override
+        public long getSaveCount() {
+            return SAVE_LATENCY.getCount();
+        }
+
+        @Override
+        public long getSaveBytes() {
+            return SAVE_BYTES.sum();
+        }
+
+        @Override
+        public double getSaveMeanMillis() {
+            return SAVE_LATENCY.getMeanMillis();
+        }
+
+        @Override
+        public long getCacheHits() {
+            return CACHE_HITS.sum();
+        }
+
+        @Override
+        public long getCacheMisses() {
+            return CACHE_MISSES.sum();
+        }
+
+        @Override
+        public long getCacheErrors() {
+            return CACHE_ERRORS.sum();
+        }
+
+        @Override
+        public double getCacheHitRate() {
+            long lookups = CACHE_HITS.sum() + CACHE_MISSES.sum();
+            return (lookups == 0) ? 0 : (double) CACHE_HITS.sum() / lookups;
+        }
+
+        @Override
+        public Map<String, Integer> getQueueDepths() {
+            return queueDepths();
+        }
+
+        @Override
+        public String dump() {
+            return format();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package domain;
+
+import java.util.Map;
+
+/**
+ * MetricsMXBean is the JMX view of Metrics, registered as "lucenz:type=Metrics".
+ * Values by model are keyed by the KineticModel name.
+ */
+public interface MetricsMXBean {
+
+    /**
+     * @return number of fits by model
+     */
+    Map<String, Long> getFitCounts();
+
+    /**
+     * @return mean fit time in milliseconds by model
+     */
+    Map<String, Double> getFitMeanMillis();
+
+    /**
+     * @return 99th percentile fit time in milliseconds by model
+     */
+    Map<String, Double> getFitP99Millis();
+
+    /**
+     * @return mean number of regression passes per fit by model: one, plus one per robust reweighting
+     */
+    Map<String, Double> getFitMeanIterations();
+
+    /**
+     * @return number of robust fits that stopped at the reweighting limit without converging
+     */
+    long getFitIterationLimitReached();
+
+    /**
+     * @return number of fits whose error was not a finite number
+     */
+    long getFitNonFinite();
+
+    /**
+     * @return number of fits that threw an exception
+     */
+    long getFitErrors();
+
+    /**
+     * @return number of files loaded
+     */
+    long getLoadCount();
+
+    /**
+     * @return number of bytes loaded
+     */
+    long getLoadBytes();
+
+    /**
+     * @return mean load time in milliseconds
+     */
+    double getLoadMeanMillis();
+
+    /**
+     * @return number of files that couldn't be loaded
+     */
+    long getLoadFailures();
+
+    /**
+     * @return number of files saved
+     */
+    long getSaveCount();
+
+    /**
+     * @return number of bytes saved
+     */
+    long getSaveBytes();
+
+    /**
+     * @return mean save time in milliseconds
+     */
+    double getSaveMeanMillis();
+
+    /**
+     * @return number of fit cache lookups that found a result
+     */
+    long getCacheHits();
+
+    /**
+     * @return number of fit cache lookups that didn't
+     */
+    long getCacheMisses();
+
+    /**
+     * @return number of stored fit results that couldn't be read or written
+     */
+    long getCacheErrors();
+
+    /**
+     * @return fraction of fit cache lookups that found a result
+     */
+    double getCacheHitRate();
+
+    /**
+     * @return number of tasks waiting in each registered queue
+     */
+    Map<String, Integer> getQueueDepths();
+
+    /**
+     * @return every metric as "name value" lines
+     */
+    String dump();
+}
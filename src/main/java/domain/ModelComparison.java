@@ -0,0 +1,422 @@
+package domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * ModelComparison is an abstract class with static methods for fitting every kinetic model to the same values and
+ * ranking them, for when the mechanism isn't known in advance. The models are fitted concurrently and share the
+ * reciprocals and weights of the values (see FitInput).
+ *
+ * Models are ranked by the small-sample corrected Akaike information criterion (AICc) of their weighted residual sum
+ * of squares of the reciprocal rates, which is what each fit minimises. Every model is weighted by the same weights
+ * (before any robust reweighting), and the models' reciprocal rate equations are linear and nested, so without robust
+ * weighting a model never fits worse than a simpler one it extends. AIC, BIC and Akaike weights are given too, and each model is compared with the simpler model it extends (e.g.
+ * competitive inhibition with no inhibition) by an extra-sum-of-squares F-test.
+ */
+public abstract class ModelComparison {
+
+    /**
+     * One model's fit to the values, and how it compares with the others.
+     */
+    public static class Candidate {
+        /** The model fitted. */
+        private final KineticModel model;
+        /** The fitted Data, or Data holding the error message if the fit failed. */
+        private final Data data;
+        /** Number of rates fitted. */
+        private final int numPoints;
+        /** Weighted residual sum of squares of the reciprocal rates. */
+        private final double residualSumSquares;
+        /** Akaike information criterion. */
+        private double aic = Double.NaN;
+        /** Akaike information criterion with the small-sample correction. */
+        private double aicc = Double.NaN;
+        /** Bayesian information criterion. */
+        private double bic = Double.NaN;
+        /** Probability that this is the best of the fitted models, from the AICc. */
+        private double akaikeWeight = Double.NaN;
+        /** Rank by AICc, from 1, or 0 if the fit failed. */
+        private int rank;
+        /** The simpler model this one was F-tested against, or null if none. */
+        private KineticModel nestedModel;
+        /** F statistic against the simpler model. */
+        private double fStatistic = Double.NaN;
+        /** p value of the F-test: the chance of this much improvement if the simpler model were right. */
+        private double fPValue = Double.NaN;
+
+        /**
+         * @param model the model fitted
+         * @param data the fitted Data, or Data holding the error message
+         * @param numPoints number of rates fitted
+         * @param residualSumSquares weighted residual sum of squares of the reciprocal rates, or NaN if the fit failed
+         */
+        Candidate(KineticModel model, Data data, int numPoints, double residualSumSquares) {
+            this.model = model;
+            this.data = data;
+            this.numPoints = numPoints;
+            this.residualSumSquares = residualSumSquares;
+        }
+
+        /**
+         * @return whether the model could be fitted
+         */
+        public boolean isFitted() {
+            return data.getErrorMessage().isEmpty();
+        }
+
+        /**
+         * @return the model fitted
+         */
+        public KineticModel getModel() {
+            return model;
+        }
+
+        /**
+         * @return the fitted Data, or Data holding the error message if the fit failed
+         */
+        public Data getData() {
+            return data;
+        }
+
+        /**
+         * @return number of fitted parameters
+         */
+        public int getNumParams() {
+            return model.getNumParams();
+        }
+
+        /**
+         * @return number of rates fitted
+         */
+        public int getNumPoints() {
+            return numPoints;
+        }
+
+        /**
+         * @return weighted residual sum of squares of the reciprocal rates
+         */
+        public double getResidualSumSquares() {
+            return residualSumSquares;
+        }
+
+        /**
+         * @return Akaike information criterion
+         */
+        public double getAic() {
+            return aic;
+        }
+
+        /**
+         * @return Akaike information criterion with the small-sample correction
+         */
+        public double getAicc() {
+            return aicc;
+        }
+
+        /**
+         * @return Bayesian information criterion
+         */
+        public double getBic() {
+            return bic;
+        }
+
+        /**
+         * @return probability that this is the best of the fitted models, from the AICc
+         */
+        public double getAkaikeWeight() {
+            return akaikeWeight;
+        }
+
+        /**
+         * @return rank by AICc, from 1, or 0 if the fit failed
+         */
+        public int getRank() {
+            return rank;
+        }
+
+        /**
+         * @return the simpler model this one was F-tested against, or null if none
+         */
+        public KineticModel getNestedModel() {
+            return nestedModel;
+        }
+
+        /**
+         * @return F statistic against the simpler model
+         */
+        public double getFStatistic() {
+            return fStatistic;
+        }
+
+        /**
+         * @return p value of the F-test against the simpler model
+         */
+        public double getFPValue() {
+            return fPValue;
+        }
+    }
+
+    /**
+     * Fits every kinetic model to the Data's values and ranks them. The Data itself isn't changed; each model is
+     * fitted to a copy. Models that need a co-substrate or inhibitor concentration for each column are only fitted if
+     * the Data has them.
+     *
+     * @param data Data object containing the input values
+     * @return one candidate per model, best first, with models that couldn't be fitted last
+     */
+    public static List<Candidate> compare(Data data) {
+        FitInput input;
+        try {
+            input = new FitInput(data);
+        } catch (IllegalArgumentException e) {
+            input = null; // every model fails the same way, which fitCandidate reports
+        }
+        FitInput shared = input;
+        List<Candidate> candidates = Arrays.stream(KineticModel.values()).parallel()
+                .map(model -> fitCandidate(data, model, shared))
+                .collect(Collectors.toList());
+
+        List<Candidate> fitted = candidates.stream().filter(Candidate::isFitted).collect(Collectors.toList());
+        for (Candidate candidate : fitted) {
+            informationCriteria(candidate);
+        }
+        double bestAicc = fitted.stream().mapToDouble(Candidate::getAicc).min().orElse(Double.NaN);
+        double weightSum = fitted.stream().mapToDouble(c -> Math.exp(-(c.aicc - bestAicc) / 2.0)).sum();
+        for (Candidate candidate : fitted) {
+            candidate.akaikeWeight = Math.exp(-(candidate.aicc - bestAicc) / 2.0) / weightSum;
+            fTest(candidate, nestedCandidate(candidate.model, candidates));
+        }
+
+        candidates.sort(Comparator.comparing((Candidate c) -> !c.isFitted()).thenComparingDouble(c -> c.isFitted() ? c.aicc : 0));
+        for (int i = 0; i < fitted.size(); i++) {
+            candidates.get(i).rank = i + 1;
+        }
+        return candidates;
+    }
+
+    /**
+     * Creates a candidate for values that couldn't be compared at all, e.g. because they couldn't be loaded.
+     *
+     * @param data Data object holding the error message
+     * @return the failed candidate
+     */
+    static Candidate failed(Data data) {
+        return new Candidate(data.getModelType(), data, 0, Double.NaN);
+    }
+
+    /**
+     * Fits one model to a copy of the Data.
+     *
+     * @param data Data object containing the input values
+     * @param model model to fit
+     * @param input shared reciprocals and weights, or null if they couldn't be calculated
+     * @return the candidate, holding the error message if the model couldn't be fitted
+     */
+    private static Candidate fitCandidate(Data data, KineticModel model, FitInput input) {
+        Data copy = copy(data, model);
+        if (model != KineticModel.UninhibitedOneSub && data.getCoSubInhibRow().size() < data.getCols()) {
+            copy.setErrorMessage("Needs a co-substrate or inhibitor concentration for each column.");
+            return new Candidate(model, copy, 0, Double.NaN);
+        }
+        if (!copy.isValid()) return new Candidate(model, copy, 0, Double.NaN);
+        try {
+            if (input == null) input = new FitInput(copy);
+            Calculations.fit(copy, input);
+        } catch (RuntimeException e) {
+            copy.setErrorMessage(e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage());
+            return new Candidate(model, copy, 0, Double.NaN);
+        }
+
+        int numPoints = 0;
+        double residualSumSquares = 0;
+        for (int row = 0; row < copy.getRows(); row++) {
+            for (int col = 0; col < copy.getCols(); col++) {
+                double rate = copy.getTableData()[row][col];
+                if (rate == 0 || !Double.isFinite(rate)) continue; // left out of the fit too
+                double residual = input.getReactRateRecip()[row][col] - 1.0 / Calculations.predictedRate(copy, row, col);
+                residualSumSquares += residual * residual * input.getWeights()[row][col];
+                numPoints++;
+            }
+        }
+        if (!Double.isFinite(residualSumSquares) || numPoints <= model.getNumParams()) {
+            copy.setErrorMessage("The model can't be fitted to these values.");
+            return new Candidate(model, copy, numPoints, Double.NaN);
+        }
+        return new Candidate(model, copy, numPoints, residualSumSquares);
+    }
+
+    /**
+     * Copies the Data's input values for fitting with another model, shaping the co-substrate/inhibitor row for it.
+     *
+     * @param data Data object containing the input values
+     * @param model model to fit
+     * @return the copy
+     */
+    private static Data copy(Data data, KineticModel model) {
+        Data copy = new Data();
+        copy.setFilePath(data.getFilePath());
+        copy.setRows(data.getRows());
+        copy.setCols(data.getCols());
+        copy.setSubstrateCol(new ArrayList<>(data.getSubstrateCol()));
+        List<Double> row = data.getCoSubInhibRow();
+        copy.setCoSubInhibRow((model == KineticModel.UninhibitedOneSub) ? new ArrayList<>()
+                : new ArrayList<>(row.subList(0, Math.min(row.size(), data.getCols()))));
+        copy.setTableData(data.getTableData());
+        copy.setGraphType(data.getGraphType());
+        copy.setRobustWeighting(data.getRobustWeighting());
+        copy.setWeightingScheme(data.getWeightingScheme());
+        copy.setModelType(model);
+        return copy;
+    }
+
+    /**
+     * Calculates AIC, AICc and BIC from the residual sum of squares, counting the variance as a parameter.
+     *
+     * @param candidate fitted candidate
+     */
+    private static void informationCriteria(Candidate candidate) {
+        int n = candidate.numPoints;
+        int k = candidate.getNumParams() + 1;
+        double logLikelihoodTerm = n * Math.log(Math.max(candidate.residualSumSquares, Double.MIN_NORMAL) / n);
+        candidate.aic = logLikelihoodTerm + 2.0 * k;
+        candidate.aicc = (n - k - 1 > 0) ? candidate.aic + 2.0 * k * (k + 1) / (n - k - 1) : Double.POSITIVE_INFINITY;
+        candidate.bic = logLikelihoodTerm + k * Math.log(n);
+    }
+
+    /**
+     * Finds the fitted candidate for the simpler model the given model extends. A model with two extra terms is
+     * compared with whichever of its one-term simpler models fits better.
+     *
+     * @param model kinetic model
+     * @param candidates every candidate
+     * @return the simpler candidate, or null if there is none or it couldn't be fitted
+     */
+    private static Candidate nestedCandidate(KineticModel model, List<Candidate> candidates) {
+        List<KineticModel> nested;
+        switch (model) {
+            case UninhibitedOneSub:
+                return null;
+            case InhibitedCompetitive:
+            case InhibitedUnCompetitive:
+            case UninhibitedTwoSubPingPong:
+                nested = Arrays.asList(KineticModel.UninhibitedOneSub);
+                break;
+            case InhibitedNonCompetitive:
+                nested = Arrays.asList(KineticModel.InhibitedCompetitive, KineticModel.InhibitedUnCompetitive);
+                break;
+            case UninhibitedTwoSubOrderedBiBi:
+                nested = Arrays.asList(KineticModel.UninhibitedTwoSubPingPong);
+                break;
+            default:
+                throw new IllegalArgumentException("Unrecognised model type: " + model);
+        }
+        return candidates.stream().filter(c -> c.isFitted() && nested.contains(c.model))
+                .min(Comparator.comparingDouble(Candidate::getResidualSumSquares)).orElse(null);
+    }
+
+    /**
+     * Runs the extra-sum-of-squares F-test of a candidate against the simpler candidate it extends. If the candidate
+     * fits worse than the simpler one, which nesting rules out, a fit went wrong and the test is left undefined.
+     *
+     * @param candidate fitted candidate
+     * @param nested fitted simpler candidate, or null
+     */
+    private static void fTest(Candidate candidate, Candidate nested) {
+        if (nested == null) return;
+        int extraParams = candidate.getNumParams() - nested.getNumParams();
+        int degreesOfFreedom = candidate.numPoints - candidate.getNumParams();
+        candidate.nestedModel = nested.model;
+        if (degreesOfFreedom <= 0) return;
+        double improvement = nested.residualSumSquares - candidate.residualSumSquares;
+        if (improvement < -1e-9 * nested.residualSumSquares) return;
+        improvement = Math.max(improvement, 0.0); // rounding when both fit equally well
+        candidate.fStatistic = (improvement / extraParams) / (candidate.residualSumSquares / degreesOfFreedom);
+        candidate.fPValue = fDistributionUpperTail(candidate.fStatistic, extraParams, degreesOfFreedom);
+    }
+
+    /**
+     * Calculates the probability that an F-distributed value is at least f.
+     *
+     * @param f F statistic
+     * @param d1 numerator degrees of freedom
+     * @param d2 denominator degrees of freedom
+     * @return upper tail probability
+     */
+    static double fDistributionUpperTail(double f, double d1, double d2) {
+        if (Double.isNaN(f)) return Double.NaN;
+        if (f == Double.POSITIVE_INFINITY) return 0.0;
+        return regularizedBeta(d2 / (d2 + d1 * f), d2 / 2.0, d1 / 2.0);
+    }
+
+    /**
+     * Calculates the regularised incomplete beta function I_x(a, b) by its continued fraction.
+     *
+     * @param x upper limit, from 0 to 1
+     * @param a first shape parameter
+     * @param b second shape parameter
+     * @return I_x(a, b)
+     */
+    private static double regularizedBeta(double x, double a, double b) {
+        if (x <= 0) return 0.0;
+        if (x >= 1) return 1.0;
+        double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b) + a * Math.log(x) + b * Math.log(1 - x));
+        if (x < (a + 1) / (a + b + 2)) return front * betaContinuedFraction(x, a, b) / a;
+        return 1.0 - front * betaContinuedFraction(1 - x, b, a) / b;
+    }
+
+    /**
+     * Evaluates the continued fraction for the incomplete beta function by Lentz's method.
+     *
+     * @param x upper limit
+     * @param a first shape parameter
+     * @param b second shape parameter
+     * @return the continued fraction
+     */
+    private static double betaContinuedFraction(double x, double a, double b) {
+        double tiny = 1e-300;
+        double c = 1.0;
+        double d = 1.0 - (a + b) * x / (a + 1);
+        d = 1.0 / (Math.abs(d) < tiny ? tiny : d);
+        double h = d;
+        for (int m = 1; m <= 300; m++) {
+            int m2 = 2 * m;
+            double aa = m * (b - m) * x / ((a + m2 - 1) * (a + m2));
+            d = 1.0 + aa * d;
+            d = 1.0 / (Math.abs(d) < tiny ? tiny : d);
+            c = 1.0 + aa / c;
+            c = Math.abs(c) < tiny ? tiny : c;
+            h *= d * c;
+            aa = -(a + m) * (a + b + m) * x / ((a + m2) * (a + m2 + 1));
+            d = 1.0 + aa * d;
+            d = 1.0 / (Math.abs(d) < tiny ? tiny : d);
+            c = 1.0 + aa / c;
+            c = Math.abs(c) < tiny ? tiny : c;
+            double delta = d * c;
+            h *= delta;
+            if (Math.abs(delta - 1.0) < 1e-15) break;
+        }
+        return h;
+    }
+
+    /**
+     * Calculates the logarithm of the gamma function by the Lanczos approximation.
+     *
+     * @param x positive value
+     * @return ln(gamma(x))
+     */
+    private static double logGamma(double x) {
+        double[] coefficients = {0.99999999999980993, 676.5203681218851, -1259.1392167224028, 771.32342877765313,
+                -176.61502916214059, 12.507343278686905, -0.13857109526572012, 9.9843695780195716e-6,
+                1.5056327351493116e-7};
+        if (x < 0.5) return Math.log(Math.PI / Math.abs(Math.sin(Math.PI * x))) - logGamma(1 - x);
+        x -= 1;
+        double sum = coefficients[0];
+        double t = x + 7.5;
+        for (int i = 1; i < coefficients.length; i++) sum += coefficients[i] / (x + i);
+        return 0.5 * Math.log(2 * Math.PI) + (x + 0.5) * Math.log(t) - t + Math.log(sum);
+    }
+}
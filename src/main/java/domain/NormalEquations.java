@@ -0,0 +1,87 @@
+package domain;
+
+/**
+ * NormalEquations is an abstract class with static methods for accumulating the weighted normal equations of a
+ * linear regression, S[k][m] = sum over cells of Q[k] * Q[m] * w, where Q holds the derivatives of the reciprocal
+ * rate equation at a cell followed by the cell's reciprocal rate.
+ * The derivatives are stored column-major, one array per derivative with one entry per cell, so each S[k][m] is a
+ * dot product over contiguous arrays. The cells are summed in blocks that stay in cache while every S[k][m] is
+ * added up, and the dot products are unrolled four cells at a time into independent sums, which lets the processor
+ * work on several cells at once instead of waiting for each addition in turn.
+ */
+public abstract class NormalEquations {
+
+    /** The number of cells each unrolled step handles. */
+    private static final int UNROLL = 4;
+    /** The number of cells summed at a time, small enough for their values to stay in the fastest cache. */
+    private static final int BLOCK = 512;
+
+    /**
+     * Accumulates the normal equations from column-major derivatives, four cells at a time. Only the upper triangle
+     * is summed; the lower triangle is copied from it.
+     *
+     * @param basis derivatives by parameter (then the reciprocal rate), each with one value per cell
+     * @param weights weight of each cell, in the same order
+     * @param cells number of cells
+     * @param numParams number of parameters
+     * @param S matrix to add the sums to, at least numParams by numParams + 1
+     */
+    public static void accumulate(double[][] basis, double[] weights, int cells, int numParams, double[][] S) {
+        for (int start = 0; start < cells; start += BLOCK) {
+            int end = Math.min(cells, start + BLOCK);
+            for (int k = 0; k < numParams; k++) {
+                double[] qk = basis[k];
+                for (int m = k; m < numParams + 1; m++) {
+                    double sum = dot(qk, basis[m], weights, start, end);
+                    S[k][m] += sum;
+                    if (m < numParams && m != k) S[m][k] += sum;
+                }
+            }
+        }
+    }
+
+    /**
+     * Accumulates the normal equations from column-major derivatives one cell at a time, in the order the original
+     * LUCENZ code does. This is the reference accumulate(...) is checked against.
+     *
+     * @param basis derivatives by parameter (then the reciprocal rate), each with one value per cell
+     * @param weights weight of each cell, in the same order
+     * @param cells number of cells
+     * @param numParams number of parameters
+     * @param S matrix to add the sums to, at least numParams by numParams + 1
+     */
+    public static void accumulateScalar(double[][] basis, double[] weights, int cells, int numParams, double[][] S) {
+        for (int cell = 0; cell < cells; cell++) {
+            for (int m = 0; m < numParams + 1; m++) {
+                for (int k = 0; k < numParams; k++) {
+                    S[k][m] += basis[k][cell] * basis[m][cell] * weights[cell];
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the weighted dot product of two arrays with four independent partial sums.
+     *
+     * @param a first array
+     * @param b second array
+     * @param w weights
+     * @param start index of the first value
+     * @param end index after the last value
+     * @return sum of a[i] * b[i] * w[i]
+     */
+    private static double dot(double[] a, double[] b, double[] w, int start, int end) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = start;
+        for (int unrolledEnd = end - ((end - start) % UNROLL); i < unrolledEnd; i += UNROLL) {
+            s0 += a[i] * b[i] * w[i];
+            s1 += a[i + 1] * b[i + 1] * w[i + 1];
+            s2 += a[i + 2] * b[i + 2] * w[i + 2];
+            s3 += a[i + 3] * b[i + 3] * w[i + 3];
+        }
+        for (; i < end; i++) {
+            s0 += a[i] * b[i] * w[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+}
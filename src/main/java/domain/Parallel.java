@@ -0,0 +1,94 @@
+package domain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel is an abstract class with a static method for spreading independent pieces of work (wells, cells of a
+ * grid, trajectories, fits) over a fixed number of threads.
+ *
+ * The work is split into strided chunks, one per thread: chunk c of n does the pieces c, c + n, c + 2n, ... so
+ * neighbouring pieces, which usually take similar times, are spread evenly. Each chunk can set up its own buffers
+ * once (e.g. a simulator or fitter) and reuse them for all its pieces. A single chunk runs on the calling thread.
+ */
+public abstract class Parallel {
+
+    /**
+     * One chunk of the work.
+     */
+    @FunctionalInterface
+    public interface Chunk {
+        /**
+         * Does the pieces chunk, chunk + chunks, chunk + 2 * chunks, ... of the work.
+         *
+         * @param chunk index of this chunk, from 0
+         * @param chunks number of chunks
+         * @throws Exception if the work fails
+         */
+        void run(int chunk, int chunks) throws Exception;
+    }
+
+    /**
+     * @param count number of pieces of work
+     * @param threads most threads to use
+     * @return number of chunks the work is split into: the number of threads, but at least one and no more than
+     * the number of pieces
+     */
+    public static int chunks(long count, int threads) {
+        return (int) Math.max(1, Math.min(threads, count));
+    }
+
+    /**
+     * Runs every chunk of the work, each on its own thread of a fixed pool, and waits for them all.
+     * An IllegalArgumentException from a chunk is rethrown as it is, since it means the input was invalid;
+     * anything else is wrapped in an IllegalStateException.
+     *
+     * @param count number of pieces of work
+     * @param threads most threads to use
+     * @param task what the work is, for error messages, e.g. "Simulation"
+     * @param chunk does one chunk of the work
+     * @throws IllegalArgumentException if a chunk throws one
+     * @throws IllegalStateException if a chunk throws anything else, or the calling thread is interrupted
+     */
+    public static void run(long count, int threads, String task, Chunk chunk) {
+        int chunks = chunks(count, threads);
+        if (chunks == 1) {
+            try {
+                chunk.run(0, 1);
+            } catch (IllegalArgumentException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(task + " failed", e);
+            }
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int c = 0; c < chunks; c++) {
+            int index = c;
+            tasks.add(() -> {
+                chunk.run(index, chunks);
+                return null;
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(chunks);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(task + " was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException) throw (IllegalArgumentException) e.getCause();
+            throw new IllegalStateException(task + " failed", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package domain;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * PlateLayout describes what is in each well of a microplate (96, 384 or 1536 wells): the dataset the well belongs
+ * to and its substrate and co-substrate/inhibitor concentrations, or that it is a blank.
+ * Each dataset becomes one Data object, with a row per substrate concentration and a column per co-substrate/inhibitor
+ * concentration. Wells of the same dataset with the same concentrations are replicates, which become extra rows with
+ * the same substrate concentration (as replicate variance weighting expects). Blanks are subtracted from the wells of
+ * their dataset: a blank with a co-substrate/inhibitor concentration from the wells of that column, and one without
+ * from any column without blanks of its own.
+ */
+public class PlateLayout {
+
+    /** The number of rows and columns of each plate size: 96, 384 and 1536 wells. */
+    private static final int[][] PLATE_SIZES = {{8, 12}, {16, 24}, {32, 48}};
+    /** A well name, e.g. "A1", "P24" or "AF48", with or without leading zeros. */
+    private static final Pattern WELL = Pattern.compile("([A-Za-z]{1,2})0*(\\d{1,2})");
+
+    /**
+     * What is in one well.
+     */
+    public static class Well {
+        /** The name of the well, e.g. "A1". */
+        private final String name;
+        /** The dataset the well belongs to. */
+        private final String dataset;
+        /** The substrate concentration, or Double.NaN for a blank. */
+        private final double substrate;
+        /** The co-substrate/inhibitor concentration, or Double.NaN for a blank of every column. */
+        private final double coSubInhib;
+        /** Whether the well is a blank. */
+        private final boolean blank;
+
+        /**
+         * @param name name of the well
+         * @param dataset dataset the well belongs to
+         * @param substrate substrate concentration
+         * @param coSubInhib co-substrate/inhibitor concentration
+         * @param blank whether the well is a blank
+         */
+        Well(String name, String dataset, double substrate, double coSubInhib, boolean blank) {
+            this.name = name;
+            this.dataset = dataset;
+            this.substrate = substrate;
+            this.coSubInhib = coSubInhib;
+            this.blank = blank;
+        }
+
+        /**
+         * @return the name of the well, e.g. "A1"
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the dataset the well belongs to
+         */
+        public String getDataset() {
+            return dataset;
+        }
+
+        /**
+         * @return the substrate concentration, or Double.NaN for a blank
+         */
+        public double getSubstrate() {
+            return substrate;
+        }
+
+        /**
+         * @return the co-substrate/inhibitor concentration, or Double.NaN for a blank of every column
+         */
+        public double getCoSubInhib() {
+            return coSubInhib;
+        }
+
+        /**
+         * @return whether the well is a blank
+         */
+        public boolean isBlank() {
+            return blank;
+        }
+    }
+
+    /** What is in each well, by well name, in the order they were added. */
+    private final Map<String, Well> wells = new LinkedHashMap<>();
+    /** The kinetic model of each dataset that has one. */
+    private final Map<String, KineticModel> models = new LinkedHashMap<>();
+
+    /**
+     * Adds a well with a substrate and co-substrate/inhibitor concentration.
+     *
+     * @param well name of the well
+     * @param dataset dataset the well belongs to
+     * @param substrate substrate concentration
+     * @param coSubInhib co-substrate/inhibitor concentration (0 for one substrate without inhibitor)
+     * @throws IllegalArgumentException if the well name is invalid or the well is already in the layout
+     */
+    public void addSample(String well, String dataset, double substrate, double coSubInhib) {
+        add(new Well(normaliseWell(well), dataset, substrate, coSubInhib, false));
+    }
+
+    /**
+     * Adds a blank well.
+     *
+     * @param well name of the well
+     * @param dataset dataset the blank belongs to
+     * @param coSubInhib co-substrate/inhibitor concentration of the column it is a blank of, or Double.NaN for every
+     * column
+     * @throws IllegalArgumentException if the well name is invalid or the well is already in the layout
+     */
+    public void addBlank(String well, String dataset, double coSubInhib) {
+        add(new Well(normaliseWell(well), dataset, Double.NaN, coSubInhib, true));
+    }
+
+    /**
+     * Adds a well.
+     *
+     * @param well what is in the well
+     */
+    private void add(Well well) {
+        if (wells.containsKey(well.name)) throw new IllegalArgumentException("Well " + well.name + " is in the layout twice");
+        wells.put(well.name, well);
+    }
+
+    /**
+     * Sets the kinetic model of a dataset. Datasets without one use UninhibitedOneSub.
+     *
+     * @param dataset the dataset
+     * @param model its kinetic model
+     * @throws IllegalArgumentException if the dataset already has a different model
+     */
+    public void setModel(String dataset, KineticModel model) {
+        KineticModel previous = models.putIfAbsent(dataset, model);
+        if (previous != null && previous != model) {
+            throw new IllegalArgumentException("Dataset " + dataset + " has two models: " + previous + " and " + model);
+        }
+    }
+
+    /**
+     * @return what is in each well, in the order they were added
+     */
+    public Collection<Well> getWells() {
+        return wells.values();
+    }
+
+    /**
+     * @return the smallest plate size (96, 384 or 1536) that has every well in the layout
+     */
+    public int getSize() {
+        int size = 0;
+        for (Well well : wells.values()) {
+            int[] position = position(well.name);
+            for (int[] plate : PLATE_SIZES) {
+                if (position[0] < plate[0] && position[1] < plate[1]) {
+                    size = Math.max(size, plate[0] * plate[1]);
+                    break;
+                }
+            }
+        }
+        return Math.max(size, PLATE_SIZES[0][0] * PLATE_SIZES[0][1]);
+    }
+
+    /**
+     * Turns the value of every well on a plate into one Data object per dataset, in one pass over the wells.
+     * Each value has its blank subtracted, is made positive (so falling signals give positive rates) and is divided
+     * by signalPerConcentration. Wells without a value are left blank in the table, and rows without any are left
+     * out.
+     *
+     * @param values value of each well (e.g. its initial rate in signal per unit time), by well name
+     * @param signalPerConcentration change of signal per unit change of concentration
+     * @param source where the values came from; each Data object's file path is source#dataset
+     * @return one Data object per dataset, in the order the datasets first appear in the layout
+     */
+    public List<Data> toData(Map<String, Double> values, double signalPerConcentration, String source) {
+        // Sort the samples by dataset, substrate and co-substrate/inhibitor, and total the blanks:
+        Map<String, TreeMap<Double, TreeMap<Double, List<Double>>>> samples = new LinkedHashMap<>();
+        Map<String, Map<Double, double[]>> blanks = new LinkedHashMap<>();
+        for (Well well : wells.values()) {
+            Double value = values.get(well.name);
+            double reading = (value == null) ? Double.NaN : value;
+            if (well.blank) {
+                if (Double.isNaN(reading)) continue;
+                double[] total = blanks.computeIfAbsent(well.dataset, d -> new LinkedHashMap<>())
+                        .computeIfAbsent(well.coSubInhib, c -> new double[2]);
+                total[0] += reading;
+                total[1]++;
+            }
+            else {
+                samples.computeIfAbsent(well.dataset, d -> new TreeMap<>())
+                        .computeIfAbsent(well.substrate, s -> new TreeMap<>())
+                        .computeIfAbsent(well.coSubInhib, c -> new ArrayList<>()).add(reading);
+            }
+        }
+
+        List<Data> datasets = new ArrayList<>();
+        for (Map.Entry<String, TreeMap<Double, TreeMap<Double, List<Double>>>> dataset : samples.entrySet()) {
+            TreeMap<Double, TreeMap<Double, List<Double>>> bySubstrate = dataset.getValue();
+            Map<Double, double[]> datasetBlanks = blanks.getOrDefault(dataset.getKey(), new LinkedHashMap<>());
+            TreeSet<Double> columns = new TreeSet<>();
+            for (TreeMap<Double, List<Double>> byCoSubInhib : bySubstrate.values()) {
+                columns.addAll(byCoSubInhib.keySet());
+            }
+            List<Double> coSubInhibRow = new ArrayList<>(columns);
+
+            // One row per replicate of each substrate concentration:
+            List<Double> substrateCol = new ArrayList<>();
+            List<double[]> rows = new ArrayList<>();
+            for (Map.Entry<Double, TreeMap<Double, List<Double>>> substrate : bySubstrate.entrySet()) {
+                int replicates = 0;
+                for (List<Double> readings : substrate.getValue().values()) replicates = Math.max(replicates, readings.size());
+                for (int replicate = 0; replicate < replicates; replicate++) {
+                    double[] row = new double[coSubInhibRow.size()];
+                    boolean empty = true;
+                    for (int col = 0; col < row.length; col++) {
+                        List<Double> readings = substrate.getValue().get(coSubInhibRow.get(col));
+                        row[col] = (readings == null || replicate >= readings.size()) ? Double.NaN
+                                : Math.abs(readings.get(replicate) - blank(datasetBlanks, coSubInhibRow.get(col))) / signalPerConcentration;
+                        empty &= Double.isNaN(row[col]);
+                    }
+                    if (empty) continue; // e.g. every well of the row overflowed
+                    substrateCol.add(substrate.getKey());
+                    rows.add(row);
+                }
+            }
+
+            Data data = new Data(substrateCol, coSubInhibRow, rows.toArray(new double[0][]));
+            data.setRows(rows.size());
+            data.setCols(coSubInhibRow.size());
+            data.setModelType(models.getOrDefault(dataset.getKey(), KineticModel.UninhibitedOneSub));
+            data.setFilePath(source + "#" + dataset.getKey());
+            datasets.add(data);
+        }
+        return datasets;
+    }
+
+    /**
+     * Gets the mean blank of a column: the mean of its own blanks, or else of the blanks of every column, or else 0.
+     *
+     * @param blanks total and count of the blanks of a dataset, by co-substrate/inhibitor concentration
+     * @param coSubInhib co-substrate/inhibitor concentration of the column
+     * @return the mean blank
+     */
+    private static double blank(Map<Double, double[]> blanks, double coSubInhib) {
+        double[] total = blanks.get(coSubInhib);
+        if (total == null) total = blanks.get(Double.NaN);
+        return (total == null) ? 0 : total[0] / total[1];
+    }
+
+    /**
+     * Expands a well or a rectangular range of wells, e.g. "A1" or "A1:B3" (A1, A2, A3, B1, B2, B3).
+     *
+     * @param range well or range of wells
+     * @return names of the wells, row by row
+     * @throws IllegalArgumentException if a well name is invalid
+     */
+    public static List<String> expandRange(String range) {
+        String[] ends = range.split(":");
+        if (ends.length > 2) throw new IllegalArgumentException("Invalid range of wells: " + range);
+        int[] first = position(normaliseWell(ends[0]));
+        int[] last = position(normaliseWell(ends[ends.length - 1]));
+        List<String> names = new ArrayList<>();
+        for (int row = Math.min(first[0], last[0]); row <= Math.max(first[0], last[0]); row++) {
+            for (int col = Math.min(first[1], last[1]); col <= Math.max(first[1], last[1]); col++) {
+                names.add(wellName(row, col));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Puts a well name in its usual form, e.g. "a01" as "A1".
+     *
+     * @param name well name
+     * @return the name in its usual form
+     * @throws IllegalArgumentException if it isn't a well of a 1536 well plate
+     */
+    public static String normaliseWell(String name) {
+        Matcher matcher = WELL.matcher(name.trim());
+        if (matcher.matches()) {
+            String well = matcher.group(1).toUpperCase(Locale.ROOT) + Integer.parseInt(matcher.group(2));
+            int[] position = position(well);
+            int[] largest = PLATE_SIZES[PLATE_SIZES.length - 1];
+            if (position[0] < largest[0] && position[1] >= 0 && position[1] < largest[1]) return well;
+        }
+        throw new IllegalArgumentException("Invalid well: " + name);
+    }
+
+    /**
+     * Gets the name of a well from its position, e.g. row 0 column 0 is "A1" and row 26 is "AA".
+     *
+     * @param row row of the well, from 0
+     * @param col column of the well, from 0
+     * @return well name
+     */
+    public static String wellName(int row, int col) {
+        String letters = (row < 26) ? String.valueOf((char) ('A' + row))
+                : String.valueOf((char) ('A' + row / 26 - 1)) + (char) ('A' + row % 26);
+        return letters + (col + 1);
+    }
+
+    /**
+     * Gets the position of a well from its name in its usual form.
+     *
+     * @param well well name
+     * @return row and column, from 0
+     */
+    private static int[] position(String well) {
+        int letters = Character.isDigit(well.charAt(1)) ? 1 : 2;
+        int row = (letters == 1) ? well.charAt(0) - 'A' : (well.charAt(0) - 'A' + 1) * 26 + well.charAt(1) - 'A';
+        return new int[]{row, Integer.parseInt(well.substring(letters)) - 1};
+    }
+}
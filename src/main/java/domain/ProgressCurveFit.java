@@ -0,0 +1,539 @@
+package domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ProgressCurveFit is an abstract class with static methods for fitting the kinetic constants of a model directly to
+ * progress curves (product against time), using every reading rather than only each curve's initial rate.
+ *
+ * The curves of an experiment share the constants, and each has its own starting substrate concentration and
+ * co-substrate/inhibitor concentration. For one substrate, the integrated rate law V t = P + K ln(S0 / (S0 - P)) is
+ * solved exactly by the Lambert W function, P = S0 - K W((S0 / K) e^((S0 - V t) / K)), where an inhibitor only
+ * changes the apparent V and K. For two substrates, which are both used up, the integrated rate law is solved for P by
+ * Newton's method. Either way the derivatives of P come analytically from differentiating the rate law implicitly.
+ * Each curve has its own baseline (e.g. the absorbance of everything but the product), which is eliminated by
+ * centring each curve's residuals and derivatives. The constants are fitted by Levenberg-Marquardt on their
+ * logarithms, as in GlobalFit, and experiments are fitted in parallel.
+ */
+public abstract class ProgressCurveFit {
+
+    /** The most Newton steps solving a two substrate rate law for the product. */
+    private static final int MAX_NEWTON_STEPS = 50;
+    /** Relative difference of the two starting substrate concentrations below which they are treated as equal. */
+    private static final double EQUAL_SUBSTRATES = 1e-8;
+
+    /**
+     * One progress curve: the product concentration at each reading time.
+     */
+    public static class Curve {
+        /** The time of each reading, from the start of the reaction. */
+        private final double[] time;
+        /** The product concentration at each reading, plus any baseline. */
+        private final double[] product;
+        /** The starting substrate concentration. */
+        private final double substrate;
+        /** The starting co-substrate concentration, or the inhibitor concentration. */
+        private final double coSubInhib;
+
+        /**
+         * Creates a curve from its readings, leaving out any without a value.
+         *
+         * @param time time of each reading, from the start of the reaction, in increasing order
+         * @param product product concentration at each reading, plus any baseline
+         * @param count number of readings
+         * @param substrate starting substrate concentration
+         * @param coSubInhib starting co-substrate concentration, or inhibitor concentration (0 for neither)
+         */
+        public Curve(double[] time, double[] product, int count, double substrate, double coSubInhib) {
+            double[] t = new double[count];
+            double[] p = new double[count];
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                if (Double.isFinite(time[i]) && Double.isFinite(product[i])) {
+                    t[n] = time[i];
+                    p[n] = product[i];
+                    n++;
+                }
+            }
+            this.time = Arrays.copyOf(t, n);
+            this.product = Arrays.copyOf(p, n);
+            this.substrate = substrate;
+            this.coSubInhib = coSubInhib;
+        }
+
+        /**
+         * @return the number of readings
+         */
+        public int getCount() {
+            return time.length;
+        }
+
+        /**
+         * @return the starting substrate concentration
+         */
+        public double getSubstrate() {
+            return substrate;
+        }
+
+        /**
+         * @return the starting co-substrate concentration, or the inhibitor concentration
+         */
+        public double getCoSubInhib() {
+            return coSubInhib;
+        }
+    }
+
+    /**
+     * The results of fitting one experiment's progress curves.
+     */
+    public static class Result {
+        /** Names of the constants, as in Data's textData: "vm" and then those of GlobalFit.sharedNames. */
+        private final List<String> names;
+        /** Values of the constants. */
+        private final double[] values;
+        /** Standard errors of the constants. */
+        private final double[] errors;
+        /** Residual sum of squares of the readings. */
+        private final double residualSumSquares;
+        /** Number of readings minus number of constants and baselines. */
+        private final int degreesOfFreedom;
+        /** Number of iterations taken. */
+        private final int iterations;
+        /** Why the fit failed, or "" if it didn't. */
+        private final String errorMessage;
+
+        /**
+         * @param names names of the constants
+         * @param values values of the constants
+         * @param errors standard errors of the constants
+         * @param residualSumSquares residual sum of squares of the readings
+         * @param degreesOfFreedom number of readings minus number of constants and baselines
+         * @param iterations number of iterations taken
+         * @param errorMessage why the fit failed, or ""
+         */
+        Result(List<String> names, double[] values, double[] errors, double residualSumSquares, int degreesOfFreedom,
+               int iterations, String errorMessage) {
+            this.names = names;
+            this.values = values;
+            this.errors = errors;
+            this.residualSumSquares = residualSumSquares;
+            this.degreesOfFreedom = degreesOfFreedom;
+            this.iterations = iterations;
+            this.errorMessage = errorMessage;
+        }
+
+        /**
+         * @return names of the constants, "vm" first
+         */
+        public List<String> getNames() {
+            return names;
+        }
+
+        /**
+         * @param name name of a constant, e.g. "km"
+         * @return its value
+         */
+        public double getValue(String name) {
+            return values[names.indexOf(name)];
+        }
+
+        /**
+         * @param name name of a constant, e.g. "km"
+         * @return its standard error
+         */
+        public double getError(String name) {
+            return errors[names.indexOf(name)];
+        }
+
+        /**
+         * @return residual sum of squares of the readings
+         */
+        public double getResidualSumSquares() {
+            return residualSumSquares;
+        }
+
+        /**
+         * @return number of readings minus number of constants and baselines
+         */
+        public int getDegreesOfFreedom() {
+            return degreesOfFreedom;
+        }
+
+        /**
+         * @return number of iterations taken
+         */
+        public int getIterations() {
+            return iterations;
+        }
+
+        /**
+         * @return whether the fit succeeded
+         */
+        public boolean isFitted() {
+            return errorMessage.isEmpty();
+        }
+
+        /**
+         * @return why the fit failed, or "" if it didn't
+         */
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+    }
+
+    /**
+     * Fits the constants of a model to the progress curves of one experiment.
+     *
+     * @param curves progress curves, which share the constants
+     * @param model kinetic model
+     * @return the fitted constants
+     * @throws IllegalArgumentException if there aren't enough readings, or the constants can't be determined
+     */
+    public static Result fit(List<Curve> curves, KineticModel model) {
+        List<String> names = new ArrayList<>();
+        names.add("vm");
+        names.addAll(GlobalFit.sharedNames(model));
+        int numParams = names.size();
+        int numReadings = 0;
+        for (Curve curve : curves) {
+            if (!(curve.substrate > 0)) throw new IllegalArgumentException("A curve has no substrate");
+            if (isTwoSubstrate(model) && !(curve.coSubInhib > 0)) throw new IllegalArgumentException("A curve has no co-substrate");
+            numReadings += curve.getCount();
+        }
+        int degreesOfFreedom = numReadings - curves.size() - numParams;
+        if (degreesOfFreedom < 1) throw new IllegalArgumentException("There aren't enough readings to fit " + numParams + " constants");
+
+        // Levenberg-Marquardt on the logarithms of the constants:
+        double[] logK = startingValues(curves, model, numParams);
+        LevenbergMarquardt.DenseProblem problem = new LevenbergMarquardt.DenseProblem(numParams) {
+            @Override
+            public double normalEquations(double[] params) {
+                return ProgressCurveFit.normalEquations(curves, model, params, normal);
+            }
+
+            @Override
+            public double residualSumSquares(double[] params) {
+                return ProgressCurveFit.residualSumSquares(curves, model, params);
+            }
+        };
+        LevenbergMarquardt.Result fitted = LevenbergMarquardt.minimise(problem, logK, LevenbergMarquardt.MAX_ITERATIONS);
+        double ssr = fitted.getResidualSumSquares();
+        if (!Double.isFinite(ssr)) throw new IllegalArgumentException("The curves can't be fitted from the starting values");
+        int iterations = fitted.getIterations();
+
+        // Standard errors from the undamped normal equations, which are in the logarithms (relative errors):
+        double[][] inverse = new double[numParams][numParams];
+        double condition = problem.invert(numParams, inverse);
+        if (!(condition <= LinearSolver.CONDITION_LIMIT)) {
+            throw new IllegalArgumentException(String.format("The curves can't determine every constant of the %s model (condition number %.1e).", model, condition));
+        }
+        double variance = ssr / degreesOfFreedom;
+        double[] values = new double[numParams];
+        double[] errors = new double[numParams];
+        for (int j = 0; j < numParams; j++) {
+            values[j] = Math.exp(logK[j]);
+            errors[j] = values[j] * Math.sqrt(variance * inverse[j][j]);
+        }
+        return new Result(names, values, errors, ssr, degreesOfFreedom, iterations, "");
+    }
+
+    /**
+     * Fits many experiments in parallel. Experiments that can't be fitted are still returned, with their error
+     * message set.
+     *
+     * @param experiments progress curves of each experiment
+     * @param model kinetic model
+     * @param threads number of experiments to fit at once
+     * @return the result of each experiment, in the same order
+     */
+    public static List<Result> fitAll(List<List<Curve>> experiments, KineticModel model, int threads) {
+        Result[] results = new Result[experiments.size()];
+        Parallel.run(results.length, threads, "Progress curve fitting", (chunk, chunks) -> {
+            for (int i = chunk; i < results.length; i += chunks) {
+                try {
+                    results[i] = fit(experiments.get(i), model);
+                } catch (IllegalArgumentException e) {
+                    results[i] = new Result(new ArrayList<>(), new double[0], new double[0], Double.NaN, 0, 0, e.getMessage());
+                }
+            }
+        });
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Calculates the product concentration at a time from the integrated rate law, and its derivatives with respect
+     * to the logarithm of each constant.
+     *
+     * @param model kinetic model
+     * @param k constants: Vm and then those of GlobalFit.sharedNames
+     * @param curve the curve, for its starting concentrations
+     * @param t time
+     * @param guess product concentration to start Newton's method from, for two substrates
+     * @param dk filled with the derivatives of the product with respect to the logarithm of each constant
+     * @return the product concentration
+     */
+    static double product(KineticModel model, double[] k, Curve curve, double t, double guess, double[] dk) {
+        if (isTwoSubstrate(model)) return twoSubstrateProduct(model, k, curve.substrate, curve.coSubInhib, t, guess, dk);
+
+        // Apparent V and K, and their derivatives:
+        double i = curve.coSubInhib;
+        double v = k[0];
+        double km = k[1];
+        double dvInhib = 0; // d(log V)/d(log Kii)
+        double dkInhib = 0; // d(log K)/d(log Kii)
+        double dkCompetitive = 0; // d(log K)/d(log Kis)
+        switch (model) {
+            case UninhibitedOneSub:
+                break;
+            case InhibitedCompetitive: { // K = Km (1 + I/Kis)
+                double fs = 1 + i / k[2];
+                km *= fs;
+                dkCompetitive = -(i / k[2]) / fs;
+                break;
+            }
+            case InhibitedNonCompetitive: { // V = Vm / (1 + I/Kii), K = Km (1 + I/Kis) / (1 + I/Kii)
+                double fs = 1 + i / k[2];
+                double fi = 1 + i / k[3];
+                v /= fi;
+                km *= fs / fi;
+                dkCompetitive = -(i / k[2]) / fs;
+                dvInhib = (i / k[3]) / fi;
+                dkInhib = dvInhib;
+                break;
+            }
+            case InhibitedUnCompetitive: { // V = Vm / (1 + I/Kii), K = Km / (1 + I/Kii)
+                double fi = 1 + i / k[2];
+                v /= fi;
+                km /= fi;
+                dvInhib = (i / k[2]) / fi;
+                dkInhib = dvInhib;
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unrecognised model type: " + model);
+        }
+
+        // P = S0 - K W(e^z), with z = ln(S0/K) + (S0 - V t)/K:
+        double s0 = curve.substrate;
+        double w = LambertW.w0Exp(Math.log(s0 / km) + (s0 - v * t) / km);
+        double p = s0 - km * w;
+        double share = w / (1 + w);
+        double dLogV = v * t * share; // dP/d(log V)
+        double dLogK = -((v * t - s0) / km + w) * km * share; // dP/d(log K)
+
+        dk[0] = dLogV;
+        dk[1] = dLogK;
+        switch (model) {
+            case InhibitedCompetitive:
+                dk[2] = dLogK * dkCompetitive;
+                break;
+            case InhibitedNonCompetitive:
+                dk[2] = dLogK * dkCompetitive;
+                dk[3] = dLogV * dvInhib + dLogK * dkInhib;
+                break;
+            case InhibitedUnCompetitive:
+                dk[2] = dLogV * dvInhib + dLogK * dkInhib;
+                break;
+            default:
+                break;
+        }
+        return p;
+    }
+
+    /**
+     * Solves the integrated two substrate rate law for the product concentration by Newton's method, kept within the
+     * possible concentrations by bisection:
+     * Vm t = P + Ka ln(A0/A) + Kb ln(B0/B) + Kia Kb (ln(A0/A) - ln(B0/B)) / (B0 - A0), with A = A0 - P and B = B0 - P
+     * (the last term is for Ordered Bi-Bi only).
+     *
+     * @param model kinetic model
+     * @param k constants: Vm, Ka, Kb (and Kia)
+     * @param a0 starting substrate concentration
+     * @param b0 starting co-substrate concentration
+     * @param t time
+     * @param guess product concentration to start from
+     * @param dk filled with the derivatives of the product with respect to the logarithm of each constant
+     * @return the product concentration
+     */
+    private static double twoSubstrateProduct(KineticModel model, double[] k, double a0, double b0, double t, double guess, double[] dk) {
+        boolean ordered = model == KineticModel.UninhibitedTwoSubOrderedBiBi;
+        double kiaKb = ordered ? k[3] * k[2] : 0;
+        double target = k[0] * t;
+        double low = 0;
+        double high = Math.min(a0, b0);
+        double p = (guess > low && guess < high) ? guess : 0;
+        double la = 0, lb = 0, lab = 0, slope = 1;
+        for (int step = 0; step < MAX_NEWTON_STEPS; step++) {
+            double a = a0 - p;
+            double b = b0 - p;
+            la = -Math.log1p(-p / a0);
+            lb = -Math.log1p(-p / b0);
+            lab = (Math.abs(b0 - a0) > EQUAL_SUBSTRATES * a0) ? (la - lb) / (b0 - a0) : p / (a0 * a);
+            double f = p + k[1] * la + k[2] * lb + kiaKb * lab - target;
+            slope = 1 + k[1] / a + k[2] / b + kiaKb / (a * b); // Vm / rate
+            if (f > 0) high = p; else low = p;
+            double next = p - f / slope;
+            if (!(next > low && next < high)) next = (low + high) / 2;
+            if (Math.abs(next - p) <= 1e-15 * Math.max(p, Double.MIN_NORMAL) || high - low <= 1e-15 * high) {
+                p = next;
+                break;
+            }
+            p = next;
+        }
+        dk[0] = target / slope;
+        dk[1] = -k[1] * la / slope;
+        dk[2] = -k[2] * (lb + (ordered ? k[3] * lab : 0)) / slope;
+        if (ordered) dk[3] = -kiaKb * lab / slope;
+        return p;
+    }
+
+    /**
+     * Builds the normal equations of the fit around the given constants, with every curve's residuals and
+     * derivatives centred on their means so its baseline drops out.
+     *
+     * @param curves progress curves
+     * @param model kinetic model
+     * @param logK logarithms of the constants
+     * @param normal filled with J^T J and then -J^T r, which gives the Gauss-Newton step
+     * @return the residual sum of squares, or infinity if a product can't be calculated
+     */
+    private static double normalEquations(List<Curve> curves, KineticModel model, double[] logK, double[][] normal) {
+        int numParams = logK.length;
+        double[] k = exp(logK);
+        double[] dk = new double[numParams];
+        double[] sumD = new double[numParams];
+        for (double[] row : normal) Arrays.fill(row, 0);
+        double ssr = 0;
+        for (Curve curve : curves) {
+            int n = curve.getCount();
+            Arrays.fill(sumD, 0);
+            double sumR = 0;
+            double sumRR = 0;
+            double p = 0;
+            for (int i = 0; i < n; i++) {
+                p = product(model, k, curve, curve.time[i], p, dk);
+                double r = curve.product[i] - p;
+                sumR += r;
+                sumRR += r * r;
+                for (int j = 0; j < numParams; j++) {
+                    sumD[j] += dk[j];
+                    normal[j][numParams] += dk[j] * r; // the residual falls as P rises, so this is -J^T r
+                    for (int l = 0; l <= j; l++) normal[j][l] += dk[j] * dk[l];
+                }
+            }
+            // Centre, as if each curve's baseline were refitted:
+            ssr += sumRR - sumR * sumR / n;
+            for (int j = 0; j < numParams; j++) {
+                normal[j][numParams] -= sumD[j] * sumR / n;
+                for (int l = 0; l <= j; l++) normal[j][l] -= sumD[j] * sumD[l] / n;
+            }
+        }
+        for (int j = 0; j < numParams; j++) {
+            for (int l = j + 1; l < numParams; l++) normal[j][l] = normal[l][j];
+        }
+        return Double.isFinite(ssr) ? ssr : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Calculates the residual sum of squares for the given constants, with each curve's baseline refitted.
+     *
+     * @param curves progress curves
+     * @param model kinetic model
+     * @param logK logarithms of the constants
+     * @return the residual sum of squares, or infinity if a product can't be calculated
+     */
+    private static double residualSumSquares(List<Curve> curves, KineticModel model, double[] logK) {
+        double[] k = exp(logK);
+        double[] dk = new double[logK.length];
+        double ssr = 0;
+        for (Curve curve : curves) {
+            double sumR = 0;
+            double sumRR = 0;
+            double p = 0;
+            for (int i = 0; i < curve.getCount(); i++) {
+                p = product(model, k, curve, curve.time[i], p, dk);
+                double r = curve.product[i] - p;
+                sumR += r;
+                sumRR += r * r;
+            }
+            ssr += sumRR - sumR * sumR / curve.getCount();
+        }
+        return Double.isFinite(ssr) ? ssr : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Finds starting values from the linear form of the one substrate integrated rate law,
+     * P/t = V - K ln(S0 / (S0 - P))/t, fitted to every reading of every curve with the first reading as the baseline.
+     * Inhibition and dissociation constants start at the mean co-substrate/inhibitor concentration, and Kb at Ka.
+     *
+     * @param curves progress curves
+     * @param model kinetic model
+     * @param numParams number of constants
+     * @return logarithms of the starting constants
+     */
+    private static double[] startingValues(List<Curve> curves, KineticModel model, int numParams) {
+        double n = 0, sx = 0, sy = 0, sxx = 0, sxy = 0;
+        double maxRate = 0;
+        double meanSubstrate = 0;
+        double meanCoSubInhib = 0;
+        int inhibited = 0;
+        for (Curve curve : curves) {
+            meanSubstrate += curve.substrate / curves.size();
+            if (curve.coSubInhib > 0) {
+                meanCoSubInhib += curve.coSubInhib;
+                inhibited++;
+            }
+            if (curve.getCount() < 2) continue;
+            double t0 = curve.time[0];
+            double p0 = curve.product[0];
+            for (int i = 1; i < curve.getCount(); i++) {
+                double t = curve.time[i] - t0;
+                double p = curve.product[i] - p0;
+                if (!(t > 0) || !(p > 0) || !(p < curve.substrate)) continue;
+                double x = -Math.log1p(-p / curve.substrate) / t;
+                double y = p / t;
+                maxRate = Math.max(maxRate, y);
+                n++;
+                sx += x;
+                sy += y;
+                sxx += x * x;
+                sxy += x * y;
+            }
+        }
+        double slope = (n * sxy - sx * sy) / (n * sxx - sx * sx);
+        double v = (sy - slope * sx) / n;
+        double km = -slope;
+        if (!(v > 0) || !(km > 0)) {
+            v = (maxRate > 0) ? maxRate : 1;
+            km = meanSubstrate;
+        }
+        double constant = (inhibited > 0) ? meanCoSubInhib / inhibited : km;
+
+        double[] logK = new double[numParams];
+        logK[0] = Math.log(v);
+        for (int j = 1; j < numParams; j++) {
+            logK[j] = Math.log((j == 1 || isTwoSubstrate(model)) ? km : constant);
+        }
+        return logK;
+    }
+
+    /**
+     * @param model kinetic model
+     * @return whether both of its substrates are used up over a curve
+     */
+    private static boolean isTwoSubstrate(KineticModel model) {
+        return model == KineticModel.UninhibitedTwoSubOrderedBiBi || model == KineticModel.UninhibitedTwoSubPingPong;
+    }
+
+    /**
+     * @param values logarithms
+     * @return exponentials
+     */
+    private static double[] exp(double[] values) {
+        double[] exp = new double[values.length];
+        for (int i = 0; i < values.length; i++) exp[i] = Math.exp(values[i]);
+        return exp;
+    }
+}
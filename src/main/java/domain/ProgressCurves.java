@@ -0,0 +1,88 @@
+package domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ProgressCurves holds the raw time courses of a plate: the signal (absorbance, fluorescence, ...) of every well at
+ * each reading time. Readings are added one time at a time as they are read, into arrays that grow as needed, so a
+ * plate with thousands of readings per well takes one double per reading rather than a parsed line of text.
+ */
+public class ProgressCurves {
+
+    /** The initial number of readings there is room for. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** The name of each well, e.g. "A1". */
+    private final List<String> wells;
+    /** The time of each reading. */
+    private double[] time;
+    /** The signal of each well at each reading, by well. */
+    private final double[][] signals;
+    /** The number of readings. */
+    private int count;
+
+    /**
+     * Creates empty curves for the given wells.
+     *
+     * @param wells name of each well
+     */
+    public ProgressCurves(List<String> wells) {
+        this.wells = new ArrayList<>(wells);
+        time = new double[INITIAL_CAPACITY];
+        signals = new double[wells.size()][INITIAL_CAPACITY];
+    }
+
+    /**
+     * Adds a reading of every well.
+     *
+     * @param readingTime time of the reading
+     * @param values signal of each well, in the same order as the wells; Double.NaN if a well has no value
+     */
+    public void add(double readingTime, double[] values) {
+        if (values.length != signals.length) {
+            throw new IllegalArgumentException("Expected " + signals.length + " values but got " + values.length);
+        }
+        if (count == time.length) {
+            time = Arrays.copyOf(time, count * 2);
+            for (int well = 0; well < signals.length; well++) {
+                signals[well] = Arrays.copyOf(signals[well], count * 2);
+            }
+        }
+        time[count] = readingTime;
+        for (int well = 0; well < signals.length; well++) {
+            signals[well][count] = values[well];
+        }
+        count++;
+    }
+
+    /**
+     * @return the name of each well
+     */
+    public List<String> getWells() {
+        return wells;
+    }
+
+    /**
+     * @return the number of readings
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the time of each reading; only the first getCount() values are readings
+     */
+    public double[] getTime() {
+        return time;
+    }
+
+    /**
+     * @param well index of the well
+     * @return the signal of the well at each reading; only the first getCount() values are readings
+     */
+    public double[] getSignal(int well) {
+        return signals[well];
+    }
+}
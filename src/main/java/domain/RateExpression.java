@@ -0,0 +1,667 @@
+package domain;
+
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * RateExpression is a user-defined rate equation: an expression giving the reaction rate from the substrate
+ * concentration [S], the co-substrate or inhibitor concentration [B] or [I] (the columns of a Data table) and named
+ * parameters, e.g. "vm * [S] / (km * (1 + [I] / kis) + [S])".
+ *
+ * Expressions have numbers, parameters, + - * / and ^ (power), parentheses and the functions exp, ln and sqrt.
+ * An expression is compiled once into a tree of method handles, and so is its derivative by each parameter (worked
+ * out symbolically). The trees become the constants of a hidden class of their own (see CompiledRate), so the JIT
+ * inlines them into straight-line code and a fit evaluates them as fast as a built-in rate law.
+ */
+public class RateExpression {
+
+    /** The type of every compiled node: (substrate, co-substrate/inhibitor, parameters) to a value. */
+    private static final MethodType TYPE = MethodType.methodType(double.class, double.class, double.class, double[].class);
+    /** Handles of the operations nodes are compiled from. */
+    private static final MethodHandle ADD, SUBTRACT, MULTIPLY, DIVIDE, POWER, SQUARE, NEGATE, EXP, LN, SQRT, ELEMENT, ELEMENT_SETTER;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodType binary = MethodType.methodType(double.class, double.class, double.class);
+            MethodType unary = MethodType.methodType(double.class, double.class);
+            ADD = lookup.findStatic(RateExpression.class, "add", binary);
+            SUBTRACT = lookup.findStatic(RateExpression.class, "subtract", binary);
+            MULTIPLY = lookup.findStatic(RateExpression.class, "multiply", binary);
+            DIVIDE = lookup.findStatic(RateExpression.class, "divide", binary);
+            POWER = lookup.findStatic(Math.class, "pow", binary);
+            SQUARE = lookup.findStatic(RateExpression.class, "square", unary);
+            NEGATE = lookup.findStatic(RateExpression.class, "negate", unary);
+            EXP = lookup.findStatic(Math.class, "exp", unary);
+            LN = lookup.findStatic(Math.class, "log", unary);
+            SQRT = lookup.findStatic(Math.class, "sqrt", unary);
+            ELEMENT = MethodHandles.arrayElementGetter(double[].class);
+            ELEMENT_SETTER = MethodHandles.arrayElementSetter(double[].class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * A compiled expression and its derivatives.
+     */
+    interface Compiled {
+        /**
+         * @param substrate substrate concentration
+         * @param coSubInhib co-substrate or inhibitor concentration
+         * @param params value of each parameter
+         * @return the rate
+         * @throws Throwable never, but method handles declare it
+         */
+        double rate(double substrate, double coSubInhib, double[] params) throws Throwable;
+
+        /**
+         * @param substrate substrate concentration
+         * @param coSubInhib co-substrate or inhibitor concentration
+         * @param params value of each parameter
+         * @param gradient array to put the derivative by each parameter in
+         * @throws Throwable never, but method handles declare it
+         */
+        void gradient(double substrate, double coSubInhib, double[] params, double[] gradient) throws Throwable;
+    }
+
+    /**
+     * A node of a parsed expression.
+     */
+    private static final class Node {
+        /** What the node is: 'c' constant, 's' substrate, 'i' co-substrate/inhibitor, 'p' parameter,
+         * '+' '-' '*' '/' '^' an operation of its two children, or 'n' negate, 'e' exp, 'l' ln, 'q' sqrt of its left. */
+        final char op;
+        /** Value of a constant. */
+        final double value;
+        /** Index of a parameter. */
+        final int index;
+        /** Children. */
+        final Node left, right;
+
+        /**
+         * @param op what the node is
+         * @param value value of a constant
+         * @param index index of a parameter
+         * @param left first child
+         * @param right second child
+         */
+        Node(char op, double value, int index, Node left, Node right) {
+            this.op = op;
+            this.value = value;
+            this.index = index;
+            this.left = left;
+            this.right = right;
+        }
+
+        /**
+         * @param constant value
+         * @return whether this is a constant of that value
+         */
+        boolean is(double constant) {
+            return op == 'c' && value == constant;
+        }
+    }
+
+    /** The expression as written. */
+    private final String text;
+    /** Names of the parameters, in the order they first appear. */
+    private final List<String> parameters;
+    /** Whether the expression uses the co-substrate/inhibitor concentration. */
+    private final boolean usesCoSubInhib;
+    /** The compiled expression and its derivatives. */
+    private final Compiled compiled;
+
+    /**
+     * Parses and compiles a rate equation.
+     *
+     * @param text the expression
+     * @return the compiled expression
+     * @throws IllegalArgumentException if the expression is invalid, saying where
+     */
+    public static RateExpression parse(String text) {
+        Parser parser = new Parser(text);
+        Node root = parser.expression();
+        parser.skipSpaces();
+        if (parser.position < text.length()) throw parser.error("Unexpected '" + text.charAt(parser.position) + "'");
+        if (parser.parameters.isEmpty()) throw new IllegalArgumentException("The rate equation has no parameters");
+        return new RateExpression(text, parser.parameters, parser.usesCoSubInhib, root);
+    }
+
+    /**
+     * @param text the expression as written
+     * @param parameters names of the parameters
+     * @param usesCoSubInhib whether it uses the co-substrate/inhibitor concentration
+     * @param root the parsed expression
+     */
+    private RateExpression(String text, List<String> parameters, boolean usesCoSubInhib, Node root) {
+        this.text = text;
+        this.parameters = Collections.unmodifiableList(parameters);
+        this.usesCoSubInhib = usesCoSubInhib;
+        // The gradient sets each element in turn: g[k] = dk(s, i, p)
+        MethodHandle gradient = MethodHandles.empty(TYPE.changeReturnType(void.class).appendParameterTypes(double[].class));
+        for (int k = parameters.size() - 1; k >= 0; k--) {
+            MethodHandle set = MethodHandles.insertArguments(ELEMENT_SETTER, 1, k); // (g, v)
+            set = MethodHandles.collectArguments(set, 1, compile(derivative(root, k))); // (g, s, i, p)
+            set = MethodHandles.permuteArguments(set, gradient.type(), 3, 0, 1, 2);
+            gradient = MethodHandles.foldArguments(gradient, set);
+        }
+        this.compiled = define(compile(root), gradient);
+    }
+
+    /**
+     * @return names of the parameters, in the order they first appear
+     */
+    public List<String> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return whether the expression uses the co-substrate/inhibitor concentration
+     */
+    public boolean usesCoSubInhib() {
+        return usesCoSubInhib;
+    }
+
+    /**
+     * Calculates the rate.
+     *
+     * @param substrate substrate concentration
+     * @param coSubInhib co-substrate or inhibitor concentration
+     * @param params value of each parameter, in the order of getParameters
+     * @return the rate
+     */
+    public double rate(double substrate, double coSubInhib, double[] params) {
+        try {
+            return compiled.rate(substrate, coSubInhib, params);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Calculates the derivative of the rate by each parameter.
+     *
+     * @param substrate substrate concentration
+     * @param coSubInhib co-substrate or inhibitor concentration
+     * @param params value of each parameter, in the order of getParameters
+     * @param gradient array to put the derivative by each parameter in
+     */
+    public void gradient(double substrate, double coSubInhib, double[] params, double[] gradient) {
+        try {
+            compiled.gradient(substrate, coSubInhib, params, gradient);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * Defines a hidden class from the CompiledRate template with the handles as its class data, so they are
+     * constants of its code.
+     *
+     * @param rate the compiled expression
+     * @param gradient the compiled derivatives
+     * @return an instance of the hidden class
+     */
+    private static Compiled define(MethodHandle rate, MethodHandle gradient) {
+        try (InputStream template = CompiledRate.class.getResourceAsStream("CompiledRate.class")) {
+            if (template == null) throw new IllegalStateException("The CompiledRate template is missing");
+            MethodHandles.Lookup hidden = MethodHandles.lookup().defineHiddenClassWithClassData(
+                    template.readAllBytes(), List.of(rate, gradient), true);
+            return (Compiled) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("The rate equation couldn't be compiled", e);
+        }
+    }
+
+    /**
+     * Compiles a node into a method handle of type (substrate, co-substrate/inhibitor, parameters) to a value.
+     *
+     * @param node the node
+     * @return the handle
+     */
+    private static MethodHandle compile(Node node) {
+        switch (node.op) {
+            case 'c':
+                return MethodHandles.dropArguments(MethodHandles.constant(double.class, node.value), 0, TYPE.parameterList());
+            case 's':
+                return MethodHandles.dropArguments(MethodHandles.identity(double.class), 1, double.class, double[].class);
+            case 'i':
+                return MethodHandles.dropArguments(MethodHandles.dropArguments(MethodHandles.identity(double.class), 1, double[].class), 0, double.class);
+            case 'p':
+                return MethodHandles.dropArguments(MethodHandles.insertArguments(ELEMENT, 1, node.index), 0, double.class, double.class);
+            case 'n':
+                return MethodHandles.collectArguments(NEGATE, 0, compile(node.left));
+            case 'e':
+                return MethodHandles.collectArguments(EXP, 0, compile(node.left));
+            case 'l':
+                return MethodHandles.collectArguments(LN, 0, compile(node.left));
+            case 'q':
+                return MethodHandles.collectArguments(SQRT, 0, compile(node.left));
+            default:
+                if (node.op == '^' && node.right.is(2)) return MethodHandles.collectArguments(SQUARE, 0, compile(node.left));
+                if (node.op == '^' && node.right.is(0.5)) return MethodHandles.collectArguments(SQRT, 0, compile(node.left));
+                MethodHandle operation;
+                switch (node.op) {
+                    case '+':
+                        operation = ADD;
+                        break;
+                    case '-':
+                        operation = SUBTRACT;
+                        break;
+                    case '*':
+                        operation = MULTIPLY;
+                        break;
+                    case '/':
+                        operation = DIVIDE;
+                        break;
+                    default:
+                        operation = POWER;
+                }
+                // (s, i, p, s, i, p) with each child taking its own arguments, then both given the same ones:
+                MethodHandle both = MethodHandles.collectArguments(
+                        MethodHandles.collectArguments(operation, 0, compile(node.left)), 3, compile(node.right));
+                return MethodHandles.permuteArguments(both, TYPE, 0, 1, 2, 0, 1, 2);
+        }
+    }
+
+    /**
+     * Differentiates a node by a parameter, folding constants as it goes.
+     *
+     * @param node the node
+     * @param k index of the parameter
+     * @return the derivative
+     */
+    private static Node derivative(Node node, int k) {
+        switch (node.op) {
+            case 'c':
+            case 's':
+            case 'i':
+                return constant(0);
+            case 'p':
+                return constant((node.index == k) ? 1 : 0);
+            case '+':
+                return add(derivative(node.left, k), derivative(node.right, k));
+            case '-':
+                return subtract(derivative(node.left, k), derivative(node.right, k));
+            case '*':
+                return add(multiply(derivative(node.left, k), node.right), multiply(node.left, derivative(node.right, k)));
+            case '/': // (a' - (a / b) b') / b
+                return divide(subtract(derivative(node.left, k), multiply(node, derivative(node.right, k))), node.right);
+            case '^': {
+                Node da = derivative(node.left, k);
+                if (node.right.op == 'c') {
+                    return multiply(multiply(node.right, power(node.left, constant(node.right.value - 1))), da);
+                }
+                // a^b (b' ln a + b a' / a):
+                Node db = derivative(node.right, k);
+                return multiply(node, add(multiply(db, unary('l', node.left)), divide(multiply(node.right, da), node.left)));
+            }
+            case 'n':
+                return negate(derivative(node.left, k));
+            case 'e':
+                return multiply(node, derivative(node.left, k));
+            case 'l':
+                return divide(derivative(node.left, k), node.left);
+            case 'q':
+                return divide(derivative(node.left, k), multiply(constant(2), node));
+            default:
+                throw new IllegalArgumentException("Unrecognised operation: " + node.op);
+        }
+    }
+
+    /**
+     * @param value value
+     * @return a constant node
+     */
+    private static Node constant(double value) {
+        return new Node('c', value, -1, null, null);
+    }
+
+    /**
+     * @param op 'n', 'e', 'l' or 'q'
+     * @param a argument
+     * @return the function of the argument, evaluated if it is a constant
+     */
+    private static Node unary(char op, Node a) {
+        if (a.op == 'c') {
+            switch (op) {
+                case 'n':
+                    return constant(-a.value);
+                case 'e':
+                    return constant(Math.exp(a.value));
+                case 'l':
+                    return constant(Math.log(a.value));
+                default:
+                    return constant(Math.sqrt(a.value));
+            }
+        }
+        return new Node(op, 0, -1, a, null);
+    }
+
+    /**
+     * @param op '+', '-', '*', '/' or '^'
+     * @param a left side
+     * @param b right side
+     * @return the operation, evaluated if both sides are constants
+     */
+    private static Node binary(char op, Node a, Node b) {
+        switch (op) {
+            case '+':
+                return add(a, b);
+            case '-':
+                return subtract(a, b);
+            case '*':
+                return multiply(a, b);
+            case '/':
+                return divide(a, b);
+            default:
+                return power(a, b);
+        }
+    }
+
+    /**
+     * @param a left side
+     * @param b right side
+     * @return a + b, simplified
+     */
+    private static Node add(Node a, Node b) {
+        if (a.op == 'c' && b.op == 'c') return constant(a.value + b.value);
+        if (a.is(0)) return b;
+        if (b.is(0)) return a;
+        return new Node('+', 0, -1, a, b);
+    }
+
+    /**
+     * @param a left side
+     * @param b right side
+     * @return a - b, simplified
+     */
+    private static Node subtract(Node a, Node b) {
+        if (a.op == 'c' && b.op == 'c') return constant(a.value - b.value);
+        if (b.is(0)) return a;
+        if (a.is(0)) return negate(b);
+        return new Node('-', 0, -1, a, b);
+    }
+
+    /**
+     * @param a left side
+     * @param b right side
+     * @return a b, simplified
+     */
+    private static Node multiply(Node a, Node b) {
+        if (a.op == 'c' && b.op == 'c') return constant(a.value * b.value);
+        if (a.is(0) || b.is(0)) return constant(0);
+        if (a.is(1)) return b;
+        if (b.is(1)) return a;
+        return new Node('*', 0, -1, a, b);
+    }
+
+    /**
+     * @param a left side
+     * @param b right side
+     * @return a / b, simplified
+     */
+    private static Node divide(Node a, Node b) {
+        if (a.op == 'c' && b.op == 'c') return constant(a.value / b.value);
+        if (a.is(0)) return constant(0);
+        if (b.is(1)) return a;
+        return new Node('/', 0, -1, a, b);
+    }
+
+    /**
+     * @param a base
+     * @param b exponent
+     * @return a^b, simplified
+     */
+    private static Node power(Node a, Node b) {
+        if (a.op == 'c' && b.op == 'c') return constant(Math.pow(a.value, b.value));
+        if (b.is(0)) return constant(1);
+        if (b.is(1)) return a;
+        return new Node('^', 0, -1, a, b);
+    }
+
+    /**
+     * @param a argument
+     * @return -a, simplified
+     */
+    private static Node negate(Node a) {
+        if (a.op == 'n') return a.left;
+        return unary('n', a);
+    }
+
+    /**
+     * Recursive descent parser of expressions.
+     */
+    private static final class Parser {
+        /** The expression. */
+        final String text;
+        /** Position of the next character. */
+        int position;
+        /** Names of the parameters found so far. */
+        final List<String> parameters = new ArrayList<>();
+        /** Whether the co-substrate/inhibitor concentration has been found. */
+        boolean usesCoSubInhib;
+
+        /**
+         * @param text the expression
+         */
+        Parser(String text) {
+            this.text = text;
+        }
+
+        /**
+         * expression := term (('+' | '-') term)*
+         *
+         * @return the parsed expression
+         */
+        Node expression() {
+            Node node = term();
+            while (accept('+') || accept('-')) {
+                char op = text.charAt(position - 1);
+                node = binary(op, node, term());
+            }
+            return node;
+        }
+
+        /**
+         * term := unary (('*' | '/') unary)*
+         *
+         * @return the parsed term
+         */
+        Node term() {
+            Node node = unary();
+            while (accept('*') || accept('/')) {
+                char op = text.charAt(position - 1);
+                node = binary(op, node, unary());
+            }
+            return node;
+        }
+
+        /**
+         * unary := ('-' | '+') unary | power
+         *
+         * @return the parsed operand
+         */
+        Node unary() {
+            if (accept('-')) return negate(unary());
+            if (accept('+')) return unary();
+            return power();
+        }
+
+        /**
+         * power := primary ('^' unary)?, so a^b^c is a^(b^c) and -a^b is -(a^b)
+         *
+         * @return the parsed power
+         */
+        Node power() {
+            Node node = primary();
+            if (accept('^')) node = binary('^', node, unary());
+            return node;
+        }
+
+        /**
+         * primary := number | '[' S | I | B ']' | function '(' expression ')' | parameter | '(' expression ')'
+         *
+         * @return the parsed operand
+         */
+        Node primary() {
+            skipSpaces();
+            if (position >= text.length()) throw error("Unexpected end of the rate equation");
+            char c = text.charAt(position);
+            if (accept('(')) {
+                Node node = expression();
+                if (!accept(')')) throw error("Missing ')'");
+                return node;
+            }
+            if (accept('[')) {
+                skipSpaces();
+                int start = position;
+                while (position < text.length() && Character.isLetter(text.charAt(position))) position++;
+                String name = text.substring(start, position).toUpperCase(Locale.ROOT);
+                if (!accept(']')) throw error("Missing ']'");
+                if (name.equals("S")) return new Node('s', 0, -1, null, null);
+                if (name.equals("I") || name.equals("B")) {
+                    usesCoSubInhib = true;
+                    return new Node('i', 0, -1, null, null);
+                }
+                throw error("Unrecognised concentration [" + name + "]; use [S], [I] or [B]");
+            }
+            if (Character.isDigit(c) || c == '.') {
+                int start = position;
+                while (position < text.length() && (Character.isDigit(text.charAt(position)) || text.charAt(position) == '.')) position++;
+                if (position < text.length() && (text.charAt(position) == 'e' || text.charAt(position) == 'E')) {
+                    int exponent = position + 1;
+                    if (exponent < text.length() && (text.charAt(exponent) == '+' || text.charAt(exponent) == '-')) exponent++;
+                    if (exponent < text.length() && Character.isDigit(text.charAt(exponent))) {
+                        position = exponent;
+                        while (position < text.length() && Character.isDigit(text.charAt(position))) position++;
+                    }
+                }
+                try {
+                    return constant(Double.parseDouble(text.substring(start, position)));
+                } catch (NumberFormatException e) {
+                    position = start;
+                    throw error("Invalid number");
+                }
+            }
+            if (Character.isLetter(c) || c == '_') {
+                int start = position;
+                while (position < text.length() && (Character.isLetterOrDigit(text.charAt(position)) || text.charAt(position) == '_')) position++;
+                String name = text.substring(start, position);
+                String function = name.toLowerCase(Locale.ROOT);
+                if (function.matches("exp|ln|sqrt") && accept('(')) {
+                    Node argument = expression();
+                    if (!accept(')')) throw error("Missing ')'");
+                    return RateExpression.unary(function.equals("exp") ? 'e' : function.equals("ln") ? 'l' : 'q', argument);
+                }
+                int index = parameters.indexOf(name);
+                if (index < 0) {
+                    parameters.add(name);
+                    index = parameters.size() - 1;
+                }
+                return new Node('p', 0, index, null, null);
+            }
+            throw error("Unexpected '" + c + "'");
+        }
+
+        /**
+         * Moves past a character, after any spaces, if it is next.
+         *
+         * @param c the character
+         * @return whether it was next
+         */
+        boolean accept(char c) {
+            skipSpaces();
+            if (position < text.length() && text.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Moves past any spaces.
+         */
+        void skipSpaces() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) position++;
+        }
+
+        /**
+         * @param message what is wrong
+         * @return an exception saying what is wrong and where
+         */
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at character " + (position + 1) + " of the rate equation: " + text);
+        }
+    }
+
+    /**
+     * @param a left side
+     * @param b right side
+     * @return a + b, for compiled nodes
+     */
+    private static double add(double a, double b) {
+        return a + b;
+    }
+
+    /**
+     * @param a left side
+     * @param b right side
+     * @return a - b, for compiled nodes
+     */
+    private static double subtract(double a, double b) {
+        return a - b;
+    }
+
+    /**
+     * @param a left side
+     * @param b right side
+     * @return a b, for compiled nodes
+     */
+    private static double multiply(double a, double b) {
+        return a * b;
+    }
+
+    /**
+     * @param a left side
+     * @param b right side
+     * @return a / b, for compiled nodes
+     */
+    private static double divide(double a, double b) {
+        return a / b;
+    }
+
+    /**
+     * @param a argument
+     * @return a^2, for compiled nodes
+     */
+    private static double square(double a) {
+        return a * a;
+    }
+
+    /**
+     * @param a argument
+     * @return -a, for compiled nodes
+     */
+    private static double negate(double a) {
+        return -a;
+    }
+}
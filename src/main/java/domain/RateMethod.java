@@ -0,0 +1,27 @@
+package domain;
+
+/**
+ * This enum represents the ways an initial rate can be estimated from a
+ * progress curve (the signal of one well over time).
+ * Every method starts at the first reading; see InitialRates.
+ */
+public enum RateMethod {
+	/**
+	 * The slope of a straight line through the longest initial window
+	 * over which the slope changes by less than the tolerance
+	 */
+	Linear,
+	/**
+	 * The slope at the first reading of a quadratic through the longest
+	 * initial window over which the slope changes by less than five times
+	 * the tolerance, so the curvature from substrate depletion is fitted
+	 * rather than averaged into the rate
+	 */
+	Polynomial,
+	/**
+	 * The initial rate of a rate that decays exponentially,
+	 * signal = a + v0 (1 - e^-kt) / k, fitted to the same window as
+	 * Polynomial
+	 */
+	Integrated
+}
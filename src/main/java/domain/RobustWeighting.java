@@ -0,0 +1,64 @@
+package domain;
+
+/**
+ * This enum represents the ways a fit can reduce the influence of outliers.
+ * With any weighting but None the fit is repeated, each time weighting every
+ * rate by how far it was from the previous fit (iteratively reweighted least
+ * squares), so a bad well counts for little or nothing instead of pulling the
+ * whole fit towards it.
+ */
+public enum RobustWeighting {
+	/**
+	 * Ordinary weighted least squares: every rate counts fully
+	 */
+	None(0),
+	/**
+	 * Huber weights: rates within 1.345 scaled residuals count fully,
+	 * further ones count less the further they are
+	 */
+	Huber(1.345),
+	/**
+	 * Tukey bisquare weights: rates count less the further they are,
+	 * and not at all beyond 4.685 scaled residuals
+	 */
+	Tukey(4.685),
+	/**
+	 * Cauchy weights: rates count less the further they are,
+	 * but never not at all
+	 */
+	Cauchy(2.385);
+
+	/**
+	 * The tuning constant, in scaled residuals. These give 95% efficiency
+	 * when the errors are normally distributed.
+	 */
+	private final double tuning;
+
+	/**
+	 * @param tuning - the tuning constant
+	 */
+	private RobustWeighting(double tuning) {
+		this.tuning = tuning;
+	}
+
+	/**
+	 * Gets the weight of a rate from its residual
+	 * @param u - the residual divided by the residuals' robust scale
+	 * @return the weight, from 0 to 1
+	 */
+	public double weight(double u) {
+		double a = Math.abs(u) / tuning;
+		switch(this) {
+		case None:
+			return 1;
+		case Huber:
+			return (a <= 1) ? 1 : 1 / a;
+		case Tukey:
+			return (a >= 1) ? 0 : (1 - a * a) * (1 - a * a);
+		case Cauchy:
+			return 1 / (1 + a * a);
+		default:
+			throw new IllegalArgumentException("Unrecognised robust weighting: " + this);
+		}
+	}
+}
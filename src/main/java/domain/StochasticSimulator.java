@@ -0,0 +1,495 @@
+package domain;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * StochasticSimulator simulates single trajectories of a mechanism's elementary steps one molecule at a time, for
+ * assays with so few molecules that the concentrations of MechanismSimulator are only their average.
+ *
+ * Each trajectory is simulated by Gillespie's direct method, which fires one step at a time, or by tau-leaping,
+ * which fires a Poisson number of every step over a leap chosen (by the method of Cao, Gillespie and Petzold) so
+ * that no propensity changes by more than the leap tolerance. Leaping falls back to single steps whenever a leap
+ * would cover only a few of them anyway.
+ *
+ * A simulator holds the buffers a trajectory works in, so simulating one after another allocates nothing; it isn't
+ * thread safe, so each thread needs its own. simulateEnsemble runs many trajectories on a thread pool, each thread
+ * with its own simulator and a random number generator split from one seed, and gathers the distribution of a
+ * species at each time as it goes rather than keeping the trajectories.
+ */
+public class StochasticSimulator {
+
+    /** The leaps shorter than this many expected single steps that are taken as single steps instead. */
+    private static final double MIN_LEAP_STEPS = 10;
+    /** The number of single steps taken when a leap is too short. */
+    private static final int SINGLE_STEPS = 100;
+    /** Means below which Poisson numbers are drawn by multiplying uniform numbers. */
+    private static final double SMALL_MEAN = 10;
+    /** Log factorials of 0 up to SMALL_MEAN, for Poisson numbers. */
+    private static final double[] LOG_FACTORIALS = new double[(int) SMALL_MEAN + 1];
+
+    static {
+        for (int k = 1; k < LOG_FACTORIALS.length; k++) LOG_FACTORIALS[k] = LOG_FACTORIALS[k - 1] + Math.log(k);
+    }
+
+    /**
+     * The distribution of one species over many trajectories at each reported time, gathered one trajectory at a
+     * time: the mean and variance by Welford's method, and the number of trajectories with each count.
+     */
+    public static class Ensemble {
+        /** The times reported. */
+        private final double[] times;
+        /** Number of trajectories. */
+        private long trajectories;
+        /** Mean count at each time. */
+        private final double[] mean;
+        /** Sum of squared differences from the mean at each time. */
+        private final double[] sumSquares;
+        /** Smallest count at each time. */
+        private final long[] min;
+        /** Largest count at each time. */
+        private final long[] max;
+        /** Number of trajectories with each count (the index) at each time. */
+        private final long[][] histogram;
+
+        /**
+         * Creates an empty ensemble.
+         *
+         * @param times the times reported
+         */
+        Ensemble(double[] times) {
+            this.times = times.clone();
+            mean = new double[times.length];
+            sumSquares = new double[times.length];
+            min = new long[times.length];
+            max = new long[times.length];
+            Arrays.fill(min, Long.MAX_VALUE);
+            Arrays.fill(max, Long.MIN_VALUE);
+            histogram = new long[times.length][16];
+        }
+
+        /**
+         * Adds a trajectory.
+         *
+         * @param counts count of the species at each time
+         */
+        void add(long[] counts) {
+            trajectories++;
+            for (int i = 0; i < times.length; i++) {
+                long count = counts[i];
+                double delta = count - mean[i];
+                mean[i] += delta / trajectories;
+                sumSquares[i] += delta * (count - mean[i]);
+                min[i] = Math.min(min[i], count);
+                max[i] = Math.max(max[i], count);
+                if (count >= histogram[i].length) {
+                    histogram[i] = Arrays.copyOf(histogram[i], (int) Math.max(2L * histogram[i].length, count + 1));
+                }
+                histogram[i][(int) count]++;
+            }
+        }
+
+        /**
+         * Adds the trajectories of another ensemble with the same times.
+         *
+         * @param other the other ensemble
+         */
+        void merge(Ensemble other) {
+            if (other.trajectories == 0) return;
+            long total = trajectories + other.trajectories;
+            for (int i = 0; i < times.length; i++) {
+                double delta = other.mean[i] - mean[i];
+                sumSquares[i] += other.sumSquares[i] + delta * delta * trajectories * other.trajectories / total;
+                mean[i] += delta * other.trajectories / total;
+                min[i] = Math.min(min[i], other.min[i]);
+                max[i] = Math.max(max[i], other.max[i]);
+                if (other.histogram[i].length > histogram[i].length) {
+                    histogram[i] = Arrays.copyOf(histogram[i], other.histogram[i].length);
+                }
+                for (int count = 0; count < other.histogram[i].length; count++) {
+                    histogram[i][count] += other.histogram[i][count];
+                }
+            }
+            trajectories = total;
+        }
+
+        /**
+         * @return the times reported
+         */
+        public double[] getTimes() {
+            return times;
+        }
+
+        /**
+         * @return number of trajectories
+         */
+        public long getTrajectories() {
+            return trajectories;
+        }
+
+        /**
+         * @param time index of the time
+         * @return mean count at that time
+         */
+        public double getMean(int time) {
+            return mean[time];
+        }
+
+        /**
+         * @param time index of the time
+         * @return sample variance of the count at that time
+         */
+        public double getVariance(int time) {
+            return (trajectories > 1) ? sumSquares[time] / (trajectories - 1) : Double.NaN;
+        }
+
+        /**
+         * @param time index of the time
+         * @return smallest count at that time
+         */
+        public long getMin(int time) {
+            return min[time];
+        }
+
+        /**
+         * @param time index of the time
+         * @return largest count at that time
+         */
+        public long getMax(int time) {
+            return max[time];
+        }
+
+        /**
+         * @param time index of the time
+         * @return number of trajectories with each count (the index) at that time, up to the largest count
+         */
+        public long[] getHistogram(int time) {
+            return Arrays.copyOf(histogram[time], (int) max[time] + 1);
+        }
+    }
+
+    /** The mechanism simulated. */
+    private final Mechanism mechanism;
+    /** Molecules per unit of concentration (the volume times Avogadro's number). */
+    private final double moleculesPerConcentration;
+    /** Largest relative change of any propensity over a leap; 0 for single steps only. */
+    private final double leapTolerance;
+    /** Number of species. */
+    private final int n;
+    /** Number of elementary steps. */
+    private final int m;
+    /** Stochastic rate constant of each step, per molecule (or pair of molecules) per unit time. */
+    private final double[] rateConstants;
+    /** Change of each species (second index) by each step (first index). */
+    private final int[][] changes;
+    /** Highest order of the steps each species is a reactant of, or 0 if none. */
+    private final int[] orders;
+
+    /** Count of each species. */
+    private final long[] state;
+    /** Propensity of each step. */
+    private final double[] propensities;
+    /** Number of times each step fires in a leap. */
+    private final long[] firings;
+    /** Single steps of the latest trajectory. */
+    private long steps;
+    /** Leaps of the latest trajectory. */
+    private long leaps;
+
+    /**
+     * Creates a simulator of a mechanism.
+     *
+     * @param mechanism the mechanism, whose rate constants are in concentration units
+     * @param moleculesPerConcentration molecules per unit of concentration (the volume times Avogadro's number)
+     * @param leapTolerance largest relative change of any propensity over a leap, e.g. 0.03; 0 for Gillespie's
+     * direct method
+     */
+    public StochasticSimulator(Mechanism mechanism, double moleculesPerConcentration, double leapTolerance) {
+        if (!(moleculesPerConcentration > 0)) throw new IllegalArgumentException("The molecules per concentration must be positive");
+        if (!(leapTolerance >= 0 && leapTolerance < 1)) throw new IllegalArgumentException("The leap tolerance must be from 0 up to 1");
+        this.mechanism = mechanism;
+        this.moleculesPerConcentration = moleculesPerConcentration;
+        this.leapTolerance = leapTolerance;
+        n = mechanism.getSpecies().size();
+        m = mechanism.getStepCount();
+        rateConstants = new double[m];
+        changes = new int[m][n];
+        orders = new int[n];
+        for (int step = 0; step < m; step++) {
+            int a = mechanism.getFirst(step);
+            int b = mechanism.getSecond(step);
+            int order = (b >= 0) ? 2 : 1;
+            rateConstants[step] = mechanism.getRateConstant(step) / ((order == 2) ? moleculesPerConcentration : 1);
+            changes[step][a]--;
+            orders[a] = Math.max(orders[a], order);
+            if (b >= 0) {
+                changes[step][b]--;
+                orders[b] = Math.max(orders[b], order);
+            }
+            for (int product : mechanism.getProducts(step)) changes[step][product]++;
+        }
+        state = new long[n];
+        propensities = new double[m];
+        firings = new long[m];
+    }
+
+    /**
+     * Simulates one trajectory from all the enzyme being free and no product. Concentrations are turned into the
+     * nearest whole numbers of molecules.
+     *
+     * @param random random number generator
+     * @param substrate substrate concentration
+     * @param coSubInhib co-substrate or inhibitor concentration (ignored if the model has neither)
+     * @param times times to report the count at, in increasing order
+     * @param count number of times
+     * @param species index of the species to report, in the order of Mechanism.getSpecies
+     * @param counts array to put the count of the species at each time in
+     */
+    public void simulate(SplittableRandom random, double substrate, double coSubInhib, double[] times, int count,
+                         int species, long[] counts) {
+        Arrays.fill(state, 0);
+        state[Mechanism.ENZYME] = Math.round(mechanism.getEnzyme() * moleculesPerConcentration);
+        state[Mechanism.SUBSTRATE] = Math.round(substrate * moleculesPerConcentration);
+        if (mechanism.getModel() != KineticModel.UninhibitedOneSub) {
+            state[Mechanism.CO_SUB_INHIB] = Math.round(coSubInhib * moleculesPerConcentration);
+        }
+        steps = 0;
+        leaps = 0;
+        double t = 0;
+        int next = 0;
+        while (next < count) {
+            double total = updatePropensities();
+            if (total == 0) break; // nothing more can happen
+            double tau = (leapTolerance > 0) ? leapSize() : 0;
+            if (tau < MIN_LEAP_STEPS / total) {
+                // Single steps, reporting the counts at every time passed before each:
+                for (int s = 0; s < SINGLE_STEPS && next < count && total > 0; s++) {
+                    t += -Math.log(1 - random.nextDouble()) / total;
+                    while (next < count && times[next] < t) counts[next++] = state[species];
+                    if (next == count) break;
+                    fire(chooseStep(random.nextDouble() * total));
+                    steps++;
+                    total = updatePropensities();
+                }
+            }
+            else {
+                boolean reported = t + tau >= times[next];
+                if (reported) tau = times[next] - t;
+                double taken = leap(random, tau);
+                t = (reported && taken == tau) ? times[next] : t + taken;
+                while (next < count && times[next] <= t) counts[next++] = state[species];
+            }
+        }
+        while (next < count) counts[next++] = state[species];
+    }
+
+    /**
+     * @return the counts of every species at the end of the latest trajectory
+     */
+    public long[] getState() {
+        return state;
+    }
+
+    /**
+     * @return single steps fired in the latest trajectory
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return leaps taken in the latest trajectory
+     */
+    public long getLeaps() {
+        return leaps;
+    }
+
+    /**
+     * Simulates many trajectories on a thread pool, gathering the distribution of one species at each time.
+     * The result depends only on the seed and the number of threads.
+     *
+     * @param mechanism the mechanism, whose rate constants are in concentration units
+     * @param moleculesPerConcentration molecules per unit of concentration
+     * @param leapTolerance largest relative change of any propensity over a leap; 0 for Gillespie's direct method
+     * @param substrate substrate concentration
+     * @param coSubInhib co-substrate or inhibitor concentration
+     * @param times times to report the count at, in increasing order
+     * @param species index of the species to report, in the order of Mechanism.getSpecies
+     * @param trajectories number of trajectories
+     * @param threads number of threads
+     * @param seed seed of the random numbers
+     * @return the distribution of the species at each time
+     */
+    public static Ensemble simulateEnsemble(Mechanism mechanism, double moleculesPerConcentration, double leapTolerance,
+                                            double substrate, double coSubInhib, double[] times, int species,
+                                            long trajectories, int threads, long seed) {
+        // Each chunk has its own stream of random numbers, split off in order so the result depends only on the seed:
+        int numChunks = Parallel.chunks(trajectories, threads);
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] randoms = new SplittableRandom[numChunks];
+        for (int chunk = 0; chunk < numChunks; chunk++) randoms[chunk] = root.split();
+        Ensemble[] ensembles = new Ensemble[numChunks];
+        Parallel.run(trajectories, threads, "Stochastic simulation", (chunk, chunks) -> {
+            StochasticSimulator simulator = new StochasticSimulator(mechanism, moleculesPerConcentration, leapTolerance);
+            Ensemble share = new Ensemble(times);
+            long[] counts = new long[times.length];
+            long trajectoriesOfChunk = trajectories / chunks + ((chunk < trajectories % chunks) ? 1 : 0);
+            for (long trajectory = 0; trajectory < trajectoriesOfChunk; trajectory++) {
+                simulator.simulate(randoms[chunk], substrate, coSubInhib, times, times.length, species, counts);
+                share.add(counts);
+            }
+            ensembles[chunk] = share;
+        });
+
+        Ensemble ensemble = new Ensemble(times);
+        for (Ensemble share : ensembles) ensemble.merge(share);
+        return ensemble;
+    }
+
+    /**
+     * Works out the propensity of every step from the current counts.
+     *
+     * @return the total propensity
+     */
+    private double updatePropensities() {
+        double total = 0;
+        for (int step = 0; step < m; step++) {
+            int b = mechanism.getSecond(step);
+            double propensity = rateConstants[step] * state[mechanism.getFirst(step)];
+            if (b >= 0) propensity *= state[b];
+            propensities[step] = propensity;
+            total += propensity;
+        }
+        return total;
+    }
+
+    /**
+     * Picks the step whose share of the total propensity a point falls in.
+     *
+     * @param point point from 0 up to the total propensity
+     * @return the step
+     */
+    private int chooseStep(double point) {
+        int last = 0;
+        for (int step = 0; step < m; step++) {
+            if (propensities[step] > 0) {
+                point -= propensities[step];
+                last = step;
+                if (point < 0) return step;
+            }
+        }
+        return last; // rounding
+    }
+
+    /**
+     * Fires one step.
+     *
+     * @param step the step
+     */
+    private void fire(int step) {
+        int[] change = changes[step];
+        for (int i = 0; i < n; i++) state[i] += change[i];
+    }
+
+    /**
+     * Chooses the longest leap over which the expected change and the standard deviation of every reactant's count
+     * stay within the leap tolerance of it (Cao, Gillespie and Petzold, 2006).
+     *
+     * @return the leap
+     */
+    private double leapSize() {
+        double tau = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            if (orders[i] == 0) continue;
+            double drift = 0;
+            double spread = 0;
+            for (int step = 0; step < m; step++) {
+                int change = changes[step][i];
+                if (change != 0) {
+                    drift += change * propensities[step];
+                    spread += change * change * propensities[step];
+                }
+            }
+            double bound = Math.max(leapTolerance * state[i] / orders[i], 1);
+            if (drift != 0) tau = Math.min(tau, bound / Math.abs(drift));
+            if (spread != 0) tau = Math.min(tau, bound * bound / spread);
+        }
+        return tau;
+    }
+
+    /**
+     * Fires a Poisson number of every step over a leap, halving the leap until no count goes negative.
+     *
+     * @param random random number generator
+     * @param tau the leap
+     * @return the leap taken
+     */
+    private double leap(SplittableRandom random, double tau) {
+        while (true) {
+            boolean negative = false;
+            for (int step = 0; step < m; step++) firings[step] = poisson(random, propensities[step] * tau);
+            for (int i = 0; i < n && !negative; i++) {
+                long count = state[i];
+                for (int step = 0; step < m; step++) count += changes[step][i] * firings[step];
+                negative = count < 0;
+            }
+            if (!negative) break;
+            tau /= 2;
+        }
+        for (int step = 0; step < m; step++) {
+            if (firings[step] == 0) continue;
+            int[] change = changes[step];
+            for (int i = 0; i < n; i++) state[i] += change[i] * firings[step];
+        }
+        leaps++;
+        return tau;
+    }
+
+    /**
+     * Draws a Poisson number: by multiplying uniform numbers for small means, or else by Hormann's transformed
+     * rejection with squeeze (PTRS).
+     *
+     * @param random random number generator
+     * @param mean mean
+     * @return the number
+     */
+    static long poisson(SplittableRandom random, double mean) {
+        if (mean <= 0) return 0;
+        if (mean < SMALL_MEAN) {
+            double limit = Math.exp(-mean);
+            long k = 0;
+            double product = random.nextDouble();
+            while (product > limit) {
+                k++;
+                product *= random.nextDouble();
+            }
+            return k;
+        }
+        double logMean = Math.log(mean);
+        double b = 0.931 + 2.53 * Math.sqrt(mean);
+        double a = -0.059 + 0.02483 * b;
+        double inverseAlpha = 1.1239 + 1.1328 / (b - 3.4);
+        double vr = 0.9277 - 3.6224 / (b - 2);
+        while (true) {
+            double u = random.nextDouble() - 0.5;
+            double v = random.nextDouble();
+            double us = 0.5 - Math.abs(u);
+            long k = (long) Math.floor((2 * a / us + b) * u + mean + 0.43);
+            if (us >= 0.07 && v <= vr) return k;
+            if (k < 0 || (us < 0.013 && v > us)) continue;
+            if (Math.log(v * inverseAlpha / (a / (us * us) + b)) <= -mean + k * logMean - logFactorial(k)) return k;
+        }
+    }
+
+    /**
+     * @param k whole number, at least 0
+     * @return ln(k!), from a table or Stirling's series
+     */
+    private static double logFactorial(long k) {
+        if (k < LOG_FACTORIALS.length) return LOG_FACTORIALS[(int) k];
+        double x = k + 1;
+        double inverse = 1 / (x * x);
+        return (x - 0.5) * Math.log(x) - x + 0.5 * Math.log(2 * Math.PI)
+                + (1.0 / 12 - inverse * (1.0 / 360 - inverse / 1260)) / x;
+    }
+}
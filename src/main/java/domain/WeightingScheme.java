@@ -0,0 +1,191 @@
+package domain;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * WeightingScheme gives the weight of each rate in the regression, which should be the reciprocal of the variance of
+ * its reciprocal (1/V) since the fit is to the reciprocals. If rates have constant relative error, that is V squared
+ * (the original LUCENZ weighting); if they have constant absolute error, it is V to the fourth.
+ * Schemes are named so that results can be told apart, e.g. in the fit cache. A custom scheme's name can't be that
+ * of a built-in scheme, but two custom schemes may share a name, so fits with custom schemes are never cached.
+ */
+public class WeightingScheme {
+
+    /** Every rate counts equally: constant error in 1/V. */
+    public static final WeightingScheme UNIT = new WeightingScheme("Unit", rate -> 1.0);
+    /** V squared: constant relative error in V. This is the original LUCENZ weighting and the default. */
+    public static final WeightingScheme RATE_SQUARED = new WeightingScheme("RateSquared", rate -> rate * rate);
+    /** V to the fourth: constant absolute error in V. */
+    public static final WeightingScheme RATE_FOURTH = new WeightingScheme("RateFourth", rate -> rate * rate * rate * rate);
+    /**
+     * V to the fourth over the variance of V between replicates (rows with the same substrate concentration in the
+     * same column). Rates without replicates use the mean variance of those with them.
+     */
+    public static final WeightingScheme REPLICATE_VARIANCE = new WeightingScheme("ReplicateVariance", null);
+
+    /** The built-in schemes. */
+    private static final List<WeightingScheme> BUILT_IN = Arrays.asList(UNIT, RATE_SQUARED, RATE_FOURTH, REPLICATE_VARIANCE);
+
+    /** The name of the scheme. */
+    private final String name;
+    /** Gets the weight of a rate, or null if the weights come from the replicate variances. */
+    private final DoubleUnaryOperator weightOfRate;
+
+    /**
+     * @param name name of the scheme
+     * @param weightOfRate gets the weight of a rate, or null to use replicate variances
+     */
+    private WeightingScheme(String name, DoubleUnaryOperator weightOfRate) {
+        this.name = name;
+        this.weightOfRate = weightOfRate;
+    }
+
+    /**
+     * Creates a scheme that weights each rate with the given function.
+     *
+     * @param name name of the scheme, different from every other scheme's
+     * @param weightOfRate gets the weight of a (non-zero) rate
+     * @return the scheme
+     */
+    public static WeightingScheme custom(String name, DoubleUnaryOperator weightOfRate) {
+        for (WeightingScheme scheme : BUILT_IN) {
+            if (scheme.name.equalsIgnoreCase(name)) throw new IllegalArgumentException("Weighting scheme name is taken: " + name);
+        }
+        return new WeightingScheme(name, weightOfRate);
+    }
+
+    /**
+     * @return whether this is one of the built-in schemes, which are the only ones told apart by name alone
+     */
+    public boolean isBuiltIn() {
+        return BUILT_IN.contains(this);
+    }
+
+    /**
+     * @return the built-in schemes
+     */
+    public static List<WeightingScheme> values() {
+        return BUILT_IN;
+    }
+
+    /**
+     * Gets the built-in scheme with the given name.
+     *
+     * @param name scheme name, ignoring case
+     * @return the scheme
+     */
+    public static WeightingScheme fromName(String name) {
+        for (WeightingScheme scheme : BUILT_IN) {
+            if (scheme.name.equalsIgnoreCase(name)) return scheme;
+        }
+        throw new IllegalArgumentException("Unrecognised weighting scheme: " + name);
+    }
+
+    /**
+     * @return the name of the scheme
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * Calculates the weight of every cell of the Data in one pass over the table.
+     * Empty cells (a rate of zero or not a number) always get no weight.
+     *
+     * @param data Data object containing the rates
+     * @param weights array to put the weights in, rows by columns
+     * @throws IllegalArgumentException if the weights come from replicates and there are none
+     */
+    public void weigh(Data data, double[][] weights) {
+        double[][] reactRate = data.getTableData();
+        int rows = data.getRows();
+        int cols = data.getCols();
+        double[][] variances = (weightOfRate == null) ? replicateVariances(data) : null;
+
+        for (int row = 0; row < rows; row++) {
+            double[] rateRow = reactRate[row];
+            double[] weightRow = weights[row];
+            for (int col = 0; col < cols; col++) {
+                double rate = rateRow[col];
+                if (rate == 0 || Double.isNaN(rate)) {
+                    weightRow[col] = 0;
+                } else if (variances == null) {
+                    weightRow[col] = weightOfRate.applyAsDouble(rate);
+                } else {
+                    weightRow[col] = rate * rate * rate * rate / variances[row][col];
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the variance of each rate from its replicates: the rates in the same column whose rows have the same
+     * substrate concentration.
+     *
+     * @param data Data object containing the rates
+     * @return variance of each cell's rate, rows by columns
+     * @throws IllegalArgumentException if no rate has a replicate that differs from it
+     */
+    private static double[][] replicateVariances(Data data) {
+        double[][] reactRate = data.getTableData();
+        int rows = data.getRows();
+        int cols = data.getCols();
+        double[][] variances = new double[rows][cols];
+
+        // Group the rows by substrate concentration:
+        Map<Double, int[]> groups = new HashMap<>();
+        int[] group = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            group[row] = groups.computeIfAbsent(data.getSubstrateCol().get(row), s -> new int[]{groups.size()})[0];
+        }
+
+        double pooled = 0;
+        int pooledCount = 0;
+        double[] sum = new double[groups.size()];
+        double[] sumSquares = new double[groups.size()];
+        int[] count = new int[groups.size()];
+        double[] groupVariance = new double[groups.size()];
+        for (int col = 0; col < cols; col++) {
+            Arrays.fill(sum, 0);
+            Arrays.fill(sumSquares, 0);
+            Arrays.fill(count, 0);
+            for (int row = 0; row < rows; row++) {
+                double rate = reactRate[row][col];
+                if (rate == 0 || Double.isNaN(rate)) continue;
+                sum[group[row]] += rate;
+                sumSquares[group[row]] += rate * rate;
+                count[group[row]]++;
+            }
+            for (int g = 0; g < count.length; g++) {
+                groupVariance[g] = (count[g] < 2) ? 0 : (sumSquares[g] - sum[g] * sum[g] / count[g]) / (count[g] - 1);
+                if (groupVariance[g] > 0) {
+                    pooled += groupVariance[g];
+                    pooledCount++;
+                }
+            }
+            for (int row = 0; row < rows; row++) {
+                variances[row][col] = groupVariance[group[row]];
+            }
+        }
+        if (pooledCount == 0) {
+            throw new IllegalArgumentException("Replicate variance weighting needs rows with the same substrate concentration and different rates");
+        }
+        pooled /= pooledCount;
+
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                if (!(variances[row][col] > 0)) variances[row][col] = pooled;
+            }
+        }
+        return variances;
+    }
+}
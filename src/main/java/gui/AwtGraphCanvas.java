@@ -0,0 +1,77 @@
+package gui;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+
+/**
+ * GraphCanvas that draws onto a Graphics2D object, either from a Swing component or from an off-screen image.
+ * Only raster drawing is used, so this works when running with java.awt.headless=true.
+ */
+public class AwtGraphCanvas implements GraphCanvas {
+
+	/** The graphics object being drawn on. */
+	private final Graphics2D g2;
+
+	/**
+	 * Creates a canvas drawing onto the given graphics object.
+	 *
+	 * @param g2 graphics object
+	 */
+	public AwtGraphCanvas(Graphics2D g2) {
+		this.g2 = g2;
+	}
+
+	@Override
+	public void setColor(Color color) {
+		g2.setColor(color);
+	}
+
+	@Override
+	public void setStrokeWidth(float width) {
+		g2.setStroke(new BasicStroke(width));
+	}
+
+	@Override
+	public void fillRect(int x, int y, int width, int height) {
+		g2.fillRect(x, y, width, height);
+	}
+
+	@Override
+	public void drawLine(int x0, int y0, int x1, int y1) {
+		g2.drawLine(x0, y0, x1, y1);
+	}
+
+	@Override
+	public void drawOval(int x, int y, int width, int height) {
+		g2.drawOval(x, y, width, height);
+	}
+
+	@Override
+	public void fillOval(int x, int y, int width, int height) {
+		g2.fillOval(x, y, width, height);
+	}
+
+	@Override
+	public void drawPolygon(int[] xPoints, int[] yPoints, int numPoints) {
+		g2.drawPolygon(xPoints, yPoints, numPoints);
+	}
+
+	@Override
+	public void fillPolygon(int[] xPoints, int[] yPoints, int numPoints) {
+		g2.fillPolygon(xPoints, yPoints, numPoints);
+	}
+
+	/**
+	 * Draw a String centered at (x, y).
+	 * Help from: https://stackoverflow.com/a/27740330.
+	 */
+	@Override
+	public void drawStringCentered(String text, double x, double y) {
+		FontMetrics metrics = g2.getFontMetrics();
+		int left = (int)(x - metrics.stringWidth(text) / 2.0);
+		int top = (int)((y - metrics.getHeight() / 2.0) + metrics.getAscent());
+		g2.drawString(text, left, top);
+	}
+}
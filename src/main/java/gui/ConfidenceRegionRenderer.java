@@ -0,0 +1,125 @@
+package gui;
+
+import domain.ConfidenceRegion;
+import domain.Point;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * ConfidenceRegionRenderer draws the joint confidence region of two constants as a heat map, colouring each pixel
+ * by the delta chi-square of the constants under it: yellow at the best fit, red at the edge of the 95% region and
+ * fading through blue outside it, with the 95% contour drawn over the top.
+ */
+public class ConfidenceRegionRenderer {
+
+	/** The colour the 95% contour is drawn in. */
+	static final Color CONTOUR_COLOR = Color.BLACK;
+	/** The delta chi-square beyond which nothing is drawn, as a multiple of the region's threshold. */
+	private static final double FADE = 4.0;
+	/** The opacity of the heat map within the region. */
+	private static final int INSIDE_ALPHA = 200;
+	/** The opacity of the heat map just outside the region, fading to nothing at FADE. */
+	private static final int OUTSIDE_ALPHA = 140;
+
+	/** The region drawn. */
+	private final ConfidenceRegion.Region region;
+
+	/**
+	 * Creates a renderer for the given region.
+	 *
+	 * @param region joint confidence region
+	 */
+	public ConfidenceRegionRenderer(ConfidenceRegion.Region region) {
+		this.region = region;
+	}
+
+	/**
+	 * Gets the region drawn.
+	 *
+	 * @return joint confidence region
+	 */
+	public ConfidenceRegion.Region getRegion() {
+		return region;
+	}
+
+	/**
+	 * Gets the best fit as the only raw data point, so it is marked on the heat map.
+	 *
+	 * @return one list holding the best fit
+	 */
+	public List<List<Point>> getPoints() {
+		List<List<Point>> points = new ArrayList<>();
+		points.add(new ArrayList<>(Arrays.asList(new Point(region.getXEstimate(), region.getYEstimate()))));
+		return points;
+	}
+
+	/**
+	 * Creates a transform showing the whole grid in a drawing area of the given size.
+	 *
+	 * @param width width of the drawing area
+	 * @param height height of the drawing area
+	 * @return transform fitting the grid
+	 */
+	public GraphTransform fit(double width, double height) {
+		double[] x = region.getX();
+		double[] y = region.getY();
+		return new GraphTransform(width, height, x[0], x[x.length - 1], y[0], y[y.length - 1]);
+	}
+
+	/**
+	 * Rasterizes the heat map into a translucent image the size of the transform's drawing area, a band of rows
+	 * per thread.
+	 *
+	 * @param transform transform from data to screen coordinates
+	 * @return image with a transparent background
+	 */
+	public BufferedImage render(GraphTransform transform) {
+		int width = Math.max(1, (int) Math.ceil(transform.getWidth()));
+		int height = Math.max(1, (int) Math.ceil(transform.getHeight()));
+		double threshold = region.getThreshold();
+		float[] values = new float[width * height];
+		IntStream.range(0, height).parallel().forEach(py -> {
+			double y = transform.toDataY(py);
+			for (int px = 0; px < width; px++) {
+				values[py * width + px] = (float) (region.deltaChiSquareAt(transform.toDataX(px), y) / threshold);
+			}
+		});
+
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		int contour = CONTOUR_COLOR.getRGB();
+		IntStream.range(0, height).parallel().forEach(py -> {
+			for (int px = 0; px < width; px++) {
+				int i = py * width + px;
+				float t = values[i];
+				if (!(t <= FADE)) continue; // off the grid, or far outside the region
+				boolean inside = t < 1f;
+				// The contour runs between pixels on either side of the threshold:
+				if ((px + 1 < width && (values[i + 1] < 1f) != inside && !Float.isNaN(values[i + 1]))
+						|| (py + 1 < height && (values[i + width] < 1f) != inside && !Float.isNaN(values[i + width]))) {
+					pixels[i] = contour;
+					continue;
+				}
+				float hue;
+				int alpha;
+				if (inside) {
+					hue = (1f - t) / 6f; // yellow to red
+					alpha = INSIDE_ALPHA;
+				}
+				else {
+					float beyond = (float) ((t - 1.0) / (FADE - 1.0));
+					hue = 1f - beyond / 3f; // red through magenta to blue
+					alpha = (int) (OUTSIDE_ALPHA * (1f - beyond));
+				}
+				pixels[i] = (alpha << 24) | (Color.HSBtoRGB(hue, 0.9f, 1f) & 0x00FFFFFF);
+			}
+		});
+		return image;
+	}
+}
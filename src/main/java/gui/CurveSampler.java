@@ -0,0 +1,103 @@
+package gui;
+
+import domain.Point;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * CurveSampler is an abstract helper class with static methods for turning a curved line of best fit into points
+ * for drawing. Points are placed adaptively for the current view: a segment is split only while the curve bends
+ * more than half a pixel away from it on screen, so the number of points depends on how the curve looks at the
+ * current zoom rather than on how much data there is.
+ */
+public abstract class CurveSampler {
+
+	/** The number of evenly spaced segments the curve starts with. */
+	private static final int INITIAL_SEGMENTS = 16;
+	/** The most times a segment can be split. */
+	private static final int MAX_DEPTH = 12;
+	/** The furthest the curve may be from a segment on screen, in pixels. */
+	private static final double TOLERANCE = 0.5;
+
+	/**
+	 * Samples y = f(x) between x0 and x1 for drawing with the given transform.
+	 * Only the part of the range visible in the transform is sampled.
+	 *
+	 * @param f the curve
+	 * @param x0 smallest x of the curve
+	 * @param x1 largest x of the curve
+	 * @param transform transform from data to screen coordinates
+	 * @return points along the curve in data coordinates, with null wherever the curve is undefined
+	 */
+	public static List<Point> sample(DoubleUnaryOperator f, double x0, double x1, GraphTransform transform) {
+		List<Point> points = new ArrayList<>();
+		Rectangle2D area = transform.getVisibleArea();
+		double start = Math.max(x0, transform.toDataX(area.getMinX()));
+		double end = Math.min(x1, transform.toDataX(area.getMaxX()));
+		if (!(start < end)) return points;
+
+		double prevX = start;
+		double prevY = f.applyAsDouble(start);
+		points.add(toPoint(prevX, prevY));
+		for (int i = 1; i <= INITIAL_SEGMENTS; i++) {
+			double x = (i == INITIAL_SEGMENTS) ? end : start + (end - start) * i / INITIAL_SEGMENTS;
+			double y = f.applyAsDouble(x);
+			subdivide(f, prevX, prevY, x, y, transform, area, 0, points);
+			points.add(toPoint(x, y));
+			prevX = x;
+			prevY = y;
+		}
+		return points;
+	}
+
+	/**
+	 * Adds the points strictly between a and b needed to draw the curve between them.
+	 *
+	 * @param f the curve
+	 * @param xa x of the start
+	 * @param ya y of the start
+	 * @param xb x of the end
+	 * @param yb y of the end
+	 * @param transform transform from data to screen coordinates
+	 * @param area visible region in screen coordinates
+	 * @param depth number of times the segment has already been split
+	 * @param points list to add the points to
+	 */
+	private static void subdivide(DoubleUnaryOperator f, double xa, double ya, double xb, double yb,
+								  GraphTransform transform, Rectangle2D area, int depth, List<Point> points) {
+		if (depth >= MAX_DEPTH) return;
+		double xm = (xa + xb) / 2.0;
+		double ym = f.applyAsDouble(xm);
+
+		double sya = transform.toScreenY(ya);
+		double syb = transform.toScreenY(yb);
+		double sym = transform.toScreenY(ym);
+		if (Double.isFinite(sya) && Double.isFinite(syb) && Double.isFinite(sym)) {
+			// Nothing to refine if the whole piece is above or below the view, or already flat on screen:
+			boolean above = sya < area.getMinY() && syb < area.getMinY() && sym < area.getMinY();
+			boolean below = sya > area.getMaxY() && syb > area.getMaxY() && sym > area.getMaxY();
+			if (above || below || Math.abs(sym - (sya + syb) / 2.0) <= TOLERANCE) return;
+		}
+		else if (!Double.isFinite(sya) && !Double.isFinite(syb) && !Double.isFinite(sym)) {
+			return;
+		}
+
+		subdivide(f, xa, ya, xm, ym, transform, area, depth + 1, points);
+		points.add(toPoint(xm, ym));
+		subdivide(f, xm, ym, xb, yb, transform, area, depth + 1, points);
+	}
+
+	/**
+	 * Creates a point, or null if y is undefined.
+	 *
+	 * @param x x value
+	 * @param y y value
+	 * @return point, or null
+	 */
+	private static Point toPoint(double x, double y) {
+		return Double.isFinite(y) ? new Point(x, y) : null;
+	}
+}
@@ -0,0 +1,208 @@
+package gui;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * DensityRaster is an accumulation buffer for drawing very many lines and points at once.
+ * Instead of painting each shape, every pixel a shape covers has its weight added to a float buffer.
+ * The buffer is tone-mapped into a translucent image afterwards, so pixels covered by many datasets come
+ * out darker than pixels covered by only a few, like a density plot.
+ */
+public class DensityRaster {
+
+	/** Width of the buffer in pixels. */
+	private final int width;
+	/** Height of the buffer in pixels. */
+	private final int height;
+	/** The accumulated weight of each pixel in row-major order. */
+	private final float[] buffer;
+
+	/**
+	 * Creates an empty buffer of the given size.
+	 *
+	 * @param width width in pixels
+	 * @param height height in pixels
+	 */
+	public DensityRaster(int width, int height) {
+		this.width = Math.max(1, width);
+		this.height = Math.max(1, height);
+		this.buffer = new float[this.width * this.height];
+	}
+
+	/**
+	 * Gets the width of the buffer.
+	 *
+	 * @return width in pixels
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Gets the height of the buffer.
+	 *
+	 * @return height in pixels
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Gets the accumulated weight of a pixel.
+	 *
+	 * @param x pixel x
+	 * @param y pixel y
+	 * @return accumulated weight, or 0 if the pixel is outside the buffer
+	 */
+	public float get(int x, int y) {
+		if (x < 0 || y < 0 || x >= width || y >= height) return 0f;
+		return buffer[y * width + x];
+	}
+
+	/**
+	 * Clears every pixel back to zero.
+	 */
+	public void clear() {
+		Arrays.fill(buffer, 0f);
+	}
+
+	/**
+	 * Adds the weights of another buffer of the same size to this one.
+	 *
+	 * @param other buffer to add
+	 */
+	public void add(DensityRaster other) {
+		if (other.width != width || other.height != height) {
+			throw new IllegalArgumentException("Buffer sizes differ: " + other.width + "x" + other.height + " vs " + width + "x" + height);
+		}
+		float[] otherBuffer = other.buffer;
+		for (int i = 0; i < buffer.length; i++) {
+			buffer[i] += otherBuffer[i];
+		}
+	}
+
+	/**
+	 * Adds a line segment, one sample per pixel along its longer axis.
+	 * The segment is clipped to the buffer first, so segments far off screen cost nothing.
+	 *
+	 * @param x0 screen x of the start
+	 * @param y0 screen y of the start
+	 * @param x1 screen x of the end
+	 * @param y1 screen y of the end
+	 * @param weight weight added to each pixel covered
+	 */
+	public void addLine(double x0, double y0, double x1, double y1, float weight) {
+		if (!Double.isFinite(x0) || !Double.isFinite(y0) || !Double.isFinite(x1) || !Double.isFinite(y1)) return;
+
+		// Clip to the buffer (Liang-Barsky):
+		double dx = x1 - x0;
+		double dy = y1 - y0;
+		double[] t = {0.0, 1.0};
+		if (!clip(-dx, x0, t) || !clip(dx, width - 1 - x0, t) || !clip(-dy, y0, t) || !clip(dy, height - 1 - y0, t)) return;
+		double startX = x0 + t[0] * dx, startY = y0 + t[0] * dy;
+		double endX = x0 + t[1] * dx, endY = y0 + t[1] * dy;
+
+		// Step one pixel at a time along the longer axis, between the end pixels so rounding errors in the
+		// clipped ends can't add a step and cover a pixel twice:
+		int startPixelX = (int) Math.round(startX), startPixelY = (int) Math.round(startY);
+		int endPixelX = (int) Math.round(endX), endPixelY = (int) Math.round(endY);
+		int steps = Math.max(Math.abs(endPixelX - startPixelX), Math.abs(endPixelY - startPixelY));
+		if (steps == 0) {
+			addPixel(startPixelX, startPixelY, weight);
+			return;
+		}
+		double stepX = (double) (endPixelX - startPixelX) / steps;
+		double stepY = (double) (endPixelY - startPixelY) / steps;
+		for (int i = 0; i <= steps; i++) {
+			addPixel((int) Math.round(startPixelX + i * stepX), (int) Math.round(startPixelY + i * stepY), weight);
+		}
+	}
+
+	/**
+	 * Adds a filled square marker centred on a point.
+	 *
+	 * @param x screen x of the centre
+	 * @param y screen y of the centre
+	 * @param radius half the side length of the marker in pixels
+	 * @param weight weight added to each pixel covered
+	 */
+	public void addPoint(double x, double y, int radius, float weight) {
+		if (!(x > -radius - 1 && x < width + radius && y > -radius - 1 && y < height + radius)) return; // off screen or NaN
+		int cx = (int) Math.round(x);
+		int cy = (int) Math.round(y);
+		int left = Math.max(0, cx - radius), right = Math.min(width - 1, cx + radius);
+		int top = Math.max(0, cy - radius), bottom = Math.min(height - 1, cy + radius);
+		for (int py = top; py <= bottom; py++) {
+			int row = py * width;
+			for (int px = left; px <= right; px++) {
+				buffer[row + px] += weight;
+			}
+		}
+	}
+
+	/**
+	 * Tone-maps the buffer into a translucent image of a single colour.
+	 * Alpha grows with the logarithm of the weight, so a pixel hit once is still visible while the most
+	 * covered pixels are fully opaque.
+	 *
+	 * @param color colour to draw in
+	 * @return image with a transparent background
+	 */
+	public BufferedImage toImage(Color color) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		float max = 0f;
+		for (float value : buffer) {
+			if (value > max) max = value;
+		}
+		if (max <= 0f) return image;
+
+		int rgb = color.getRGB() & 0x00FFFFFF;
+		double scale = 255.0 / Math.log1p(max);
+		for (int i = 0; i < buffer.length; i++) {
+			float value = buffer[i];
+			if (value <= 0f) continue;
+			// Never let a covered pixel round down to invisible:
+			int alpha = Math.max(24, (int) (Math.log1p(value) * scale));
+			pixels[i] = (Math.min(255, alpha) << 24) | rgb;
+		}
+		return image;
+	}
+
+	/**
+	 * Adds weight to a single pixel, ignoring pixels outside the buffer.
+	 *
+	 * @param x pixel x
+	 * @param y pixel y
+	 * @param weight weight to add
+	 */
+	private void addPixel(int x, int y, float weight) {
+		if (x < 0 || y < 0 || x >= width || y >= height) return;
+		buffer[y * width + x] += weight;
+	}
+
+	/**
+	 * Clips the parameter range of a segment against one edge of the buffer.
+	 *
+	 * @param p the negated or positive direction of the segment along the edge's axis
+	 * @param q the distance from the segment start to the edge
+	 * @param t the [start, end] parameter range, narrowed in place
+	 * @return false if the segment lies completely outside the edge
+	 */
+	private static boolean clip(double p, double q, double[] t) {
+		if (p == 0.0) return q >= 0.0;
+		double r = q / p;
+		if (p < 0.0) {
+			if (r > t[1]) return false;
+			if (r > t[0]) t[0] = r;
+		}
+		else {
+			if (r < t[0]) return false;
+			if (r < t[1]) t[1] = r;
+		}
+		return true;
+	}
+}
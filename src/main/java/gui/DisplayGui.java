@@ -1,17 +1,25 @@
 package gui;
 
 import java.awt.*;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.UnsupportedFlavorException;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
+import domain.ConfidenceRegion;
 import domain.Data;
 import domain.GraphType;
 import domain.KineticModel;
 import domain.Main;
+import domain.ModelComparison;
 import domain.Point;
 
 /**
@@ -36,6 +44,15 @@ public class DisplayGui implements Gui {
 	private JFrame startupFrame;
 	/** The current LUCENZ version of the program. */
 	private boolean lucenz3 = false;
+	/**
+	 * Thread that loads and fits overlaid datasets one request at a time, so requests
+	 * finish in order and never fit the same datasets at once.
+	 */
+	private final ExecutorService overlayExecutor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Overlay fitter");
+		thread.setDaemon(true);
+		return thread;
+	});
 
 	/**
 	 * Create a new GUI with a graphical display.
@@ -138,7 +155,13 @@ public class DisplayGui implements Gui {
 					graphOutputPane.updateAvailableGraphTypes(inputData.getModelType(), lucenz3); // only allow valid GraphTypes for this model
 					inputData.setGraphType(graphOutputPane.getSelectedGraphType());
 					main.setData(inputData);
-					main.go();
+					try {
+						main.go();
+					}
+					catch(IllegalArgumentException e) {
+						JOptionPane.showMessageDialog(frame, e.getMessage(), "Fit Failed", JOptionPane.ERROR_MESSAGE);
+						break;
+					}
 					if(inputData.getModelType()==KineticModel.UninhibitedTwoSubOrderedBiBi || inputData.getModelType()==KineticModel.UninhibitedTwoSubPingPong) {
 						inputPane.setTransposeVisible(true);
 					}
@@ -197,6 +220,55 @@ public class DisplayGui implements Gui {
 					System.out.println("File name is invalid / No file was selected");
 				}
 				break;
+			case PASTE_PRESSED:
+				try {
+					String text = (String) Toolkit.getDefaultToolkit().getSystemClipboard().getData(DataFlavor.stringFlavor);
+					inputPane.pasteTable(text);
+				}
+				catch(UnsupportedFlavorException | IOException e) {
+					JOptionPane.showMessageDialog(frame, "The clipboard doesn't contain a table of values.", "Invalid Paste", JOptionPane.ERROR_MESSAGE);
+				}
+				break;
+			case OVERLAY_PRESSED:
+				JFileChooser overlayChooser = new JFileChooser();
+				overlayChooser.setFileFilter(new FileNameExtensionFilter("KTN and CSV", "ktn", "csv"));
+				overlayChooser.setMultiSelectionEnabled(true);
+				overlayChooser.setCurrentDirectory(new File(System.getProperty("user.dir")));
+				if(overlayChooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
+					List<String> fileNames = new ArrayList<String>();
+					for(File overlayFile : overlayChooser.getSelectedFiles()) {
+						fileNames.add(overlayFile.getPath());
+					}
+					GraphType overlayGraphType = graphOutputPane.getSelectedGraphType();
+					updateOverlays(() -> main.loadOverlayData(fileNames, overlayGraphType));
+				}
+				break;
+			case CLEAR_OVERLAY_PRESSED:
+				updateOverlays(main::clearOverlayData);
+				break;
+			case COMPARE_MODELS_PRESSED:
+				showModelComparison(main.compareModels(inputPane.getData()));
+				break;
+			case CONFIDENCE_REGION_PRESSED:
+				if(main.getData() == null) {
+					JOptionPane.showMessageDialog(frame, "Fit the data before finding a confidence region.", "No Fit", JOptionPane.ERROR_MESSAGE);
+					break;
+				}
+				// Choose two of the model's constants:
+				List<String> constantNames = ConfidenceRegion.names(main.getData().getModelType());
+				List<String> constantPairs = new ArrayList<String>();
+				for(int i = 0; i<constantNames.size(); i++) {
+					for(int j = i + 1; j<constantNames.size(); j++) {
+						constantPairs.add(constantNames.get(i) + " and " + constantNames.get(j));
+					}
+				}
+				Object chosenPair = JOptionPane.showInputDialog(frame, "Constants to plot:", "Confidence Region",
+						JOptionPane.QUESTION_MESSAGE, null, constantPairs.toArray(), constantPairs.get(0));
+				if(chosenPair != null) {
+					String[] chosenNames = chosenPair.toString().split(" and ");
+					showConfidenceRegion(chosenNames[0], chosenNames[1]);
+				}
+				break;
 			case MODEL_CHANGED:
 				// TODO: do event for when model changes
 				break;
@@ -218,6 +290,74 @@ public class DisplayGui implements Gui {
 		};
 	}
 
+	/**
+	 * Loads, fits or clears the overlaid datasets on a background thread, since
+	 * overlays can be many files, and shows the busy cursor until it's done.
+	 * Main displays the overlays itself when they're ready.
+	 *
+	 * @param update what to do to the overlays
+	 */
+	private void updateOverlays(Runnable update) {
+		frame.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+		overlayExecutor.execute(new SwingWorker<Void, Void>() {
+			@Override
+			protected Void doInBackground() {
+				update.run();
+				return null;
+			}
+
+			@Override
+			protected void done() {
+				frame.setCursor(Cursor.getDefaultCursor());
+				try {
+					get();
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				catch(ExecutionException e) {
+					JOptionPane.showMessageDialog(frame, e.getCause().getMessage(), "Overlay Failed", JOptionPane.ERROR_MESSAGE);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Finds the joint confidence region of two constants on a background thread,
+	 * since it takes hundreds of fits, and shows it on the graph when it's done.
+	 *
+	 * @param xName constant on the x axis
+	 * @param yName constant on the y axis
+	 */
+	private void showConfidenceRegion(String xName, String yName) {
+		frame.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+		new SwingWorker<ConfidenceRegion.Region, Void>() {
+			@Override
+			protected ConfidenceRegion.Region doInBackground() {
+				return main.confidenceRegion(xName, yName);
+			}
+
+			@Override
+			protected void done() {
+				frame.setCursor(Cursor.getDefaultCursor());
+				try {
+					graphOutputPane.updateConfidenceRegion(get());
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				catch(ExecutionException e) {
+					// An IllegalArgumentException if the data can't determine the constants,
+					// or an IllegalStateException if the fits failed:
+					Throwable cause = e.getCause();
+					String message = (cause.getCause() != null && cause instanceof IllegalStateException)
+							? cause.getMessage() + ": " + cause.getCause().getMessage() : cause.getMessage();
+					JOptionPane.showMessageDialog(frame, message, "Confidence Region Failed", JOptionPane.ERROR_MESSAGE);
+				}
+			}
+		}.execute();
+	}
+
 	/**
 	 * Creates an InputEventListener for handling input events from the
 	 * GraphOutputPane.
@@ -231,8 +371,16 @@ public class DisplayGui implements Gui {
 					Data data = main.getData();
 					// Get GraphType from GraphOutputPane:
 					GraphType selectedGraphType = graphOutputPane.getSelectedGraphType();
-					data.setGraphType(selectedGraphType);
-					main.go();
+					if(data != null) {
+						data.setGraphType(selectedGraphType);
+						try {
+							main.go();
+						}
+						catch(IllegalArgumentException e) {
+							JOptionPane.showMessageDialog(frame, e.getMessage(), "Fit Failed", JOptionPane.ERROR_MESSAGE);
+						}
+					}
+					updateOverlays(() -> main.fitOverlayData(selectedGraphType));
 					break;
 				case CLICKED_POINTS_CHANGED:
 					List<Point> points = graphOutputPane.getClickedTablePositions();
@@ -286,6 +434,33 @@ public class DisplayGui implements Gui {
 		};
 	}
 
+	/**
+	 * Shows the ranking of every model fitted to the input data in a dialog.
+	 *
+	 * @param candidates one candidate per model, best first
+	 */
+	private void showModelComparison(List<ModelComparison.Candidate> candidates) {
+		String[] columns = {"Rank", "Model", "AICc", "BIC", "Akaike weight", "F-test against", "p"};
+		Object[][] rows = new Object[candidates.size()][];
+		for(int i = 0; i<candidates.size(); i++) {
+			ModelComparison.Candidate c = candidates.get(i);
+			if(c.isFitted()) {
+				rows[i] = new Object[]{c.getRank(), c.getModel().toString(), String.format("%.2f", c.getAicc()),
+						String.format("%.2f", c.getBic()), String.format("%.3f", c.getAkaikeWeight()),
+						(c.getNestedModel() == null) ? "" : c.getNestedModel().toString(),
+						Double.isNaN(c.getFPValue()) ? "" : String.format("%.3g", c.getFPValue())};
+			}
+			else {
+				rows[i] = new Object[]{"", c.getModel().toString(), c.getData().getErrorMessage().trim(), "", "", "", ""};
+			}
+		}
+		JTable table = new JTable(rows, columns);
+		table.setEnabled(false);
+		JScrollPane scrollPane = new JScrollPane(table);
+		scrollPane.setPreferredSize(new Dimension(760, 150));
+		JOptionPane.showMessageDialog(frame, scrollPane, "Model Comparison", JOptionPane.INFORMATION_MESSAGE);
+	}
+
 	/**
 	 * Sets the LUCENZ version of the program, determining the available models and graphs.
 	 *
@@ -308,4 +483,13 @@ public class DisplayGui implements Gui {
 		textOutputPane.update(data);
 		graphOutputPane.update(data);
 	}
+
+	@Override
+	public void displayOverlayData(List<Data> datasets) {
+		if(!SwingUtilities.isEventDispatchThread()) {
+			SwingUtilities.invokeLater(() -> displayOverlayData(datasets));
+			return;
+		}
+		graphOutputPane.updateOverlay(datasets);
+	}
 }
@@ -1,5 +1,7 @@
 package gui;
 
+import java.util.List;
+
 import domain.Data;
 import domain.Main;
 
@@ -31,4 +33,9 @@ public class DummyGui implements Gui{
 		//Doesn't need to do anything		
 	}
 
+	@Override
+	public void displayOverlayData(List<Data> datasets) {
+		//Doesn't need to do anything
+	}
+
 }
@@ -0,0 +1,92 @@
+package gui;
+
+import java.awt.Color;
+
+/**
+ * GraphCanvas is the small set of drawing primitives needed by GraphRenderer to draw a graph.
+ * Keeping the renderer behind this interface lets the same plotting logic target the screen, an off-screen image
+ * or a vector format such as SVG.
+ */
+public interface GraphCanvas {
+
+	/**
+	 * Sets the colour used by all following drawing operations.
+	 *
+	 * @param color drawing colour
+	 */
+	void setColor(Color color);
+
+	/**
+	 * Sets the width of the stroke used by all following outline drawing operations.
+	 *
+	 * @param width stroke width in pixels
+	 */
+	void setStrokeWidth(float width);
+
+	/**
+	 * Fills a rectangle with the current colour.
+	 *
+	 * @param x left edge
+	 * @param y top edge
+	 * @param width width
+	 * @param height height
+	 */
+	void fillRect(int x, int y, int width, int height);
+
+	/**
+	 * Draws a line between (x0, y0) and (x1, y1).
+	 *
+	 * @param x0 start x
+	 * @param y0 start y
+	 * @param x1 end x
+	 * @param y1 end y
+	 */
+	void drawLine(int x0, int y0, int x1, int y1);
+
+	/**
+	 * Draws the outline of the oval fitting inside the given rectangle.
+	 *
+	 * @param x left edge
+	 * @param y top edge
+	 * @param width width
+	 * @param height height
+	 */
+	void drawOval(int x, int y, int width, int height);
+
+	/**
+	 * Fills the oval fitting inside the given rectangle.
+	 *
+	 * @param x left edge
+	 * @param y top edge
+	 * @param width width
+	 * @param height height
+	 */
+	void fillOval(int x, int y, int width, int height);
+
+	/**
+	 * Draws the outline of a polygon.
+	 *
+	 * @param xPoints x coordinates of the polygon
+	 * @param yPoints y coordinates of the polygon
+	 * @param numPoints number of points to use
+	 */
+	void drawPolygon(int[] xPoints, int[] yPoints, int numPoints);
+
+	/**
+	 * Fills a polygon.
+	 *
+	 * @param xPoints x coordinates of the polygon
+	 * @param yPoints y coordinates of the polygon
+	 * @param numPoints number of points to use
+	 */
+	void fillPolygon(int[] xPoints, int[] yPoints, int numPoints);
+
+	/**
+	 * Draws a String centered at (x, y).
+	 *
+	 * @param text String to draw
+	 * @param x x position
+	 * @param y y position
+	 */
+	void drawStringCentered(String text, double x, double y);
+}
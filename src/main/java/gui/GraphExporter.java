@@ -0,0 +1,164 @@
+package gui;
+
+import domain.Data;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * GraphExporter is an abstract helper class with static methods for rendering the graphs of fitted Data objects
+ * to PNG or SVG files without showing any window.
+ * Only off-screen images are used, so it can run with java.awt.headless=true.
+ */
+public abstract class GraphExporter {
+
+	/**
+	 * Renders the graph of a fitted Data object into an image.
+	 * The graph is laid out for a width x height area, then scaled by the given factor, so larger scales give
+	 * higher resolution images with the same proportions.
+	 *
+	 * @param data fitted Data object
+	 * @param substrateName name of the substrate
+	 * @param width width of the graph layout
+	 * @param height height of the graph layout
+	 * @param scale factor to scale the layout by
+	 * @return rendered image
+	 */
+	public static BufferedImage renderImage(Data data, String substrateName, int width, int height, double scale) {
+		BufferedImage image = new BufferedImage((int) Math.ceil(width * scale), (int) Math.ceil(height * scale), BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2 = image.createGraphics();
+		try {
+			g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+			g2.scale(scale, scale);
+			GraphRenderer.of(data, substrateName).render(new AwtGraphCanvas(g2), width, height);
+		} finally {
+			g2.dispose();
+		}
+		return image;
+	}
+
+	/**
+	 * Renders the graph of a fitted Data object as an SVG document.
+	 *
+	 * @param data fitted Data object
+	 * @param substrateName name of the substrate
+	 * @param width width of the document
+	 * @param height height of the document
+	 * @return SVG document
+	 */
+	public static String renderSvg(Data data, String substrateName, int width, int height) {
+		SvgGraphCanvas canvas = new SvgGraphCanvas(width, height);
+		GraphRenderer.of(data, substrateName).render(canvas, width, height);
+		return canvas.toSvg();
+	}
+
+	/**
+	 * Renders the graph of a fitted Data object to a file.
+	 * The format is chosen from the file extension, which must be .png or .svg.
+	 *
+	 * @param data fitted Data object
+	 * @param substrateName name of the substrate
+	 * @param file file to write
+	 * @param width width of the graph
+	 * @param height height of the graph
+	 * @param scale factor to scale PNG images by (ignored for SVG)
+	 * @throws IOException if the file can't be written
+	 */
+	public static void export(Data data, String substrateName, Path file, int width, int height, double scale) throws IOException {
+		String name = file.getFileName().toString().toLowerCase();
+		if (name.endsWith(".svg")) {
+			Files.write(file, renderSvg(data, substrateName, width, height).getBytes(StandardCharsets.UTF_8));
+		}
+		else if (name.endsWith(".png")) {
+			ImageIO.write(renderImage(data, substrateName, width, height, scale), "png", file.toFile());
+		}
+		else {
+			throw new IllegalArgumentException("Unrecognised graph format: " + file);
+		}
+	}
+
+	/**
+	 * Renders the graphs of many fitted Data objects to files in the given directory, in parallel.
+	 * Each file is named after the Data's file path, or numbered by its position in the list if it has none.
+	 * Names already used are numbered _2, _3, ... until they are unique (ignoring case), so no file is overwritten.
+	 * Datasets are independent, so they are rendered concurrently on a pool of the given size.
+	 *
+	 * @param datasets fitted Data objects
+	 * @param substrateName name of the substrate
+	 * @param directory directory to write the files to
+	 * @param format "png" or "svg"
+	 * @param width width of each graph
+	 * @param height height of each graph
+	 * @param scale factor to scale PNG images by (ignored for SVG)
+	 * @param threads number of threads to render with
+	 * @return the files written, in the same order as datasets
+	 * @throws IOException if any file can't be written
+	 */
+	public static List<Path> exportAll(List<Data> datasets, String substrateName, Path directory, String format,
+									   int width, int height, double scale, int threads) throws IOException {
+		Files.createDirectories(directory);
+		List<Callable<Path>> tasks = new ArrayList<>();
+		Set<String> usedNames = new HashSet<>();
+		for (int i = 0; i < datasets.size(); i++) {
+			Data data = datasets.get(i);
+			String baseName = fileName(data, i);
+			String name = baseName;
+			for (int n = 2; !usedNames.add(name.toLowerCase(Locale.ROOT)); n++) {
+				name = baseName + "_" + n; // don't overwrite datasets from files with the same name
+			}
+			Path file = directory.resolve(name + "." + format);
+			tasks.add(() -> {
+				export(data, substrateName, file, width, height, scale);
+				return file;
+			});
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		try {
+			List<Path> files = new ArrayList<>();
+			for (Future<Path> future : executor.invokeAll(tasks)) {
+				files.add(future.get());
+			}
+			return files;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Graph export was interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+			throw new IOException("Graph export failed", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Gets the file name (without extension) to use for the graph of a Data object.
+	 *
+	 * @param data Data object
+	 * @param index position of the Data object in its list
+	 * @return file name
+	 */
+	private static String fileName(Data data, int index) {
+		if (data.getFilePath() == null) return "dataset" + (index + 1);
+		String name = Path.of(data.getFilePath()).getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		return (dot > 0) ? name.substring(0, dot) : name;
+	}
+}
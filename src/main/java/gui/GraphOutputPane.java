@@ -1,6 +1,8 @@
 package gui;
 
+import domain.ConfidenceRegion;
 import domain.Data;
+import domain.FlightEvents;
 import domain.GraphType;
 import domain.KineticModel;
 import domain.Point;
@@ -12,11 +14,12 @@ import java.awt.datatransfer.Transferable;
 import java.awt.datatransfer.UnsupportedFlavorException;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.awt.image.BufferedImage;
 import java.util.*;
 import java.util.List;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * GraphOutputPane represents the pane on the bottom right of the window used for displaying graph data.
@@ -25,19 +28,12 @@ public class GraphOutputPane extends JPanel {
 
 	/** The full names of all the GraphTypes in order. */
 	private static final String[] GRAPH_TYPES = {"Velocity vs [S]", "Lineweaver-Burke", "Hanes", "Eadie-Hofstee", "Dixon", "Hunter-Downs"};
-	/** The colours to use for lines/points of different columns. */
-	private static final Color[] GRAPH_COLORS = {
-			Color.BLACK, Color.RED.darker(), Color.getHSBColor(0.11f, 1, 0.85f), Color.getHSBColor(0.167f, 1, 0.75f), Color.GREEN.darker(),
-			Color.CYAN.darker(), Color.BLUE, Color.MAGENTA, Color.PINK.darker(), Color.GRAY
-	};
-	/** The fraction of how much horizontal space the graph should take on the panel. */
-	private static final double GRAPH_WIDTH_SIZE_FACTOR = 0.75;
-	/** The fraction of how much vertical space the graph should take on the panel. */
-	private static final double GRAPH_HEIGHT_SIZE_FACTOR = 0.75;
 	/** The maximum pixel distance a point can be from the mouse to be clicked. */
 	private static final double MAX_CLICKED_POINT_DIST = 6.0;
 	/** The maximum squared pixel distance a point can be from the mouse to be clicked. */
 	private static final double MAX_CLICKED_POINT_DIST_SQUARED = Math.pow(MAX_CLICKED_POINT_DIST, 2);
+	/** How much one notch of the mouse wheel zooms by. */
+	private static final double ZOOM_PER_NOTCH = 1.2;
 
 	/** Event listener for input events. */
 	private final InputEventListener listener;
@@ -66,6 +62,8 @@ public class GraphOutputPane extends JPanel {
 	/** The measurement unit on the y axis for the selected GraphType. */
 	private String yUnit = "V";
 
+	/** The GraphType of the current graph, or null if there isn't one. */
+	private GraphType shownGraphType;
 	/** Indicates if a graph is currently displayed. */
 	private boolean graphDisplayed;
 	/** The theoretical points (line of best fit points) from the latest update. */
@@ -79,6 +77,31 @@ public class GraphOutputPane extends JPanel {
 	/** The table positions of the experiment points that are currently clicked. */
 	private final List<Point> clickedTablePositions = new ArrayList<>();
 
+	/** Draws the overlaid datasets, or null if no overlay is shown. */
+	private OverlayRenderer overlay;
+	/** Every line and raw data point of the overlaid datasets, for fitting the axes. */
+	private List<Point> overlayPoints = new ArrayList<>();
+	/** The curve of each line of best fit from the latest update, or null where the line is straight. */
+	private List<DoubleUnaryOperator> curves = new ArrayList<>();
+	/** The transform fitted to all the data, kept until the data or panel size changes. */
+	private GraphTransform fittedTransform;
+	/** The zoomed or panned view, or null to fit all the data. */
+	private GraphTransform view;
+	/** The view when the mouse was pressed, which dragging pans from. */
+	private GraphTransform dragStartView;
+	/** The screen position the mouse was pressed at. */
+	private Point dragStart;
+	/** The overlay rasterized by the last draw, reused until the view changes. */
+	private BufferedImage overlayImage;
+	/** The transform overlayImage was rasterized with. */
+	private GraphTransform overlayTransform;
+	/** Draws the confidence region shown in place of the graph, or null if the graph is shown. */
+	private ConfidenceRegionRenderer region;
+	/** The confidence region rasterized by the last draw, reused until the view changes. */
+	private BufferedImage regionImage;
+	/** The transform regionImage was rasterized with. */
+	private GraphTransform regionTransform;
+
 
 	/**
 	 * Creates a new GraphOutputPane for displaying graph data.
@@ -140,6 +163,7 @@ public class GraphOutputPane extends JPanel {
 			BufferedImage image = new BufferedImage(drawingPanel.getWidth(), drawingPanel.getHeight(), BufferedImage.TYPE_INT_RGB);
 			Graphics2D g2 = image.createGraphics();
 			drawGraph(g2);
+			g2.dispose();
 
 			// Copy Image to clipboard - code from https://alvinalexander.com/java/java-copy-image-to-clipboard-example/:
 			Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new Transferable() {
@@ -194,7 +218,7 @@ public class GraphOutputPane extends JPanel {
 		yValueTextField.setEditable(false);
 		xValueTextField.setMaximumSize(xValueTextField.getPreferredSize()); // stop it from expanding
 		yValueTextField.setMaximumSize(yValueTextField.getPreferredSize()); // stop it from expanding
-		JLabel clickPointLabel = new JLabel("Click on a point to identify it.");
+		JLabel clickPointLabel = new JLabel("Click on a point to identify it. Scroll to zoom, drag to pan, double-click to reset.");
 
 		panel.add(Box.createRigidArea(new Dimension(10, 0)));
 		panel.add(hoverValueLabel);
@@ -232,15 +256,30 @@ public class GraphOutputPane extends JPanel {
 			@Override
 			public void mousePressed(MouseEvent e) {
 				super.mousePressed(e);
+				dragStart = new Point(e.getX(), e.getY());
+				dragStartView = currentTransform();
 				setClickedTablePositions(new Point(e.getX(), e.getY()));
 			}
 
 			@Override
 			public void mouseReleased(MouseEvent e) {
 				super.mouseReleased(e);
+				dragStart = null;
 				clearClickedTablePositions();
 			}
 
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				super.mouseClicked(e);
+				if (e.getClickCount() == 2) resetView();
+			}
+
+			@Override
+			public void mouseWheelMoved(MouseWheelEvent e) {
+				super.mouseWheelMoved(e);
+				zoom(Math.pow(ZOOM_PER_NOTCH, -e.getPreciseWheelRotation()), new Point(e.getX(), e.getY()));
+			}
+
 			@Override
 			public void mouseExited(MouseEvent e) {
 				super.mouseExited(e);
@@ -256,11 +295,19 @@ public class GraphOutputPane extends JPanel {
 			@Override
 			public void mouseDragged(MouseEvent e) {
 				super.mouseDragged(e);
+				// Pan so the data follows the mouse, once it has moved further than a click would:
+				Point mousePoint = new Point(e.getX(), e.getY());
+				if (dragStart != null && dragStartView != null
+						&& (view != dragStartView || mousePoint.distanceSquaredTo(dragStart) > MAX_CLICKED_POINT_DIST_SQUARED)) {
+					view = dragStartView.pan(e.getX() - dragStart.getX(), e.getY() - dragStart.getY());
+					drawingPanel.repaint();
+				}
 				setHoverValue(new Point(e.getX(), e.getY()));
 			}
 		};
 		panel.addMouseListener(mouseAdapter);
 		panel.addMouseMotionListener(mouseAdapter);
+		panel.addMouseWheelListener(mouseAdapter);
 		return panel;
 	}
 
@@ -289,11 +336,53 @@ public class GraphOutputPane extends JPanel {
 	 * @param data the data object containing the lines and points to show
 	 */
 	public void update(Data data){
+		// Keep the view when refitting the same kind of graph, but not when the axes change:
+		if (data.getGraphType() != shownGraphType || region != null) this.view = null;
+		if (region != null) {
+			this.region = null;
+			this.regionImage = null;
+			updateSelectedGraphType(selectedGraphType); // back to the graph's units
+		}
+		this.shownGraphType = data.getGraphType();
 		this.lines = data.getGraphLine();
 		this.points = data.getGraphPoints();
+		this.curves = GraphRenderer.curves(data);
+		this.fittedTransform = null;
 		drawingPanel.repaint();
 	}
 	
+	/**
+	 * Shows the given fitted datasets overlaid as a density plot behind the current graph, or removes the
+	 * overlay if the list is empty.
+	 *
+	 * @param datasets fitted Data objects to overlay
+	 */
+	public void updateOverlay(List<Data> datasets){
+		this.overlay = datasets.isEmpty() ? null : new OverlayRenderer(datasets);
+		this.overlayPoints = (overlay == null) ? new ArrayList<>() : overlay.getAllPoints();
+		this.overlayImage = null;
+		this.overlayTransform = null;
+		this.fittedTransform = null;
+		drawingPanel.repaint();
+	}
+
+	/**
+	 * Shows the joint confidence region of two constants as a heat map in place of the graph, with the constants
+	 * on the axes and the best fit marked, until the graph is next updated.
+	 *
+	 * @param confidenceRegion joint confidence region to show
+	 */
+	public void updateConfidenceRegion(ConfidenceRegion.Region confidenceRegion){
+		this.region = new ConfidenceRegionRenderer(confidenceRegion);
+		this.regionImage = null;
+		this.regionTransform = null;
+		this.xUnit = confidenceRegion.getXName();
+		this.yUnit = confidenceRegion.getYName();
+		this.view = null;
+		this.fittedTransform = null;
+		drawingPanel.repaint();
+	}
+
 	/**
 	 * Update the name of the substrate.
 	 * 
@@ -356,183 +445,62 @@ public class GraphOutputPane extends JPanel {
 	 */
 	private void updateSelectedGraphType(GraphType type){
 		this.selectedGraphType = type;
-		switch (type) {
-			case VelocityVS:
-				xUnit = "[" + substrateName + "]";
-				yUnit = "V";
-				break;
-			case LineweaverBurke:
-				xUnit = "1/[" + substrateName + "]";
-				yUnit = "1/V";
-				break;
-			case Hanes:
-				xUnit = "[" + substrateName + "]";
-				yUnit = "[" + substrateName + "]/V";
-				break;
-			case EadieHofstee:
-				xUnit = "V/[" + substrateName + "]";
-				yUnit = "V";
-				break;
-			case Dixon:
-				xUnit = "[I]";
-				yUnit = "1/V";
-				break;
-			case HunterDowns:
-				xUnit = "[" + substrateName + "]";
-				yUnit = "i.à/1-à";
-				break;
-			default:
-				throw new IllegalArgumentException("Unrecognised graph type: " + type);
-		}
+		xUnit = GraphRenderer.xUnit(type, substrateName);
+		yUnit = GraphRenderer.yUnit(type, substrateName);
 	}
 
 	/**
 	 * Draws the current graph data onto the pane that owns the given graphics object.
+	 * Overlaid datasets are drawn as a density plot behind the current graph. The rasterized overlay is kept and
+	 * reused until the view changes, so repainting is cheap however many datasets are overlaid.
 	 *
 	 * @param g graphics object
 	 */
 	private void drawGraph(Graphics g){
-		Graphics2D g2 = (Graphics2D) g;
 		screenToDataPoint = point -> null; // default if no graph is shown
 
-		// Make sure graph data exists:
-		if (lines == null || points == null) return;
-
-		// Init useful variables:
-		int numLines = lines.size();
-		assert numLines == points.size();
-		List<List<Point>> linesCopy = new ArrayList<>(lines);
-		linesCopy.addAll(points);
-		List<Point> allPoints = linesCopy.stream().flatMap(Collection::stream).collect(Collectors.toList());
-
-		// Make sure there is at least one point to draw:
-		if (allPoints.size() == 0) return;
-
-		// Find highest and lowest values:
-		double xMin = 0.0, yMin = 0.0, xMax = 0.0, yMax = 0.0;
-		for (Point p : allPoints){
-			if (p == null) continue;
-			double x = p.getX(), y = p.getY();
-			if (x > xMax) xMax = x;
-			//else if (x < xMin) xMin = x;
-			if (y > yMax) yMax = y;
-			//else if (y < yMin) yMin = y;
-		}
-
-		// Round each axis upward so the axis labels contain nice rounded numbers:
-		double xMaxRounded = Math.ceil(xMax);
-		xMax = xMaxRounded;
-		double yMaxRounded = Math.ceil(yMax);
-		yMax = yMaxRounded;
-
-		// Determine graph dimensions:
-		double width = drawingPanel.getWidth();
-		double height = drawingPanel.getHeight();
-		double graphWidth = GRAPH_WIDTH_SIZE_FACTOR * width;
-		double graphHeight = GRAPH_HEIGHT_SIZE_FACTOR * height;
-		double graphLeft = (1.0 - GRAPH_WIDTH_SIZE_FACTOR) / 2.0 * width;
-		double graphTop = (1.0 - GRAPH_HEIGHT_SIZE_FACTOR) / 2.0 * height;
-		double graphRight = graphLeft + graphWidth;
-		double graphBottom = graphTop + graphHeight;
-
-		// Extend each axis to give space on either side, and determine scaling factors:
-		double xRange = xMax - xMin;
-		double yRange = yMax - yMin;
-		double xRangeIncrease = xRange * 0.05;
-		double yRangeIncrease = yRange * 0.05;
-		xRange += xRangeIncrease;
-		yRange += yRangeIncrease;
-		xMax += xRangeIncrease / 2.0;
-		yMax += yRangeIncrease / 2.0;
-		xMin -= xRangeIncrease / 2.0;
-		yMin -= yRangeIncrease / 2.0;
-		double xScaleFactor = graphWidth / xRange;
-		double yScaleFactor = graphHeight / yRange;
-
-		// Write function for translating between coordinate systems:
-		double finalXMin = xMin, finalYMin = yMin;
-		screenToDataPoint = (Point p) -> {
-			if (p == null) return null;
-			double x = (p.getX() - graphLeft) / xScaleFactor + finalXMin;
-			double y = (graphBottom - p.getY()) / yScaleFactor + finalYMin;
-			return new Point(x, y);
-		};
-
-		// Draw background:
-		g2.setColor(Color.WHITE);
-		g2.fillRect(0, 0, (int)(width), (int)(height));
-
-		// Draw axes:
-		g2.setColor(Color.BLACK);
-		int xOrigin = (int)(graphLeft - xMin * xScaleFactor);
-		int yOrigin = (int)(graphBottom + yMin * yScaleFactor);
-		g2.drawLine((int)(graphLeft), yOrigin, (int)(graphRight), yOrigin); // x-axis
-		g2.drawLine(xOrigin, (int)(graphBottom), xOrigin, (int)(graphTop)); // y-axis
-
-		// Draw axes labels:
-		drawStringCentered(g2, xUnit, width / 2.0, graphBottom + (height - graphBottom) / 2.0);
-		drawStringCentered(g2, yUnit, graphLeft / 2.0, height / 2.0);
-		int numLabels = 5;
-		double xLabelY = graphBottom + (height - graphBottom) / 4.0;
-		double yLabelX = graphLeft - graphLeft / 4.0;
-		double markerWidth = graphWidth / 25.0;
-		double markerHeight = graphHeight / 25.0;
-		for (int i = 0; i <= numLabels; i++){
-
-			double xValue = xMaxRounded * i / numLabels; // x value from left to right
-			double xScreenValue = graphLeft + (xValue - xMin) * xScaleFactor;
-			drawStringCentered(g2, "" + xValue, xScreenValue, xLabelY);
-
-			double yValue = yMaxRounded * i / numLabels; // y value from bottom to top
-			double yScreenValue = graphBottom - (yValue - yMin) * yScaleFactor;
-			drawStringCentered(g2, "" + yValue, yLabelX, yScreenValue);
-
-			// Draw marker lines:
-			if (i > 0) {
-				g2.drawLine((int) xScreenValue, (int) (yOrigin - markerHeight / 2.0), (int) xScreenValue, (int) (yOrigin + markerHeight / 2.0));
-				g2.drawLine((int) (xOrigin - markerWidth / 2.0), (int) yScreenValue, (int) (xOrigin + markerWidth / 2.0), (int) yScreenValue);
-			}
+		GraphTransform transform = currentTransform();
+		if (transform == null) return;
+		screenToDataPoint = transform::toData;
+		if (region != null) {
+			drawConfidenceRegion(g, transform);
+			return;
 		}
-
-		// Draw theoretical lines (lines of best fit):
-		for (int lineIndex = 0; lineIndex < lines.size(); lineIndex++){
-
-			// Set line colour:
-			g2.setColor(Color.BLACK);
-			if (lineIndex < GRAPH_COLORS.length) g2.setColor(GRAPH_COLORS[lineIndex]);
-
-			List<Point> line = lines.get(lineIndex);
-			for (int i = 0; i < line.size()-1; i++){
-				Point p0 = line.get(i);
-				Point p1 = line.get(i+1);
-				int x0 = (int)(graphLeft + (p0.getX() - xMin) * xScaleFactor);
-				int y0 = (int)(graphBottom - (p0.getY() - yMin) * yScaleFactor);
-				int x1 = (int)(graphLeft + (p1.getX() - xMin) * xScaleFactor);
-				int y1 = (int)(graphBottom - (p1.getY() - yMin) * yScaleFactor);
-				g2.drawLine(x0, y0, x1, y1);
+		FlightEvents.Render event = new FlightEvents.Render();
+		event.begin();
+
+		boolean hasGraph = (lines != null && points != null);
+		GraphRenderer renderer = new GraphRenderer(hasGraph ? lines : new ArrayList<>(), hasGraph ? points : new ArrayList<>(),
+				curves, xUnit, yUnit);
+		AwtGraphCanvas canvas = new AwtGraphCanvas((Graphics2D) g);
+		renderer.renderAxes(canvas, transform);
+		if (overlay != null) {
+			if (overlayImage == null || !transform.equals(overlayTransform)) {
+				overlayImage = overlay.render(transform);
+				overlayTransform = transform;
 			}
+			drawClipped(g, overlayImage, transform);
 		}
+		renderer.renderData(canvas, transform);
 
-		// Draw experiment points (raw data points):
+		// Remember the position in the table of each experiment point in view:
 		screenPointToTablePosition.clear();
-		for (int pointListIndex = 0; pointListIndex < points.size(); pointListIndex++){
+		int pointsInView = 0;
+		if (points != null) for (int pointListIndex = 0; pointListIndex < points.size(); pointListIndex++){
 			List<Point> pointList = points.get(pointListIndex);
-
-			// Set point colour:
-			g2.setColor(Color.BLACK);
-			if (pointListIndex < GRAPH_COLORS.length) g2.setColor(GRAPH_COLORS[pointListIndex]);
-
 			for (int pointIndex = 0; pointIndex < pointList.size(); pointIndex++){
 				Point p = pointList.get(pointIndex);
 				if (p == null) continue;
-				int x = (int)(graphLeft + (p.getX() - xMin) * xScaleFactor);
-				int y = (int)(graphBottom - (p.getY() - yMin) * yScaleFactor);
-				drawShapeFromIndex(g2, pointListIndex, x, y);
-
-				// Remember each point's position in the table:
-				screenPointToTablePosition.put(new Point(x, y), new Point(pointListIndex, pointIndex));
+				double x = transform.toScreenX(p.getX());
+				double y = transform.toScreenY(p.getY());
+				if (!transform.getVisibleArea().contains(x, y)) continue;
+				screenPointToTablePosition.put(new Point((int) x, (int) y), new Point(pointListIndex, pointIndex));
+				pointsInView++;
 			}
 		}
+		event.points = pointsInView;
+		event.overlay = (overlay != null);
+		event.commit();
 
 		// Set graph as displayed:
 		if (!graphDisplayed){
@@ -543,96 +511,92 @@ public class GraphOutputPane extends JPanel {
 	}
 
 	/**
-	 * Draw a String centered at (x, y).
-	 * Help from: https://stackoverflow.com/a/27740330.
+	 * Draws the confidence region as a heat map with the best fit marked on it. The rasterized heat map is kept and
+	 * reused until the view changes.
 	 *
-	 * @param g2 Graphics object
-	 * @param text String to draw
-	 * @param x x position
-	 * @param y y position
+	 * @param g graphics object
+	 * @param transform transform to draw with
 	 */
-	private void drawStringCentered(Graphics2D g2, String text, double x, double y){
-		FontMetrics metrics = g2.getFontMetrics();
-		int left = (int)(x - metrics.stringWidth(text) / 2.0);
-		int top = (int)((y - metrics.getHeight() / 2.0) + metrics.getAscent());
-		g2.drawString(text, left, top);
+	private void drawConfidenceRegion(Graphics g, GraphTransform transform){
+		GraphRenderer renderer = new GraphRenderer(new ArrayList<>(), region.getPoints(), xUnit, yUnit);
+		AwtGraphCanvas canvas = new AwtGraphCanvas((Graphics2D) g);
+		renderer.renderAxes(canvas, transform);
+		if (regionImage == null || !transform.equals(regionTransform)) {
+			regionImage = region.render(transform);
+			regionTransform = transform;
+		}
+		drawClipped(g, regionImage, transform);
+		renderer.renderData(canvas, transform);
+		screenPointToTablePosition.clear(); // the best fit isn't a point of the table
 	}
 
 	/**
-	 * Draws a shape centered at (x, y), with the type of shape depending on the given index i.
+	 * Draws an image rasterized for the whole drawing area, clipped to the visible area of the graph.
 	 *
-	 * @param g2 the Graphics object
-	 * @param i index
-	 * @param x x position
-	 * @param y y position
+	 * @param g graphics object
+	 * @param image image to draw
+	 * @param transform transform the image was rasterized with
 	 */
-	private void drawShapeFromIndex(Graphics2D g2, int i, int x, int y){
-		boolean shapeVariant = false;
-		if (i >= 5) shapeVariant = true; // make shapes hollow or rotate them to be different
-		i %= 5; // wrap index so it is from 0 to 5, as there are 5 available shapes
-		int size = 12;
-		int radius = size / 2;
-		int strokeWidth = 2;
-		Stroke originalStroke = g2.getStroke(); // store original stroke so it can be set back after
-		g2.setStroke(new BasicStroke(strokeWidth));
-
-		// Draw shape based on index i:
-		switch (i) {
-			case 1: // square
-				drawPolygon(g2, x, y, 4, radius, -Math.PI / 4.0, !shapeVariant, false);
-				break;
-			case 2: // triangle
-				drawPolygon(g2, x, y, 3, radius, -Math.PI / 2.0, !shapeVariant, false);
-				break;
-			case 3: // cross (+)
-				if (shapeVariant){
-					radius = (int) (radius * 1.0 / Math.sqrt(2.0));
-					g2.drawLine(x - radius, y - radius, x + radius, y + radius);
-					g2.drawLine(x - radius, y + radius, x + radius, y - radius);
-				}
-				else {
-					g2.drawLine(x - radius, y, x + radius, y);
-					g2.drawLine(x, y - radius, x, y + radius);
-				}
-				break;
-			case 4: // star
-				drawPolygon(g2, x, y, 10, radius, -Math.PI / 2.0, !shapeVariant, true);
-				break;
-			default: // circle
-				if (shapeVariant) g2.drawOval(x - radius, y - radius, size, size);
-				else g2.fillOval(x - radius, y - radius, size, size);
-		}
-		g2.setStroke(originalStroke);
+	private void drawClipped(Graphics g, BufferedImage image, GraphTransform transform){
+		Shape clip = g.getClip();
+		g.clipRect((int) transform.getVisibleArea().getX(), (int) transform.getVisibleArea().getY(),
+				(int) Math.ceil(transform.getVisibleArea().getWidth()), (int) Math.ceil(transform.getVisibleArea().getHeight()));
+		g.drawImage(image, 0, 0, null);
+		g.setClip(clip);
 	}
 
 	/**
-	 * Draws a polygon centered at (x, y) with the given number of points and radius.
+	 * Gets the transform to draw the graph with: the zoomed or panned view if there is one, otherwise a transform
+	 * fitted to the confidence region's grid if one is shown, or else to the current graph and all overlaid
+	 * datasets. The fitted transform is kept until the data or the
+	 * size of the panel changes.
 	 *
-	 * @param g2 the Graphics object
-	 * @param x x position
-	 * @param y y position
-	 * @param numPoints number of points
-	 * @param radius distance of points from center
-	 * @param startAngle starting angle for drawing points
-	 * @param fill if false, only draw outline
-	 * @param star if true, every second point has half the radius
+	 * @return transform, or null if there is nothing to draw
 	 */
-	private void drawPolygon(Graphics2D g2, double x, double y, int numPoints, double radius, double startAngle, boolean fill, boolean star) {
-		double angleIncrement = (2 * Math.PI) / numPoints;
-		int[] xPoints = new int[numPoints];
-		int[] yPoints = new int[numPoints];
-
-		// Calculate points:
-		for (int p = 0; p < numPoints; p++) {
-			double r = radius;
-			if (star && p % 2 != 0) r /= 2.0;
-			double angle = startAngle + angleIncrement * p;
-			xPoints[p] = (int) (Math.cos(angle) * r + x);
-			yPoints[p] = (int) (Math.sin(angle) * r + y);
+	private GraphTransform currentTransform(){
+		int width = drawingPanel.getWidth();
+		int height = drawingPanel.getHeight();
+		if (view != null) {
+			if (view.getWidth() != width || view.getHeight() != height) view = view.withSize(width, height);
+			return view;
+		}
+		if (region != null) {
+			if (fittedTransform == null || fittedTransform.getWidth() != width || fittedTransform.getHeight() != height) {
+				fittedTransform = region.fit(width, height);
+			}
+			return fittedTransform;
+		}
+		if (fittedTransform == null || fittedTransform.getWidth() != width || fittedTransform.getHeight() != height) {
+			List<Point> allPoints = new ArrayList<>(overlayPoints);
+			if (lines != null && points != null) {
+				lines.forEach(allPoints::addAll);
+				points.forEach(allPoints::addAll);
+			}
+			fittedTransform = allPoints.isEmpty() ? null : GraphTransform.fit(allPoints, width, height);
 		}
+		return fittedTransform;
+	}
 
-		if (fill) g2.fillPolygon(xPoints, yPoints, numPoints);
-		else g2.drawPolygon(xPoints, yPoints, numPoints);
+	/**
+	 * Zooms the graph about the given screen position.
+	 *
+	 * @param factor amount to zoom by (greater than 1 zooms in)
+	 * @param screenPoint screen position to keep fixed
+	 */
+	private void zoom(double factor, Point screenPoint){
+		GraphTransform transform = currentTransform();
+		if (transform == null) return;
+		view = transform.zoom(factor, screenPoint.getX(), screenPoint.getY());
+		drawingPanel.repaint();
+	}
+
+	/**
+	 * Resets the graph to fit all the data again after zooming or panning.
+	 */
+	private void resetView(){
+		if (view == null) return;
+		view = null;
+		drawingPanel.repaint();
 	}
 
 	/** 
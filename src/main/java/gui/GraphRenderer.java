@@ -0,0 +1,462 @@
+package gui;
+
+import domain.Calculations;
+import domain.Data;
+import domain.GraphType;
+import domain.Point;
+
+import java.awt.Color;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * GraphRenderer draws the lines of best fit and raw data points of a graph onto any GraphCanvas.
+ * It holds no Swing state, so it is shared by the on-screen GraphOutputPane and by headless graph export.
+ */
+public class GraphRenderer {
+
+	/** The colours to use for lines/points of different columns. */
+	static final Color[] GRAPH_COLORS = {
+			Color.BLACK, Color.RED.darker(), Color.getHSBColor(0.11f, 1, 0.85f), Color.getHSBColor(0.167f, 1, 0.75f), Color.GREEN.darker(),
+			Color.CYAN.darker(), Color.BLUE, Color.MAGENTA, Color.PINK.darker(), Color.GRAY
+	};
+
+	/** Outcode for a point left of the visible area. */
+	private static final int OUT_LEFT = 1;
+	/** Outcode for a point right of the visible area. */
+	private static final int OUT_RIGHT = 2;
+	/** Outcode for a point above the visible area. */
+	private static final int OUT_TOP = 4;
+	/** Outcode for a point below the visible area. */
+	private static final int OUT_BOTTOM = 8;
+
+	/** The theoretical points (line of best fit points). */
+	private final List<List<Point>> lines;
+	/** The experiment points (raw data points). */
+	private final List<List<Point>> points;
+	/** The curve of each line of best fit, resampled for the current view, or null where the line is straight. */
+	private final List<DoubleUnaryOperator> curves;
+	/** The measurement unit on the x axis. */
+	private final String xUnit;
+	/** The measurement unit on the y axis. */
+	private final String yUnit;
+
+	/**
+	 * Creates a renderer for the given graph data.
+	 *
+	 * @param lines theoretical points (lines of best fit)
+	 * @param points experiment points (raw data points)
+	 * @param xUnit measurement unit on the x axis
+	 * @param yUnit measurement unit on the y axis
+	 */
+	public GraphRenderer(List<List<Point>> lines, List<List<Point>> points, String xUnit, String yUnit) {
+		this(lines, points, new ArrayList<>(), xUnit, yUnit);
+	}
+
+	/**
+	 * Creates a renderer for the given graph data, drawing curved lines of best fit from their functions.
+	 *
+	 * @param lines theoretical points (lines of best fit)
+	 * @param points experiment points (raw data points)
+	 * @param curves curve of each line of best fit, or null where the line's points should be joined instead
+	 * @param xUnit measurement unit on the x axis
+	 * @param yUnit measurement unit on the y axis
+	 */
+	public GraphRenderer(List<List<Point>> lines, List<List<Point>> points, List<DoubleUnaryOperator> curves, String xUnit, String yUnit) {
+		this.lines = lines;
+		this.points = points;
+		this.curves = curves;
+		this.xUnit = xUnit;
+		this.yUnit = yUnit;
+	}
+
+	/**
+	 * Creates a renderer for the graph stored in a fitted Data object, labelling the axes for its GraphType.
+	 *
+	 * @param data fitted Data object
+	 * @param substrateName name of the substrate
+	 * @return renderer for the data's graph
+	 */
+	public static GraphRenderer of(Data data, String substrateName) {
+		return new GraphRenderer(data.getGraphLine(), data.getGraphPoints(), curves(data),
+				xUnit(data.getGraphType(), substrateName), yUnit(data.getGraphType(), substrateName));
+	}
+
+	/**
+	 * Gets the curve of each line of best fit in a fitted Data object.
+	 *
+	 * @param data fitted Data object
+	 * @return curve of each line, or null where the line is straight
+	 */
+	public static List<DoubleUnaryOperator> curves(Data data) {
+		List<DoubleUnaryOperator> curves = new ArrayList<>();
+		if (data.getGraphLine() == null) return curves;
+		for (int i = 0; i < data.getGraphLine().size(); i++) {
+			curves.add(Calculations.graphCurve(data, i));
+		}
+		return curves;
+	}
+
+	/**
+	 * Gets the measurement unit on the x axis for the given GraphType.
+	 *
+	 * @param type GraphType
+	 * @param substrateName name of the substrate
+	 * @return x axis unit
+	 */
+	public static String xUnit(GraphType type, String substrateName) {
+		switch (type) {
+			case VelocityVS:
+			case Hanes:
+			case HunterDowns:
+				return "[" + substrateName + "]";
+			case LineweaverBurke:
+				return "1/[" + substrateName + "]";
+			case EadieHofstee:
+				return "V/[" + substrateName + "]";
+			case Dixon:
+				return "[I]";
+			default:
+				throw new IllegalArgumentException("Unrecognised graph type: " + type);
+		}
+	}
+
+	/**
+	 * Gets the measurement unit on the y axis for the given GraphType.
+	 *
+	 * @param type GraphType
+	 * @param substrateName name of the substrate
+	 * @return y axis unit
+	 */
+	public static String yUnit(GraphType type, String substrateName) {
+		switch (type) {
+			case VelocityVS:
+			case EadieHofstee:
+				return "V";
+			case LineweaverBurke:
+			case Dixon:
+				return "1/V";
+			case Hanes:
+				return "[" + substrateName + "]/V";
+			case HunterDowns:
+				return "i.à/1-à";
+			default:
+				throw new IllegalArgumentException("Unrecognised graph type: " + type);
+		}
+	}
+
+	/**
+	 * Draws the graph onto the canvas, fitting the axes to all lines and points.
+	 *
+	 * @param canvas canvas to draw on
+	 * @param width width of the drawing area
+	 * @param height height of the drawing area
+	 * @return the transform used to draw the graph, or null if there was nothing to draw
+	 */
+	public GraphTransform render(GraphCanvas canvas, double width, double height) {
+		// Make sure graph data exists:
+		if (lines == null || points == null) return null;
+
+		// Init useful variables:
+		assert lines.size() == points.size();
+		List<List<Point>> linesCopy = new ArrayList<>(lines);
+		linesCopy.addAll(points);
+		List<Point> allPoints = linesCopy.stream().flatMap(Collection::stream).collect(Collectors.toList());
+
+		// Make sure there is at least one point to draw:
+		if (allPoints.size() == 0) return null;
+
+		GraphTransform transform = GraphTransform.fit(allPoints, width, height);
+		render(canvas, transform);
+		return transform;
+	}
+
+	/**
+	 * Draws the graph onto the canvas using the given transform.
+	 *
+	 * @param canvas canvas to draw on
+	 * @param transform transform from data to screen coordinates
+	 */
+	public void render(GraphCanvas canvas, GraphTransform transform) {
+		renderAxes(canvas, transform);
+		renderData(canvas, transform);
+	}
+
+	/**
+	 * Draws the background, axes and axes labels onto the canvas.
+	 *
+	 * @param canvas canvas to draw on
+	 * @param transform transform from data to screen coordinates
+	 */
+	public void renderAxes(GraphCanvas canvas, GraphTransform transform) {
+		double width = transform.getWidth();
+		double height = transform.getHeight();
+		double graphLeft = transform.getGraphLeft();
+		double graphTop = transform.getGraphTop();
+		double graphRight = transform.getGraphRight();
+		double graphBottom = transform.getGraphBottom();
+		double graphWidth = graphRight - graphLeft;
+		double graphHeight = graphBottom - graphTop;
+
+		// Draw background:
+		canvas.setColor(Color.WHITE);
+		canvas.fillRect(0, 0, (int)(width), (int)(height));
+
+		// Draw axes through the origin, or along the edge of the graph if the origin is out of view:
+		canvas.setColor(Color.BLACK);
+		int xOrigin = (int) transform.toScreenX(clamp(0.0, transform.getXMin(), transform.getXMax()));
+		int yOrigin = (int) transform.toScreenY(clamp(0.0, transform.getYMin(), transform.getYMax()));
+		canvas.drawLine((int)(graphLeft), yOrigin, (int)(graphRight), yOrigin); // x-axis
+		canvas.drawLine(xOrigin, (int)(graphBottom), xOrigin, (int)(graphTop)); // y-axis
+
+		// Draw axes labels:
+		canvas.drawStringCentered(xUnit, width / 2.0, graphBottom + (height - graphBottom) / 2.0);
+		canvas.drawStringCentered(yUnit, graphLeft / 2.0, height / 2.0);
+		double xLabelY = graphBottom + (height - graphBottom) / 4.0;
+		double yLabelX = graphLeft - graphLeft / 4.0;
+		double markerWidth = graphWidth / 25.0;
+		double markerHeight = graphHeight / 25.0;
+
+		double[] xLabels = transform.getXLabels();
+		for (double xValue : xLabels) { // x values from left to right
+			double xScreenValue = transform.toScreenX(xValue);
+			canvas.drawStringCentered(transform.formatLabel(xValue, xLabels), xScreenValue, xLabelY);
+			// Draw marker lines (except at the origin):
+			if (xValue != 0.0) {
+				canvas.drawLine((int) xScreenValue, (int) (yOrigin - markerHeight / 2.0), (int) xScreenValue, (int) (yOrigin + markerHeight / 2.0));
+			}
+		}
+
+		double[] yLabels = transform.getYLabels();
+		for (double yValue : yLabels) { // y values from bottom to top
+			double yScreenValue = transform.toScreenY(yValue);
+			canvas.drawStringCentered(transform.formatLabel(yValue, yLabels), yLabelX, yScreenValue);
+			if (yValue != 0.0) {
+				canvas.drawLine((int) (xOrigin - markerWidth / 2.0), (int) yScreenValue, (int) (xOrigin + markerWidth / 2.0), (int) yScreenValue);
+			}
+		}
+	}
+
+	/**
+	 * Draws the lines of best fit and the raw data points onto the canvas.
+	 *
+	 * @param canvas canvas to draw on
+	 * @param transform transform from data to screen coordinates
+	 */
+	public void renderData(GraphCanvas canvas, GraphTransform transform) {
+		// Only draw what intersects the visible area:
+		Rectangle2D area = transform.getVisibleArea();
+
+		// Draw theoretical lines (lines of best fit):
+		for (int lineIndex = 0; lineIndex < lines.size(); lineIndex++){
+
+			// Set line colour:
+			canvas.setColor(colorFromIndex(lineIndex));
+
+			List<Point> line = lines.get(lineIndex);
+			DoubleUnaryOperator curve = (lineIndex < curves.size()) ? curves.get(lineIndex) : null;
+			if (curve != null && line.size() >= 2) {
+				// Resample curved lines over their visible part at the current zoom:
+				line = CurveSampler.sample(curve, line.get(0).getX(), line.get(line.size() - 1).getX(), transform);
+			}
+			for (int i = 0; i < line.size()-1; i++){
+				Point p0 = line.get(i);
+				Point p1 = line.get(i+1);
+				if (p0 == null || p1 == null) continue;
+				drawClippedLine(canvas, area, transform.toScreenX(p0.getX()), transform.toScreenY(p0.getY()),
+						transform.toScreenX(p1.getX()), transform.toScreenY(p1.getY()));
+			}
+		}
+
+		// Draw experiment points (raw data points):
+		for (int pointListIndex = 0; pointListIndex < points.size(); pointListIndex++){
+			List<Point> pointList = points.get(pointListIndex);
+
+			// Set point colour:
+			canvas.setColor(colorFromIndex(pointListIndex));
+
+			for (Point p : pointList) {
+				if (p == null) continue;
+				double x = transform.toScreenX(p.getX());
+				double y = transform.toScreenY(p.getY());
+				if (!area.contains(x, y)) continue;
+				drawShapeFromIndex(canvas, pointListIndex, (int) x, (int) y);
+			}
+		}
+	}
+
+	/**
+	 * Draws the part of a line segment inside the visible area, skipping it entirely if it is outside
+	 * (Cohen-Sutherland clipping). Segments with an undefined or infinite end are never drawn, as they can't be
+	 * clipped.
+	 *
+	 * @param canvas the canvas
+	 * @param area visible area in screen coordinates
+	 * @param x0 screen x of the start
+	 * @param y0 screen y of the start
+	 * @param x1 screen x of the end
+	 * @param y1 screen y of the end
+	 */
+	static void drawClippedLine(GraphCanvas canvas, Rectangle2D area, double x0, double y0, double x1, double y1) {
+		if (!Double.isFinite(x0 + y0 + x1 + y1)) return;
+		double left = area.getMinX(), right = area.getMaxX(), top = area.getMinY(), bottom = area.getMaxY();
+		int code0 = outCode(area, x0, y0);
+		int code1 = outCode(area, x1, y1);
+		while (true) {
+			if ((code0 | code1) == 0) { // both inside
+				canvas.drawLine((int) x0, (int) y0, (int) x1, (int) y1);
+				return;
+			}
+			if ((code0 & code1) != 0) return; // both on the same outside side
+
+			// Move the outside end onto the edge it crosses:
+			int code = (code0 != 0) ? code0 : code1;
+			double x, y;
+			if ((code & OUT_TOP) != 0) {
+				x = x0 + (x1 - x0) * (top - y0) / (y1 - y0);
+				y = top;
+			}
+			else if ((code & OUT_BOTTOM) != 0) {
+				x = x0 + (x1 - x0) * (bottom - y0) / (y1 - y0);
+				y = bottom;
+			}
+			else if ((code & OUT_RIGHT) != 0) {
+				y = y0 + (y1 - y0) * (right - x0) / (x1 - x0);
+				x = right;
+			}
+			else {
+				y = y0 + (y1 - y0) * (left - x0) / (x1 - x0);
+				x = left;
+			}
+			if (code == code0) {
+				x0 = x;
+				y0 = y;
+				code0 = outCode(area, x0, y0);
+			}
+			else {
+				x1 = x;
+				y1 = y;
+				code1 = outCode(area, x1, y1);
+			}
+		}
+	}
+
+	/**
+	 * Gets which sides of the area a screen point lies outside of.
+	 *
+	 * @param area visible area in screen coordinates
+	 * @param x screen x
+	 * @param y screen y
+	 * @return combination of the OUT_ flags, or 0 if the point is inside
+	 */
+	private static int outCode(Rectangle2D area, double x, double y) {
+		int code = 0;
+		if (x < area.getMinX()) code |= OUT_LEFT;
+		else if (x > area.getMaxX()) code |= OUT_RIGHT;
+		if (y < area.getMinY()) code |= OUT_TOP;
+		else if (y > area.getMaxY()) code |= OUT_BOTTOM;
+		return code;
+	}
+
+	/**
+	 * Restricts a value to a range.
+	 *
+	 * @param value value
+	 * @param min smallest allowed value
+	 * @param max largest allowed value
+	 * @return restricted value
+	 */
+	private static double clamp(double value, double min, double max) {
+		return Math.max(min, Math.min(max, value));
+	}
+
+	/**
+	 * Gets the colour for the lines/points of the column with the given index.
+	 *
+	 * @param i column index
+	 * @return colour
+	 */
+	static Color colorFromIndex(int i) {
+		return (i < GRAPH_COLORS.length) ? GRAPH_COLORS[i] : Color.BLACK;
+	}
+
+	/**
+	 * Draws a shape centered at (x, y), with the type of shape depending on the given index i.
+	 *
+	 * @param canvas the canvas
+	 * @param i index
+	 * @param x x position
+	 * @param y y position
+	 */
+	static void drawShapeFromIndex(GraphCanvas canvas, int i, int x, int y){
+		boolean shapeVariant = false;
+		if (i >= 5) shapeVariant = true; // make shapes hollow or rotate them to be different
+		i %= 5; // wrap index so it is from 0 to 5, as there are 5 available shapes
+		int size = 12;
+		int radius = size / 2;
+		int strokeWidth = 2;
+		canvas.setStrokeWidth(strokeWidth);
+
+		// Draw shape based on index i:
+		switch (i) {
+			case 1: // square
+				drawPolygon(canvas, x, y, 4, radius, -Math.PI / 4.0, !shapeVariant, false);
+				break;
+			case 2: // triangle
+				drawPolygon(canvas, x, y, 3, radius, -Math.PI / 2.0, !shapeVariant, false);
+				break;
+			case 3: // cross (+)
+				if (shapeVariant){
+					radius = (int) (radius * 1.0 / Math.sqrt(2.0));
+					canvas.drawLine(x - radius, y - radius, x + radius, y + radius);
+					canvas.drawLine(x - radius, y + radius, x + radius, y - radius);
+				}
+				else {
+					canvas.drawLine(x - radius, y, x + radius, y);
+					canvas.drawLine(x, y - radius, x, y + radius);
+				}
+				break;
+			case 4: // star
+				drawPolygon(canvas, x, y, 10, radius, -Math.PI / 2.0, !shapeVariant, true);
+				break;
+			default: // circle
+				if (shapeVariant) canvas.drawOval(x - radius, y - radius, size, size);
+				else canvas.fillOval(x - radius, y - radius, size, size);
+		}
+		canvas.setStrokeWidth(1); // set the stroke back to the default after
+	}
+
+	/**
+	 * Draws a polygon centered at (x, y) with the given number of points and radius.
+	 *
+	 * @param canvas the canvas
+	 * @param x x position
+	 * @param y y position
+	 * @param numPoints number of points
+	 * @param radius distance of points from center
+	 * @param startAngle starting angle for drawing points
+	 * @param fill if false, only draw outline
+	 * @param star if true, every second point has half the radius
+	 */
+	private static void drawPolygon(GraphCanvas canvas, double x, double y, int numPoints, double radius, double startAngle, boolean fill, boolean star) {
+		double angleIncrement = (2 * Math.PI) / numPoints;
+		int[] xPoints = new int[numPoints];
+		int[] yPoints = new int[numPoints];
+
+		// Calculate points:
+		for (int p = 0; p < numPoints; p++) {
+			double r = radius;
+			if (star && p % 2 != 0) r /= 2.0;
+			double angle = startAngle + angleIncrement * p;
+			xPoints[p] = (int) (Math.cos(angle) * r + x);
+			yPoints[p] = (int) (Math.sin(angle) * r + y);
+		}
+
+		if (fill) canvas.fillPolygon(xPoints, yPoints, numPoints);
+		else canvas.drawPolygon(xPoints, yPoints, numPoints);
+	}
+}
@@ -0,0 +1,435 @@
+package gui;
+
+import domain.Point;
+
+import java.awt.geom.Rectangle2D;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * GraphTransform describes where a graph sits on the screen and which range of data values it shows,
+ * and converts between the two coordinate systems.
+ */
+public class GraphTransform {
+
+	/** The fraction of how much horizontal space the graph should take on the panel. */
+	private static final double GRAPH_WIDTH_SIZE_FACTOR = 0.75;
+	/** The fraction of how much vertical space the graph should take on the panel. */
+	private static final double GRAPH_HEIGHT_SIZE_FACTOR = 0.75;
+	/** The number of labels on each axis after the origin. */
+	private static final int NUM_LABELS = 5;
+
+	/** Width of the whole drawing area. */
+	private final double width;
+	/** Height of the whole drawing area. */
+	private final double height;
+	/** Screen x of the left edge of the graph. */
+	private final double graphLeft;
+	/** Screen y of the top edge of the graph. */
+	private final double graphTop;
+	/** Screen x of the right edge of the graph. */
+	private final double graphRight;
+	/** Screen y of the bottom edge of the graph. */
+	private final double graphBottom;
+	/** The smallest x value shown. */
+	private final double xMin;
+	/** The largest x value shown. */
+	private final double xMax;
+	/** The smallest y value shown. */
+	private final double yMin;
+	/** The largest y value shown. */
+	private final double yMax;
+	/** The value of the last label on the x axis, or NaN if the labels are placed at nice values instead. */
+	private final double xAxisMax;
+	/** The value of the last label on the y axis, or NaN if the labels are placed at nice values instead. */
+	private final double yAxisMax;
+	/** Pixels per unit on the x axis. */
+	private final double xScaleFactor;
+	/** Pixels per unit on the y axis. */
+	private final double yScaleFactor;
+
+	/**
+	 * Creates a transform showing the given data range within a drawing area of the given size.
+	 *
+	 * @param width width of the drawing area
+	 * @param height height of the drawing area
+	 * @param xMin smallest x value shown
+	 * @param xMax largest x value shown
+	 * @param yMin smallest y value shown
+	 * @param yMax largest y value shown
+	 * @param xAxisMax value of the last label on the x axis
+	 * @param yAxisMax value of the last label on the y axis
+	 */
+	public GraphTransform(double width, double height, double xMin, double xMax, double yMin, double yMax,
+						  double xAxisMax, double yAxisMax) {
+		this.width = width;
+		this.height = height;
+		double graphWidth = GRAPH_WIDTH_SIZE_FACTOR * width;
+		double graphHeight = GRAPH_HEIGHT_SIZE_FACTOR * height;
+		this.graphLeft = (1.0 - GRAPH_WIDTH_SIZE_FACTOR) / 2.0 * width;
+		this.graphTop = (1.0 - GRAPH_HEIGHT_SIZE_FACTOR) / 2.0 * height;
+		this.graphRight = graphLeft + graphWidth;
+		this.graphBottom = graphTop + graphHeight;
+		this.xMin = xMin;
+		this.xMax = xMax;
+		this.yMin = yMin;
+		this.yMax = yMax;
+		this.xAxisMax = xAxisMax;
+		this.yAxisMax = yAxisMax;
+		this.xScaleFactor = graphWidth / (xMax - xMin);
+		this.yScaleFactor = graphHeight / (yMax - yMin);
+	}
+
+	/**
+	 * Creates a transform showing the given data range within a drawing area of the given size, such as a
+	 * zoomed or panned view. The axes are labelled at nice round values within the range.
+	 *
+	 * @param width width of the drawing area
+	 * @param height height of the drawing area
+	 * @param xMin smallest x value shown
+	 * @param xMax largest x value shown
+	 * @param yMin smallest y value shown
+	 * @param yMax largest y value shown
+	 */
+	public GraphTransform(double width, double height, double xMin, double xMax, double yMin, double yMax) {
+		this(width, height, xMin, xMax, yMin, yMax, Double.NaN, Double.NaN);
+	}
+
+	/**
+	 * Creates a transform that fits all the given points, always including the origin.
+	 * Each axis is rounded upward so the axis labels contain nice rounded numbers, then extended to give space on
+	 * either side.
+	 *
+	 * @param allPoints points to fit (null entries are skipped)
+	 * @param width width of the drawing area
+	 * @param height height of the drawing area
+	 * @return transform fitting the points
+	 */
+	public static GraphTransform fit(List<Point> allPoints, double width, double height) {
+		// Find highest and lowest values:
+		double xMin = 0.0, yMin = 0.0, xMax = 0.0, yMax = 0.0;
+		for (Point p : allPoints){
+			if (p == null) continue;
+			double x = p.getX(), y = p.getY();
+			if (x > xMax) xMax = x;
+			if (y > yMax) yMax = y;
+		}
+
+		// Round each axis upward so the axis labels contain nice rounded numbers:
+		double xMaxRounded = Math.ceil(xMax);
+		xMax = xMaxRounded;
+		double yMaxRounded = Math.ceil(yMax);
+		yMax = yMaxRounded;
+
+		// Extend each axis to give space on either side:
+		double xRangeIncrease = (xMax - xMin) * 0.05;
+		double yRangeIncrease = (yMax - yMin) * 0.05;
+		xMax += xRangeIncrease / 2.0;
+		yMax += yRangeIncrease / 2.0;
+		xMin -= xRangeIncrease / 2.0;
+		yMin -= yRangeIncrease / 2.0;
+		return new GraphTransform(width, height, xMin, xMax, yMin, yMax, xMaxRounded, yMaxRounded);
+	}
+
+	/**
+	 * Creates a view of the same data range in a drawing area of a different size.
+	 *
+	 * @param width width of the new drawing area
+	 * @param height height of the new drawing area
+	 * @return resized transform
+	 */
+	public GraphTransform withSize(double width, double height) {
+		return new GraphTransform(width, height, xMin, xMax, yMin, yMax, xAxisMax, yAxisMax);
+	}
+
+	/**
+	 * Creates a view zoomed by the given factor, keeping the data point under the given screen position fixed.
+	 *
+	 * @param factor amount to zoom by (greater than 1 zooms in, less than 1 zooms out)
+	 * @param screenX screen x to zoom about
+	 * @param screenY screen y to zoom about
+	 * @return zoomed transform
+	 */
+	public GraphTransform zoom(double factor, double screenX, double screenY) {
+		double x = toDataX(screenX);
+		double y = toDataY(screenY);
+		return new GraphTransform(width, height, x - (x - xMin) / factor, x + (xMax - x) / factor,
+				y - (y - yMin) / factor, y + (yMax - y) / factor);
+	}
+
+	/**
+	 * Creates a view moved so the data follows the mouse by the given screen distance.
+	 *
+	 * @param dx screen distance moved to the right
+	 * @param dy screen distance moved down
+	 * @return panned transform
+	 */
+	public GraphTransform pan(double dx, double dy) {
+		double xShift = -dx / xScaleFactor;
+		double yShift = dy / yScaleFactor;
+		return new GraphTransform(width, height, xMin + xShift, xMax + xShift, yMin + yShift, yMax + yShift);
+	}
+
+	/**
+	 * Checks whether this transform was fitted to the data by fit, so the axes run from the origin to the rounded
+	 * maximum values, rather than being a zoomed or panned view.
+	 *
+	 * @return whether this is a fitted transform
+	 */
+	public boolean isFitted() {
+		return !Double.isNaN(xAxisMax);
+	}
+
+	/**
+	 * Gets the region lines and points may be drawn in.
+	 * Fitted graphs may draw over the whole area (e.g. x intercepts left of the y axis), but zoomed or panned views
+	 * are clipped to the graph so they don't draw over the axis labels.
+	 *
+	 * @return visible region in screen coordinates
+	 */
+	public Rectangle2D getVisibleArea() {
+		if (isFitted()) return new Rectangle2D.Double(0, 0, width, height);
+		return new Rectangle2D.Double(graphLeft, graphTop, graphRight - graphLeft, graphBottom - graphTop);
+	}
+
+	/**
+	 * Gets the x values to label, either evenly spaced from the origin to xAxisMax, or at nice round values
+	 * within a zoomed or panned view.
+	 *
+	 * @return x label values in increasing order
+	 */
+	public double[] getXLabels() {
+		return labels(xMin, xMax, xAxisMax);
+	}
+
+	/**
+	 * Gets the y values to label, either evenly spaced from the origin to yAxisMax, or at nice round values
+	 * within a zoomed or panned view.
+	 *
+	 * @return y label values in increasing order
+	 */
+	public double[] getYLabels() {
+		return labels(yMin, yMax, yAxisMax);
+	}
+
+	/**
+	 * Formats a label value, rounding to the spacing between labels so views don't show floating point noise.
+	 *
+	 * @param value label value
+	 * @param labels all the labels on the same axis
+	 * @return label text
+	 */
+	public String formatLabel(double value, double[] labels) {
+		if (isFitted() || labels.length < 2) return "" + value;
+		int decimals = Math.max(0, (int) -Math.floor(Math.log10(labels[1] - labels[0]) + 1e-9));
+		return String.format(Locale.ROOT, "%." + decimals + "f", value + 0.0); // + 0.0 turns -0.0 into 0.0
+	}
+
+	/**
+	 * Gets the label values for one axis.
+	 *
+	 * @param min smallest value shown
+	 * @param max largest value shown
+	 * @param axisMax value of the last label, or NaN to use nice values
+	 * @return label values in increasing order
+	 */
+	private static double[] labels(double min, double max, double axisMax) {
+		if (!Double.isNaN(axisMax)) {
+			double[] labels = new double[NUM_LABELS + 1];
+			for (int i = 0; i <= NUM_LABELS; i++) {
+				labels[i] = axisMax * i / NUM_LABELS;
+			}
+			return labels;
+		}
+
+		// Round the spacing to 1, 2 or 5 times a power of ten:
+		double rawStep = (max - min) / NUM_LABELS;
+		if (!(rawStep > 0) || Double.isInfinite(rawStep)) return new double[0];
+		double magnitude = Math.pow(10, Math.floor(Math.log10(rawStep)));
+		double residual = rawStep / magnitude;
+		double step = ((residual < 1.5) ? 1 : (residual < 3) ? 2 : (residual < 7) ? 5 : 10) * magnitude;
+
+		long first = (long) Math.ceil(min / step);
+		long last = (long) Math.floor(max / step);
+		double[] labels = new double[(int) Math.max(0, last - first + 1)];
+		for (int i = 0; i < labels.length; i++) {
+			labels[i] = (first + i) * step;
+		}
+		return labels;
+	}
+
+	/**
+	 * Converts a data x value to a screen x value.
+	 *
+	 * @param x data x value
+	 * @return screen x value
+	 */
+	public double toScreenX(double x) {
+		return graphLeft + (x - xMin) * xScaleFactor;
+	}
+
+	/**
+	 * Converts a data y value to a screen y value.
+	 *
+	 * @param y data y value
+	 * @return screen y value
+	 */
+	public double toScreenY(double y) {
+		return graphBottom - (y - yMin) * yScaleFactor;
+	}
+
+	/**
+	 * Converts a point on the screen to a point within the data.
+	 *
+	 * @param p screen point (may be null)
+	 * @return data point, or null if p is null
+	 */
+	public Point toData(Point p) {
+		if (p == null) return null;
+		return new Point(toDataX(p.getX()), toDataY(p.getY()));
+	}
+
+	/**
+	 * Converts a screen x value to a data x value.
+	 *
+	 * @param screenX screen x value
+	 * @return data x value
+	 */
+	public double toDataX(double screenX) {
+		return (screenX - graphLeft) / xScaleFactor + xMin;
+	}
+
+	/**
+	 * Converts a screen y value to a data y value.
+	 *
+	 * @param screenY screen y value
+	 * @return data y value
+	 */
+	public double toDataY(double screenY) {
+		return (graphBottom - screenY) / yScaleFactor + yMin;
+	}
+
+	/**
+	 * Gets the width of the whole drawing area.
+	 *
+	 * @return width
+	 */
+	public double getWidth() {
+		return width;
+	}
+
+	/**
+	 * Gets the height of the whole drawing area.
+	 *
+	 * @return height
+	 */
+	public double getHeight() {
+		return height;
+	}
+
+	/**
+	 * Gets the screen x of the left edge of the graph.
+	 *
+	 * @return left edge
+	 */
+	public double getGraphLeft() {
+		return graphLeft;
+	}
+
+	/**
+	 * Gets the screen y of the top edge of the graph.
+	 *
+	 * @return top edge
+	 */
+	public double getGraphTop() {
+		return graphTop;
+	}
+
+	/**
+	 * Gets the screen x of the right edge of the graph.
+	 *
+	 * @return right edge
+	 */
+	public double getGraphRight() {
+		return graphRight;
+	}
+
+	/**
+	 * Gets the screen y of the bottom edge of the graph.
+	 *
+	 * @return bottom edge
+	 */
+	public double getGraphBottom() {
+		return graphBottom;
+	}
+
+	/**
+	 * Gets the smallest x value shown.
+	 *
+	 * @return smallest x
+	 */
+	public double getXMin() {
+		return xMin;
+	}
+
+	/**
+	 * Gets the largest x value shown.
+	 *
+	 * @return largest x
+	 */
+	public double getXMax() {
+		return xMax;
+	}
+
+	/**
+	 * Gets the smallest y value shown.
+	 *
+	 * @return smallest y
+	 */
+	public double getYMin() {
+		return yMin;
+	}
+
+	/**
+	 * Gets the largest y value shown.
+	 *
+	 * @return largest y
+	 */
+	public double getYMax() {
+		return yMax;
+	}
+
+	/**
+	 * Gets the value of the last label on the x axis.
+	 *
+	 * @return last x label value, or NaN for a zoomed or panned view
+	 */
+	public double getXAxisMax() {
+		return xAxisMax;
+	}
+
+	/**
+	 * Gets the value of the last label on the y axis.
+	 *
+	 * @return last y label value, or NaN for a zoomed or panned view
+	 */
+	public double getYAxisMax() {
+		return yAxisMax;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof GraphTransform)) return false;
+		GraphTransform other = (GraphTransform) o;
+		return width == other.width && height == other.height && xMin == other.xMin && xMax == other.xMax
+				&& yMin == other.yMin && yMax == other.yMax
+				&& Double.compare(xAxisMax, other.xAxisMax) == 0 && Double.compare(yAxisMax, other.yAxisMax) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(width, height, xMin, xMax, yMin, yMax, xAxisMax, yAxisMax);
+	}
+}
@@ -2,6 +2,8 @@ package gui;
 
 import domain.Data;
 
+import java.util.List;
+
 /**
  * Gui is an interface representing any sort of graphical user interface the user could use to interact with
  * the program. It contains method headers for standardising the flow of information from Main.
@@ -23,4 +25,13 @@ public interface Gui {
      * @param data output data
      */
     void displayOutputData(Data data);
+
+    /**
+     * Sets the fitted datasets to overlay behind the output data.
+     * Used when overlay files are opened or cleared, or after the GraphType has been changed.
+     * Overlays are fitted in the background, so this may be called from any thread.
+     *
+     * @param datasets fitted datasets to overlay (empty for none)
+     */
+    void displayOverlayData(List<Data> datasets);
 }
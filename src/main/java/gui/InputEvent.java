@@ -21,6 +21,26 @@ public enum InputEvent {
      * Save button was pressed.
      */
     SAVE_PRESSED,
+    /**
+     * Paste table button was pressed.
+     */
+    PASTE_PRESSED,
+    /**
+     * Open overlay button was pressed.
+     */
+    OVERLAY_PRESSED,
+    /**
+     * Clear overlay button was pressed.
+     */
+    CLEAR_OVERLAY_PRESSED,
+    /**
+     * Compare models button was pressed.
+     */
+    COMPARE_MODELS_PRESSED,
+    /**
+     * Confidence region button was pressed.
+     */
+    CONFIDENCE_REGION_PRESSED,
     /**
      * GraphType was changed.
      */
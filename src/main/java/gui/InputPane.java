@@ -13,6 +13,7 @@ import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.swing.BorderFactory;
@@ -24,13 +25,17 @@ import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
-import javax.swing.JSlider;
+import javax.swing.JSpinner;
 import javax.swing.JTable;
 import javax.swing.JTextField;
+import javax.swing.SpinnerNumberModel;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.TableColumnModelEvent;
+import javax.swing.event.TableColumnModelListener;
 
 import domain.KineticModel;
 
@@ -67,6 +72,11 @@ public class InputPane extends JPanel {
 	/** Max width a column can have */
 	private int maxColWidth = 48;
 
+	/** Max number of substrate concentrations (table rows) */
+	private static final int MAX_ROWS = 100000;
+	/** Max number of co-substrate/inhibitor concentrations (table columns) */
+	private static final int MAX_COLS = 1000;
+
 	// Panels for each object on screen
 	/** Top of input pane with all buttons and sliders (Maybe split further) */
 	private ModelSelection modelControlPanel;
@@ -86,11 +96,11 @@ public class InputPane extends JPanel {
 	/** Listener for setting various update events to DisplayGui */
 	private InputEventListener listener;
 
-	/** Slider for setting number of table rows */
-	private JSlider rowNumSlider;
-	/** Slider for setting number of table columns */
-	private JSlider colNumSlider;
-	/** Text label to the extra row slider, text in title can and will change. */
+	/** Spinner for setting number of table rows */
+	private JSpinner rowNumSpinner;
+	/** Spinner for setting number of table columns */
+	private JSpinner colNumSpinner;
+	/** Text label to the extra row spinner, text in title can and will change. */
 	private JLabel extraSliderLabel;
 	/** The text field entry form the substrate name. */
 	private JTextField substrateNameFeild;
@@ -105,21 +115,15 @@ public class InputPane extends JPanel {
 
 		setupPanels();
 
-		// this.substrateTable = new JTable(subsConcData, new Object[] { "[S]" });
-		this.extraRowTable = new JTable(1, 10);
-		extraRowTable.setModel(new InputTableModel(1, 2, 1, 10));
-		// extraRowTable.setVisible(false);
-
-		this.substrateTable = new JTable(10, 1);
-		substrateTable.setModel(new InputTableModel(2, 1, 10, 1));
-		// this.dataTable = new JTable(reactRateData, new Object[] { "" });
-
-		this.dataTable = new JTable(10, 10);
-		dataTable.setModel(new InputTableModel(2, 2, 10, 10));
+		// Tables always show at least 10 rows/columns, and grow when more are needed
+		this.extraRowTable = new JTable(new InputTableModel(1, 2, 1, 10));
+		this.substrateTable = new JTable(new InputTableModel(2, 1, 10, 1));
+		this.dataTable = new JTable(new InputTableModel(2, 2, 10, 10));
 
 		// Add substrate table to its panels
 		JScrollPane subScroll = new JScrollPane(substrateTable);
 		subScroll.setBorder(BorderFactory.createEmptyBorder());
+		subScroll.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_NEVER);
 		substrateTable.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
 		substrateTable.setTableHeader(null); // Remove header
 		substratePanel.add(subScroll);
@@ -130,6 +134,8 @@ public class InputPane extends JPanel {
 		dataTable.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
 		dataTable.setTableHeader(null); // Remove header
 		dataTablePanel.add(dataScroll, BorderLayout.CENTER);
+		// Make substrate table scroll vertically with the data table
+		subScroll.getVerticalScrollBar().setModel(dataScroll.getVerticalScrollBar().getModel());
 		
 		// Add extra table to its panels
 		JScrollPane extraScroll = new JScrollPane(extraRowTable);
@@ -159,29 +165,36 @@ public class InputPane extends JPanel {
 		dataTable.setDefaultRenderer(Object.class, new CellRenderer());
 		extraRowTable.setDefaultRenderer(Object.class, new CellRenderer());
 
-		// Setup a listener that prints does an even every time a number is updated
-		substrateTable.getModel().addTableModelListener(new NumberTableModelListener());
-		extraRowTable.getModel().addTableModelListener(new NumberTableModelListener());
-		dataTable.getModel().addTableModelListener(new NumberTableModelListener());
-		
 		// Remove cell selection as it's not needed
 		dataTable.setCellSelectionEnabled(false);
 		substrateTable.setCellSelectionEnabled(false);
 		extraRowTable.setCellSelectionEnabled(false);
 
 		// Set max column width
-		dataTable.getColumnModel().getColumns().asIterator().forEachRemaining((col) -> col.setMaxWidth(maxColWidth));
-		extraRowTable.getColumnModel().getColumns().asIterator()
-				.forEachRemaining((col) -> col.setMaxWidth(maxColWidth));
-		substrateTable.getColumnModel().getColumns().asIterator()
-				.forEachRemaining((col) -> col.setMaxWidth(maxColWidth));
+		limitColumnWidths(dataTable);
+		limitColumnWidths(extraRowTable);
+		limitColumnWidths(substrateTable);
+
+		// Paste whole blocks copied from a spreadsheet at once
+		TablePasteHandler pasteHandler = new TablePasteHandler(new TablePasteHandler.SizeListener() {
+			public int[] fitSize(JTable table, int rows, int cols) {
+				return fitTableSize(table, rows, cols);
+			}
+
+			public void sizeChanged(JTable table) {
+				tableSizeChanged(table);
+			}
+		});
+		dataTable.setTransferHandler(pasteHandler);
+		substrateTable.setTransferHandler(pasteHandler);
+		extraRowTable.setTransferHandler(pasteHandler);
 
 		// Editing stops when user clicks off the table
 		dataTable.putClientProperty("terminateEditOnFocusLost", true);
 		extraRowTable.putClientProperty("terminateEditOnFocusLost", true);
 		substrateTable.putClientProperty("terminateEditOnFocusLost", true);
 		
-		addSliders();
+		addSpinners();
 
 		setupBottomPanel();
 		
@@ -235,61 +248,81 @@ public class InputPane extends JPanel {
 	}
 
 	/**
-	 * Create and setup both the slider objects.
+	 * Sets the max width of every column in the table, including columns added
+	 * later when the table grows.
+	 * 
+	 * @param table the table to limit the column widths of
 	 */
-	private void addSliders() {
-		// Slider number of table rows
-		this.rowNumSlider = new JSlider(JSlider.HORIZONTAL, 2, 10, 2);
-		rowNumSlider.addChangeListener(new ChangeListener() {
-			public void stateChanged(ChangeEvent e) {
-				JSlider source = (JSlider) e.getSource();
-				if (!source.getValueIsAdjusting()) {
-					int newValue = source.getValue();
-					// Update data table
-					InputTableModel model = (InputTableModel) dataTable.getModel();
-					model.setRows(newValue);
-					dataTable.repaint();
-
-					// Update extra row table
-					model = (InputTableModel) substrateTable.getModel();
-					model.setRows(newValue);
-					substrateTable.repaint();
-				}
+	private void limitColumnWidths(JTable table) {
+		table.getColumnModel().getColumns().asIterator().forEachRemaining((col) -> col.setMaxWidth(maxColWidth));
+		table.getColumnModel().addColumnModelListener(new TableColumnModelListener() {
+			public void columnAdded(TableColumnModelEvent e) {
+				table.getColumnModel().getColumn(e.getToIndex()).setMaxWidth(maxColWidth);
 			}
-		});
 
-		// Turn on labels at major tick marks.
-		rowNumSlider.setMajorTickSpacing(1);
-		rowNumSlider.setPaintTicks(true);
-		rowNumSlider.setPaintLabels(true);
+			public void columnRemoved(TableColumnModelEvent e) {
+			}
 
-		// Slider for table columns
-		this.colNumSlider = new JSlider(JSlider.HORIZONTAL, 2, 10, 2);
-		this.colNumSlider.addChangeListener(new ChangeListener() {
-			public void stateChanged(ChangeEvent e) {
-				JSlider source = (JSlider) e.getSource();
-				if (!source.getValueIsAdjusting()) {
+			public void columnMoved(TableColumnModelEvent e) {
+			}
 
-					// Get new value of the slider
-					int newValue = source.getValue();
+			public void columnMarginChanged(ChangeEvent e) {
+			}
 
-					// Update data table
-					InputTableModel model = (InputTableModel) dataTable.getModel();
-					model.setCols(newValue);
-					dataTable.repaint();
+			public void columnSelectionChanged(ListSelectionEvent e) {
+			}
+		});
+	}
 
-					// Update extra row table
-					model = (InputTableModel) extraRowTable.getModel();
-					model.setCols(newValue);
-					extraRowTable.repaint();
+	/**
+	 * Create and setup both the spinner objects.
+	 */
+	private void addSpinners() {
+		// Spinner for number of table rows
+		this.rowNumSpinner = new JSpinner(new SpinnerNumberModel(2, 2, MAX_ROWS, 1));
+		rowNumSpinner.addChangeListener(new ChangeListener() {
+			public void stateChanged(ChangeEvent e) {
+				int newValue = getSpinnerValue(rowNumSpinner);
+				if (newValue > getSpinnerMaximum(rowNumSpinner)) {
+					rowNumSpinner.setValue(getSpinnerMaximum(rowNumSpinner));
+					return;
 				}
+				// Update data table
+				InputTableModel model = (InputTableModel) dataTable.getModel();
+				model.setRows(newValue);
+				dataTable.repaint();
+
+				// Update extra row table
+				model = (InputTableModel) substrateTable.getModel();
+				model.setRows(newValue);
+				substrateTable.repaint();
+				limitSpinners();
 			}
 		});
 
-		// Turn on labels at major tick marks.
-		colNumSlider.setMajorTickSpacing(1);
-		colNumSlider.setPaintTicks(true);
-		colNumSlider.setPaintLabels(true);
+		// Spinner for table columns
+		this.colNumSpinner = new JSpinner(new SpinnerNumberModel(2, 2, MAX_COLS, 1));
+		this.colNumSpinner.addChangeListener(new ChangeListener() {
+			public void stateChanged(ChangeEvent e) {
+				// Get new value of the spinner
+				int newValue = getSpinnerValue(colNumSpinner);
+				if (newValue > getSpinnerMaximum(colNumSpinner)) {
+					colNumSpinner.setValue(getSpinnerMaximum(colNumSpinner));
+					return;
+				}
+
+				// Update data table
+				InputTableModel model = (InputTableModel) dataTable.getModel();
+				model.setCols(newValue);
+				dataTable.repaint();
+
+				// Update extra row table
+				model = (InputTableModel) extraRowTable.getModel();
+				model.setCols(newValue);
+				extraRowTable.repaint();
+				limitSpinners();
+			}
+		});
 
 		goButton = new JButton("Go");
 		goButton.addActionListener(new ActionListener() {
@@ -308,14 +341,14 @@ public class InputPane extends JPanel {
 		gbc.weighty = 0;
 		gbc.insets = new Insets(0, 11, 11, 11); // Padding
 
-		// Label for row number slider
+		// Label for row number spinner
 		gbc.gridx = 0;
 		gbc.gridy = 0;
 		JLabel substrateSliderLabel = new JLabel("<html>No. of Substrate concentrations</html>");
 		substrateSliderLabel.setHorizontalAlignment(JLabel.CENTER);
 		sliderControlPanel.add(substrateSliderLabel, gbc);
 
-		// Label for column number slider
+		// Label for column number spinner
 		gbc.gridx = 1;
 		gbc.gridy = 0;
 		extraSliderLabel = new JLabel();
@@ -325,15 +358,15 @@ public class InputPane extends JPanel {
 		// Reduce padding a little, stops component moving for some reason...
 		gbc.insets = new Insets(0, 10, 10, 10);
 
-		// Row number slider
+		// Row number spinner
 		gbc.gridx = 0;
 		gbc.gridy = 1;
-		sliderControlPanel.add(rowNumSlider, gbc);
+		sliderControlPanel.add(rowNumSpinner, gbc);
 
-		// Column number slider
+		// Column number spinner
 		gbc.gridx = 1;
 		gbc.gridy = 1;
-		sliderControlPanel.add(colNumSlider, gbc);
+		sliderControlPanel.add(colNumSpinner, gbc);
 
 		// Go button to run model
 		gbc.gridx = 2;
@@ -342,6 +375,38 @@ public class InputPane extends JPanel {
 
 	}
 
+	/**
+	 * Gets the current value of a number spinner.
+	 * 
+	 * @param spinner the spinner to read
+	 * @return the spinner's value
+	 */
+	private static int getSpinnerValue(JSpinner spinner) {
+		return ((Number) spinner.getValue()).intValue();
+	}
+
+	/**
+	 * Gets the largest value a number spinner allows.
+	 * 
+	 * @param spinner the spinner to read
+	 * @return the spinner's maximum
+	 */
+	private static int getSpinnerMaximum(JSpinner spinner) {
+		return ((Number) ((SpinnerNumberModel) spinner.getModel()).getMaximum()).intValue();
+	}
+
+	/**
+	 * Limits the number of rows and columns so that the data table never has
+	 * more than InputTableModel.MAX_CELLS cells, as well as limiting each of
+	 * them on their own.
+	 */
+	private void limitSpinners() {
+		((SpinnerNumberModel) rowNumSpinner.getModel()).setMaximum(
+				Math.min(MAX_ROWS, InputTableModel.MAX_CELLS / getSpinnerValue(colNumSpinner)));
+		((SpinnerNumberModel) colNumSpinner.getModel()).setMaximum(
+				Math.min(MAX_COLS, InputTableModel.MAX_CELLS / getSpinnerValue(rowNumSpinner)));
+	}
+
 	/**
 	 * Set the InputPane to the correct settings for the given model.
 	 * 
@@ -357,7 +422,7 @@ public class InputPane extends JPanel {
 		case UninhibitedOneSub:
 			// Hide extra row related objects
 			extraRowPanel.setVisible(false);
-			colNumSlider.setVisible(false);
+			colNumSpinner.setVisible(false);
 			extraSliderLabel.setForeground(getBackground()); // This is a cheat
 
 			// User should only be able to edit first column
@@ -371,14 +436,14 @@ public class InputPane extends JPanel {
 		case InhibitedUnCompetitive:
 			// Show objects to inhibitor concentration table
 			extraRowPanel.setVisible(true);
-			colNumSlider.setVisible(true);
+			colNumSpinner.setVisible(true);
 			extraSliderLabel.setForeground(Color.black);
 			extraLabel.setText("Inhibitor concentration");
 			extraSliderLabel.setText("<html>No. of Inhibitor concentrations</html>");
 
-			// Set number of columns to the slider value
-			modelE.setCols(colNumSlider.getValue());
-			modelD.setCols(colNumSlider.getValue());
+			// Set number of columns to the spinner value
+			modelE.setCols(getSpinnerValue(colNumSpinner));
+			modelD.setCols(getSpinnerValue(colNumSpinner));
 			dataTable.repaint();
 			extraRowTable.repaint();
 			transposeButton.setVisible(false);
@@ -388,14 +453,14 @@ public class InputPane extends JPanel {
 		case UninhibitedTwoSubPingPong:
 			// Show objects for Co-substrate concentration table
 			extraRowPanel.setVisible(true);
-			colNumSlider.setVisible(true);
+			colNumSpinner.setVisible(true);
 			extraSliderLabel.setForeground(Color.black);
 			extraLabel.setText("Co-substrate concentration");
 			extraSliderLabel.setText("<html>No. of Co-substrate concentrations</html");
 
-			// Set number of columns to the slider value
-			modelE.setCols(colNumSlider.getValue());
-			modelD.setCols(colNumSlider.getValue());
+			// Set number of columns to the spinner value
+			modelE.setCols(getSpinnerValue(colNumSpinner));
+			modelD.setCols(getSpinnerValue(colNumSpinner));
 			dataTable.repaint();
 			extraRowTable.repaint();
 			transposeButton.setVisible(true);
@@ -500,54 +565,32 @@ public class InputPane extends JPanel {
 		modelS.setRows(data.getRows());
 		modelD.setRows(data.getRows());
 		// Updates the substrate column data
-		List<Double> substrateCol = data.getSubstrateCol();
-		for (int i = 0; i < data.getRows(); i++) {
-			if (!Double.isNaN(substrateCol.get(i))) {
-				modelS.setValueAt(substrateCol.get(i).toString(), i, 0);
-			} else {
-				modelS.setValueAt("", i, 0);
-			}
-		}
+		modelS.setValues(toColumn(data.getSubstrateCol(), data.getRows()), 0, 0);
 		// Updates the main table data
 		modelD.setCols(data.getCols());
-		double[][] array = data.getTableData();
-		for (int i = 0; i < data.getRows(); i++) {
-			for (int j = 0; j < data.getCols(); j++) {
-				if (!Double.isNaN(array[i][j])) {
-					modelD.setValueAt("" + array[i][j], i, j);
-				} else {
-					modelD.setValueAt("", i, j);
-				}
-			}
-		}
+		modelD.setValues(data.getTableData(), 0, 0);
 
 		// Updates the extra table model
 		InputTableModel modelE = (InputTableModel) this.extraRowTable.getModel();
 		List<Double> extra = data.getCoSubInhibRow();
-		if (extra.isEmpty() == true || extra == null || data.getCols() == 1) {
+		if (extra == null || extra.isEmpty() == true || data.getCols() == 1) {
 			// No values need to be displayed if the data only has one column
 			modelE.setCols(0);
 		} else {
 			// Sets the number of columns and inputs the data
 			modelE.setCols(data.getCols());
-			for (int i = 0; i < data.getCols(); i++) {
-				if (!Double.isNaN(extra.get(i))) {
-					modelE.setValueAt(extra.get(i).toString(), 0, i);
-				} else {
-					modelE.setValueAt("", 0, i);
-				}
-			}
+			modelE.setValues(new double[][] { toArray(extra, data.getCols()) }, 0, 0);
 		}
 		//Checks version and what the model is
 		boolean v3 = this.modelControlPanel.getVersion();
 		if(v3==false && (data.getModelType()==KineticModel.UninhibitedTwoSubOrderedBiBi ||data.getModelType()==KineticModel.UninhibitedTwoSubPingPong)) {
 			modelE.setCols(0);
 			this.setModel(KineticModel.UninhibitedOneSub);
-			this.rowNumSlider.setValue(data.getRows());
+			this.rowNumSpinner.setValue(data.getRows());
 		}
 		else {
-			this.colNumSlider.setValue(data.getCols());
-			this.rowNumSlider.setValue(data.getRows());
+			this.colNumSpinner.setValue(data.getCols());
+			this.rowNumSpinner.setValue(data.getRows());
 			this.setModel(data.getModelType());
 		}
 	}
@@ -575,41 +618,24 @@ public class InputPane extends JPanel {
 		int cols = modelD.getCols();
 		data.setRows(rows);
 		data.setCols(cols);
-		// Takes the data from the table and reads into the 2d array which is added to
+		// Copies the data from the table straight into the 2d array which is added to
 		// the data object
-		double[][] dataA = new double[rows][cols];
-		for (int i = 0; i < data.getRows(); i++) {
-			for (int j = 0; j < data.getCols(); j++) {
-				try {
-					dataA[i][j] = Double.parseDouble((String) modelD.getValueAt(i, j));
-				} catch (NumberFormatException | NullPointerException e) {
-					dataA[i][j] = Double.NaN;
-				}
-			}
-		}
-		data.setTableData(dataA);
+		data.setTableData(modelD.toArray(rows, cols));
 		// Takes the data from the substrate column and adds it to the data object
 		InputTableModel modelS = (InputTableModel) this.substrateTable.getModel();
-		List<Double> substrate = new ArrayList<Double>();
-
-		for (int i = 0; i < data.getRows(); i++) {
-			try {
-				substrate.add(Double.parseDouble((String) modelS.getValueAt(i, 0)));
-			} catch (NumberFormatException | NullPointerException e) {
-				substrate.add(Double.NaN);
-			}
+		double[][] substrate = modelS.toArray(rows, 1);
+		List<Double> substrateList = new ArrayList<Double>(rows);
+		for (int i = 0; i < rows; i++) {
+			substrateList.add(substrate[i][0]);
 		}
-		data.setSubstrateCol(substrate);
+		data.setSubstrateCol(substrateList);
 		// Takes the data from the extra row and adds it to the data object
 		InputTableModel modelE = (InputTableModel) this.extraRowTable.getModel();
 		if (modelE.getCols() >= 2 && this.extraRowPanel.isVisible()) {
-			List<Double> extraList = new ArrayList<Double>();
-			for (int i = 0; i < data.getCols(); i++) {
-				try {
-					extraList.add(Double.parseDouble((String) modelE.getValueAt(0, i)));
-				} catch (NumberFormatException | NullPointerException e) {
-					extraList.add(Double.NaN);
-				}
+			double[] extra = modelE.toArray(1, cols)[0];
+			List<Double> extraList = new ArrayList<Double>(cols);
+			for (int i = 0; i < cols; i++) {
+				extraList.add(extra[i]);
 			}
 			data.setCoSubInhibRow(extraList);
 		}
@@ -631,6 +657,11 @@ public class InputPane extends JPanel {
 		JMenuItem clearItem = new JMenuItem("Clear");
 		JMenuItem openItem = new JMenuItem("Open");
 		JMenuItem saveItem = new JMenuItem("Save");
+		JMenuItem pasteItem = new JMenuItem("Paste Table");
+		JMenuItem overlayItem = new JMenuItem("Open Overlay");
+		JMenuItem clearOverlayItem = new JMenuItem("Clear Overlay");
+		JMenuItem compareItem = new JMenuItem("Compare Models");
+		JMenuItem regionItem = new JMenuItem("Confidence Region");
 		clearItem.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
 				listener.onInputEvent(InputEvent.CLEAR_PRESSED);	
@@ -646,9 +677,41 @@ public class InputPane extends JPanel {
 				listener.onInputEvent(InputEvent.SAVE_PRESSED);	
 			}
 		});
+		pasteItem.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				listener.onInputEvent(InputEvent.PASTE_PRESSED);
+			}
+		});
+		overlayItem.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				listener.onInputEvent(InputEvent.OVERLAY_PRESSED);
+			}
+		});
+		clearOverlayItem.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				listener.onInputEvent(InputEvent.CLEAR_OVERLAY_PRESSED);
+			}
+		});
+		compareItem.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				listener.onInputEvent(InputEvent.COMPARE_MODELS_PRESSED);
+			}
+		});
+		regionItem.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				listener.onInputEvent(InputEvent.CONFIDENCE_REGION_PRESSED);
+			}
+		});
 		fileMenu.add(clearItem);
 		fileMenu.add(openItem);
 		fileMenu.add(saveItem);
+		fileMenu.add(pasteItem);
+		fileMenu.addSeparator();
+		fileMenu.add(overlayItem);
+		fileMenu.add(clearOverlayItem);
+		fileMenu.addSeparator();
+		fileMenu.add(compareItem);
+		fileMenu.add(regionItem);
 		bar.add(fileMenu);
 		
 		// Add the info menu
@@ -761,78 +824,172 @@ public class InputPane extends JPanel {
 		int maxRows = modelD.getRowCount();
 		int maxCols = modelD.getColumnCount();
 
-		double[][] currentData = new double[maxRows][maxCols];
-		for (int i = 0; i < maxRows; i++) {
-			for (int j = 0; j < maxCols; j++) {
-				try {
-					currentData[i][j] = Double.parseDouble((String) modelD.getValueAt(i, j));
-				} catch (NumberFormatException | NullPointerException e) {
-					currentData[i][j] = Double.NaN;
-				}
-			}
-		}
-
+		double[][] currentData = modelD.toArray(maxRows, maxCols);
 		InputTableModel modelS = (InputTableModel) this.substrateTable.getModel();
-		List<Double> currentSubstrate = new ArrayList<Double>();
-
-		for (int i = 0; i < maxRows; i++) {
-			try {
-				currentSubstrate.add(Double.parseDouble((String) modelS.getValueAt(i, 0)));
-			} catch (NumberFormatException | NullPointerException e) {
-				currentSubstrate.add(Double.NaN);
-			}
-		}
-
+		double[][] currentSubstrate = modelS.toArray(maxRows, 1);
 		InputTableModel modelE = (InputTableModel) this.extraRowTable.getModel();
-		List<Double> extraList = new ArrayList<Double>();
-		for (int i = 0; i < maxCols; i++) {
-			try {
-				extraList.add(Double.parseDouble((String) modelE.getValueAt(0, i)));
-			} catch (NumberFormatException | NullPointerException e) {
-				extraList.add(Double.NaN);
-			}
-		}
+		double[] extraList = modelE.toArray(1, maxCols)[0];
 
 		//UPDATE
 
 		// Sets the number of rows for the substrate and data tables
 		modelS.setRows(cols);
 		modelD.setRows(cols);
-		// Updates the substrate column data
-		List<Double> substrateCol = extraList;
+		// Updates the substrate column data from the extra row
+		double[][] substrateCol = new double[maxCols][1];
 		for (int i = 0; i < maxCols; i++) {
-			if (!Double.isNaN(substrateCol.get(i))) {
-				modelS.setValueAt(substrateCol.get(i).toString(), i, 0);
-			} else {
-				modelS.setValueAt("", i, 0);
-			}
+			substrateCol[i][0] = extraList[i];
 		}
+		modelS.clearData();
+		modelS.setValues(substrateCol, 0, 0);
 		// Updates the main table data
 		modelD.setCols(rows);
-		double[][] array = currentData;
+		double[][] transposed = new double[maxCols][maxRows];
 		for (int i = 0; i < maxRows; i++) {
 			for (int j = 0; j < maxCols; j++) {
-				if (!Double.isNaN(array[i][j])) {
-					modelD.setValueAt("" + array[i][j], j, i);
-				} else {
-					modelD.setValueAt("", j, i);
-				}
+				transposed[j][i] = currentData[i][j];
 			}
 		}
+		modelD.clearData();
+		modelD.setValues(transposed, 0, 0);
 
-		// Updates the extra table model
-		List<Double> extra = currentSubstrate;
+		// Updates the extra table model from the substrate column
+		double[] extra = new double[maxRows];
+		for (int i = 0; i < maxRows; i++) {
+			extra[i] = currentSubstrate[i][0];
+		}
 		// Sets the number of columns and inputs the data
 		modelE.setCols(rows);
-		this.colNumSlider.setValue(rows);
-		for (int i = 0; i < maxRows; i++) {
-			if (!Double.isNaN(extra.get(i))) {
-				modelE.setValueAt(extra.get(i).toString(), 0, i);
-			} else {
-				modelE.setValueAt("", 0, i);
-			}
+		this.colNumSpinner.setValue(rows);
+		modelE.clearData();
+		modelE.setValues(new double[][] { extra }, 0, 0);
+		this.rowNumSpinner.setValue(cols);
+	}
+
+	/**
+	 * Gets the number of editable rows and columns the given table should have so
+	 * that it has at least the given number, as far as the spinners allow. The
+	 * substrate table only grows the rows and the extra row table only grows the
+	 * columns. Columns only grow when the current model uses a
+	 * co-substrate/inhibitor row.
+	 * 
+	 * @param table the table that needs to grow
+	 * @param rows the number of rows needed
+	 * @param cols the number of columns needed
+	 * @return the number of rows followed by the number of columns
+	 */
+	private int[] fitTableSize(JTable table, int rows, int cols) {
+		InputTableModel model = (InputTableModel) table.getModel();
+		int newRows = model.getRows();
+		int newCols = model.getCols();
+		if (table != substrateTable && colNumSpinner.isVisible() && cols > newCols) {
+			newCols = Math.min(cols, getSpinnerMaximum(colNumSpinner));
+		}
+		if (table != extraRowTable && rows > newRows) {
+			int maxRows = InputTableModel.MAX_CELLS / Math.max(newCols, getSpinnerValue(colNumSpinner));
+			newRows = Math.min(rows, Math.min(MAX_ROWS, maxRows));
+		}
+		return new int[] { newRows, newCols };
+	}
+
+	/**
+	 * Sets the spinners to the number of editable rows and columns of a table that
+	 * has grown, so the other tables grow to match. The table itself already has
+	 * that size, so it isn't changed again.
+	 * 
+	 * @param table the table that has grown
+	 */
+	private void tableSizeChanged(JTable table) {
+		InputTableModel model = (InputTableModel) table.getModel();
+		if (table != extraRowTable) {
+			rowNumSpinner.setValue(model.getRows());
+		}
+		if (table != substrateTable && colNumSpinner.isVisible()) {
+			colNumSpinner.setValue(model.getCols());
+		}
+	}
+
+	/**
+	 * Sets values starting at the top left cell of a table, growing it to fit them
+	 * as far as the spinners allow, and notifying it once.
+	 * 
+	 * @param table the table to set the values of
+	 * @param values the values, with NaN for blank
+	 * @param cols the number of columns in the widest row of the values
+	 */
+	private void pasteValues(JTable table, double[][] values, int cols) {
+		int[] size = fitTableSize(table, values.length, cols);
+		((InputTableModel) table.getModel()).setValues(values, 0, 0, size[0], size[1]);
+	}
+
+	/**
+	 * Pastes a whole table copied from a spreadsheet. If the top left cell is
+	 * blank, the first row is used as the co-substrate/inhibitor concentrations
+	 * and the first column as the substrate concentrations, like in a saved file.
+	 * Otherwise all the values go into the reaction rate table.
+	 * 
+	 * @param text tab or comma separated values
+	 */
+	public void pasteTable(String text) {
+		double[][] block = TablePasteHandler.parseBlock(text);
+		if (block.length == 0) {
+			return;
+		}
+		int width = TablePasteHandler.width(block);
+		if (!InputTableModel.fits(block.length, width)) {
+			return;
+		}
+		if (block.length < 2 || width < 2 || !Double.isNaN(block[0][0])) {
+			pasteValues(dataTable, block, width);
+			tableSizeChanged(dataTable);
+			return;
+		}
+
+		// Split the block into the substrate column, the extra row and the main table
+		int rows = block.length - 1;
+		int cols = width - 1;
+		double[][] substrate = new double[rows][1];
+		double[][] table = new double[rows][];
+		for (int i = 0; i < rows; i++) {
+			double[] row = block[i + 1];
+			substrate[i][0] = row[0];
+			table[i] = Arrays.copyOfRange(row, 1, Math.max(1, row.length));
+		}
+		double[] extra = Arrays.copyOfRange(block[0], 1, width);
+		pasteValues(substrateTable, substrate, 1);
+		pasteValues(extraRowTable, new double[][] { extra }, cols);
+		pasteValues(dataTable, table, cols);
+		tableSizeChanged(dataTable);
+	}
+
+	/**
+	 * Converts the first values of a list into a single column array.
+	 * 
+	 * @param list the values
+	 * @param length the number of values to convert
+	 * @return array with one row per value
+	 */
+	private static double[][] toColumn(List<Double> list, int length) {
+		double[][] column = new double[length][1];
+		for (int i = 0; i < length; i++) {
+			column[i][0] = list.get(i);
+		}
+		return column;
+	}
+
+	/**
+	 * Converts the first values of a list into an array.
+	 * 
+	 * @param list the values
+	 * @param length the number of values to convert
+	 * @return array of the values
+	 */
+	private static double[] toArray(List<Double> list, int length) {
+		double[] array = new double[length];
+		for (int i = 0; i < length; i++) {
+			array[i] = list.get(i);
 		}
-		this.rowNumSlider.setValue(cols);
+		return array;
 	}
 
 	/**
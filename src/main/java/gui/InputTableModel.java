@@ -1,10 +1,10 @@
 package gui;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
-import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableModel;
+import javax.swing.table.AbstractTableModel;
 
 /**
  * This is the Table Model used by the input table.
@@ -13,40 +13,89 @@ import javax.swing.table.TableModel;
  * should be able to be edited and cells outside of that shouldn't
  * be edited.
  *
+ * Values are stored in a single primitive array with Double.NaN marking
+ * blank cells. Cells are only turned into Strings when the table asks
+ * for them, which it only does for the cells that are visible, so very
+ * large tables stay responsive. The storage is limited to MAX_CELLS
+ * cells so that a large number of both rows and columns can't use up
+ * all the memory.
  */
-public class InputTableModel extends DefaultTableModel {
+@SuppressWarnings("serial")
+public class InputTableModel extends AbstractTableModel {
+
+	/** The most cells the table can hold (16 MB of values) */
+	public static final int MAX_CELLS = 2000000;
 
 	/** Stores the number of rows that the user can currently enter data into	 */
 	int rows;
 	/** Stores the number of columns that the user can currently enter data into	*/
 	int cols;
-	
+	/** The minimum number of rows shown in the table, including uneditable rows */
+	private final int minRows;
+	/** The minimum number of columns shown in the table, including uneditable columns */
+	private final int minCols;
+
+	/** The cell values in row-major order, with NaN for blank cells */
+	private double[] values = new double[0];
+	/** The number of rows that values has space for */
+	private int rowCapacity = 0;
+	/** The number of columns that values has space for (the row stride) */
+	private int colCapacity = 0;
+
 	/**
 	 * The row of the point clicked in the graph.
 	 * If there isn't one it is set to -1
 	 */
 	private List<Integer> clickedRow = new ArrayList<Integer>();
-	
-	
+
+
 	/**
 	 * The col of the point clicked in the graph.
 	 * If there isn't one it is set to -1
 	 */
 	private List<Integer> clickedCol = new ArrayList<Integer>();
-	
+
 	/**
 	 * Constructor for the input table model
 	 * @param rows - the current number of rows where data can be entered in
 	 * @param cols - the current number of columns where the data can be entered in
-	 * @param maxRows - the maximum number of rows in the table
-	 * @param maxCols - the maximum number of columns in the table
+	 * @param minRows - the minimum number of rows shown in the table
+	 * @param minCols - the minimum number of columns shown in the table
 	 */
-	public InputTableModel(int rows, int cols, int maxRows, int maxCols) {
-		super(maxRows, maxCols);
+	public InputTableModel(int rows, int cols, int minRows, int minCols) {
 		this.rows = rows;
 		this.cols = cols;
+		this.minRows = minRows;
+		this.minCols = minCols;
+		ensureCapacity(Math.max(rows, minRows), Math.max(cols, minCols));
 	}
-	
+
+	@Override
+	public int getRowCount() {
+		return Math.max(rows, minRows);
+	}
+
+	@Override
+	public int getColumnCount() {
+		return Math.max(cols, minCols);
+	}
+
+	@Override
+	public Object getValueAt(int row, int col) {
+		double value = getDouble(row, col);
+		return Double.isNaN(value) ? "" : Double.toString(value);
+	}
+
+	/**
+	 * Sets the value of a cell from its text.
+	 * Text that isn't a number leaves the cell blank, to indicate what was entered is invalid.
+	 */
+	@Override
+	public void setValueAt(Object value, int row, int col) {
+		setDouble(row, col, parse(value));
+		fireTableCellUpdated(row, col);
+	}
+
 	@Override
 	public boolean isCellEditable(int row, int col) {
 		if(row<rows && col<cols) {
@@ -66,9 +115,16 @@ public class InputTableModel extends DefaultTableModel {
 	/**
 	 * Sets the number of rows that can currently be edited
 	 * @param rows - number of editable rows
+	 * @throws IllegalArgumentException if the table would have more than MAX_CELLS cells
 	 */
 	public void setRows(int rows) {
+		if(rows == this.rows) {
+			return;
+		}
+		checkFits(Math.max(rows, minRows), getColumnCount());
 		this.rows = rows;
+		ensureCapacity(getRowCount(), getColumnCount());
+		fireTableDataChanged();
 	}
 
 	/**
@@ -78,26 +134,150 @@ public class InputTableModel extends DefaultTableModel {
 	public int getCols() {
 		return cols;
 	}
-	
+
 	/**
 	 * Sets the number of columns that can currently be edited
 	 * @param cols - number of editable columnss
+	 * @throws IllegalArgumentException if the table would have more than MAX_CELLS cells
 	 */
 	public void setCols(int cols) {
+		if(cols == this.cols) {
+			return;
+		}
+		checkFits(getRowCount(), Math.max(cols, minCols));
+		int oldColumnCount = getColumnCount();
 		this.cols = cols;
+		ensureCapacity(getRowCount(), getColumnCount());
+		if(getColumnCount() != oldColumnCount) {
+			fireTableStructureChanged();
+		}
+		else {
+			fireTableDataChanged();
+		}
 	}
-	
+
 	/**
-	 * Clears the data in all rows and columns
+	 * Checks whether a table of the given size fits in the most cells the table can hold
+	 * @param numRows - the number of rows
+	 * @param numCols - the number of columns
+	 * @return whether the table fits
 	 */
-	public void clearData() {
-		for(int r = 0; r<this.getRowCount(); r++) {
-			for(int c = 0; c<this.getColumnCount(); c++) {
-				this.setValueAt("", r, c);
+	public static boolean fits(int numRows, int numCols) {
+		return (long) numRows * numCols <= MAX_CELLS;
+	}
+
+	/**
+	 * Checks that a table of the given size fits in the most cells the table can hold
+	 * @param numRows - the number of rows
+	 * @param numCols - the number of columns
+	 * @throws IllegalArgumentException if it doesn't fit
+	 */
+	private static void checkFits(int numRows, int numCols) {
+		if(!fits(numRows, numCols)) {
+			throw new IllegalArgumentException("The table can't have more than " + MAX_CELLS + " cells");
+		}
+	}
+
+	/**
+	 * Gets the value of a cell, or NaN if it is blank
+	 * @param row - the row of the cell
+	 * @param col - the col of the cell
+	 * @return the value of the cell
+	 */
+	public double getDouble(int row, int col) {
+		if(row >= rowCapacity || col >= colCapacity) {
+			return Double.NaN;
+		}
+		return values[row * colCapacity + col];
+	}
+
+	/**
+	 * Sets the value of a cell without notifying the table.
+	 * @throws IllegalArgumentException if the table would have more than MAX_CELLS cells
+	 * @param row - the row of the cell
+	 * @param col - the col of the cell
+	 * @param value - the new value, or NaN for blank
+	 */
+	private void setDouble(int row, int col, double value) {
+		ensureCapacity(row + 1, col + 1);
+		values[row * colCapacity + col] = value;
+	}
+
+	/**
+	 * Copies the values in the top left corner of the table into a new array
+	 * @param numRows - the number of rows to copy
+	 * @param numCols - the number of columns to copy
+	 * @return the values, with NaN for blank cells. The first [] is row and the second [] is column
+	 */
+	public double[][] toArray(int numRows, int numCols) {
+		double[][] array = new double[numRows][numCols];
+		for(int r = 0; r<numRows; r++) {
+			if(r < rowCapacity && numCols <= colCapacity) {
+				System.arraycopy(values, r * colCapacity, array[r], 0, numCols);
+			}
+			else {
+				for(int c = 0; c<numCols; c++) {
+					array[r][c] = getDouble(r, c);
+				}
 			}
 		}
+		return array;
+	}
+
+	/**
+	 * Sets a block of values starting at the given cell, notifying the table once for the whole block.
+	 * The storage grows to fit the block, but the number of editable rows and columns doesn't change.
+	 * @throws IllegalArgumentException if the table would have more than MAX_CELLS cells
+	 * @param block - the values to set, with NaN for blank. The first [] is row and the second [] is column
+	 * @param startRow - the row of the top left cell of the block
+	 * @param startCol - the col of the top left cell of the block
+	 */
+	public void setValues(double[][] block, int startRow, int startCol) {
+		setValues(block, startRow, startCol, rows, cols);
+	}
+
+	/**
+	 * Sets a block of values starting at the given cell and the number of editable rows and columns,
+	 * notifying the table once for both, e.g. to grow the table to fit a pasted block.
+	 * @param block - the values to set, with NaN for blank. The first [] is row and the second [] is column
+	 * @param startRow - the row of the top left cell of the block
+	 * @param startCol - the col of the top left cell of the block
+	 * @param rows - the new number of editable rows
+	 * @param cols - the new number of editable columns
+	 * @throws IllegalArgumentException if the table would have more than MAX_CELLS cells
+	 */
+	public void setValues(double[][] block, int startRow, int startCol, int rows, int cols) {
+		int blockCols = 0;
+		for(double[] blockRow : block) {
+			blockCols = Math.max(blockCols, blockRow.length);
+		}
+		int numRows = Math.max(startRow + block.length, Math.max(rows, minRows));
+		int numCols = Math.max(startCol + blockCols, Math.max(cols, minCols));
+		checkFits(numRows, numCols);
+
+		int oldColumnCount = getColumnCount();
+		this.rows = rows;
+		this.cols = cols;
+		ensureCapacity(numRows, numCols);
+		for(int r = 0; r<block.length; r++) {
+			System.arraycopy(block[r], 0, values, (startRow + r) * colCapacity + startCol, block[r].length);
+		}
+		if(getColumnCount() != oldColumnCount) {
+			fireTableStructureChanged();
+		}
+		else {
+			fireTableDataChanged();
+		}
 	}
-	
+
+	/**
+	 * Clears the data in all rows and columns
+	 */
+	public void clearData() {
+		Arrays.fill(values, Double.NaN);
+		fireTableDataChanged();
+	}
+
 	/**
 	 * Checks to see if the current cell is the one that
 	 * should be highlighted
@@ -125,4 +305,55 @@ public class InputTableModel extends DefaultTableModel {
 		clickedCol = col;
 	}
 
+	/**
+	 * Makes sure the storage has space for at least the given number of rows and columns,
+	 * as well as the rows and columns shown in the table.
+	 * The capacity at least doubles each time it grows so that growing one row at a time stays cheap.
+	 * If that would go over MAX_CELLS, the storage only keeps space for the cells needed and
+	 * values in hidden cells outside them are dropped.
+	 * @param numRows - the number of rows needed
+	 * @param numCols - the number of columns needed
+	 * @throws IllegalArgumentException if more than MAX_CELLS cells are needed
+	 */
+	private void ensureCapacity(int numRows, int numCols) {
+		numRows = Math.max(numRows, getRowCount());
+		numCols = Math.max(numCols, getColumnCount());
+		if(numRows <= rowCapacity && numCols <= colCapacity) {
+			return;
+		}
+		checkFits(numRows, numCols);
+		int newRowCapacity = (numRows > rowCapacity) ? Math.max(numRows, rowCapacity * 2) : rowCapacity;
+		int newColCapacity = (numCols > colCapacity) ? Math.max(numCols, colCapacity * 2) : colCapacity;
+		if(!fits(newRowCapacity, newColCapacity)) {
+			newRowCapacity = numRows;
+			newColCapacity = numCols;
+		}
+		double[] newValues = new double[newRowCapacity * newColCapacity];
+		Arrays.fill(newValues, Double.NaN);
+		int copyCols = Math.min(colCapacity, newColCapacity);
+		for(int r = 0; r<Math.min(rowCapacity, newRowCapacity); r++) {
+			System.arraycopy(values, r * colCapacity, newValues, r * newColCapacity, copyCols);
+		}
+		values = newValues;
+		rowCapacity = newRowCapacity;
+		colCapacity = newColCapacity;
+	}
+
+	/**
+	 * Parses the text of a cell into a double.
+	 * @param value - the text entered into the cell
+	 * @return the number, or NaN if the text is blank or isn't a number
+	 */
+	static double parse(Object value) {
+		if(value == null) {
+			return Double.NaN;
+		}
+		try {
+			return Double.parseDouble(value.toString().trim());
+		}
+		catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
 }
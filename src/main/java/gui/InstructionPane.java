@@ -17,7 +17,7 @@ public class InstructionPane extends JPanel {
             "grid on the left. You can do this either by entering the data directly into the grid cells or by " +
             "retrieving stored data using \"Open\" in the \"Files\" menu. If editing the grid cells, make sure to hit " +
             "ENTER after editing each cell to properly update the value." +
-            "\n\nSelect whether you want inhibited or uninhibited kinetics and then adjust the slider(s) to give the " +
+            "\n\nSelect whether you want inhibited or uninhibited kinetics and then set the number box(es) to give the " +
             "number of substrate concentrations and inhibitor concentrations you want." +
             "\n\nIf you are studying inhibition kinetics, you will be offered a selection of three models of inhibition " +
             "to fit to your data. Do this by clicking on the option you want. Similarly, if you are working with " +
@@ -0,0 +1,140 @@
+package gui;
+
+import domain.Data;
+import domain.Point;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * OverlayRenderer draws the lines of best fit and raw data points of many fitted datasets on top of each other.
+ * Every dataset is accumulated into a DensityRaster rather than painted shape by shape, so thousands of datasets
+ * can be shown at once and places where they agree stand out as the darkest parts of the image.
+ */
+public class OverlayRenderer {
+
+	/** The colour the lines of best fit are drawn in. */
+	static final Color LINE_COLOR = Color.BLUE.darker();
+	/** The colour the raw data points are drawn in. */
+	static final Color POINT_COLOR = Color.RED.darker();
+	/** Half the side length of each raw data point marker in pixels. */
+	private static final int POINT_RADIUS = 2;
+	/** The smallest number of datasets given to each thread, so small overlays aren't split needlessly. */
+	private static final int MIN_DATASETS_PER_CHUNK = 16;
+
+	/** The theoretical points (lines of best fit) of each dataset. */
+	private final List<List<List<Point>>> lines = new ArrayList<>();
+	/** The experiment points (raw data points) of each dataset. */
+	private final List<List<List<Point>>> points = new ArrayList<>();
+
+	/**
+	 * Creates a renderer for the given fitted datasets.
+	 * Datasets that haven't been fitted are skipped.
+	 *
+	 * @param datasets fitted Data objects
+	 */
+	public OverlayRenderer(List<Data> datasets) {
+		for (Data data : datasets) {
+			if (data.getGraphLine() == null || data.getGraphPoints() == null) continue;
+			lines.add(data.getGraphLine());
+			points.add(data.getGraphPoints());
+		}
+	}
+
+	/**
+	 * Gets the number of datasets drawn.
+	 *
+	 * @return number of datasets
+	 */
+	public int size() {
+		return lines.size();
+	}
+
+	/**
+	 * Gets every line and raw data point of every dataset, for fitting the axes.
+	 *
+	 * @return all points (may contain nulls for missing data)
+	 */
+	public List<Point> getAllPoints() {
+		List<Point> allPoints = new ArrayList<>();
+		for (int i = 0; i < lines.size(); i++) {
+			lines.get(i).forEach(allPoints::addAll);
+			points.get(i).forEach(allPoints::addAll);
+		}
+		return allPoints;
+	}
+
+	/**
+	 * Rasterizes every dataset into a translucent image the size of the transform's drawing area.
+	 * The datasets are split into chunks that are accumulated in parallel into their own buffers, then summed.
+	 *
+	 * @param transform transform from data to screen coordinates
+	 * @return image with a transparent background
+	 */
+	public BufferedImage render(GraphTransform transform) {
+		int width = (int) Math.ceil(transform.getWidth());
+		int height = (int) Math.ceil(transform.getHeight());
+		int numChunks = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), size() / MIN_DATASETS_PER_CHUNK));
+		int chunkSize = (size() + numChunks - 1) / Math.max(1, numChunks);
+
+		DensityRaster[][] chunkRasters = new DensityRaster[numChunks][];
+		IntStream.range(0, numChunks).parallel().forEach(chunk -> {
+			DensityRaster lineRaster = new DensityRaster(width, height);
+			DensityRaster pointRaster = new DensityRaster(width, height);
+			int end = Math.min(size(), (chunk + 1) * chunkSize);
+			for (int i = chunk * chunkSize; i < end; i++) {
+				accumulate(lines.get(i), points.get(i), transform, lineRaster, pointRaster);
+			}
+			chunkRasters[chunk] = new DensityRaster[]{lineRaster, pointRaster};
+		});
+
+		DensityRaster lineRaster = chunkRasters[0][0];
+		DensityRaster pointRaster = chunkRasters[0][1];
+		for (int chunk = 1; chunk < numChunks; chunk++) {
+			lineRaster.add(chunkRasters[chunk][0]);
+			pointRaster.add(chunkRasters[chunk][1]);
+		}
+
+		// Draw the points over the lines:
+		BufferedImage image = lineRaster.toImage(LINE_COLOR);
+		Graphics2D g2 = image.createGraphics();
+		try {
+			g2.drawImage(pointRaster.toImage(POINT_COLOR), 0, 0, null);
+		} finally {
+			g2.dispose();
+		}
+		return image;
+	}
+
+	/**
+	 * Adds the lines and points of one dataset to the rasters.
+	 *
+	 * @param datasetLines lines of best fit of the dataset
+	 * @param datasetPoints raw data points of the dataset
+	 * @param transform transform from data to screen coordinates
+	 * @param lineRaster raster to add the lines to
+	 * @param pointRaster raster to add the points to
+	 */
+	private static void accumulate(List<List<Point>> datasetLines, List<List<Point>> datasetPoints, GraphTransform transform,
+								   DensityRaster lineRaster, DensityRaster pointRaster) {
+		for (List<Point> line : datasetLines) {
+			for (int i = 0; i < line.size() - 1; i++) {
+				Point p0 = line.get(i);
+				Point p1 = line.get(i + 1);
+				if (p0 == null || p1 == null) continue;
+				lineRaster.addLine(transform.toScreenX(p0.getX()), transform.toScreenY(p0.getY()),
+						transform.toScreenX(p1.getX()), transform.toScreenY(p1.getY()), 1f);
+			}
+		}
+		for (List<Point> pointList : datasetPoints) {
+			for (Point p : pointList) {
+				if (p == null) continue;
+				pointRaster.addPoint(transform.toScreenX(p.getX()), transform.toScreenY(p.getY()), POINT_RADIUS, 1f);
+			}
+		}
+	}
+}
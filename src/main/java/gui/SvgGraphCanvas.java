@@ -0,0 +1,141 @@
+package gui;
+
+import java.awt.Color;
+import java.util.Locale;
+
+/**
+ * GraphCanvas that records all drawing operations as an SVG document.
+ * The output is plain text, so no display or font system is needed to produce it.
+ */
+public class SvgGraphCanvas implements GraphCanvas {
+
+	/** Width of the document in pixels. */
+	private final int width;
+	/** Height of the document in pixels. */
+	private final int height;
+	/** The SVG elements drawn so far. */
+	private final StringBuilder body = new StringBuilder();
+
+	/** The current colour as an SVG colour string. */
+	private String color = "rgb(0,0,0)";
+	/** The current stroke width. */
+	private float strokeWidth = 1;
+
+	/**
+	 * Creates an empty SVG canvas of the given size.
+	 *
+	 * @param width width in pixels
+	 * @param height height in pixels
+	 */
+	public SvgGraphCanvas(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	@Override
+	public void setColor(Color color) {
+		this.color = "rgb(" + color.getRed() + "," + color.getGreen() + "," + color.getBlue() + ")";
+	}
+
+	@Override
+	public void setStrokeWidth(float width) {
+		this.strokeWidth = width;
+	}
+
+	@Override
+	public void fillRect(int x, int y, int width, int height) {
+		body.append("<rect x=\"").append(x).append("\" y=\"").append(y)
+				.append("\" width=\"").append(width).append("\" height=\"").append(height)
+				.append("\" fill=\"").append(color).append("\"/>\n");
+	}
+
+	@Override
+	public void drawLine(int x0, int y0, int x1, int y1) {
+		body.append("<line x1=\"").append(x0).append("\" y1=\"").append(y0)
+				.append("\" x2=\"").append(x1).append("\" y2=\"").append(y1)
+				.append("\" ").append(stroke()).append("/>\n");
+	}
+
+	@Override
+	public void drawOval(int x, int y, int width, int height) {
+		appendEllipse(x, y, width, height).append("fill=\"none\" ").append(stroke()).append("/>\n");
+	}
+
+	@Override
+	public void fillOval(int x, int y, int width, int height) {
+		appendEllipse(x, y, width, height).append("fill=\"").append(color).append("\"/>\n");
+	}
+
+	@Override
+	public void drawPolygon(int[] xPoints, int[] yPoints, int numPoints) {
+		appendPolygon(xPoints, yPoints, numPoints).append("fill=\"none\" ").append(stroke()).append("/>\n");
+	}
+
+	@Override
+	public void fillPolygon(int[] xPoints, int[] yPoints, int numPoints) {
+		appendPolygon(xPoints, yPoints, numPoints).append("fill=\"").append(color).append("\"/>\n");
+	}
+
+	@Override
+	public void drawStringCentered(String text, double x, double y) {
+		body.append(String.format(Locale.ROOT, "<text x=\"%.1f\" y=\"%.1f\" ", x, y))
+				.append("text-anchor=\"middle\" dominant-baseline=\"central\" font-family=\"sans-serif\" font-size=\"12\" fill=\"")
+				.append(color).append("\">").append(escape(text)).append("</text>\n");
+	}
+
+	/**
+	 * Gets the complete SVG document for everything drawn so far.
+	 *
+	 * @return SVG document
+	 */
+	public String toSvg() {
+		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + width + "\" height=\"" + height
+				+ "\" viewBox=\"0 0 " + width + " " + height + "\">\n"
+				+ body
+				+ "</svg>\n";
+	}
+
+	/**
+	 * Appends the opening of an ellipse element fitting inside the given rectangle.
+	 *
+	 * @return the body, for chaining
+	 */
+	private StringBuilder appendEllipse(int x, int y, int width, int height) {
+		return body.append(String.format(Locale.ROOT, "<ellipse cx=\"%.1f\" cy=\"%.1f\" rx=\"%.1f\" ry=\"%.1f\" ",
+				x + width / 2.0, y + height / 2.0, width / 2.0, height / 2.0));
+	}
+
+	/**
+	 * Appends the opening of a polygon element.
+	 *
+	 * @return the body, for chaining
+	 */
+	private StringBuilder appendPolygon(int[] xPoints, int[] yPoints, int numPoints) {
+		body.append("<polygon points=\"");
+		for (int i = 0; i < numPoints; i++) {
+			if (i > 0) body.append(' ');
+			body.append(xPoints[i]).append(',').append(yPoints[i]);
+		}
+		return body.append("\" ");
+	}
+
+	/**
+	 * Gets the stroke attributes for the current colour and stroke width.
+	 *
+	 * @return stroke attributes
+	 */
+	private String stroke() {
+		return "stroke=\"" + color + "\" stroke-width=\"" + strokeWidth + "\"";
+	}
+
+	/**
+	 * Escapes the characters that have a special meaning in XML text.
+	 *
+	 * @param text raw text
+	 * @return escaped text
+	 */
+	private static String escape(String text) {
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+	}
+}
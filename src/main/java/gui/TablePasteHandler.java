@@ -0,0 +1,195 @@
+package gui;
+
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.JComponent;
+import javax.swing.JTable;
+import javax.swing.TransferHandler;
+
+/**
+ * Transfer handler for the input tables that pastes a whole block of
+ * tab or comma separated values (e.g. copied from a spreadsheet) at once.
+ * The block is parsed in one pass and written to the table model as a
+ * single update, growing the table if the block doesn't fit. The table
+ * is only notified once, however much it grows.
+ */
+@SuppressWarnings("serial")
+public class TablePasteHandler extends TransferHandler {
+
+	/**
+	 * Listener used to grow the editable part of a table so that a pasted block fits.
+	 */
+	public interface SizeListener {
+		/**
+		 * Gets the number of editable rows and columns the given table should have so that it
+		 * has at least the given number, as far as the table can grow.
+		 * @param table - the table being pasted into
+		 * @param rows - the number of rows needed
+		 * @param cols - the number of columns needed
+		 * @return the number of rows followed by the number of columns
+		 */
+		int[] fitSize(JTable table, int rows, int cols);
+
+		/**
+		 * Tells the listener that a paste has changed the number of editable rows and columns of a table.
+		 * @param table - the table pasted into
+		 */
+		void sizeChanged(JTable table);
+	}
+
+	/** Listener told how big the table needs to be for each paste */
+	private final SizeListener sizeListener;
+
+	/**
+	 * Creates a paste handler.
+	 * @param sizeListener - listener used to grow the table to fit pasted blocks
+	 */
+	public TablePasteHandler(SizeListener sizeListener) {
+		this.sizeListener = sizeListener;
+	}
+
+	@Override
+	public boolean canImport(TransferSupport support) {
+		return support.getComponent() instanceof JTable && support.isDataFlavorSupported(DataFlavor.stringFlavor);
+	}
+
+	@Override
+	public boolean importData(TransferSupport support) {
+		if (!canImport(support)) {
+			return false;
+		}
+		JTable table = (JTable) support.getComponent();
+		double[][] block;
+		try {
+			block = parseBlock((String) support.getTransferable().getTransferData(DataFlavor.stringFlavor));
+		} catch (UnsupportedFlavorException | IOException e) {
+			return false;
+		}
+		if (block.length == 0) {
+			return false;
+		}
+
+		// Paste at the cell being edited or last clicked, or the top left cell if there isn't one
+		int startRow = Math.max(0, table.isEditing() ? table.getEditingRow() : table.getSelectionModel().getLeadSelectionIndex());
+		int startCol = Math.max(0, table.isEditing() ? table.getEditingColumn() : table.getColumnModel().getSelectionModel().getLeadSelectionIndex());
+		if (table.isEditing()) {
+			table.getCellEditor().cancelCellEditing();
+		}
+
+		if (!InputTableModel.fits(startRow + block.length, startCol + width(block))) {
+			return false;
+		}
+		InputTableModel model = (InputTableModel) table.getModel();
+		int[] size = sizeListener.fitSize(table, startRow + block.length, startCol + width(block));
+		model.setValues(block, startRow, startCol, size[0], size[1]);
+		sizeListener.sizeChanged(table);
+		return true;
+	}
+
+	@Override
+	public int getSourceActions(JComponent c) {
+		return NONE;
+	}
+
+	/**
+	 * Parses a block of text into a table of values in a single pass.
+	 * Rows are separated by new lines and values by tabs, or by commas if the text has no tabs.
+	 * Blank values and values that aren't numbers (e.g. headings) become NaN.
+	 * Trailing blank lines are ignored.
+	 * @param text - the text to parse
+	 * @return the values. The first [] is row and the second [] is column
+	 */
+	public static double[][] parseBlock(String text) {
+		char separator = (text.indexOf('\t') >= 0) ? '\t' : ',';
+		List<double[]> rows = new ArrayList<double[]>();
+		double[] row = new double[16];
+		int rowLength = 0;
+		int fieldStart = 0;
+		int length = text.length();
+		for (int i = 0; i <= length; i++) {
+			char c = (i < length) ? text.charAt(i) : '\n';
+			if (c != separator && c != '\n' && c != '\r') {
+				continue;
+			}
+			// End of a field
+			if (rowLength == row.length) {
+				row = Arrays.copyOf(row, rowLength * 2);
+			}
+			row[rowLength++] = parseField(text, fieldStart, i);
+			fieldStart = i + 1;
+
+			if (c != separator) {
+				// End of a row, skipping the \n of a \r\n
+				if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+					i++;
+					fieldStart++;
+				}
+				rows.add(Arrays.copyOf(row, rowLength));
+				rowLength = 0;
+			}
+		}
+
+		// Drop trailing blank lines
+		int numRows = rows.size();
+		while (numRows > 0 && isBlank(rows.get(numRows - 1))) {
+			numRows--;
+		}
+		return rows.subList(0, numRows).toArray(new double[0][]);
+	}
+
+	/**
+	 * Gets the number of columns in the widest row of a block.
+	 * @param block - the block of values
+	 * @return the widest row length
+	 */
+	static int width(double[][] block) {
+		int width = 0;
+		for (double[] row : block) {
+			width = Math.max(width, row.length);
+		}
+		return width;
+	}
+
+	/**
+	 * Parses part of the text as a number.
+	 * @param text - the whole text
+	 * @param start - index of the first character of the field
+	 * @param end - index after the last character of the field
+	 * @return the number, or NaN if the field is blank or isn't a number
+	 */
+	private static double parseField(String text, int start, int end) {
+		while (start < end && Character.isWhitespace(text.charAt(start))) {
+			start++;
+		}
+		while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+			end--;
+		}
+		if (start == end) {
+			return Double.NaN;
+		}
+		try {
+			return Double.parseDouble(text.substring(start, end));
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Checks if every value in a row is blank.
+	 * @param row - the row of values
+	 * @return whether the row is blank
+	 */
+	private static boolean isBlank(double[] row) {
+		for (double value : row) {
+			if (!Double.isNaN(value)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -79,6 +79,7 @@ public class TextOutputPane extends JPanel {
 							"\n" +
 							String.format("Weighted Error Sum = %s\n", numFormat(data, "wes")) +
 							String.format("RMS Fractional Residual = %s\n", numFormat(data, "chis")) +
+							String.format("Condition Number = %s\n", numFormat(data, "cond")) +
 							"\n" +
 							"Parameter \tValue \t+/- \tCoefficient of variation \n" +
 							String.format("1 Vm \t%s \t+/- \t%s\n", numFormat(data, "vm"), numFormat(data, "sevm"));
@@ -0,0 +1,314 @@
+package persistency;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This class is responsible for reading and writing the small amount
+ * of JSON used to exchange data with other programs.
+ * Objects are read as Maps, arrays as Lists, numbers as Doubles,
+ * and true/false/null as Booleans and null.
+ */
+public abstract class Json {
+
+	/**
+	 * Parses a JSON document
+	 *
+	 * @param text - the JSON text
+	 * @return the parsed value
+	 * @throws IllegalArgumentException if the text isn't valid JSON
+	 */
+	public static Object parse(String text) {
+		int[] pos = {0};
+		Object value = parseValue(text, pos);
+		skipWhitespace(text, pos);
+		if(pos[0] != text.length()) {
+			throw error(pos, "Unexpected trailing text");
+		}
+		return value;
+	}
+
+	/**
+	 * Writes a string as a JSON string literal
+	 *
+	 * @param value - the string (may be null)
+	 * @return the JSON literal
+	 */
+	public static String quote(String value) {
+		if(value == null) {
+			return "null";
+		}
+		StringBuilder s = new StringBuilder("\"");
+		for(char c : value.toCharArray()) {
+			switch(c) {
+			case '"':
+				s.append("\\\"");
+				break;
+			case '\\':
+				s.append("\\\\");
+				break;
+			case '\n':
+				s.append("\\n");
+				break;
+			case '\r':
+				s.append("\\r");
+				break;
+			case '\t':
+				s.append("\\t");
+				break;
+			default:
+				if(c < 0x20) {
+					s.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+				}
+				else {
+					s.append(c);
+				}
+			}
+		}
+		return s.append('"').toString();
+	}
+
+	/**
+	 * Writes a number as a JSON number, or null if it is NaN or infinite
+	 *
+	 * @param value - the number
+	 * @return the JSON literal
+	 */
+	public static String number(double value) {
+		return Double.isFinite(value) ? Double.toString(value) : "null";
+	}
+
+	/**
+	 * Parses the value starting at the current position
+	 *
+	 * @param text - the JSON text
+	 * @param pos - the current position, moved past the value
+	 * @return the parsed value
+	 */
+	private static Object parseValue(String text, int[] pos) {
+		skipWhitespace(text, pos);
+		if(pos[0] >= text.length()) {
+			throw error(pos, "Unexpected end of JSON");
+		}
+		char c = text.charAt(pos[0]);
+		switch(c) {
+		case '{':
+			return parseObject(text, pos);
+		case '[':
+			return parseArray(text, pos);
+		case '"':
+			return parseString(text, pos);
+		case 't':
+			expect(text, pos, "true");
+			return Boolean.TRUE;
+		case 'f':
+			expect(text, pos, "false");
+			return Boolean.FALSE;
+		case 'n':
+			expect(text, pos, "null");
+			return null;
+		default:
+			return parseNumber(text, pos);
+		}
+	}
+
+	/**
+	 * Parses an object starting at the current position
+	 *
+	 * @param text - the JSON text
+	 * @param pos - the current position, moved past the object
+	 * @return the object's members in order
+	 */
+	private static Map<String, Object> parseObject(String text, int[] pos) {
+		Map<String, Object> object = new LinkedHashMap<String, Object>();
+		pos[0]++; // {
+		skipWhitespace(text, pos);
+		if(peek(text, pos) == '}') {
+			pos[0]++;
+			return object;
+		}
+		while(true) {
+			skipWhitespace(text, pos);
+			if(peek(text, pos) != '"') {
+				throw error(pos, "Expected a member name");
+			}
+			String name = parseString(text, pos);
+			skipWhitespace(text, pos);
+			expect(text, pos, ":");
+			object.put(name, parseValue(text, pos));
+			skipWhitespace(text, pos);
+			char c = peek(text, pos);
+			pos[0]++;
+			if(c == '}') {
+				return object;
+			}
+			if(c != ',') {
+				throw error(pos, "Expected , or }");
+			}
+		}
+	}
+
+	/**
+	 * Parses an array starting at the current position
+	 *
+	 * @param text - the JSON text
+	 * @param pos - the current position, moved past the array
+	 * @return the array's values in order
+	 */
+	private static List<Object> parseArray(String text, int[] pos) {
+		List<Object> array = new ArrayList<Object>();
+		pos[0]++; // [
+		skipWhitespace(text, pos);
+		if(peek(text, pos) == ']') {
+			pos[0]++;
+			return array;
+		}
+		while(true) {
+			array.add(parseValue(text, pos));
+			skipWhitespace(text, pos);
+			char c = peek(text, pos);
+			pos[0]++;
+			if(c == ']') {
+				return array;
+			}
+			if(c != ',') {
+				throw error(pos, "Expected , or ]");
+			}
+		}
+	}
+
+	/**
+	 * Parses a string starting at the current position
+	 *
+	 * @param text - the JSON text
+	 * @param pos - the current position, moved past the string
+	 * @return the string
+	 */
+	private static String parseString(String text, int[] pos) {
+		StringBuilder s = new StringBuilder();
+		pos[0]++; // opening quote
+		while(true) {
+			if(pos[0] >= text.length()) {
+				throw error(pos, "Unterminated string");
+			}
+			char c = text.charAt(pos[0]++);
+			if(c == '"') {
+				return s.toString();
+			}
+			if(c != '\\') {
+				s.append(c);
+				continue;
+			}
+			if(pos[0] >= text.length()) {
+				throw error(pos, "Unterminated string");
+			}
+			char escape = text.charAt(pos[0]++);
+			switch(escape) {
+			case 'b':
+				s.append('\b');
+				break;
+			case 'f':
+				s.append('\f');
+				break;
+			case 'n':
+				s.append('\n');
+				break;
+			case 'r':
+				s.append('\r');
+				break;
+			case 't':
+				s.append('\t');
+				break;
+			case 'u':
+				if(pos[0] + 4 > text.length()) {
+					throw error(pos, "Invalid unicode escape");
+				}
+				try {
+					s.append((char) Integer.parseInt(text.substring(pos[0], pos[0] + 4), 16));
+				}
+				catch(NumberFormatException e) {
+					throw error(pos, "Invalid unicode escape");
+				}
+				pos[0] += 4;
+				break;
+			default: // " \ /
+				s.append(escape);
+			}
+		}
+	}
+
+	/**
+	 * Parses a number starting at the current position
+	 *
+	 * @param text - the JSON text
+	 * @param pos - the current position, moved past the number
+	 * @return the number
+	 */
+	private static Double parseNumber(String text, int[] pos) {
+		int start = pos[0];
+		while(pos[0] < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos[0])) >= 0) {
+			pos[0]++;
+		}
+		try {
+			return Double.parseDouble(text.substring(start, pos[0]));
+		}
+		catch(NumberFormatException e) {
+			pos[0] = start;
+			throw error(pos, "Unexpected character");
+		}
+	}
+
+	/**
+	 * Moves past the given literal text, or fails if it isn't there
+	 *
+	 * @param text - the JSON text
+	 * @param pos - the current position
+	 * @param literal - the expected text
+	 */
+	private static void expect(String text, int[] pos, String literal) {
+		if(!text.startsWith(literal, pos[0])) {
+			throw error(pos, "Expected " + literal);
+		}
+		pos[0] += literal.length();
+	}
+
+	/**
+	 * Gets the character at the current position
+	 *
+	 * @param text - the JSON text
+	 * @param pos - the current position
+	 * @return the character
+	 */
+	private static char peek(String text, int[] pos) {
+		if(pos[0] >= text.length()) {
+			throw error(pos, "Unexpected end of JSON");
+		}
+		return text.charAt(pos[0]);
+	}
+
+	/**
+	 * Moves past any whitespace
+	 *
+	 * @param text - the JSON text
+	 * @param pos - the current position
+	 */
+	private static void skipWhitespace(String text, int[] pos) {
+		while(pos[0] < text.length() && Character.isWhitespace(text.charAt(pos[0]))) {
+			pos[0]++;
+		}
+	}
+
+	/**
+	 * Creates the exception for invalid JSON
+	 *
+	 * @param pos - the position of the problem
+	 * @param message - what is wrong
+	 * @return the exception
+	 */
+	private static IllegalArgumentException error(int[] pos, String message) {
+		return new IllegalArgumentException(message + " at position " + pos[0] + " of JSON");
+	}
+}
@@ -1,17 +1,27 @@
 package persistency;
 
 import domain.Data;
+import domain.FlightEvents;
 import domain.KineticModel;
+import domain.Metrics;
+import domain.PlateLayout;
+import domain.ProgressCurves;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Scanner;
-import java.util.regex.Pattern;
 
 /**
- * Loading describes an abstract helper class with a single static method
- * for loading Data from a file.
+ * Loading describes an abstract helper class with static methods
+ * for loading Data from a file or from the contents of one.
  */
 public abstract class Loading {
 
@@ -22,16 +32,249 @@ public abstract class Loading {
      * @return the parsed Data object
      */
     public static Data load(String filePath) throws Exception {
-        Scanner scanner = new Scanner(Path.of(filePath));
+        long start = System.nanoTime();
+        FlightEvents.Load event = new FlightEvents.Load();
+        event.begin();
+        event.path = filePath;
+        try {
+            byte[] bytes = Files.readAllBytes(Path.of(filePath));
+            event.bytes = bytes.length;
+            String format = filePath.endsWith(".csv") ? "csv" : filePath.endsWith(".json") ? "json" : "ktn";
+            Data data = parse(new String(bytes, StandardCharsets.UTF_8), format);
+            data.setFilePath(filePath);
+            Metrics.recordLoad(System.nanoTime() - start, bytes.length);
+            return data;
+        } catch (Exception e) {
+            Metrics.recordLoadFailure();
+            throw e;
+        } finally {
+            event.commit();
+        }
+    }
+
+    /**
+     * Loads the progress curves of a plate from a plate reader export, reading it a line at a time.
+     *
+     * @param filePath file path of the export
+     * @return the progress curves
+     * @throws IOException if the file can't be read
+     */
+    public static ProgressCurves loadProgressCurves(String filePath) throws IOException {
+        long start = System.nanoTime();
+        FlightEvents.Load event = new FlightEvents.Load();
+        event.begin();
+        event.path = filePath;
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(filePath))) {
+            event.bytes = Files.size(Path.of(filePath));
+            ProgressCurves curves = parseProgressCurves(reader);
+            Metrics.recordLoad(System.nanoTime() - start, event.bytes);
+            return curves;
+        } catch (IOException | RuntimeException e) {
+            Metrics.recordLoadFailure();
+            throw e;
+        } finally {
+            event.commit();
+        }
+    }
+
+    /**
+     * Parses the progress curves of a plate from the contents of a plate reader export.
+     *
+     * @param content contents of the export
+     * @return the progress curves
+     */
+    public static ProgressCurves parseProgressCurves(String content) {
+        try {
+            return parseProgressCurves(new BufferedReader(new StringReader(content)));
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // a StringReader doesn't throw
+        }
+    }
+
+    /**
+     * Parses the progress curves of a plate from a plate reader export in the usual kinetic layout: a header row
+     * starting with "Time" and then the well names, followed by one row per reading. Values may be separated by
+     * commas, semicolons or tabs, times may be in seconds or h:mm:ss, and any lines before the header (e.g. the
+     * reader's settings, which may have a line starting with "Time" giving when the plate was read) are skipped, as
+     * are columns that aren't wells (e.g. the temperature). The readings end at
+     * the first blank line or the end of the file. Values that aren't numbers (e.g. "OVRFLW") are read as Double.NaN.
+     *
+     * @param reader reader of the export
+     * @return the progress curves
+     * @throws IOException if the export can't be read
+     * @throws IllegalArgumentException if there is no header row or a reading is invalid
+     */
+    private static ProgressCurves parseProgressCurves(BufferedReader reader) throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) throw new IllegalArgumentException("No header row starting with Time");
+        } while (!isProgressCurveHeader(line));
+        return readProgressCurves(reader, line);
+    }
+
+    /**
+     * Checks whether a line of a plate reader export is the header row of its progress curves.
+     *
+     * @param line line of the export
+     * @return whether it starts with "Time" and names at least one well
+     */
+    static boolean isProgressCurveHeader(String line) {
+        if (!unquote(line).toLowerCase(Locale.ROOT).startsWith("time")) return false;
+        String[] header = line.split(delimiter(line), -1);
+        for (int column = 1; column < header.length; column++) {
+            if (wellName(header[column]) != null) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads a cell of the header row of progress curves as a well name.
+     *
+     * @param cell cell of the header row
+     * @return the well name in its usual form, e.g. "A1", or null if the cell isn't a well of a 1536 well plate
+     */
+    private static String wellName(String cell) {
+        try {
+            return PlateLayout.normaliseWell(unquote(cell));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the progress curves that follow their header row (see parseProgressCurves).
+     *
+     * @param reader reader of the export, just after the header row
+     * @param headerRow the header row
+     * @return the progress curves
+     * @throws IOException if the export can't be read
+     * @throws IllegalArgumentException if there are no wells or a reading is invalid
+     */
+    static ProgressCurves readProgressCurves(BufferedReader reader, String headerRow) throws IOException {
+        String line;
+        String delimiter = delimiter(headerRow);
+        String[] header = headerRow.split(delimiter, -1);
+        List<String> wells = new ArrayList<>();
+        List<Integer> wellColumns = new ArrayList<>();
+        for (int column = 1; column < header.length; column++) {
+            String well = wellName(header[column]);
+            if (well != null) {
+                wells.add(well);
+                wellColumns.add(column);
+            }
+        }
+        if (wells.isEmpty()) throw new IllegalArgumentException("No wells in the header row");
+
+        ProgressCurves curves = new ProgressCurves(wells);
+        double[] values = new double[wells.size()];
+        int lineNumber = 1;
+        while ((line = reader.readLine()) != null && !line.isBlank()) {
+            lineNumber++;
+            String[] tokens = line.split(delimiter, -1);
+            double time = parseTime(unquote(tokens[0]), lineNumber);
+            for (int well = 0; well < values.length; well++) {
+                int column = wellColumns.get(well);
+                values[well] = (column < tokens.length) ? parseReading(unquote(tokens[column])) : Double.NaN;
+            }
+            curves.add(time, values);
+        }
+        return curves;
+    }
+
+    /**
+     * Finds the separator of the values in a line of a plate reader export: a tab, semicolon or comma.
+     *
+     * @param line line of the export
+     * @return the separator, as a regular expression
+     */
+    static String delimiter(String line) {
+        return line.contains("\t") ? "\t" : (line.contains(";") && !line.contains(",")) ? ";" : ",";
+    }
+
+    /**
+     * Parses the time of a reading, in seconds or as h:mm:ss or mm:ss, into seconds.
+     *
+     * @param token time of the reading
+     * @param lineNumber line number after the header, for the error message
+     * @return time in seconds
+     */
+    private static double parseTime(String token, int lineNumber) {
+        try {
+            double seconds = 0;
+            for (String part : token.split(":")) {
+                seconds = seconds * 60 + Double.parseDouble(part);
+            }
+            return seconds;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid time on reading " + lineNumber + ": " + token);
+        }
+    }
+
+    /**
+     * Parses a reading, or Double.NaN if it is blank or not a number.
+     *
+     * @param token reading
+     * @return the reading
+     */
+    static double parseReading(String token) {
+        try {
+            return token.isEmpty() ? Double.NaN : Double.parseDouble(token);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Removes the whitespace and double quotes around a value.
+     *
+     * @param token value
+     * @return the value without them
+     */
+    static String unquote(String token) {
+        String trimmed = token.trim();
+        if (trimmed.length() >= 2 && trimmed.startsWith("\"") && trimmed.endsWith("\"")) {
+            trimmed = trimmed.substring(1, trimmed.length() - 1).trim();
+        }
+        return trimmed;
+    }
+
+    /**
+     * Parses the contents of an input file into a Data object, e.g. for data that wasn't read from a file.
+     *
+     * @param content contents of the input file
+     * @param format "ktn", "csv" or "json"
+     * @return the parsed Data object
+     */
+    public static Data parse(String content, String format) throws Exception {
+        switch (format) {
+            case "ktn":
+                return parseTable(content, false);
+            case "csv":
+                return parseTable(content, true);
+            case "json":
+                return parseJson(content);
+            default:
+                throw new IllegalArgumentException("Unrecognised input format: " + format);
+        }
+    }
+
+    /**
+     * Parses the contents of a .ktn or .csv input file into a Data object.
+     *
+     * @param content contents of the input file
+     * @param csv whether the values are separated by commas rather than spaces
+     * @return the parsed Data object
+     */
+    private static Data parseTable(String content, boolean csv) {
+        Scanner scanner = new Scanner(content);
         String[] tokens;
 
         //Split nextLine into tokens to parse depending on the file type
-        if (filePath.endsWith(".csv")) { tokens = scanner.nextLine().split(",");
+        if (csv) { tokens = scanner.nextLine().split(",");
         } else { tokens = scanner.nextLine().split("             ");}
 
         Data data = new Data();
-        data.setFilePath(filePath);
-        System.out.println(data.getFilePath());
         
         // Read first row:
         int cols = Integer.parseInt(tokens[0].trim()); // 1st token is table columns
@@ -39,34 +282,13 @@ public abstract class Loading {
         data.setCols(cols);
         data.setRows(rows);
         
-        switch (Integer.parseInt(tokens[2].trim())){ // 3rd token is %UP, or the Kinetic Model selected
-            case 1:
-                data.setModelType(KineticModel.UninhibitedOneSub);
-                break;
-            case 2:
-                data.setModelType(KineticModel.UninhibitedTwoSubOrderedBiBi);
-                break;
-            case 3:
-                data.setModelType(KineticModel.UninhibitedTwoSubPingPong);
-                break;
-            case 4:
-                data.setModelType(KineticModel.InhibitedCompetitive);
-                break;
-            case 5:
-                data.setModelType(KineticModel.InhibitedNonCompetitive);
-                break;
-            case 6:
-                data.setModelType(KineticModel.InhibitedUnCompetitive);
-                break;
-            default:
-                throw new IllegalArgumentException();
-        }
+        data.setModelType(KineticModel.fromValue(Integer.parseInt(tokens[2].trim()))); // 3rd token is %UP, or the Kinetic Model selected
         
         // Read 2nd row (cosub/inhib row)
         List<Double> cosubInhibList = new ArrayList<>();
 
         //Split nextLine into tokens to parse depending on the file type
-        if (filePath.endsWith(".csv")) { tokens = scanner.nextLine().split(",", -1);
+        if (csv) { tokens = scanner.nextLine().split(",", -1);
         } else { tokens = scanner.nextLine().split("   ", -1);}
         
         for (String token : tokens){
@@ -80,7 +302,7 @@ public abstract class Loading {
         
         for (int row = 0; row < rows; row++){
             //Split nextLine into tokens to parse depending on the file type
-            if (filePath.endsWith(".csv")) { tokens = scanner.nextLine().split(",", -1);
+            if (csv) { tokens = scanner.nextLine().split(",", -1);
             } else { tokens = scanner.nextLine().split("   ", -1);}
 
             substrateList.add(parseNumber(tokens[0]));
@@ -95,6 +317,75 @@ public abstract class Loading {
         return data;
     }
 
+    /**
+     * Parses a JSON input into a Data object. The JSON is an object with the model (its value 1-6 or its name),
+     * the substrate concentrations, the co-substrate/inhibitor concentration of each column, and the rates as one
+     * array per substrate concentration, e.g.
+     * {"model": 1, "substrate": [0.5, 1], "cosubInhib": [], "rates": [[1.6, 1.7], [2.5, 2.4]]}.
+     * Missing values are written as null.
+     *
+     * @param content JSON input
+     * @return the parsed Data object
+     */
+    private static Data parseJson(String content) {
+        Object json = Json.parse(content);
+        if (!(json instanceof Map)) throw new IllegalArgumentException("Expected a JSON object");
+        Map<?, ?> object = (Map<?, ?>) json;
+        Data data = new Data();
+        data.setModelType(parseModel(object.get("model")));
+
+        List<Double> substrateList = parseNumbers(object.get("substrate"), "substrate");
+        List<?> rateRows = (object.get("rates") instanceof List) ? (List<?>) object.get("rates") : null;
+        if (rateRows == null || rateRows.size() != substrateList.size()) {
+            throw new IllegalArgumentException("Expected one row of rates per substrate concentration");
+        }
+        int rows = substrateList.size();
+        int cols = rows == 0 ? 0 : parseNumbers(rateRows.get(0), "rates").size();
+        double[][] tableData = new double[rows][cols];
+        for (int row = 0; row < rows; row++){
+            List<Double> rates = parseNumbers(rateRows.get(row), "rates");
+            if (rates.size() != cols) throw new IllegalArgumentException("Every row of rates must be the same length");
+            for (int col = 0; col < cols; col++){
+                tableData[row][col] = rates.get(col);
+            }
+        }
+
+        data.setCols(cols);
+        data.setRows(rows);
+        data.setCoSubInhibRow(object.containsKey("cosubInhib") ? parseNumbers(object.get("cosubInhib"), "cosubInhib") : new ArrayList<>());
+        data.setSubstrateCol(substrateList);
+        data.setTableData(tableData);
+        return data;
+    }
+
+    /**
+     * Reads a kinetic model from its value in the original program (1-6) or its name.
+     *
+     * @param value parsed JSON value
+     * @return the kinetic model
+     */
+    private static KineticModel parseModel(Object value) {
+        if (value instanceof Double) return KineticModel.fromValue(((Double) value).intValue());
+        return KineticModel.parse(String.valueOf(value));
+    }
+
+    /**
+     * Reads a JSON array of numbers, with null as Double.NaN.
+     *
+     * @param value parsed JSON value
+     * @param name name of the member, for the error message
+     * @return the numbers
+     */
+    private static List<Double> parseNumbers(Object value, String name) {
+        if (!(value instanceof List)) throw new IllegalArgumentException("Expected an array for " + name);
+        List<Double> numbers = new ArrayList<>();
+        for (Object number : (List<?>) value){
+            if (number != null && !(number instanceof Double)) throw new IllegalArgumentException("Expected numbers in " + name);
+            numbers.add((number == null) ? Double.NaN : (Double) number);
+        }
+        return numbers;
+    }
+
     /**
      * Parses a String into its double form, or Double.NaN if it is blank.
      * This also rounds the number to 3dp.
@@ -0,0 +1,212 @@
+package persistency;
+
+import domain.Data;
+import domain.FlightEvents;
+import domain.InitialRates;
+import domain.KineticModel;
+import domain.Metrics;
+import domain.PlateLayout;
+import domain.ProgressCurves;
+import domain.RateMethod;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * PlateImporter describes an abstract helper class with static methods
+ * for loading plate layouts, and importing whole plate reader exports into Data objects with them.
+ */
+public abstract class PlateImporter {
+
+    /** The dataset of wells whose layout doesn't name one. */
+    public static final String DEFAULT_DATASET = "plate";
+
+    /**
+     * Loads a plate layout: a CSV file with a header row naming its columns, and a row per well or range of wells.
+     * The columns are "well" (e.g. A1, or A1:A3 for a range), "dataset" (optional), "substrate", "cosubinhib"
+     * (optional, default 0), "role" (optional: sample or blank) and "model" (optional, 1-6 or the model's name).
+     * Blank rows and lines starting with # are skipped. For example
+     * <pre>
+     * well,dataset,substrate,cosubinhib,role
+     * A1:A3,inhibitor,0.5,0,
+     * B1:B3,inhibitor,1,0,
+     * H1:H3,inhibitor,,,blank
+     * </pre>
+     *
+     * @param filePath file path of the layout
+     * @return the layout
+     * @throws IOException if the file can't be read
+     * @throws IllegalArgumentException if the layout is invalid
+     */
+    public static PlateLayout loadLayout(String filePath) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(filePath))) {
+            return parseLayout(reader);
+        }
+    }
+
+    /**
+     * Parses a plate layout (see loadLayout).
+     *
+     * @param reader reader of the layout
+     * @return the layout
+     * @throws IOException if the layout can't be read
+     * @throws IllegalArgumentException if the layout is invalid
+     */
+    static PlateLayout parseLayout(BufferedReader reader) throws IOException {
+        Map<String, Integer> columns = null;
+        PlateLayout layout = new PlateLayout();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || line.trim().startsWith("#")) continue;
+            String[] tokens = line.split(",", -1);
+            if (columns == null) {
+                columns = new HashMap<>();
+                for (int column = 0; column < tokens.length; column++) {
+                    columns.put(Loading.unquote(tokens[column]).toLowerCase(Locale.ROOT), column);
+                }
+                if (!columns.containsKey("well") || !columns.containsKey("substrate")) {
+                    throw new IllegalArgumentException("The layout header must have well and substrate columns");
+                }
+                continue;
+            }
+
+            String dataset = cell(tokens, columns, "dataset");
+            if (dataset.isEmpty()) dataset = DEFAULT_DATASET;
+            String role = cell(tokens, columns, "role").toLowerCase(Locale.ROOT);
+            String coSubInhib = cell(tokens, columns, "cosubinhib");
+            String substrate = cell(tokens, columns, "substrate");
+            String model = cell(tokens, columns, "model");
+            try {
+                for (String well : PlateLayout.expandRange(cell(tokens, columns, "well"))) {
+                    if (role.equals("blank")) {
+                        layout.addBlank(well, dataset, coSubInhib.isEmpty() ? Double.NaN : Double.parseDouble(coSubInhib));
+                    }
+                    else if (role.isEmpty() || role.equals("sample")) {
+                        layout.addSample(well, dataset, Double.parseDouble(substrate),
+                                coSubInhib.isEmpty() ? 0 : Double.parseDouble(coSubInhib));
+                    }
+                    else {
+                        throw new IllegalArgumentException("Unrecognised role: " + role);
+                    }
+                }
+                if (!model.isEmpty()) layout.setModel(dataset, KineticModel.parse(model));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid layout line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+        if (columns == null) throw new IllegalArgumentException("The layout is empty");
+        return layout;
+    }
+
+    /**
+     * Imports a plate reader export into one Data object per dataset of the layout, reading it once.
+     * The export is either a kinetic export of progress curves (see Loading.loadProgressCurves), whose initial
+     * rates are estimated, or a grid of one value per well (e.g. rates the reader's software worked out), with a
+     * header row numbering the columns and a row per plate row starting with its letter. Anything before them is
+     * skipped, including a line of the reader's settings starting with "Time" that names no wells.
+     *
+     * @param filePath file path of the export
+     * @param layout what is in each well
+     * @param method how to estimate initial rates from progress curves
+     * @param tolerance largest fractional change of the slope across a linear window
+     * @param signalPerConcentration change of signal per unit change of concentration
+     * @param threads number of threads to estimate initial rates with
+     * @return one Data object per dataset, each with the file path filePath#dataset
+     * @throws IOException if the export can't be read
+     * @throws IllegalArgumentException if the export has no readings, or one is invalid
+     */
+    public static List<Data> importPlate(String filePath, PlateLayout layout, RateMethod method, double tolerance,
+                                         double signalPerConcentration, int threads) throws IOException {
+        long start = System.nanoTime();
+        FlightEvents.Load event = new FlightEvents.Load();
+        event.begin();
+        event.path = filePath;
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(filePath))) {
+            event.bytes = Files.size(Path.of(filePath));
+            Map<String, Double> values = null;
+            String line;
+            while (values == null && (line = reader.readLine()) != null) {
+                if (Loading.isProgressCurveHeader(line)) {
+                    ProgressCurves curves = Loading.readProgressCurves(reader, line);
+                    values = new HashMap<>();
+                    for (Map.Entry<String, InitialRates.Estimate> estimate
+                            : InitialRates.estimateAll(curves, method, tolerance, threads).entrySet()) {
+                        values.put(estimate.getKey(), estimate.getValue().getRate());
+                    }
+                }
+                else if (isGridHeader(line)) {
+                    values = readGrid(reader, Loading.delimiter(line));
+                }
+            }
+            if (values == null) throw new IllegalArgumentException("No plate readings found");
+            List<Data> datasets = layout.toData(values, signalPerConcentration, filePath);
+            Metrics.recordLoad(System.nanoTime() - start, event.bytes);
+            return datasets;
+        } catch (IOException | RuntimeException e) {
+            Metrics.recordLoadFailure();
+            throw e;
+        } finally {
+            event.commit();
+        }
+    }
+
+    /**
+     * Checks whether a line of a plate reader export is the header row of a grid of values: an empty or label
+     * first cell followed by the column numbers 1 to 12, 24 or 48.
+     *
+     * @param line line of the export
+     * @return whether it is the header row of a grid
+     */
+    private static boolean isGridHeader(String line) {
+        String[] tokens = line.split(Loading.delimiter(line));
+        int columns = tokens.length - 1;
+        if (columns != 12 && columns != 24 && columns != 48) return false;
+        for (int column = 1; column <= columns; column++) {
+            if (!Loading.unquote(tokens[column]).equals(String.valueOf(column))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads the rows of a grid of values, up to the first line that doesn't start with a row letter.
+     *
+     * @param reader reader of the export, just after the header row
+     * @param delimiter separator of the values, as a regular expression
+     * @return value of each well, by well name; Double.NaN if it isn't a number
+     * @throws IOException if the export can't be read
+     */
+    private static Map<String, Double> readGrid(BufferedReader reader, String delimiter) throws IOException {
+        Map<String, Double> values = new HashMap<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] tokens = line.split(delimiter, -1);
+            String row = Loading.unquote(tokens[0]);
+            if (!row.matches("[A-Za-z]{1,2}")) break;
+            for (int column = 1; column < tokens.length; column++) {
+                values.put(PlateLayout.normaliseWell(row + column), Loading.parseReading(Loading.unquote(tokens[column])));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Gets a cell of a layout row, or "" if the layout has no such column.
+     *
+     * @param tokens cells of the row
+     * @param columns index of each column, by name
+     * @param name name of the column
+     * @return the cell, without whitespace and quotes
+     */
+    private static String cell(String[] tokens, Map<String, Integer> columns, String name) {
+        Integer column = columns.get(name);
+        return (column == null || column >= tokens.length) ? "" : Loading.unquote(tokens[column]);
+    }
+}
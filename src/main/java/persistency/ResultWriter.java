@@ -0,0 +1,342 @@
+package persistency;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import domain.CustomModelFit;
+import domain.Data;
+import domain.ModelComparison;
+import domain.Point;
+
+/**
+ * This class is responsible for writing the fitted parameters of
+ * many data objects as one table, e.g. for a batch run.
+ * Each data object is one row. A data object that couldn't be fitted
+ * has its error message in the error column instead of parameters.
+ */
+public abstract class ResultWriter {
+
+	/**
+	 * The keys of every value a fit can output, in the order they are written.
+	 * Values a model doesn't have are left blank.
+	 */
+	public static final List<String> KEYS = Arrays.asList(
+			"vm", "sevm", "km", "sekm", "ka", "seka", "kb", "sekb", "kia", "sekia",
+			"kis", "sekis", "kii", "sekii", "wes", "chis", "cond");
+
+	/**
+	 * Writes the results in the given format
+	 *
+	 * @param out - where to write the results
+	 * @param results - the fitted (or failed) data objects
+	 * @param format - "csv", "tsv" or "json"
+	 */
+	public static void write(PrintStream out, List<Data> results, String format) {
+		switch(format) {
+		case "csv":
+			writeTable(out, results, ",");
+			break;
+		case "tsv":
+			writeTable(out, results, "\t");
+			break;
+		case "json":
+			writeJson(out, results);
+			break;
+		default:
+			throw new IllegalArgumentException("Unrecognised result format: " + format);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Writes the results as a table with a header row
+	 *
+	 * @param out - where to write the results
+	 * @param results - the fitted (or failed) data objects
+	 * @param separator - the string between values
+	 */
+	public static void writeTable(PrintStream out, List<Data> results, String separator) {
+		StringBuilder line = new StringBuilder("file").append(separator).append("model");
+		for(String key : KEYS) {
+			line.append(separator).append(key);
+		}
+		line.append(separator).append("error");
+		out.println(line);
+
+		for(Data data : results) {
+			line.setLength(0);
+			line.append(quote(data.getFilePath(), separator)).append(separator).append(data.getModelType().getValue());
+			Map<String, Double> textData = data.getTextData();
+			for(String key : KEYS) {
+				line.append(separator);
+				if(isFitted(data) && textData.get(key) != null) {
+					line.append(textData.get(key));
+				}
+			}
+			line.append(separator);
+			if(!isFitted(data)) {
+				line.append(quote(data.getErrorMessage(), separator));
+			}
+			out.println(line);
+		}
+	}
+
+	/**
+	 * Writes the results as a JSON array with one object per data object
+	 *
+	 * @param out - where to write the results
+	 * @param results - the fitted (or failed) data objects
+	 */
+	public static void writeJson(PrintStream out, List<Data> results) {
+		out.println("[");
+		for(int i = 0; i<results.size(); i++) {
+			out.println("  " + toJson(results.get(i), false) + ((i < results.size() - 1) ? "," : ""));
+		}
+		out.println("]");
+	}
+
+	/**
+	 * Writes the results of one data object as a JSON object.
+	 * The graph is written as arrays of [x, y] pairs, with null for missing points.
+	 *
+	 * @param data - the fitted (or failed) data object
+	 * @param includeGraph - whether to include the graph's lines and points
+	 * @return the JSON object
+	 */
+	public static String toJson(Data data, boolean includeGraph) {
+		StringBuilder json = new StringBuilder("{\"file\": ").append(Json.quote(data.getFilePath()))
+				.append(", \"model\": ").append(data.getModelType().getValue());
+		if(isFitted(data)) {
+			for(String key : KEYS) {
+				Double value = data.getTextData().get(key);
+				if(value != null) {
+					json.append(", \"").append(key).append("\": ").append(Json.number(value));
+				}
+			}
+			if(includeGraph) {
+				json.append(", \"graphType\": ").append(Json.quote(data.getGraphType().name()));
+				json.append(", \"lines\": ");
+				appendPointLists(json, data.getGraphLine());
+				json.append(", \"points\": ");
+				appendPointLists(json, data.getGraphPoints());
+			}
+		}
+		else {
+			json.append(", \"error\": ").append(Json.quote(data.getErrorMessage().trim()));
+		}
+		return json.append("}").toString();
+	}
+
+	/**
+	 * Writes lists of graph points as nested JSON arrays
+	 *
+	 * @param json - where to write the arrays
+	 * @param pointLists - the lists of points
+	 */
+	private static void appendPointLists(StringBuilder json, List<List<Point>> pointLists) {
+		json.append('[');
+		for(int i = 0; i<pointLists.size(); i++) {
+			if(i > 0) {
+				json.append(", ");
+			}
+			json.append('[');
+			List<Point> points = pointLists.get(i);
+			for(int j = 0; j<points.size(); j++) {
+				if(j > 0) {
+					json.append(", ");
+				}
+				Point p = points.get(j);
+				if(p == null) {
+					json.append("null");
+				}
+				else {
+					json.append('[').append(Json.number(p.getX())).append(", ").append(Json.number(p.getY())).append(']');
+				}
+			}
+			json.append(']');
+		}
+		json.append(']');
+	}
+
+	/**
+	 * Writes model comparisons in the given format, with one row per model of each data object, best first
+	 *
+	 * @param out - where to write the comparisons
+	 * @param comparisons - the candidates of each data object
+	 * @param format - "csv", "tsv" or "json"
+	 */
+	public static void writeComparison(PrintStream out, List<List<ModelComparison.Candidate>> comparisons, String format) {
+		String separator = format.equals("tsv") ? "\t" : ",";
+		if(format.equals("json")) {
+			out.println("[");
+		}
+		else if(format.matches("csv|tsv")) {
+			out.println(String.join(separator, "file", "rank", "model", "name", "params", "points", "rss",
+					"aic", "aicc", "bic", "weight", "nested", "f", "p", "error"));
+		}
+		else {
+			throw new IllegalArgumentException("Unrecognised result format: " + format);
+		}
+
+		List<ModelComparison.Candidate> all = new ArrayList<ModelComparison.Candidate>();
+		for(List<ModelComparison.Candidate> candidates : comparisons) {
+			all.addAll(candidates);
+		}
+		for(int i = 0; i<all.size(); i++) {
+			ModelComparison.Candidate c = all.get(i);
+			String nested = (c.getNestedModel() == null) ? "" : c.getNestedModel().name();
+			String error = c.isFitted() ? "" : c.getData().getErrorMessage().trim();
+			if(format.equals("json")) {
+				StringBuilder json = new StringBuilder("  {\"file\": ").append(Json.quote(c.getData().getFilePath()))
+						.append(", \"rank\": ").append(c.getRank())
+						.append(", \"model\": ").append(c.getModel().getValue())
+						.append(", \"name\": ").append(Json.quote(c.getModel().name()));
+				if(c.isFitted()) {
+					json.append(", \"params\": ").append(c.getNumParams())
+							.append(", \"points\": ").append(c.getNumPoints())
+							.append(", \"rss\": ").append(Json.number(c.getResidualSumSquares()))
+							.append(", \"aic\": ").append(Json.number(c.getAic()))
+							.append(", \"aicc\": ").append(Json.number(c.getAicc()))
+							.append(", \"bic\": ").append(Json.number(c.getBic()))
+							.append(", \"weight\": ").append(Json.number(c.getAkaikeWeight()))
+							.append(", \"nested\": ").append(nested.isEmpty() ? "null" : Json.quote(nested))
+							.append(", \"f\": ").append(Json.number(c.getFStatistic()))
+							.append(", \"p\": ").append(Json.number(c.getFPValue()));
+				}
+				else {
+					json.append(", \"error\": ").append(Json.quote(error));
+				}
+				out.println(json.append("}").append((i < all.size() - 1) ? "," : ""));
+			}
+			else if(c.isFitted()) {
+				out.println(String.join(separator, quote(c.getData().getFilePath(), separator), String.valueOf(c.getRank()),
+						String.valueOf(c.getModel().getValue()), c.getModel().name(), String.valueOf(c.getNumParams()),
+						String.valueOf(c.getNumPoints()), String.valueOf(c.getResidualSumSquares()), String.valueOf(c.getAic()),
+						String.valueOf(c.getAicc()), String.valueOf(c.getBic()), String.valueOf(c.getAkaikeWeight()), nested,
+						blankIfNaN(c.getFStatistic()), blankIfNaN(c.getFPValue()), ""));
+			}
+			else {
+				out.println(String.join(separator, quote(c.getData().getFilePath(), separator), "",
+						String.valueOf(c.getModel().getValue()), c.getModel().name(), "", "", "", "", "", "", "", "", "", "",
+						quote(error, separator)));
+			}
+		}
+		if(format.equals("json")) {
+			out.println("]");
+		}
+		out.flush();
+	}
+
+	/**
+	 * Writes the parameters of a rate equation fitted to each file: a value and standard error
+	 * column per parameter, then the residual sum of squares and degrees of freedom
+	 *
+	 * @param out - where to write the results
+	 * @param results - the fits of each file
+	 * @param format - "csv", "tsv" or "json"
+	 */
+	public static void writeCustom(PrintStream out, List<CustomModelFit.Result> results, String format) {
+		String separator = format.equals("tsv") ? "\t" : ",";
+		List<String> names = new ArrayList<String>();
+		for(CustomModelFit.Result result : results) {
+			if(result.isFitted()) {
+				names = result.getNames();
+				break;
+			}
+		}
+		if(format.equals("json")) {
+			out.println("[");
+		}
+		else if(format.matches("csv|tsv")) {
+			List<String> header = new ArrayList<String>();
+			header.add("file");
+			for(String name : names) {
+				header.add(name);
+				header.add("se" + name);
+			}
+			header.addAll(Arrays.asList("rss", "dof", "error"));
+			out.println(String.join(separator, header));
+		}
+		else {
+			throw new IllegalArgumentException("Unrecognised result format: " + format);
+		}
+
+		for(int i = 0; i<results.size(); i++) {
+			CustomModelFit.Result result = results.get(i);
+			String file = result.getData().getFilePath();
+			String error = result.getData().getErrorMessage().trim();
+			if(format.equals("json")) {
+				StringBuilder json = new StringBuilder("  {\"file\": ").append(Json.quote(file));
+				if(result.isFitted()) {
+					for(String name : names) {
+						json.append(", ").append(Json.quote(name)).append(": ").append(Json.number(result.getValue(name)))
+								.append(", ").append(Json.quote("se" + name)).append(": ").append(Json.number(result.getError(name)));
+					}
+					json.append(", \"rss\": ").append(Json.number(result.getResidualSumSquares()))
+							.append(", \"dof\": ").append(result.getDegreesOfFreedom());
+				}
+				else {
+					json.append(", \"error\": ").append(Json.quote(error));
+				}
+				out.println(json.append("}").append((i < results.size() - 1) ? "," : ""));
+			}
+			else {
+				List<String> row = new ArrayList<String>();
+				row.add(quote(file, separator));
+				for(String name : names) {
+					row.add(result.isFitted() ? String.valueOf(result.getValue(name)) : "");
+					row.add(result.isFitted() ? String.valueOf(result.getError(name)) : "");
+				}
+				row.add(result.isFitted() ? String.valueOf(result.getResidualSumSquares()) : "");
+				row.add(result.isFitted() ? String.valueOf(result.getDegreesOfFreedom()) : "");
+				row.add(quote(error, separator));
+				out.println(String.join(separator, row));
+			}
+		}
+		if(format.equals("json")) {
+			out.println("]");
+		}
+		out.flush();
+	}
+
+	/**
+	 * Writes a number for a table, leaving it blank if it is NaN
+	 *
+	 * @param value - the number
+	 * @return the value ready to write
+	 */
+	private static String blankIfNaN(double value) {
+		return Double.isNaN(value) ? "" : String.valueOf(value);
+	}
+
+	/**
+	 * Checks whether a data object was fitted successfully
+	 *
+	 * @param data - the data object
+	 * @return whether it has fitted parameters and no error
+	 */
+	private static boolean isFitted(Data data) {
+		return data.getErrorMessage().isEmpty() && data.getTextData() != null && !data.getTextData().isEmpty();
+	}
+
+	/**
+	 * Quotes a value for a table if it contains the separator, a quote or a new line
+	 *
+	 * @param value - the value (may be null)
+	 * @param separator - the string between values
+	 * @return the value ready to write
+	 */
+	private static String quote(String value, String separator) {
+		if(value == null) {
+			return "";
+		}
+		value = value.trim().replace("\n", "; ");
+		if(value.contains(separator) || value.contains("\"")) {
+			return "\"" + value.replace("\"", "\"\"") + "\"";
+		}
+		return value;
+	}
+}
@@ -7,6 +7,8 @@ import java.io.PrintStream;
 import java.util.List;
 
 import domain.Data;
+import domain.FlightEvents;
+import domain.Metrics;
 
 /**
  * This class is responsible for saving data objects to a file.
@@ -17,17 +19,29 @@ public abstract class Saving {
 	/**
 	 * Checks the end of the filepath and then calls the
 	 * method which corresponds to the correct saving
-	 * method
+	 * method. Only saves that succeed are recorded in
+	 * the metrics and flight recorder.
 	 * 
 	 * @param filePath - the place and name of the file 
 	 * @param data - the object to be saved to the file
 	 */
 	public static void save(String filePath, Data data) {
+		long start = System.nanoTime();
+		FlightEvents.Save event = new FlightEvents.Save();
+		event.begin();
+		boolean saved = false;
 		if(filePath.endsWith(".csv")) {
-			saveCsv(filePath, data);
+			saved = saveCsv(filePath, data);
 		}
 		else if (filePath.endsWith(".ktn")) {
-			savektn(filePath, data);
+			saved = savektn(filePath, data);
+		}
+		if(saved) {
+			long bytes = new File(filePath).length();
+			Metrics.recordSave(System.nanoTime() - start, bytes);
+			event.path = filePath;
+			event.bytes = bytes;
+			event.commit();
 		}
 	}
 	
@@ -38,8 +52,9 @@ public abstract class Saving {
 	 * 
 	 * @param filePath - the place and name of the file
 	 * @param data - the object to be saved to the file
+	 * @return whether the file was written
 	 */
-	public static void savektn(String filePath, Data data) {
+	public static boolean savektn(String filePath, Data data) {
 		File file = new File(filePath);
 		try {
 			//FileWriter writer = new FileWriter(file);
@@ -85,15 +100,26 @@ public abstract class Saving {
 				writer.println(s);
 			}
 			
+			boolean written = !writer.checkError();
 			writer.close();
+			return written;
 		} catch (IOException e) {
 			System.out.println("Saving failed");
 			e.printStackTrace();
+			return false;
 		}
 		
 	}
 
-	public static void saveCsv(String filePath, Data data) {
+	/**
+	 * Saves the data object to the given filepath as
+	 * comma separated values
+	 * 
+	 * @param filePath - the place and name of the file
+	 * @param data - the object to be saved to the file
+	 * @return whether the file was written
+	 */
+	public static boolean saveCsv(String filePath, Data data) {
 		String seperator = ",";
 		File file = new File(filePath);
 		try {
@@ -140,10 +166,13 @@ public abstract class Saving {
 				writer.println(s);
 			}
 
+			boolean written = !writer.checkError();
 			writer.close();
+			return written;
 		} catch (IOException e) {
 			System.out.println("Saving failed");
 			e.printStackTrace();
+			return false;
 		}
 
 	}
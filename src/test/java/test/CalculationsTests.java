@@ -1,14 +1,68 @@
 package test;
 
 import domain.Calculations;
+import domain.ConfidenceRegion;
+import domain.CustomModelFit;
 import domain.Data;
+import domain.DesignCriterion;
+import domain.Dual;
+import domain.ExperimentDesign;
+import domain.FitCache;
+import domain.FitInput;
+import domain.GlobalFit;
+import domain.GraphType;
+import domain.InitialRates;
+import domain.Integrator;
+import domain.KineticModel;
+import domain.LambertW;
+import domain.LevenbergMarquardt;
+import domain.LinearSolver;
+import domain.Mechanism;
+import domain.MechanismSimulator;
+import domain.Metrics;
+import domain.MetricsMXBean;
+import domain.ModelComparison;
+import domain.NormalEquations;
+import domain.Parallel;
+import domain.Point;
+import domain.ProgressCurveFit;
+import domain.ProgressCurves;
+import domain.RateExpression;
+import domain.RateMethod;
+import domain.RobustWeighting;
+import domain.StochasticSimulator;
+import domain.WeightingScheme;
 import org.junit.Assert;
 import org.junit.Test;
 import persistency.Loading;
+import persistency.Saving;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
 import java.math.BigDecimal;
 import java.math.MathContext;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.function.DoubleUnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.management.JMX;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import javax.management.ObjectName;
 
 
 /**
@@ -168,6 +222,930 @@ public class CalculationsTests {
         assertLessThan(0.0414, result.get("sekii"), 3);
     }
 
+    /**
+     * Checks that the curved lines of best fit pass through the fitted points of sim2.ktn, and that straight
+     * lines don't have a curve.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void graphCurveTest() throws Exception {
+        Data data = Loading.load("src/test/resources/sim2.ktn");
+        data.setGraphType(GraphType.VelocityVS);
+        Calculations.fit(data);
+
+        for (int line = 0; line < data.getGraphLine().size(); line++) {
+            DoubleUnaryOperator curve = Calculations.graphCurve(data, line);
+            for (Point p : data.getGraphLine().get(line)) {
+                Assert.assertEquals(p.getY(), curve.applyAsDouble(p.getX()), 1e-9);
+            }
+        }
+
+        data.setGraphType(GraphType.LineweaverBurke);
+        Calculations.fit(data);
+        Assert.assertNull(Calculations.graphCurve(data, 0));
+    }
+
+    /**
+     * Checks that refitting unchanged values with a different graph type uses the cache, gives the same graph as a
+     * full fit, and that stored results are found by a new cache using the same directory.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void fitCacheTest() throws Exception {
+        Path directory = Files.createTempDirectory("fitcache");
+        try {
+            checkFitCache(directory);
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Runs the checks of fitCacheTest, storing results in the given directory.
+     *
+     * @param directory directory to store results in
+     * @throws Exception if test fails
+     */
+    private void checkFitCache(Path directory) throws Exception {
+        FitCache cache = new FitCache(8, directory);
+        Data data = Loading.load("src/test/resources/sim4.ktn");
+        Calculations.fit(data, cache);
+        Assert.assertEquals(0, cache.getHits());
+
+        Data cached = Loading.load("src/test/resources/sim4.ktn");
+        cached.setGraphType(GraphType.LineweaverBurke);
+        Calculations.fit(cached, cache);
+        Data uncached = Loading.load("src/test/resources/sim4.ktn");
+        uncached.setGraphType(GraphType.LineweaverBurke);
+        Calculations.fit(uncached);
+
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(uncached.getTextData(), cached.getTextData());
+        for (int line = 0; line < uncached.getGraphLine().size(); line++) {
+            for (int i = 0; i < uncached.getGraphLine().get(line).size(); i++) {
+                Assert.assertEquals(uncached.getGraphLine().get(line).get(i).getY(),
+                        cached.getGraphLine().get(line).get(i).getY(), 1e-12);
+            }
+        }
+
+        // A changed value misses, and a new cache finds the stored result:
+        uncached.getTableData()[0][0] += 0.001;
+        Assert.assertNotEquals(FitCache.key(uncached), FitCache.key(cached));
+        FitCache reopened = new FitCache(8, directory);
+        Assert.assertNotNull(reopened.get(FitCache.key(cached)));
+
+        // A corrupt stored result is counted and missed, without printing anything:
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.filter(path -> path.toString().endsWith(".fit")).toArray(Path[]::new)) {
+                Files.write(path, "not a fit".getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        Metrics.registerMBean();
+        MetricsMXBean bean = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(),
+                new ObjectName(Metrics.OBJECT_NAME), MetricsMXBean.class);
+        long errors = bean.getCacheErrors();
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed));
+        try {
+            Assert.assertNull(new FitCache(8, directory).get(FitCache.key(cached)));
+        } finally {
+            System.setOut(stdout);
+        }
+        Assert.assertEquals(0, printed.size());
+        Assert.assertEquals(errors + 1, bean.getCacheErrors());
+    }
+
+    /**
+     * Checks that fits, loads and saves are counted and can be read over JMX, and that a save which writes nothing
+     * and an ordinary fit, which takes one pass, aren't counted as a save or as reaching the iteration limit.
+     */
+    @Test
+    public void metricsTest() throws Exception {
+        Metrics.registerMBean();
+        MetricsMXBean bean = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(),
+                new ObjectName(Metrics.OBJECT_NAME), MetricsMXBean.class);
+        long loads = bean.getLoadCount();
+        long fits = bean.getFitCounts().get(KineticModel.UninhibitedOneSub.name());
+        long limits = bean.getFitIterationLimitReached();
+        long saves = bean.getSaveCount();
+
+        Data data = Loading.load("src/test/resources/sim1.ktn");
+        Calculations.fit(data);
+        Path directory = Files.createTempDirectory("lucenz");
+        Saving.save(directory.resolve("unsupported.txt").toString(), data);
+        Files.delete(directory);
+
+        Assert.assertEquals(loads + 1, bean.getLoadCount());
+        Assert.assertEquals(fits + 1, (long) bean.getFitCounts().get(KineticModel.UninhibitedOneSub.name()));
+        Assert.assertEquals(limits, bean.getFitIterationLimitReached());
+        Assert.assertEquals(saves, bean.getSaveCount());
+        Assert.assertTrue(bean.dump().contains("lucenz_fit_UninhibitedOneSub_count"));
+    }
+
+    /**
+     * Checks that a robust fit ignores a bad well that pulls an ordinary fit well away from the true constants.
+     */
+    @Test
+    public void robustFitTest() throws Exception {
+        Data ordinary = Loading.load("src/test/resources/sim4.ktn");
+        ordinary.getTableData()[2][0] *= 2.5;
+        Calculations.fit(ordinary);
+        Assert.assertTrue(Math.abs(ordinary.getTextData().get("km") - 4.0) > 1.0);
+
+        for (RobustWeighting weighting : new RobustWeighting[]{RobustWeighting.Huber, RobustWeighting.Tukey, RobustWeighting.Cauchy}) {
+            Data robust = Loading.load("src/test/resources/sim4.ktn");
+            robust.getTableData()[2][0] *= 2.5;
+            robust.setRobustWeighting(weighting);
+            Calculations.fit(robust);
+            Assert.assertEquals(4.0, robust.getTextData().get("km"), 0.01);
+            Assert.assertEquals(5.0, robust.getTextData().get("vm"), 0.01);
+            Assert.assertEquals(2.0, robust.getTextData().get("kis"), 0.01);
+        }
+    }
+
+    /**
+     * Checks that every weighting scheme finds the constants of noise-free data, that the default is V squared,
+     * and that a custom scheme is used in place of it.
+     */
+    @Test
+    public void weightingSchemeTest() throws Exception {
+        Data original = Loading.load("src/test/resources/sim4.ktn");
+        Calculations.fit(original);
+        Data custom = Loading.load("src/test/resources/sim4.ktn");
+        custom.setWeightingScheme(WeightingScheme.custom("Squared", rate -> rate * rate));
+        Calculations.fit(custom);
+        Assert.assertEquals(original.getTextData(), custom.getTextData());
+
+        // Custom schemes with the same name don't share cached fits:
+        FitCache cache = new FitCache(8);
+        Calculations.fit(custom, cache);
+        Data sameName = Loading.load("src/test/resources/sim4.ktn");
+        sameName.setWeightingScheme(WeightingScheme.custom("Squared", rate -> 1.0));
+        Calculations.fit(sameName, cache);
+        Assert.assertEquals(0, cache.getHits());
+        Assert.assertNotEquals(custom.getTextData().get("sekm"), sameName.getTextData().get("sekm"));
+
+        for (WeightingScheme scheme : new WeightingScheme[]{WeightingScheme.UNIT, WeightingScheme.RATE_FOURTH}) {
+            Data data = Loading.load("src/test/resources/sim4.ktn");
+            data.setWeightingScheme(scheme);
+            Calculations.fit(data);
+            Assert.assertEquals(4.0, data.getTextData().get("km"), 0.01);
+            Assert.assertEquals(2.0, data.getTextData().get("kis"), 0.01);
+            Assert.assertNotEquals(original.getTextData().get("sekm"), data.getTextData().get("sekm"));
+        }
+
+        Data noReplicates = Loading.load("src/test/resources/sim4.ktn");
+        noReplicates.setWeightingScheme(WeightingScheme.REPLICATE_VARIANCE);
+        try {
+            Calculations.fit(noReplicates);
+            Assert.fail("Replicate weighting without replicates should fail");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Checks that replicate variance weighting gives a noisier pair of replicates less weight.
+     */
+    @Test
+    public void replicateVarianceTest() {
+        List<Double> substrate = Arrays.asList(1.0, 1.0, 4.0, 4.0, 16.0, 16.0);
+        double[][] rates = new double[substrate.size()][1];
+        double[] noise = {1.01, 0.99, 1.2, 0.8, 1.01, 0.99};
+        for (int row = 0; row < substrate.size(); row++) {
+            rates[row][0] = 5.0 * substrate.get(row) / (4.0 + substrate.get(row)) * noise[row];
+        }
+        Data data = new Data(substrate, rates);
+        data.setRows(substrate.size());
+        data.setCols(1);
+
+        double[][] weights = new double[substrate.size()][1];
+        WeightingScheme.REPLICATE_VARIANCE.weigh(data, weights);
+        double variance = Math.pow(rates[0][0] - rates[1][0], 2) / 2;
+        Assert.assertEquals(Math.pow(rates[0][0], 4) / variance, weights[0][0], 1e-9 * weights[0][0]);
+        Assert.assertTrue(weights[2][0] < weights[0][0] / 10);
+
+        data.setWeightingScheme(WeightingScheme.REPLICATE_VARIANCE);
+        Calculations.fit(data);
+        Assert.assertEquals(4.0, data.getTextData().get("km"), 0.1);
+    }
+
+    /**
+     * Checks that the blocked, unrolled normal equations match the cell-by-cell ones, including the cells left over
+     * after the last full block and unrolled step.
+     */
+    @Test
+    public void normalEquationsTest() {
+        Random random = new Random(42);
+        int cells = 1234;
+        for (int numParams = 2; numParams <= 4; numParams++) {
+            double[][] basis = new double[numParams + 1][cells];
+            double[] weights = new double[cells];
+            for (int cell = 0; cell < cells; cell++) {
+                for (int k = 0; k <= numParams; k++) basis[k][cell] = random.nextDouble() * 10 - 5;
+                weights[cell] = random.nextDouble();
+            }
+            double[][] unrolled = new double[10][11];
+            double[][] scalar = new double[10][11];
+            NormalEquations.accumulate(basis, weights, cells, numParams, unrolled);
+            NormalEquations.accumulateScalar(basis, weights, cells, numParams, scalar);
+            for (int k = 0; k < numParams; k++) {
+                for (int m = 0; m <= numParams; m++) {
+                    Assert.assertEquals(scalar[k][m], unrolled[k][m], 1e-12 * Math.abs(scalar[k][k]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that the Cholesky and QR solutions and inverses agree on a well-conditioned problem.
+     */
+    @Test
+    public void linearSolverTest() {
+        Random random = new Random(7);
+        int cells = 40;
+        for (int numParams = 2; numParams <= 4; numParams++) {
+            double[][] basis = new double[numParams + 1][cells];
+            double[] weights = new double[cells];
+            for (int cell = 0; cell < cells; cell++) {
+                for (int k = 0; k <= numParams; k++) basis[k][cell] = random.nextDouble() * 10 - 5;
+                weights[cell] = random.nextDouble() + 0.5;
+            }
+            double[][] S = new double[10][11];
+            NormalEquations.accumulate(basis, weights, cells, numParams, S);
+
+            double[] cholesky = new double[4];
+            double[][] choleskyInverse = new double[4][4];
+            double[] qr = new double[4];
+            double[][] qrInverse = new double[4][4];
+            double choleskyCondition = LinearSolver.cholesky(S, numParams, cholesky, choleskyInverse);
+            double qrCondition = LinearSolver.qr(basis, weights, cells, numParams, qr, qrInverse);
+            Assert.assertTrue(choleskyCondition < 100);
+            Assert.assertEquals(choleskyCondition, qrCondition, 1e-8 * choleskyCondition);
+            for (int k = 0; k < numParams; k++) {
+                Assert.assertEquals(cholesky[k], qr[k], 1e-10);
+                for (int m = 0; m < numParams; m++) {
+                    Assert.assertEquals(choleskyInverse[k][m], qrInverse[k][m], 1e-10);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that a fit reports its condition number, and fails when the inhibitor concentrations are all the same
+     * so the inhibition constant can't be found.
+     */
+    @Test
+    public void conditionTest() throws Exception {
+        Data data = Loading.load("src/test/resources/sim4.ktn");
+        Calculations.fit(data);
+        double condition = data.getTextData().get("cond");
+        Assert.assertTrue(condition >= 1 && condition < 1e4);
+
+        List<Double> substrate = Arrays.asList(0.5, 1.0, 2.0, 4.0, 8.0);
+        List<Double> inhibitor = Arrays.asList(1.0, 1.0, 1.0);
+        double[][] rates = new double[5][3];
+        for (int row = 0; row < 5; row++) {
+            for (int col = 0; col < 3; col++) {
+                double s = substrate.get(row);
+                rates[row][col] = 5 * s / (4 * (1 + 1.0 / 2) + s * (1 + 1.0 / 7)) * (1 + 0.001 * row * (col - 1));
+            }
+        }
+        Data collinear = new Data(substrate, inhibitor, rates);
+        collinear.setRows(5);
+        collinear.setCols(3);
+        collinear.setModelType(KineticModel.InhibitedNonCompetitive);
+        try {
+            Calculations.fit(collinear);
+            Assert.fail("Fitted a model the data can't determine");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("condition number"));
+        }
+    }
+
+    /**
+     * Checks the initial rates of progress curves whose rate decays exponentially: the linear rate is within the
+     * tolerance of the true rate and ends before the curve bends, the curved methods are within 5%, the parallel estimates match one at a time, and the
+     * rates fill the table in concentration per unit time.
+     */
+    @Test
+    public void initialRatesTest() {
+        List<String> wells = Arrays.asList("A1", "A2", "B1", "B2");
+        double[] initialRates = {0.002, -0.004, 0.006, 0.008};
+        ProgressCurves curves = new ProgressCurves(wells);
+        Random random = new Random(11);
+        double[] values = new double[wells.size()];
+        for (int reading = 0; reading < 1000; reading++) {
+            double time = reading * 6;
+            for (int well = 0; well < values.length; well++) {
+                double rateConstant = 0.0005 * (well + 1);
+                values[well] = 0.5 + initialRates[well] * -Math.expm1(-rateConstant * time) / rateConstant
+                        + 0.0005 * random.nextGaussian();
+            }
+            curves.add(time, values);
+        }
+
+        for (RateMethod method : RateMethod.values()) {
+            Map<String, InitialRates.Estimate> estimates = InitialRates.estimateAll(curves, method, InitialRates.DEFAULT_TOLERANCE, 3);
+            for (int well = 0; well < wells.size(); well++) {
+                InitialRates.Estimate estimate = estimates.get(wells.get(well));
+                double tolerance = (method == RateMethod.Linear) ? InitialRates.DEFAULT_TOLERANCE : 0.05;
+                Assert.assertEquals(initialRates[well], estimate.getRate(), tolerance * Math.abs(initialRates[well]));
+                Assert.assertTrue(estimate.getError() > 0 && estimate.getError() < 0.05 * Math.abs(initialRates[well]));
+                InitialRates.Estimate alone = InitialRates.estimate(curves.getTime(), curves.getSignal(well), curves.getCount(),
+                        method, InitialRates.DEFAULT_TOLERANCE);
+                Assert.assertEquals(alone.getRate(), estimate.getRate(), 0.0);
+                if (method == RateMethod.Linear) Assert.assertTrue(estimate.getPoints() < curves.getCount() / 2);
+            }
+        }
+
+        Map<String, InitialRates.Estimate> estimates = InitialRates.estimateAll(curves, RateMethod.Polynomial, InitialRates.DEFAULT_TOLERANCE, 1);
+        Data data = new Data(Arrays.asList(1.0, 2.0), Arrays.asList(0.0, 1.0, 2.0), new double[2][3]);
+        data.setRows(2);
+        data.setCols(3);
+        InitialRates.fill(data, estimates, new String[][]{{"A1", "A2", null}, {"B1", "B2", null}}, 2.0);
+        Assert.assertEquals(0.001, data.getTableData()[0][0], 0.0001);
+        Assert.assertEquals(0.002, data.getTableData()[0][1], 0.0002);
+        Assert.assertTrue(Double.isNaN(data.getTableData()[1][2]));
+    }
+
+    /**
+     * Checks that loads and fits are recorded as flight recorder events, including fits that fail.
+     */
+    @Test
+    public void flightEventsTest() throws Exception {
+        List<Double> substrate = Arrays.asList(0.5, 1.0, 2.0);
+        Data undetermined = new Data(substrate, Arrays.asList(1.0, 1.0), new double[][]{{1, 1}, {2, 2}, {3, 3}});
+        undetermined.setRows(3);
+        undetermined.setCols(2);
+        undetermined.setModelType(KineticModel.InhibitedNonCompetitive);
+
+        Path file = Files.createTempFile("lucenz", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("lucenz.Load");
+            recording.enable("lucenz.Fit");
+            recording.start();
+            Calculations.fit(Loading.load("src/test/resources/sim4.ktn"));
+            try {
+                Calculations.fit(undetermined);
+                Assert.fail("Fitted a model the data can't determine");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        RecordedEvent load = events.stream().filter(e -> e.getEventType().getName().equals("lucenz.Load")).findFirst().get();
+        Assert.assertEquals("src/test/resources/sim4.ktn", load.getString("path"));
+        Assert.assertEquals(Files.size(Path.of("src/test/resources/sim4.ktn")), load.getLong("bytes"));
+        List<RecordedEvent> fits = events.stream().filter(e -> e.getEventType().getName().equals("lucenz.Fit"))
+                .sorted(Comparator.comparing(RecordedEvent::getStartTime)).collect(Collectors.toList());
+        Assert.assertEquals(2, fits.size());
+        Assert.assertEquals(KineticModel.InhibitedCompetitive.name(), fits.get(0).getString("model"));
+        Assert.assertTrue(fits.get(0).getInt("iterations") >= 1);
+        Assert.assertNull(fits.get(0).getString("error"));
+        Assert.assertEquals(KineticModel.InhibitedNonCompetitive.name(), fits.get(1).getString("model"));
+        Assert.assertEquals(3, fits.get(1).getInt("rows"));
+        Assert.assertTrue(fits.get(1).getString("error").contains("condition number"));
+    }
+
+    /**
+     * Checks that a global fit of noise-free plates with different Vms finds each Vm and the shared constants, and
+     * outputs its errors, starting from each plate's own fit without fitting plates that have been fitted again.
+     */
+    @Test
+    public void globalFitTest() throws Exception {
+        double km = 4.0, kis = 2.0, kii = 7.0;
+        List<Double> substrate = Arrays.asList(0.5, 1.0, 2.0, 4.0, 8.0);
+        List<Double> inhibitor = Arrays.asList(0.0, 1.0, 3.0);
+        List<Data> plates = new ArrayList<>();
+        for (int p = 0; p < 40; p++) {
+            double vm = 3.0 + 0.1 * p;
+            double[][] rates = new double[substrate.size()][inhibitor.size()];
+            for (int row = 0; row < substrate.size(); row++) {
+                for (int col = 0; col < inhibitor.size(); col++) {
+                    double s = substrate.get(row), i = inhibitor.get(col);
+                    rates[row][col] = vm * s / (km * (1 + i / kis) + s * (1 + i / kii));
+                }
+            }
+            Data plate = new Data(substrate, inhibitor, rates);
+            plate.setRows(substrate.size());
+            plate.setCols(inhibitor.size());
+            plate.setModelType(KineticModel.InhibitedNonCompetitive);
+            plates.add(plate);
+        }
+
+        Calculations.fit(plates.get(0));
+        Metrics.registerMBean();
+        MetricsMXBean bean = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(),
+                new ObjectName(Metrics.OBJECT_NAME), MetricsMXBean.class);
+        long fits = bean.getFitCounts().get(KineticModel.InhibitedNonCompetitive.name());
+
+        GlobalFit.Result result = GlobalFit.fit(plates);
+        Assert.assertEquals(fits + plates.size() - 1, (long) bean.getFitCounts().get(KineticModel.InhibitedNonCompetitive.name()));
+        Assert.assertEquals(km, result.getShared("km"), 1e-6);
+        Assert.assertEquals(kis, result.getShared("kis"), 1e-6);
+        Assert.assertEquals(kii, result.getShared("kii"), 1e-6);
+        for (int p = 0; p < plates.size(); p++) {
+            Assert.assertEquals(3.0 + 0.1 * p, result.getVm(p), 1e-6);
+            Assert.assertEquals(3.0 + 0.1 * p, plates.get(p).getTextData().get("vm"), 1e-6);
+            Assert.assertEquals(km, plates.get(p).getTextData().get("km"), 1e-6);
+            Assert.assertEquals(0, plates.get(p).getTextData().get("wes"), 1e-12);
+            Assert.assertEquals(0, plates.get(p).getTextData().get("chis"), 1e-6);
+        }
+        Assert.assertFalse(plates.get(0).getGraphLine().isEmpty());
+    }
+
+    /**
+     * Checks that comparing every model on the non-competitive sim5.ktn ranks non-competitive inhibition first,
+     * with the two substrate models left out for having no co-substrate, and that the models are compared on the
+     * weighted reciprocal residuals their fits minimise.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void modelComparisonTest() throws Exception {
+        Data data = Loading.load("src/test/resources/sim5.ktn");
+        List<ModelComparison.Candidate> candidates = ModelComparison.compare(data);
+
+        Assert.assertEquals(KineticModel.values().length, candidates.size());
+        Assert.assertEquals(KineticModel.InhibitedNonCompetitive, candidates.get(0).getModel());
+        Assert.assertEquals(1, candidates.get(0).getRank());
+        Assert.assertTrue(candidates.get(0).getFPValue() < 0.001);
+        Assert.assertEquals(KineticModel.InhibitedCompetitive, candidates.get(0).getNestedModel());
+
+        double weights = 0;
+        for (ModelComparison.Candidate candidate : candidates) {
+            if (candidate.getModel() == KineticModel.UninhibitedTwoSubOrderedBiBi) {
+                Assert.assertFalse(candidate.isFitted());
+            }
+            if (candidate.isFitted()) weights += candidate.getAkaikeWeight();
+            if (!candidate.isFitted()) continue;
+
+            // The residual sum of squares is the one the fit minimised, so a model fits at least as well as the
+            // simpler one it extends:
+            double sumOfWeights = Arrays.stream(new FitInput(candidate.getData()).getWeights()).flatMapToDouble(Arrays::stream).sum();
+            Assert.assertEquals(candidate.getData().getTextData().get("wes") * sumOfWeights, candidate.getResidualSumSquares(),
+                    1e-9 * candidate.getResidualSumSquares());
+            for (ModelComparison.Candidate nested : candidates) {
+                if (nested.getModel() == candidate.getNestedModel()) {
+                    Assert.assertTrue(candidate.getResidualSumSquares() <= nested.getResidualSumSquares());
+                    Assert.assertTrue(candidate.getFStatistic() >= 0);
+                }
+            }
+        }
+        Assert.assertEquals(1.0, weights, 1e-9);
+        Assert.assertTrue(data.getTextData().isEmpty()); // the loaded data isn't fitted itself
+    }
+
+    /**
+     * Checks LambertW against its definition w e^w = x across the principal branch, and W(e^z) for large z.
+     */
+    @Test
+    public void lambertWTest() {
+        Assert.assertEquals(0, LambertW.w0(0), 0);
+        Assert.assertEquals(-1, LambertW.w0(LambertW.BRANCH_POINT), 0);
+        Assert.assertEquals(1, LambertW.w0(Math.E), 1e-15);
+        Assert.assertTrue(Double.isNaN(LambertW.w0(-0.5)));
+        for (double x = -0.3678; x < 1e6; x = (x < 1) ? x + 0.01 : x * 1.5) {
+            double w = LambertW.w0(x);
+            Assert.assertEquals(x, w * Math.exp(w), 1e-13 * Math.max(1, Math.abs(x)));
+        }
+        for (double z : new double[]{-5, 0, 19.9, 20, 100, 1e4}) {
+            double w = LambertW.w0Exp(z);
+            Assert.assertEquals(z, w + Math.log(w), 1e-13 * Math.max(1, z));
+        }
+    }
+
+    /**
+     * Checks that fitting progress curves made from the integrated rate law, with a baseline and noise added,
+     * recovers the constants they were made with, and that experiments that can't be fitted are reported.
+     */
+    @Test
+    public void progressCurveFitTest() {
+        double vm = 0.4, km = 1.5, kis = 2;
+        Random random = new Random(1);
+        List<ProgressCurveFit.Curve> curves = new ArrayList<>();
+        for (double inhibitor : new double[]{0, 1, 3}) {
+            for (double substrate : new double[]{0.5, 1, 2, 5}) {
+                double k = km * (1 + inhibitor / kis);
+                double[] time = new double[40];
+                double[] product = new double[40];
+                for (int i = 0; i < time.length; i++) {
+                    time[i] = i * 0.25;
+                    double z = Math.log(substrate / k) + (substrate - vm * time[i]) / k;
+                    product[i] = 0.1 + substrate - k * LambertW.w0Exp(z) + 0.002 * random.nextGaussian();
+                }
+                curves.add(new ProgressCurveFit.Curve(time, product, time.length, substrate, inhibitor));
+            }
+        }
+
+        ProgressCurveFit.Result result = ProgressCurveFit.fit(curves, KineticModel.InhibitedCompetitive);
+        Assert.assertEquals(Arrays.asList("vm", "km", "kis"), result.getNames());
+        Assert.assertEquals(vm, result.getValue("vm"), 3 * result.getError("vm"));
+        Assert.assertEquals(km, result.getValue("km"), 3 * result.getError("km"));
+        Assert.assertEquals(kis, result.getValue("kis"), 3 * result.getError("kis"));
+        Assert.assertEquals(40 * 12 - 12 - 3, result.getDegreesOfFreedom());
+
+        List<ProgressCurveFit.Result> results = ProgressCurveFit.fitAll(
+                Arrays.asList(curves, curves.subList(0, 1)), KineticModel.InhibitedCompetitive, 2);
+        Assert.assertEquals(result.getValue("km"), results.get(0).getValue("km"), 1e-12);
+        Assert.assertFalse(results.get(1).isFitted()); // one curve at one inhibitor concentration can't give kis
+    }
+
+    /**
+     * Checks that simulating a one substrate mechanism with little enzyme follows the integrated Michaelis-Menten
+     * equation, by either integrator, and that a grid simulated in parallel matches single simulations.
+     */
+    @Test
+    public void mechanismSimulatorTest() {
+        Map<String, Double> constants = new HashMap<>();
+        constants.put("vm", 0.4);
+        constants.put("km", 1.5);
+        constants.put("kis", 2.0);
+        Mechanism mechanism = new Mechanism(KineticModel.UninhibitedOneSub, constants, 1e-3, 1e4);
+        Assert.assertEquals(Arrays.asList("E", "S", "P", "ES"), mechanism.getSpecies());
+        double[] times = new double[20];
+        for (int i = 0; i < times.length; i++) times[i] = (i + 1) * 0.5;
+
+        double[][] product = new double[2][times.length];
+        for (Integrator integrator : Integrator.values()) {
+            MechanismSimulator simulator = new MechanismSimulator(mechanism, integrator, MechanismSimulator.DEFAULT_TOLERANCE);
+            simulator.simulate(2, 0, times, times.length, product[integrator.ordinal()]);
+            for (int i = 0; i < times.length; i++) {
+                double steadyState = 2 - 1.5 * LambertW.w0Exp(Math.log(2 / 1.5) + (2 - 0.4 * times[i]) / 1.5);
+                Assert.assertEquals(steadyState, product[integrator.ordinal()][i], 1e-3);
+            }
+            double[] state = simulator.getState();
+            Assert.assertEquals(1e-3, state[Mechanism.ENZYME] + state[3], 1e-12); // enzyme is conserved
+            Assert.assertEquals(2, state[Mechanism.SUBSTRATE] + state[Mechanism.PRODUCT] + state[3], 1e-9);
+        }
+        Assert.assertArrayEquals(product[0], product[1], 1e-5);
+
+        Mechanism inhibited = new Mechanism(KineticModel.InhibitedCompetitive, constants, 1e-3, 1e4);
+        double[] substrates = {0.5, 1, 2};
+        double[] inhibitors = {0, 1};
+        double[][][] grid = MechanismSimulator.simulateGrid(inhibited, Integrator.Rosenbrock,
+                MechanismSimulator.DEFAULT_TOLERANCE, substrates, inhibitors, times, 2);
+        MechanismSimulator simulator = new MechanismSimulator(inhibited, Integrator.Rosenbrock, MechanismSimulator.DEFAULT_TOLERANCE);
+        double[] single = new double[times.length];
+        simulator.simulate(2, 1, times, times.length, single);
+        Assert.assertArrayEquals(single, grid[2][1], 0);
+        Assert.assertTrue(grid[2][1][19] < grid[2][0][19]); // the inhibitor slows the reaction
+
+        try {
+            new Mechanism(KineticModel.UninhibitedOneSub, constants, 1e-3, 1); // binding slower than kcat / Km
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("binding"));
+        }
+    }
+
+    /**
+     * Checks that the mean of many stochastic trajectories follows the deterministic simulation, by single steps and
+     * by tau-leaping, that the distribution covers every trajectory, and that a seed gives the same result.
+     */
+    @Test
+    public void stochasticSimulatorTest() {
+        Map<String, Double> constants = new HashMap<>();
+        constants.put("vm", 0.4);
+        constants.put("km", 1.5);
+        double[] times = {0, 1, 2, 5, 10};
+        double[] deterministic = new double[times.length];
+
+        // One enzyme molecule and 200 substrate molecules, by single steps:
+        Mechanism lowCopy = new Mechanism(KineticModel.UninhibitedOneSub, constants, 0.01, 100);
+        new MechanismSimulator(lowCopy, Integrator.Rosenbrock, 1e-8).simulate(2, 0, times, times.length, deterministic);
+        StochasticSimulator.Ensemble ensemble = StochasticSimulator.simulateEnsemble(
+                lowCopy, 100, 0, 2, 0, times, Mechanism.PRODUCT, 400, 2, 42);
+        Assert.assertEquals(400, ensemble.getTrajectories());
+        Assert.assertEquals(0, ensemble.getMax(0));
+        for (int i = 1; i < times.length; i++) {
+            double standardError = Math.sqrt(ensemble.getVariance(i) / 400);
+            Assert.assertEquals(deterministic[i] * 100, ensemble.getMean(i), 4 * standardError);
+            Assert.assertEquals(400, Arrays.stream(ensemble.getHistogram(i)).sum());
+        }
+        StochasticSimulator.Ensemble repeat = StochasticSimulator.simulateEnsemble(
+                lowCopy, 100, 0, 2, 0, times, Mechanism.PRODUCT, 400, 2, 42);
+        Assert.assertTrue(Arrays.equals(ensemble.getHistogram(4), repeat.getHistogram(4)));
+
+        // 5000 enzyme molecules and 20000 substrate molecules, by tau-leaping:
+        Mechanism highCopy = new Mechanism(KineticModel.UninhibitedOneSub, constants, 0.5, 2);
+        new MechanismSimulator(highCopy, Integrator.Rosenbrock, 1e-8).simulate(2, 0, times, times.length, deterministic);
+        StochasticSimulator simulator = new StochasticSimulator(highCopy, 10000, 0.03);
+        long[] counts = new long[times.length];
+        simulator.simulate(new SplittableRandom(1), 2, 0, times, times.length, Mechanism.PRODUCT, counts);
+        Assert.assertTrue(simulator.getLeaps() > 0);
+        ensemble = StochasticSimulator.simulateEnsemble(highCopy, 10000, 0.03, 2, 0, times, Mechanism.PRODUCT, 100, 2, 1);
+        Assert.assertEquals(deterministic[4] * 10000, ensemble.getMean(4), 0.01 * deterministic[4] * 10000);
+    }
+
+    /**
+     * Checks that a rate equation gives the right rate and derivatives, and that a bad one says where it went wrong.
+     */
+    @Test
+    public void rateExpressionTest() {
+        RateExpression expression = RateExpression.parse("vm*[S]/(km*(1+[I]/kis)+[S]^2/ksi)");
+        Assert.assertEquals(Arrays.asList("vm", "km", "kis", "ksi"), expression.getParameters());
+        Assert.assertTrue(expression.usesCoSubInhib());
+        double[] params = {5, 4, 2, 10};
+        double denominator = 4 * (1 + 3 / 2.0) + 2 * 2 / 10.0;
+        Assert.assertEquals(5 * 2 / denominator, expression.rate(2, 3, params), 1e-12);
+
+        // Against central differences:
+        double[] gradient = new double[4];
+        expression.gradient(2, 3, params, gradient);
+        for (int p = 0; p < 4; p++) {
+            double h = 1e-6 * params[p];
+            double[] up = params.clone();
+            double[] down = params.clone();
+            up[p] += h;
+            down[p] -= h;
+            double difference = (expression.rate(2, 3, up) - expression.rate(2, 3, down)) / (2 * h);
+            Assert.assertEquals(difference, gradient[p], 1e-7);
+        }
+
+        for (String bad : new String[]{"vm*[S]/(km+[S]", "vm*[X]", "vm*[S]/km+", "2*3"}) {
+            try {
+                RateExpression.parse(bad);
+                Assert.fail("Parsed " + bad);
+            } catch (IllegalArgumentException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("rate equation"));
+            }
+        }
+    }
+
+    /**
+     * Checks that fitting the non-competitive rate law as an equation to sim5.ktn finds its constants.
+     */
+    @Test
+    public void customModelFitTest() throws Exception {
+        Data data = Loading.load("src/test/resources/sim5.ktn");
+        RateExpression expression = RateExpression.parse("vm*[S]/(km*(1+[I]/kis)+[S]*(1+[I]/kii))");
+        CustomModelFit.Result result = CustomModelFit.fit(data, expression, null);
+        Assert.assertTrue(result.isFitted());
+        Assert.assertEquals(5, result.getValue("vm"), 0.05);
+        Assert.assertEquals(4, result.getValue("km"), 0.05);
+        Assert.assertEquals(2, result.getValue("kis"), 0.05);
+        Assert.assertEquals(3, result.getValue("kii"), 0.1);
+        Assert.assertTrue(result.getError("km") > 0);
+        Assert.assertEquals(data.getRows() * data.getCols() - 4, result.getDegreesOfFreedom());
+
+        // Five parameters are too many:
+        List<CustomModelFit.Result> results = CustomModelFit.fitAll(Arrays.asList(data),
+                RateExpression.parse("vm*[S]/(km*(1+[I]/kis)+[S]*(1+[I]/kii))+c"), null, 1);
+        Assert.assertFalse(results.get(0).isFitted());
+    }
+
+    /**
+     * Checks dual number arithmetic against hand-worked derivatives, and that every model's rate laws on dual numbers
+     * give the same rates as the plain ones with derivatives matching central differences.
+     */
+    @Test
+    public void dualTest() {
+        // f = ln(x y) / sqrt(x) + e^y - 3 / y, at x = 2, y = 0.5:
+        Dual dual = new Dual(2, 16);
+        int x = dual.variable(2, 0);
+        int y = dual.variable(0.5, 1);
+        int f = dual.subtract(dual.add(dual.divide(dual.log(dual.multiply(x, y)), dual.sqrt(x)), dual.exp(y)), dual.divide(3.0, y));
+        Assert.assertEquals(Math.log(1) / Math.sqrt(2) + Math.exp(0.5) - 6, dual.value(f), 1e-12);
+        Assert.assertEquals(1 / (2 * Math.sqrt(2)) - Math.log(1) / (2 * Math.pow(2, 1.5)), dual.derivative(f, 0), 1e-12);
+        Assert.assertEquals(1 / (0.5 * Math.sqrt(2)) + Math.exp(0.5) + 3 / 0.25, dual.derivative(f, 1), 1e-12);
+        try {
+            for (int i = 0; i < 16; i++) dual.constant(i);
+            Assert.fail("Overfilled the workspace");
+        } catch (IllegalStateException e) {
+            dual.clear();
+            Assert.assertEquals(0, dual.constant(1));
+        }
+
+        double s = 1.7;
+        double c = 0.8;
+        for (KineticModel model : KineticModel.values()) {
+            int numShared = GlobalFit.sharedNames(model).size();
+            double[] k = Arrays.copyOf(new double[]{4, 2, 3}, numShared);
+
+            // The direct rate by Vm and each shared constant, in as many registers as its callers give it:
+            dual = new Dual(numShared + 1, GlobalFit.RATE_REGISTERS);
+            dual.clear();
+            int vm = dual.variable(5, 0);
+            for (int j = 0; j < numShared; j++) dual.variable(k[j], j + 1);
+            int v = GlobalFit.rate(dual, model, vm, vm + 1, s, c);
+            Assert.assertEquals(model.toString(), dual.value(v) / 5, dual.derivative(v, 0), 1e-12);
+            for (int j = 0; j < numShared; j++) {
+                double h = 1e-6 * k[j];
+                double[] up = k.clone();
+                double[] down = k.clone();
+                up[j] += h;
+                down[j] -= h;
+                double difference = (directRate(model, up, s, c) - directRate(model, down, s, c)) / (2 * h);
+                Assert.assertEquals(model.toString(), difference, dual.derivative(v, j + 1), 1e-8);
+            }
+            Assert.assertEquals(model.toString(), directRate(model, k, s, c), dual.value(v), 1e-12);
+
+            // The reciprocal rate, whose derivatives by its parameters are the design rows of the fit:
+            double[] par = {0.2, 0.8, 0.3, 0.5};
+            int numParams = (model == KineticModel.UninhibitedOneSub) ? 2 : numShared + 1;
+            dual = new Dual(numParams, 16);
+            int[] registers = new int[numParams];
+            for (int j = 0; j < numParams; j++) registers[j] = dual.variable(par[j], j);
+            int reciprocal = Calculations.reciprocalRate(dual, model, registers, 1 / s, c);
+            Assert.assertEquals(model.toString(), Calculations.reciprocalRate(model, par, 1 / s, c), dual.value(reciprocal), 1e-12);
+            for (int j = 0; j < numParams; j++) {
+                double[] up = par.clone();
+                up[j] += 1;
+                double difference = Calculations.reciprocalRate(model, up, 1 / s, c) - Calculations.reciprocalRate(model, par, 1 / s, c);
+                Assert.assertEquals(model.toString(), difference, dual.derivative(reciprocal, j), 1e-12);
+            }
+        }
+    }
+
+    /**
+     * Calculates a rate with Vm of 5 from the reciprocal parameters of the given constants.
+     *
+     * @param model kinetic model
+     * @param k shared constants, in the order of GlobalFit.sharedNames
+     * @param s substrate concentration
+     * @param c co-substrate or inhibitor concentration
+     * @return the rate
+     */
+    private static double directRate(KineticModel model, double[] k, double s, double c) {
+        Dual dual = new Dual(0, 16);
+        int vm = dual.constant(5);
+        for (double constant : k) dual.constant(constant);
+        return dual.value(GlobalFit.rate(dual, model, vm, vm + 1, s, c));
+    }
+
+    /**
+     * Checks the profile likelihood and joint confidence region of sim5.ktn's constants, and that refining the
+     * region's grid near its contour classifies the grid like fitting every point of it.
+     */
+    @Test
+    public void confidenceRegionTest() throws Exception {
+        Data data = Loading.load("src/test/resources/sim5.ktn");
+        ConfidenceRegion.Profile profile = ConfidenceRegion.profile(data, "km", 21, 2);
+        Assert.assertEquals(4, profile.getEstimate(), 0.05);
+        Assert.assertTrue(profile.getLower() < profile.getEstimate() && profile.getEstimate() < profile.getUpper());
+        Assert.assertEquals(0, Arrays.stream(profile.getDeltaChiSquare()).min().getAsDouble(), 0.1);
+        Assert.assertTrue(profile.getDeltaChiSquare()[0] > ConfidenceRegion.CHI_SQUARE_ONE);
+
+        ConfidenceRegion.Region refined = ConfidenceRegion.region(data, "vm", "km", 5, 3, 2);
+        ConfidenceRegion.Region full = ConfidenceRegion.region(data, "vm", "km", 33, 0, 2);
+        Assert.assertEquals(33, refined.getX().length);
+        Assert.assertTrue(refined.getFits() < 33 * 33 / 2);
+        Assert.assertEquals(33 * 33, full.getFits());
+        Assert.assertEquals(0, refined.deltaChiSquareAt(refined.getXEstimate(), refined.getYEstimate()), 0.5);
+        Assert.assertTrue(Double.isNaN(refined.deltaChiSquareAt(0, 0)));
+        int disagreements = 0;
+        for (int i = 0; i < 33; i++) {
+            for (int j = 0; j < 33; j++) {
+                boolean inRefined = refined.getDeltaChiSquare()[i][j] < refined.getThreshold();
+                boolean inFull = full.getDeltaChiSquare()[i][j] < full.getThreshold();
+                if (inRefined != inFull) disagreements++;
+            }
+        }
+        Assert.assertTrue("Disagreements: " + disagreements, disagreements <= 5);
+
+        try {
+            ConfidenceRegion.region(data, "vm", "ka", 5, 1, 1);
+            Assert.fail("Found a region of a constant the model hasn't got");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("ka"));
+        }
+    }
+
+    /**
+     * Checks that the shared Levenberg-Marquardt solver fits an exponential decay, and that work spread over threads
+     * covers every piece once and passes on invalid input.
+     */
+    @Test
+    public void levenbergMarquardtTest() {
+        double[] t = {0, 1, 2, 3, 4, 5};
+        double[] y = new double[t.length];
+        for (int i = 0; i < t.length; i++) y[i] = 3 * Math.exp(-0.7 * t[i]);
+        LevenbergMarquardt.DenseProblem decay = new LevenbergMarquardt.DenseProblem(2) {
+            @Override
+            public double normalEquations(double[] p) {
+                for (double[] row : normal) Arrays.fill(row, 0);
+                double ssr = 0;
+                for (int i = 0; i < t.length; i++) {
+                    double e = Math.exp(-p[1] * t[i]);
+                    double r = y[i] - p[0] * e;
+                    double[] g = {e, -p[0] * t[i] * e};
+                    ssr += r * r;
+                    for (int j = 0; j < 2; j++) {
+                        normal[j][2] += g[j] * r;
+                        for (int l = 0; l < 2; l++) normal[j][l] += g[j] * g[l];
+                    }
+                }
+                return ssr;
+            }
+
+            @Override
+            public double residualSumSquares(double[] p) {
+                double ssr = 0;
+                for (int i = 0; i < t.length; i++) ssr += Math.pow(y[i] - p[0] * Math.exp(-p[1] * t[i]), 2);
+                return ssr;
+            }
+        };
+        double[] params = {1, 0.1};
+        LevenbergMarquardt.Result result = LevenbergMarquardt.minimise(decay, params, LevenbergMarquardt.MAX_ITERATIONS);
+        Assert.assertEquals(3, params[0], 1e-8);
+        Assert.assertEquals(0.7, params[1], 1e-8);
+        Assert.assertTrue(result.getResidualSumSquares() < 1e-20);
+        Assert.assertTrue(result.getIterations() < LevenbergMarquardt.MAX_ITERATIONS);
+
+        int[] done = new int[1000];
+        Parallel.run(done.length, 4, "Counting", (chunk, chunks) -> {
+            for (int i = chunk; i < done.length; i += chunks) done[i]++;
+        });
+        for (int count : done) Assert.assertEquals(1, count);
+        try {
+            Parallel.run(10, 3, "Checking", (chunk, chunks) -> {
+                throw new IllegalArgumentException("bad input");
+            });
+            Assert.fail("Lost an invalid input");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("bad input", e.getMessage());
+        }
+    }
+
+    /**
+     * Checks that searching for a design beats an evenly spread one, that trying every design gives the same best
+     * design on any number of threads, and that invalid priors and weightings are refused.
+     */
+    @Test
+    public void designTest() {
+        Map<String, Double> prior = new HashMap<>();
+        prior.put("vm", 5.0);
+        prior.put("km", 4.0);
+        prior.put("kis", 2.0);
+        prior.put("kii", 3.0);
+        double[] substrate = new double[12];
+        for (int i = 0; i < substrate.length; i++) substrate[i] = 0.5 * Math.pow(1.5, i);
+        double[] inhibitor = new double[10];
+        for (int i = 0; i < inhibitor.length; i++) inhibitor[i] = 0.5 * i;
+        KineticModel model = KineticModel.InhibitedNonCompetitive;
+
+        // Too many designs to try them all, so found by exchanges:
+        ExperimentDesign.Design exchanged = ExperimentDesign.optimise(model, prior, WeightingScheme.RATE_SQUARED,
+                DesignCriterion.DOptimal, substrate, 5, inhibitor, 4, 2);
+        ExperimentDesign.Design spread = ExperimentDesign.evaluate(model, prior, WeightingScheme.RATE_SQUARED,
+                DesignCriterion.DOptimal, new double[]{substrate[0], substrate[3], substrate[6], substrate[8], substrate[11]},
+                new double[]{0, 1.5, 3, 4.5});
+        Assert.assertEquals(5, exchanged.getSubstrate().length);
+        Assert.assertEquals(4, exchanged.getCoSubInhib().length);
+        Assert.assertTrue(exchanged.getCriterion() < spread.getCriterion());
+        Assert.assertTrue(exchanged.getEvaluated() < 792 * 210);
+
+        // Few enough to try them all, on one thread or several:
+        double[] fewSubstrate = Arrays.copyOf(substrate, 8);
+        double[] fewInhibitor = Arrays.copyOf(inhibitor, 8);
+        ExperimentDesign.Design one = ExperimentDesign.optimise(model, prior, WeightingScheme.RATE_SQUARED,
+                DesignCriterion.EOptimal, fewSubstrate, 4, fewInhibitor, 3, 1);
+        ExperimentDesign.Design several = ExperimentDesign.optimise(model, prior, WeightingScheme.RATE_SQUARED,
+                DesignCriterion.EOptimal, fewSubstrate, 4, fewInhibitor, 3, 4);
+        Assert.assertEquals(70 * 56, one.getEvaluated());
+        Assert.assertEquals(one.getCriterion(), several.getCriterion(), 0);
+        Assert.assertTrue(Arrays.equals(one.getSubstrate(), several.getSubstrate()));
+        Assert.assertTrue(Arrays.equals(one.getCoSubInhib(), several.getCoSubInhib()));
+        // The largest eigenvalue of the covariance bounds each variance:
+        for (String name : one.getNames()) {
+            double error = one.getRelativeError(name);
+            Assert.assertTrue(error * error <= one.getCriterion() * (1 + 1e-9));
+        }
+
+        // One substrate has no inhibitor, and needs the highest concentration to pin down Vm:
+        ExperimentDesign.Design oneSub = ExperimentDesign.optimise(KineticModel.UninhibitedOneSub, prior,
+                WeightingScheme.RATE_SQUARED, DesignCriterion.DOptimal, substrate, 4, null, 0, 2);
+        Assert.assertEquals(0, oneSub.getCoSubInhib().length);
+        Assert.assertEquals(substrate[11], oneSub.getSubstrate()[3], 0);
+
+        try {
+            ExperimentDesign.optimise(model, prior, WeightingScheme.REPLICATE_VARIANCE, DesignCriterion.DOptimal,
+                    substrate, 5, inhibitor, 4, 1);
+            Assert.fail("Designed for replicates that haven't been measured");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("replicates"));
+        }
+        prior.remove("kii");
+        try {
+            ExperimentDesign.optimise(model, prior, WeightingScheme.RATE_SQUARED, DesignCriterion.DOptimal,
+                    substrate, 5, inhibitor, 4, 1);
+            Assert.fail("Designed without a prior for every constant");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("kii"));
+        }
+    }
+
     /**
      * Asserts that the actual value is less than the expected value.
      *
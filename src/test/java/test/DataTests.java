@@ -1,6 +1,7 @@
 package test;
 
 import domain.Data;
+import domain.KineticModel;
 import domain.Main;
 import gui.DisplayGui;
 import gui.DummyGui;
@@ -13,6 +14,7 @@ import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class DataTests {
 
@@ -68,4 +70,18 @@ public class DataTests {
 
 
     }
+
+    @Test
+    public void test_kineticModelParse(){
+        assertEquals(KineticModel.InhibitedNonCompetitive, KineticModel.parse("5"));
+        assertEquals(KineticModel.InhibitedNonCompetitive, KineticModel.parse(" inhibitednoncompetitive "));
+        for (String value : new String[]{"7", "Competitive", ""}) {
+            try {
+                KineticModel.parse(value);
+                fail("Parsed " + value);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
 }
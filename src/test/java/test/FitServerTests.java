@@ -0,0 +1,93 @@
+package test;
+
+import domain.FitCache;
+import domain.FitServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import persistency.Json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FitServerTests {
+
+    private FitServer server;
+
+    @Before
+    public void startServer() throws IOException {
+        server = new FitServer(new InetSocketAddress("127.0.0.1", 0), 2, 8, new FitCache(16));
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop();
+    }
+
+    /**
+     * Posts a body to the server.
+     *
+     * @param path path and query
+     * @param body request body
+     * @return status code, then response body
+     */
+    private String[] post(String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = connection.getResponseCode();
+        try (InputStream in = (status < 400) ? connection.getInputStream() : connection.getErrorStream()) {
+            return new String[]{String.valueOf(status), new String(in.readAllBytes(), StandardCharsets.UTF_8)};
+        }
+    }
+
+    @Test
+    public void fitKtnTest() throws IOException {
+        String[] response = post("/fit?format=ktn&name=sim1", Files.readString(Path.of("src/test/resources/sim1.ktn")));
+        assertEquals("200", response[0]);
+
+        Map<?, ?> result = (Map<?, ?>) Json.parse(response[1]);
+        assertEquals("sim1", result.get("file"));
+        assertEquals(4.99, (Double) result.get("vm"), 0.01);
+        assertTrue(!result.containsKey("lines"));
+    }
+
+    @Test
+    public void fitJsonWithPointsTest() throws IOException {
+        String body = "{\"model\": \"UninhibitedOneSub\", \"substrate\": [0.333, 0.933, 1.533, 2.133],"
+                + " \"rates\": [[0.3843], [0.9457], [1.3853], [1.6296]]}";
+        String[] response = post("/fit?format=json&graphType=LineweaverBurke&points=true", body);
+        assertEquals("200", response[0]);
+
+        Map<?, ?> result = (Map<?, ?>) Json.parse(response[1]);
+        assertEquals("LineweaverBurke", result.get("graphType"));
+        assertEquals(4, ((List<?>) ((List<?>) result.get("points")).get(0)).size());
+        assertEquals(1, ((List<?>) result.get("lines")).size());
+    }
+
+    @Test
+    public void invalidDatasetTest() throws IOException {
+        assertEquals("400", post("/fit?format=json", "{\"model\": 9}")[0]);
+        assertEquals("400", post("/fit?format=ktn", "not a dataset")[0]);
+
+        String metrics = server.getMetrics();
+        assertTrue(metrics.contains("lucenz_request_latency_count 2"));
+        assertTrue(metrics.contains("lucenz_requests_failed 2"));
+    }
+}
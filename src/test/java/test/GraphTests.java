@@ -0,0 +1,226 @@
+package test;
+
+import domain.Calculations;
+import domain.Data;
+import domain.Point;
+import gui.DensityRaster;
+import gui.GraphCanvas;
+import gui.GraphExporter;
+import gui.GraphRenderer;
+import gui.GraphTransform;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import persistency.Loading;
+
+import javax.imageio.ImageIO;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Tests for drawing graphs: the transform from data to screen coordinates, the renderer's culling and clipping
+ * of a zoomed view, the density raster for overlays, and exporting graphs to files without a window.
+ */
+public class GraphTests {
+
+    /**
+     * Checks that line segments are clipped to a zoomed view, segments and points outside it are culled, and
+     * segments with undefined or infinite ends are skipped rather than clipped forever.
+     */
+    @Test
+    public void clippingTest() {
+        // 400 x 400 showing 0 to 10 on both axes, so the graph spans 50 to 350 on screen at 30 pixels per unit:
+        GraphTransform transform = new GraphTransform(400, 400, 0, 10, 0, 10);
+        Assert.assertFalse(transform.isFitted());
+        Assert.assertEquals(200, transform.toScreenX(5), 1e-9);
+        Assert.assertEquals(200, transform.toScreenY(5), 1e-9);
+
+        List<List<Point>> lines = new ArrayList<>();
+        lines.add(Arrays.asList(new Point(1, 1), new Point(2, 2))); // inside
+        lines.add(Arrays.asList(new Point(-10, 5), new Point(5, 5))); // crosses the left edge
+        lines.add(Arrays.asList(new Point(-5, -5), new Point(15, 15))); // crosses two corners
+        lines.add(Arrays.asList(new Point(20, 20), new Point(30, 30))); // outside
+        lines.add(Arrays.asList(new Point(-5, 20), new Point(-1, 30))); // outside, to the left and above
+        lines.add(Arrays.asList(new Point(Double.NaN, 5), new Point(5, 5))); // undefined
+        lines.add(Arrays.asList(new Point(5, 5), new Point(5, Double.POSITIVE_INFINITY))); // infinite
+        List<List<Point>> points = Collections.singletonList(Arrays.asList(new Point(5, 5), new Point(50, 50)));
+        RecordingCanvas canvas = new RecordingCanvas();
+        new GraphRenderer(lines, points, "", "").renderData(canvas, transform);
+
+        Assert.assertEquals(Arrays.asList(
+                Arrays.asList(80, 320, 110, 290),
+                Arrays.asList(50, 200, 200, 200),
+                Arrays.asList(50, 350, 350, 50)), canvas.lines);
+        Assert.assertEquals(1, canvas.shapes); // only the point inside
+    }
+
+    /**
+     * Checks that labels of a zoomed view are rounded to their spacing and use a '.' whatever the default locale.
+     */
+    @Test
+    public void labelTest() {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            GraphTransform transform = new GraphTransform(400, 400, 0, 1, 0, 1);
+            double[] labels = transform.getXLabels();
+            Assert.assertEquals("0.5", transform.formatLabel(0.5000000001, labels));
+            Assert.assertEquals("0.0", transform.formatLabel(-0.0, labels));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    /**
+     * Checks that the density raster adds up the weight of every line and point covering each pixel once, clips
+     * what's off the buffer, and tone-maps heavier pixels to more opaque ones.
+     */
+    @Test
+    public void densityRasterTest() {
+        DensityRaster raster = new DensityRaster(10, 5);
+        raster.addLine(0, 2, 9, 2, 1f); // across the middle row
+        raster.addLine(4, 0, 4, 4, 0.5f); // down the middle column
+        raster.addLine(-100, 2, 100, 2, 1f); // clipped to the middle row
+        raster.addLine(-5, -5, -1, -1, 1f); // off the buffer
+        raster.addLine(1, 4, 3.4, 1.6, 0.25f); // diagonal
+        raster.addLine(Double.NaN, 0, 5, 0, 1f); // undefined
+        for (int x = 0; x < 10; x++) {
+            Assert.assertEquals("x = " + x, (x == 4) ? 2.5f : (x == 3) ? 2.25f : 2f, raster.get(x, 2), 1e-6f);
+        }
+        Assert.assertEquals(0.5f, raster.get(4, 0), 1e-6f);
+        Assert.assertEquals(0f, raster.get(3, 0), 0f);
+        Assert.assertEquals(0f, raster.get(-1, 2), 0f); // outside
+        Assert.assertEquals(0.25f, raster.get(1, 4), 0f);
+        Assert.assertEquals(0.25f, raster.get(2, 3), 0f);
+        Assert.assertEquals(0f, raster.get(1, 3), 0f);
+
+        // A point covers a square, clipped at the edge:
+        raster.addPoint(0, 0, 1, 3f);
+        Assert.assertEquals(3f, raster.get(0, 0), 1e-6f);
+        Assert.assertEquals(3f, raster.get(1, 1), 1e-6f);
+        Assert.assertEquals(0f, raster.get(2, 0), 0f);
+        raster.addPoint(Double.NaN, 0, 1, 3f);
+        raster.addPoint(50, 50, 1, 3f);
+
+        // Buffers drawn separately (e.g. on other threads) add up to the same weights:
+        DensityRaster other = new DensityRaster(10, 5);
+        other.addLine(0, 2, 9, 2, 1f);
+        raster.add(other);
+        Assert.assertEquals(3.5f, raster.get(4, 2), 1e-6f);
+        try {
+            raster.add(new DensityRaster(5, 10));
+            Assert.fail("Added buffers of different sizes");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        BufferedImage image = raster.toImage(Color.BLUE);
+        int heavy = image.getRGB(4, 2) >>> 24;
+        int light = image.getRGB(4, 0) >>> 24;
+        Assert.assertEquals(255, heavy);
+        Assert.assertTrue(light > 0 && light < heavy);
+        Assert.assertEquals(0, image.getRGB(3, 0) >>> 24); // uncovered pixels are transparent
+        Assert.assertEquals(0x0000FF, image.getRGB(4, 2) & 0xFFFFFF);
+
+        raster.clear();
+        Assert.assertEquals(0f, raster.get(4, 2), 0f);
+    }
+
+    /**
+     * Checks that graphs export to well-formed SVG documents and readable PNG images, one file per dataset even
+     * when datasets come from files with the same name.
+     */
+    @Test
+    public void exportTest() throws Exception {
+        Path directory = Files.createTempDirectory("lucenzgraphs");
+        try {
+            List<Data> datasets = new ArrayList<>();
+            for (String path : new String[] {"plates/sim1_3.ktn", "sim1.ktn", "other/sim1.ktn", "SIM1.ktn"}) {
+                Data data = Loading.load("src/test/resources/sim1.ktn");
+                Calculations.fit(data);
+                data.setFilePath(path);
+                datasets.add(data);
+            }
+
+            List<Path> svgs = GraphExporter.exportAll(datasets, "S", directory, "svg", 400, 300, 1, 2);
+            Assert.assertEquals(Arrays.asList("sim1_3.svg", "sim1.svg", "sim1_2.svg", "SIM1_4.svg"),
+                    Arrays.asList(svgs.stream().map(file -> file.getFileName().toString()).toArray()));
+            for (Path svg : svgs) {
+                Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(svg.toFile());
+                Assert.assertEquals("svg", document.getDocumentElement().getNodeName());
+                Assert.assertEquals("400", document.getDocumentElement().getAttribute("width"));
+                Assert.assertTrue(document.getElementsByTagName("line").getLength() > 0);
+                Assert.assertTrue(document.getElementsByTagName("text").getLength() > 0);
+            }
+
+            List<Path> pngs = GraphExporter.exportAll(datasets.subList(0, 1), "S", directory, "png", 400, 300, 2, 1);
+            BufferedImage image = ImageIO.read(pngs.get(0).toFile());
+            Assert.assertEquals(800, image.getWidth());
+            Assert.assertEquals(600, image.getHeight());
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * A canvas that records the lines drawn and counts the other shapes.
+     */
+    private static class RecordingCanvas implements GraphCanvas {
+        private final List<List<Integer>> lines = new ArrayList<>();
+        private int shapes = 0;
+
+        @Override
+        public void setColor(Color color) {
+        }
+
+        @Override
+        public void setStrokeWidth(float width) {
+        }
+
+        @Override
+        public void fillRect(int x, int y, int width, int height) {
+            shapes++;
+        }
+
+        @Override
+        public void drawLine(int x0, int y0, int x1, int y1) {
+            lines.add(Arrays.asList(x0, y0, x1, y1));
+        }
+
+        @Override
+        public void drawOval(int x, int y, int width, int height) {
+            shapes++;
+        }
+
+        @Override
+        public void fillOval(int x, int y, int width, int height) {
+            shapes++;
+        }
+
+        @Override
+        public void drawPolygon(int[] xPoints, int[] yPoints, int numPoints) {
+            shapes++;
+        }
+
+        @Override
+        public void fillPolygon(int[] xPoints, int[] yPoints, int numPoints) {
+            shapes++;
+        }
+
+        @Override
+        public void drawStringCentered(String text, double x, double y) {
+        }
+    }
+}
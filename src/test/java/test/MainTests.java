@@ -1,5 +1,125 @@
 package test;
 
+import domain.BatchRunner;
+import domain.Data;
+import domain.GraphType;
+import domain.Main;
+import gui.DummyGui;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
 public class MainTests {
 
+    @Test
+    public void test_loadOverlayData(){
+        Main main = new Main();
+        main.setGui(new DummyGui(main));
+
+        main.loadOverlayData(Arrays.asList("src/test/resources/sim1.ktn", "src/test/resources/sim2.ktn",
+                "src/test/resources/missing.ktn"), GraphType.LineweaverBurke);
+
+        // The missing file is left out, and the rest are fitted:
+        assertEquals(2, main.getOverlayData().size());
+        for (Data data : main.getOverlayData()) {
+            assertEquals(GraphType.LineweaverBurke, data.getGraphType());
+            assertNotNull(data.getGraphLine());
+            assertNotNull(data.getTextData().get("vm"));
+        }
+
+        main.clearOverlayData();
+        assertTrue(main.getOverlayData().isEmpty());
+    }
+
+    @Test
+    public void test_batchRunner(){
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int exitCode = BatchRunner.run(new String[]{"src/test/resources/sim[14].ktn", "--threads", "2"},
+                new PrintStream(out), new PrintStream(err));
+        assertEquals(BatchRunner.EXIT_OK, exitCode);
+
+        // A header row, then one row per file in name order:
+        String[] lines = out.toString().trim().split("\\R");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("file,model,vm,"));
+        assertTrue(lines[0].endsWith(",wes,chis,cond,error"));
+        assertTrue(lines[1].startsWith("src/test/resources/sim1.ktn,1,4.99"));
+        assertTrue(lines[2].startsWith("src/test/resources/sim4.ktn,4,5.00"));
+
+        assertEquals(BatchRunner.EXIT_USAGE, BatchRunner.run(new String[]{"--threads", "0", "x.ktn"},
+                new PrintStream(out), new PrintStream(err)));
+    }
+
+    @Test
+    public void test_batchRunnerEquation(){
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int exitCode = BatchRunner.run(new String[]{"src/test/resources/sim5.ktn", "--equation",
+                "vm*[S]/(km*(1+[I]/kis)+[S]*(1+[I]/kii))"}, new PrintStream(out), new PrintStream(err));
+        assertEquals(err.toString(), BatchRunner.EXIT_OK, exitCode);
+
+        String[] lines = out.toString().trim().split("\\R");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("file,vm,sevm,km,sekm,kis,sekis,kii,sekii,rss,dof"));
+        assertTrue(lines[1], lines[1].startsWith("src/test/resources/sim5.ktn,5.00"));
+
+        assertEquals(BatchRunner.EXIT_USAGE, BatchRunner.run(new String[]{"--equation", "vm*[S]/(km+", "x.ktn"},
+                new PrintStream(out), new PrintStream(err)));
+        assertEquals(BatchRunner.EXIT_USAGE, BatchRunner.run(new String[]{"--equation", "vm*[S]/(km+[S])", "--compare", "x.ktn"},
+                new PrintStream(out), new PrintStream(err)));
+
+        // Only model fits export graphs, so asking the other modes for them is an error rather than ignored:
+        assertEquals(BatchRunner.EXIT_USAGE, BatchRunner.run(new String[]{"--equation", "vm*[S]/(km+[S])", "--graphs", "svg", "x.ktn"},
+                new PrintStream(out), new PrintStream(err)));
+        assertEquals(BatchRunner.EXIT_USAGE, BatchRunner.run(new String[]{"--compare", "--graphs", "png", "x.ktn"},
+                new PrintStream(out), new PrintStream(err)));
+    }
+
+    @Test
+    public void test_batchRunnerPlates() throws Exception {
+        Path layout = Files.createTempFile("layout", ".csv");
+        Path plate = Files.createTempFile("plate", ".csv");
+        try {
+            // Duplicates of five substrate concentrations down columns 1-5, and blanks in column 12:
+            double[] substrate = {0.5, 1, 2, 4, 8};
+            StringBuilder layoutText = new StringBuilder("well,dataset,substrate,cosubinhib,role\n");
+            StringBuilder plateText = new StringBuilder("Plate 1\n,1,2,3,4,5,6,7,8,9,10,11,12\n");
+            for (int col = 0; col < substrate.length; col++) {
+                layoutText.append("A").append(col + 1).append(":B").append(col + 1).append(",enzyme,").append(substrate[col]).append(",,\n");
+            }
+            layoutText.append("A12:B12,enzyme,,,blank\n");
+            for (String row : new String[]{"A", "B"}) {
+                plateText.append(row);
+                for (int col = 0; col < 12; col++) {
+                    double rate = (col < substrate.length) ? 5 * substrate[col] / (4 + substrate[col]) : 0;
+                    plateText.append(',').append((col < substrate.length || col == 11) ? String.valueOf(rate + 0.1) : "");
+                }
+                plateText.append('\n');
+            }
+            Files.writeString(layout, layoutText);
+            Files.writeString(plate, plateText);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            int exitCode = BatchRunner.run(new String[]{plate.toString(), "--layout", layout.toString()},
+                    new PrintStream(out), new PrintStream(err));
+            assertEquals(err.toString(), BatchRunner.EXIT_OK, exitCode);
+
+            String[] lines = out.toString().trim().split("\\R");
+            assertEquals(2, lines.length);
+            assertTrue(lines[1], lines[1].startsWith(plate + "#enzyme,1,5.00"));
+        } finally {
+            Files.deleteIfExists(layout);
+            Files.deleteIfExists(plate);
+        }
+    }
 }
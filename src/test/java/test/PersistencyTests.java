@@ -3,13 +3,20 @@ package test;
 import domain.Data;
 import domain.KineticModel;
 import org.junit.Test;
+import domain.PlateLayout;
+import domain.ProgressCurves;
+import domain.RateMethod;
 import persistency.Loading;
+import persistency.PlateImporter;
 import persistency.Saving;
 
+import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class PersistencyTests {
 
@@ -1105,4 +1112,139 @@ public class PersistencyTests {
     	}
     }
     
+
+    /**
+     * Testing reading progress curves from a plate reader export,
+     * with settings before the header, a temperature column, h:mm:ss times and an overflowed reading
+     */
+    @Test
+    public void loadProgressCurvesTest() {
+        String export = String.join("\n",
+                "Software Version\t3.11",
+                "Read\tKinetic",
+                "",
+                "Time\tT\u00b0 340\tA01\tA2\tB12",
+                "0:00:00\t25.0\t0.100\t0.200\t0.300",
+                "0:00:30\t25.1\t0.110\tOVRFLW\t0.290",
+                "0:01:00\t25.1\t0.120\t0.220\t",
+                "",
+                "Results");
+        ProgressCurves curves = Loading.parseProgressCurves(export);
+
+        assertEquals(List.of("A1", "A2", "B12"), curves.getWells());
+        assertEquals(3, curves.getCount());
+        assertEquals(30, curves.getTime()[1], 0.0);
+        assertEquals(60, curves.getTime()[2], 0.0);
+        assertEquals(0.11, curves.getSignal(0)[1], 0.0);
+        assertTrue(Double.isNaN(curves.getSignal(1)[1]));
+        assertEquals(0.29, curves.getSignal(2)[1], 0.0);
+        assertTrue(Double.isNaN(curves.getSignal(2)[2]));
+    }
+
+    /**
+     * Testing reading progress curves from an export whose settings have a Date and a Time line before the header,
+     * and a column that looks like a well but isn't one of a 1536 well plate
+     */
+    @Test
+    public void loadProgressCurvesPreambleTest() {
+        String export = String.join("\r\n",
+                "Date,10/19/2026",
+                "Time,10:15:22 AM",
+                "Reader Type:,Synergy H1",
+                "",
+                "Time,T\u00b0 Read 1:340,A1,A2,ZZ99",
+                "0:00:00,25.0,0.100,0.200,1",
+                "0:00:30,25.0,0.110,0.210,1");
+        ProgressCurves curves = Loading.parseProgressCurves(export);
+
+        assertEquals(List.of("A1", "A2"), curves.getWells());
+        assertEquals(2, curves.getCount());
+        assertEquals(30, curves.getTime()[1], 0.0);
+        assertEquals(0.21, curves.getSignal(1)[1], 0.0);
+    }
+
+    /**
+     * Testing importing a kinetic plate export with a layout,
+     * with replicates, a missing replicate, and blanks of one column and of every column
+     */
+    @Test
+    public void importPlateTest() throws Exception {
+        Path layoutFile = Files.createTempFile("layout", ".csv");
+        Path exportFile = Files.createTempFile("plate", ".txt");
+        try {
+            Files.writeString(layoutFile, String.join("\n",
+                    "# inhibitor screen",
+                    "well,dataset,substrate,cosubinhib,role,model",
+                    "A1,screen,1,0,,InhibitedCompetitive",
+                    "A2,screen,1,2,,",
+                    "B1,screen,2,0,,",
+                    "B2,screen,2,2,,",
+                    "C1,screen,1,0,,",
+                    "D1,screen,,0,blank,",
+                    "D2,screen,,,blank,"));
+            double[] rates = {0.01, 0.005, 0.02, 0.01, 0.012, 0.001, 0.002};
+            StringBuilder export = new StringBuilder("Kinetic read\n\nTime\tA01\tA02\tB01\tB02\tC01\tD01\tD02\n");
+            for (int reading = 0; reading < 10; reading++) {
+                export.append(reading * 30);
+                for (double rate : rates) export.append('\t').append(0.2 + rate * reading * 30);
+                export.append('\n');
+            }
+            Files.writeString(exportFile, export);
+
+            PlateLayout layout = PlateImporter.loadLayout(layoutFile.toString());
+            assertEquals(96, layout.getSize());
+            List<Data> datasets = PlateImporter.importPlate(exportFile.toString(), layout, RateMethod.Linear, 0.1, 0.5, 2);
+            assertEquals(1, datasets.size());
+            Data data = datasets.get(0);
+            assertEquals(exportFile + "#screen", data.getFilePath());
+            assertEquals(KineticModel.InhibitedCompetitive, data.getModelType());
+            assertEquals(List.of(1.0, 1.0, 2.0), data.getSubstrateCol());
+            assertEquals(List.of(0.0, 2.0), data.getCoSubInhibRow());
+            assertEquals(3, data.getRows());
+            assertEquals(2, data.getCols());
+
+            // Less the blank of each column (or of every column), per 0.5 of signal:
+            double[][] expected = {{0.018, 0.006}, {0.022, Double.NaN}, {0.038, 0.016}};
+            for (int row = 0; row < 3; row++) {
+                for (int col = 0; col < 2; col++) {
+                    assertEquals(expected[row][col], data.getTableData()[row][col], 1e-9);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(layoutFile);
+            Files.deleteIfExists(exportFile);
+        }
+    }
+
+    /**
+     * Testing importing an endpoint grid export whose settings have a Date and a Time line before the grid
+     */
+    @Test
+    public void importGridPreambleTest() throws Exception {
+        Path exportFile = Files.createTempFile("plate", ".csv");
+        try {
+            Files.writeString(exportFile, String.join("\r\n",
+                    "Date,10/19/2026",
+                    "Time,10:15:22 AM",
+                    "",
+                    ",1,2,3,4,5,6,7,8,9,10,11,12",
+                    "A,0.5,1.5,2.5,,,,,,,,,",
+                    "B,,,,,,,,,,,,",
+                    ""));
+            PlateLayout layout = new PlateLayout();
+            layout.addSample("A1", "enzyme", 1, 0);
+            layout.addSample("A2", "enzyme", 2, 0);
+            layout.addSample("A3", "enzyme", 4, 0);
+
+            List<Data> datasets = PlateImporter.importPlate(exportFile.toString(), layout, RateMethod.Linear, 0.1, 1, 1);
+            assertEquals(1, datasets.size());
+            Data data = datasets.get(0);
+            assertEquals(List.of(1.0, 2.0, 4.0), data.getSubstrateCol());
+            assertEquals(0.5, data.getTableData()[0][0], 0.0);
+            assertEquals(2.5, data.getTableData()[2][0], 0.0);
+        } finally {
+            Files.deleteIfExists(exportFile);
+        }
+    }
+
 }
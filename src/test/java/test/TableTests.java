@@ -0,0 +1,180 @@
+package test;
+
+import gui.InputTableModel;
+import gui.TablePasteHandler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the input tables: the model storing their values and parsing pasted blocks.
+ */
+public class TableTests {
+
+    /**
+     * Checks that blank cells and text that isn't a number are stored as NaN and shown as blank.
+     */
+    @Test
+    public void blankCellTest() {
+        InputTableModel model = new InputTableModel(2, 2, 10, 10);
+        Assert.assertEquals(10, model.getRowCount());
+        Assert.assertEquals(10, model.getColumnCount());
+        Assert.assertTrue(Double.isNaN(model.getDouble(0, 0)));
+        Assert.assertEquals("", model.getValueAt(0, 0));
+
+        model.setValueAt(" 1.5 ", 0, 0);
+        model.setValueAt("abc", 0, 1);
+        model.setValueAt("", 1, 0);
+        model.setValueAt(null, 1, 1);
+        Assert.assertEquals(1.5, model.getDouble(0, 0), 0);
+        Assert.assertEquals("1.5", model.getValueAt(0, 0));
+        Assert.assertTrue(Double.isNaN(model.getDouble(0, 1)));
+        Assert.assertEquals("", model.getValueAt(0, 1));
+        Assert.assertTrue(Double.isNaN(model.getDouble(1, 0)));
+        Assert.assertTrue(Double.isNaN(model.getDouble(1, 1)));
+
+        // Cells beyond the storage are blank too:
+        Assert.assertTrue(Double.isNaN(model.getDouble(1000, 1000)));
+
+        model.clearData();
+        Assert.assertTrue(Double.isNaN(model.getDouble(0, 0)));
+    }
+
+    /**
+     * Checks that a block of values is set at the right place, with NaN for blanks and short rows leaving the rest
+     * of their row unchanged, and read back by toArray.
+     */
+    @Test
+    public void setValuesTest() {
+        InputTableModel model = new InputTableModel(3, 3, 3, 3);
+        model.setValueAt("9", 2, 2);
+        model.setValues(new double[][] {{1, 2}, {3}}, 1, 1);
+
+        double[][] array = model.toArray(3, 3);
+        Assert.assertTrue(Double.isNaN(array[0][0]));
+        Assert.assertEquals(1, array[1][1], 0);
+        Assert.assertEquals(2, array[1][2], 0);
+        Assert.assertEquals(3, array[2][1], 0);
+        Assert.assertEquals(9, array[2][2], 0);
+        Assert.assertTrue(Double.isNaN(array[1][0]));
+
+        // Blanks in a block clear cells:
+        model.setValues(new double[][] {{Double.NaN}}, 2, 2);
+        Assert.assertTrue(Double.isNaN(model.getDouble(2, 2)));
+
+        // toArray can read past the storage, giving blanks:
+        double[][] larger = model.toArray(5, 6);
+        Assert.assertEquals(1, larger[1][1], 0);
+        Assert.assertTrue(Double.isNaN(larger[4][5]));
+    }
+
+    /**
+     * Checks that the storage grows to fit new rows, columns and blocks without losing values, and is limited to
+     * MAX_CELLS cells.
+     */
+    @Test
+    public void growthTest() {
+        InputTableModel model = new InputTableModel(2, 2, 2, 2);
+        model.setValueAt("1", 0, 0);
+        model.setValueAt("2", 1, 1);
+
+        model.setRows(50);
+        model.setCols(30);
+        Assert.assertEquals(50, model.getRowCount());
+        Assert.assertEquals(30, model.getColumnCount());
+        Assert.assertTrue(model.isCellEditable(49, 29));
+        Assert.assertFalse(model.isCellEditable(50, 0));
+        model.setValueAt("3", 49, 29);
+
+        // A block past the editable cells grows the storage but not the editable cells:
+        model.setValues(new double[][] {{4}}, 99, 59);
+        Assert.assertEquals(50, model.getRows());
+        Assert.assertEquals(30, model.getCols());
+
+        Assert.assertEquals(1, model.getDouble(0, 0), 0);
+        Assert.assertEquals(2, model.getDouble(1, 1), 0);
+        Assert.assertEquals(3, model.getDouble(49, 29), 0);
+        Assert.assertEquals(4, model.getDouble(99, 59), 0);
+
+        // Hidden cells keep their values:
+        model.setRows(2);
+        model.setRows(50);
+        Assert.assertEquals(3, model.getDouble(49, 29), 0);
+
+        // Rows and columns are limited together, not just on their own:
+        Assert.assertTrue(InputTableModel.fits(100000, InputTableModel.MAX_CELLS / 100000));
+        Assert.assertFalse(InputTableModel.fits(100000, 1000));
+        try {
+            model.setRows(InputTableModel.MAX_CELLS / 30 + 1);
+            Assert.fail("The table grew past MAX_CELLS cells");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals(50, model.getRows());
+        }
+        model.setRows(InputTableModel.MAX_CELLS / 30);
+        Assert.assertEquals(1, model.getDouble(0, 0), 0);
+        Assert.assertEquals(3, model.getDouble(49, 29), 0);
+    }
+
+    /**
+     * Checks that setting a block and growing the editable rows and columns together notifies the table once.
+     */
+    @Test
+    public void growAndSetTest() {
+        InputTableModel model = new InputTableModel(2, 2, 2, 2);
+        List<TableModelEvent> events = new ArrayList<>();
+        model.addTableModelListener(events::add);
+
+        model.setValues(new double[][] {{1, 2, 3}, {4, 5, 6}, {7, 8, 9}, {10, 11, 12}}, 0, 0, 4, 3);
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(TableModelEvent.HEADER_ROW, events.get(0).getFirstRow()); // the columns changed
+        Assert.assertEquals(4, model.getRows());
+        Assert.assertEquals(3, model.getCols());
+        Assert.assertEquals(12, model.getDouble(3, 2), 0);
+
+        // Growing only the rows changes the data but not the columns:
+        events.clear();
+        model.setValues(new double[][] {{13}}, 5, 0, 6, 3);
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(0, events.get(0).getFirstRow());
+        Assert.assertEquals(6, model.getRows());
+
+        // Setting the rows and columns to their current values only sets the values:
+        events.clear();
+        model.setRows(6);
+        model.setCols(3);
+        Assert.assertTrue(events.isEmpty());
+    }
+
+    /**
+     * Checks that pasted text is split on tabs, or commas if there are none, with headings and blanks as NaN,
+     * short rows kept short, and trailing blank lines dropped.
+     */
+    @Test
+    public void parseBlockTest() {
+        double[][] tabs = TablePasteHandler.parseBlock("\tS1\tS2\r\n0.5\t1\t2,5\r\n1.5\t\t4\r\n\r\n\t\n");
+        Assert.assertEquals(3, tabs.length);
+        Assert.assertEquals(3, tabs[0].length);
+        Assert.assertTrue(Double.isNaN(tabs[0][0])); // blank
+        Assert.assertTrue(Double.isNaN(tabs[0][1])); // heading
+        Assert.assertEquals(0.5, tabs[1][0], 0);
+        Assert.assertEquals(1, tabs[1][1], 0);
+        Assert.assertTrue(Double.isNaN(tabs[1][2])); // commas aren't separators when there are tabs
+        Assert.assertTrue(Double.isNaN(tabs[2][1]));
+        Assert.assertEquals(4, tabs[2][2], 0);
+
+        double[][] commas = TablePasteHandler.parseBlock("1, 2 ,3\n4\n\n5,,6\n\n");
+        Assert.assertEquals(4, commas.length);
+        Assert.assertArrayEquals(new double[] {1, 2, 3}, commas[0], 0);
+        Assert.assertArrayEquals(new double[] {4}, commas[1], 0);
+        Assert.assertTrue(Double.isNaN(commas[2][0])); // a blank line in the middle is kept
+        Assert.assertEquals(5, commas[3][0], 0);
+        Assert.assertTrue(Double.isNaN(commas[3][1]));
+        Assert.assertEquals(6, commas[3][2], 0);
+
+        Assert.assertEquals(0, TablePasteHandler.parseBlock("").length);
+        Assert.assertEquals(0, TablePasteHandler.parseBlock("\n \n").length);
+    }
+}